@@ -2,6 +2,7 @@ package com.example.sqldeploymentsmanager.controller;
 
 import com.example.sqldeploymentsmanager.service.HistoryService;
 import com.example.sqldeploymentsmanager.service.SQLAnalysisService;
+import com.example.sqldeploymentsmanager.service.SQLStatementClassifier;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -85,17 +86,9 @@ public class DevelopmentController {
 
     private boolean isValidSQL(String sql) {
         if (sql == null || sql.trim().isEmpty()) return false;
-        
-        String upperSQL = sql.toUpperCase().trim();
-        
-        // Must start with SQL keyword
-        String[] validStarts = {"SELECT", "INSERT", "UPDATE", "DELETE", "CREATE", "ALTER", "DROP", "WITH"};
-        for (String start : validStarts) {
-            if (upperSQL.startsWith(start + " ") || upperSQL.startsWith(start + "\n") || upperSQL.startsWith(start + "\t")) {
-                return true;
-            }
-        }
-        
-        return false;
+
+        // Must start with SQL keyword (leading comments are allowed)
+        return SQLStatementClassifier.startsWithKeyword(sql,
+                "SELECT", "INSERT", "UPDATE", "DELETE", "CREATE", "ALTER", "DROP", "WITH");
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,15 @@
 package com.example.sqldeploymentsmanager.controller;
 
 import com.example.sqldeploymentsmanager.service.HistoryService;
+import com.example.sqldeploymentsmanager.service.HistoryService.HistoryPage;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
+
 @Controller
 @RequestMapping("/history")
 public class HistoryController {
@@ -16,8 +21,13 @@ public class HistoryController {
     }
 
     @GetMapping
-    public String showHistoryPage(Model model) {
-        model.addAttribute("history", historyService.getHistory());
+    public String showHistoryPage(Model model,
+                                  @RequestParam(defaultValue = "0") int offset,
+                                  @RequestParam(defaultValue = "50") int size,
+                                  @RequestParam(required = false) String status,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        addPage(model, offset, size, status, from, to);
         return "history";
     }
 
@@ -25,7 +35,22 @@ public class HistoryController {
     public String clearHistory(Model model) {
         historyService.clearHistory();
         model.addAttribute("message", "🧹 History cleared successfully.");
-        model.addAttribute("history", historyService.getHistory());
+        addPage(model, 0, 50, null, null, null);
         return "history";
     }
+
+    private void addPage(Model model, int offset, int size, String status, LocalDate from, LocalDate to) {
+        ZoneId zone = ZoneId.systemDefault();
+        // both dates are inclusive
+        Long fromMillis = from == null ? null : from.atStartOfDay(zone).toInstant().toEpochMilli();
+        Long toMillis = to == null ? null : to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+
+        HistoryPage page = historyService.getPage(status, fromMillis, toMillis, offset, size);
+        model.addAttribute("history", page.getRecords());
+        model.addAttribute("historyPage", page);
+        model.addAttribute("statuses", historyService.getStatuses());
+        model.addAttribute("status", status);
+        model.addAttribute("from", from);
+        model.addAttribute("to", to);
+    }
 }
@@ -1,5 +1,6 @@
 package com.example.sqldeploymentsmanager.controller;
 
+import com.example.sqldeploymentsmanager.service.ExplainCostService;
 import com.example.sqldeploymentsmanager.service.HistoryService;
 import com.example.sqldeploymentsmanager.service.SQLAnalysisService;
 import jakarta.servlet.http.HttpSession;
@@ -12,10 +13,13 @@ import org.springframework.web.bind.annotation.PostMapping;
 public class SQLAnalysisController {
 
     private final SQLAnalysisService sqlAnalysisService;
+    private final ExplainCostService explainCostService;
     private final HistoryService historyService;
 
-    public SQLAnalysisController(SQLAnalysisService sqlAnalysisService, HistoryService historyService) {
+    public SQLAnalysisController(SQLAnalysisService sqlAnalysisService, ExplainCostService explainCostService,
+                                 HistoryService historyService) {
         this.sqlAnalysisService = sqlAnalysisService;
+        this.explainCostService = explainCostService;
         this.historyService = historyService;
     }
 
@@ -30,6 +34,15 @@ public class SQLAnalysisController {
             var analysisResults = sqlAnalysisService.smartAnalyze(sqlText);
             model.addAttribute("analysisResults", analysisResults);
             model.addAttribute("feedback", analysisResults);
+            model.addAttribute("scriptCacheStats", sqlAnalysisService.getScriptCacheStats());
+            model.addAttribute("ruleStats", sqlAnalysisService.getRuleStats());
+            model.addAttribute("parserStats", sqlAnalysisService.getParserStats());
+
+            // Estimated cost of each SELECT/UPDATE/DELETE from the optimizer's plan
+            if (explainCostService.isEnabled()) {
+                model.addAttribute("explainReport", explainCostService.explain(sqlText));
+                model.addAttribute("fullScanWarnRows", explainCostService.getFullScanWarnRows());
+            }
             
             // Log the analysis view
             historyService.logAction("View Analysis", "SQL Analysis", "VIEW", "Displayed SQL analysis results");
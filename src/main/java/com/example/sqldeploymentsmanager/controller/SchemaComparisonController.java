@@ -1,18 +1,25 @@
 package com.example.sqldeploymentsmanager.controller;
 
 import com.example.sqldeploymentsmanager.service.HistoryService;
+import com.example.sqldeploymentsmanager.service.SQLStatementClassifier;
 import com.example.sqldeploymentsmanager.service.SchemaComparisonService;
 import com.example.sqldeploymentsmanager.service.SelectQueryService;
+import com.example.sqldeploymentsmanager.service.SelectQueryService.ExportFormat;
+import com.example.sqldeploymentsmanager.service.SelectQueryService.ExportStats;
+import com.example.sqldeploymentsmanager.service.SelectQueryService.SelectPreview;
 import com.example.sqldeploymentsmanager.service.WorkflowService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 
 @Controller
 public class SchemaComparisonController {
@@ -33,7 +40,10 @@ public class SchemaComparisonController {
     }
 
     @GetMapping("/comparison")
-    public String showComparisonPage(HttpSession session, Model model) {
+    public String showComparisonPage(HttpSession session, Model model,
+                                     @RequestParam(defaultValue = "0") long offset,
+                                     @RequestParam(required = false) Integer size,
+                                     @RequestParam(required = false) String after) {
         String sqlText = (String) session.getAttribute("lastSQL");
 
         if (sqlText == null || sqlText.isBlank()) {
@@ -46,17 +56,19 @@ public class SchemaComparisonController {
 
         model.addAttribute("sqlScript", sqlText);
 
-        String upper = sqlText.trim().toUpperCase();
-        boolean isSelect = upper.startsWith("SELECT");
+        boolean isSelect = SQLStatementClassifier.classify(sqlText).isQuery();
 
         if (isSelect) {
             try {
-                List<Map<String, Object>> rows = selectQueryService.executeSelect(sqlText);
-                model.addAttribute("selectResults", rows);
+                int pageSize = size != null ? size : selectQueryService.getDefaultPageSize();
+                SelectPreview preview = selectQueryService.preview(sqlText, offset, pageSize, after);
+                model.addAttribute("selectPreview", preview);
+                model.addAttribute("selectResults", preview.getRows());
+                model.addAttribute("selectCacheStats", selectQueryService.getCacheStats());
                 model.addAttribute("isSelect", true);
 
                 historyService.logAction("SELECT Preview", "Schema Comparison", "SUCCESS",
-                        "Previewed query results");
+                        "Previewed query results (" + preview + ")");
             } catch (Exception ex) {
                 model.addAttribute("warning", "Failed to execute SELECT: " + ex.getMessage());
                 historyService.logAction("SELECT Preview", "Schema Comparison", "FAILED",
@@ -65,6 +77,7 @@ public class SchemaComparisonController {
         } else {
             List<String> results = comparisonService.compareWithDatabase(sqlText);
             model.addAttribute("results", results);
+            model.addAttribute("schemaCacheStats", comparisonService.getSchemaCacheStats());
 
             historyService.logAction("View Comparison", "Schema Comparison", "VIEW",
                     "Displayed schema comparison results");
@@ -77,6 +90,39 @@ public class SchemaComparisonController {
         return "comparison";
     }
 
+    // Streams the whole SELECT result to the client; only one row is held in memory at a time
+    @GetMapping("/comparison/export")
+    public void exportResults(HttpSession session, HttpServletResponse response,
+                              @RequestParam(defaultValue = "csv") String format,
+                              @RequestParam(defaultValue = "false") boolean gzip) throws IOException {
+        String sqlText = (String) session.getAttribute("lastSQL");
+        if (sqlText == null || sqlText.isBlank() || !SQLStatementClassifier.classify(sqlText).isQuery()) {
+            historyService.logAction("Export Query", "Schema Comparison", "FAILED", "No SELECT query to export");
+            response.sendRedirect("/comparison");
+            return;
+        }
+
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.of(format);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown export format: " + format);
+            return;
+        }
+
+        String fileName = "query-results." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : exportFormat.getContentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+
+        try {
+            ExportStats stats = selectQueryService.export(sqlText, exportFormat, gzip, response.getOutputStream());
+            historyService.logAction("Export Query", "Schema Comparison", "SUCCESS", stats.toString());
+        } catch (IOException | RuntimeException e) {
+            historyService.logAction("Export Query", "Schema Comparison", "FAILED", e.getMessage());
+            throw e;
+        }
+    }
+
     @PostMapping("/comparison")
     public String runComparison(HttpSession session, RedirectAttributes redirectAttributes) {
         String sqlText = (String) session.getAttribute("lastSQL");
@@ -1,21 +1,32 @@
 package com.example.sqldeploymentsmanager.controller;
 
+import com.example.sqldeploymentsmanager.model.DeploymentJob;
+import com.example.sqldeploymentsmanager.service.DeploymentJobService;
 import com.example.sqldeploymentsmanager.service.HistoryService;
 import com.example.sqldeploymentsmanager.service.WorkflowService;
 import jakarta.servlet.http.HttpSession;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
 @Controller
 @RequestMapping("/workflow")
 public class WorkflowController {
 
     private final WorkflowService workflowService;
+    private final DeploymentJobService deploymentJobService;
 
-    public WorkflowController(WorkflowService workflowService, HistoryService historyService) {
+    public WorkflowController(WorkflowService workflowService, HistoryService historyService,
+                              DeploymentJobService deploymentJobService) {
         this.workflowService = workflowService;
+        this.deploymentJobService = deploymentJobService;
     }
 
     @GetMapping
@@ -35,6 +46,7 @@ public class WorkflowController {
         model.addAttribute("hasSQL", true);
         model.addAttribute("currentStatus", workflowService.getCurrentStatus());
         model.addAttribute("workflowHistory", workflowService.getWorkflowHistory());
+        model.addAttribute("activeJobId", workflowService.getActiveJobId());
         return "workflow";
     }
 
@@ -62,6 +74,22 @@ public class WorkflowController {
         return "redirect:/workflow";
     }
 
+    @GetMapping("/jobs/{id}")
+    @ResponseBody
+    public ResponseEntity<DeploymentJob> jobStatus(@PathVariable String id) {
+        DeploymentJob job = deploymentJobService.getJob(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    @GetMapping(value = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter jobEvents(@PathVariable String id) {
+        DeploymentJob job = deploymentJobService.getJob(id);
+        if (job == null) {
+            throw new ResponseStatusException(NOT_FOUND, "Unknown deployment job " + id);
+        }
+        return deploymentJobService.subscribe(job);
+    }
+
     @PostMapping("/reset")
     public String reset(RedirectAttributes redirect) {
         workflowService.reset();
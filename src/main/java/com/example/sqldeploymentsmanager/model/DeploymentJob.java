@@ -0,0 +1,74 @@
+package com.example.sqldeploymentsmanager.model;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DeploymentJob {
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED;
+        }
+    }
+
+    private final String id;
+    private final String submittedAt;
+    private volatile Status status = Status.QUEUED;
+    private volatile String message = "Waiting for a free deployment worker";
+
+    private final AtomicInteger statementsDone = new AtomicInteger();
+    private final AtomicLong rowsAffected = new AtomicLong();
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+
+    public DeploymentJob(String id) {
+        this.id = id;
+        this.submittedAt = LocalDateTime.now()
+                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+
+    public void markRunning(String message) {
+        this.startedNanos = System.nanoTime();
+        this.message = message;
+        this.status = Status.RUNNING;
+    }
+
+    public void progress(int statements, long rows) {
+        statementsDone.set(statements);
+        rowsAffected.set(rows);
+    }
+
+    public void succeed(String message) {
+        finish(Status.SUCCEEDED, message);
+    }
+
+    public void fail(String message) {
+        finish(Status.FAILED, message);
+    }
+
+    private void finish(Status status, String message) {
+        this.finishedNanos = System.nanoTime();
+        this.message = message;
+        this.status = status;
+    }
+
+    // Getters
+    public String getId() { return id; }
+    public String getSubmittedAt() { return submittedAt; }
+    public Status getStatus() { return status; }
+    public String getMessage() { return message; }
+    public int getStatementsDone() { return statementsDone.get(); }
+    public long getRowsAffected() { return rowsAffected.get(); }
+    public boolean isFinished() { return status.isFinished(); }
+
+    public long getElapsedMillis() {
+        long started = startedNanos;
+        if (started == 0) return 0;
+        long end = status.isFinished() ? finishedNanos : System.nanoTime();
+        return (end - started) / 1_000_000;
+    }
+}
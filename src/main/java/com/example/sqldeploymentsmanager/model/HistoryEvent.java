@@ -0,0 +1,60 @@
+package com.example.sqldeploymentsmanager.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Row of the shared history table. The table is created by Hibernate (ddl-auto); rows are
+ * written in multi-row batches by HistoryDatabaseWriter and read back with plain JDBC.
+ */
+@Entity
+@Table(name = "history_event", indexes = {
+        @Index(name = "idx_history_event_created", columnList = "createdAt"),
+        @Index(name = "idx_history_event_status", columnList = "status, createdAt")
+})
+public class HistoryEvent {
+
+    public static final int DETAILS_LENGTH = 4000;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String action;
+
+    private String source;
+
+    @Column(length = 32)
+    private String status;
+
+    @Column(length = DETAILS_LENGTH)
+    private String details;
+
+    // which app instance logged it
+    @Column(length = 100)
+    private String node;
+
+    private LocalDateTime createdAt;
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getAction() { return action; }
+    public void setAction(String action) { this.action = action; }
+
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getDetails() { return details; }
+    public void setDetails(String details) { this.details = details; }
+
+    public String getNode() { return node; }
+    public void setNode(String node) { this.node = node; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,77 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SQLLexer.Token;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.SchemaModel;
+import net.sf.jsqlparser.statement.Statement;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * One check run by {@link AnalysisRuleEngine} against every statement of a script. Rules
+ * don't scan the SQL themselves: the engine does a single keyword pass (and, if any rule
+ * asks for it, a single lexer pass) per statement and hands the results to each rule
+ * through the {@link Context}. Rules must be stateless, as statements are analyzed in
+ * parallel. Spring beans implementing this interface are picked up automatically.
+ */
+public interface AnalysisRule {
+
+    /** Short unique name, used in timing stats and in {@code analysis.rules.disabled}. */
+    String getName();
+
+    /**
+     * Substrings this rule asks about through {@link Context#contains} and
+     * {@link Context#count}. Matched ignoring case, with any whitespace matching a space.
+     */
+    default Collection<String> getPatterns() {
+        return List.of();
+    }
+
+    /** Whether the rule reads {@link Context#getTokens()}. */
+    default boolean needsTokens() {
+        return false;
+    }
+
+    void apply(Context ctx, List<String> feedback);
+
+    final class Context {
+        private final Statement statement;
+        private final String sql;
+        private final KeywordMatcher matcher;
+        private final int[] counts;
+        private final List<Token> tokens;
+        private final SchemaModel schema;
+
+        Context(Statement statement, String sql, KeywordMatcher matcher, int[] counts, List<Token> tokens,
+                SchemaModel schema) {
+            this.statement = statement;
+            this.sql = sql;
+            this.matcher = matcher;
+            this.counts = counts;
+            this.tokens = tokens;
+            this.schema = schema;
+        }
+
+        /** The parsed statement, or null when JSqlParser could not parse it. */
+        public Statement getStatement() { return statement; }
+        public String getSql() { return sql; }
+
+        public boolean contains(String pattern) {
+            return count(pattern) > 0;
+        }
+
+        public int count(String pattern) {
+            int id = matcher.idOf(pattern);
+            if (id < 0) {
+                throw new IllegalArgumentException("Pattern not declared by any rule: " + pattern);
+            }
+            return counts[id];
+        }
+
+        /** Statement tokens; empty unless the rule declared {@link #needsTokens()}. */
+        public List<Token> getTokens() { return tokens; }
+
+        /** Cached schema (tables, columns, indexes), or null when the database isn't reachable. */
+        public SchemaModel getSchema() { return schema; }
+    }
+}
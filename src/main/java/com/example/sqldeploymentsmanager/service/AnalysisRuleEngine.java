@@ -0,0 +1,147 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SQLLexer.Token;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.SchemaModel;
+import net.sf.jsqlparser.statement.Statement;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the analysis rules over one statement. All keyword checks of all enabled rules are
+ * answered by a single Aho-Corasick pass over the statement text, and rules that need
+ * tokens share one lexer pass, so the cost no longer grows with the number of checks.
+ * Either pass is skipped when no enabled rule needs it; the built-in rules read the parsed
+ * statement or the tokens, so the keyword pass only runs for extra rules that declare
+ * patterns. Time spent in each rule is recorded so expensive ones can be found and
+ * switched off with {@code analysis.rules.disabled}.
+ */
+@Service
+public class AnalysisRuleEngine {
+
+    private final List<AnalysisRule> rules;
+    // stats of every rule, disabled ones included; enabledStats lines up with rules
+    private final List<RuleStats> stats;
+    private final List<RuleStats> enabledStats;
+    private final KeywordMatcher matcher;
+    private final boolean keywordsNeeded;
+    private final boolean tokensNeeded;
+
+    private final RuleStats keywordScan = new RuleStats("(keyword scan)", true);
+    private final RuleStats tokenizing = new RuleStats("(tokenize)", true);
+
+    public AnalysisRuleEngine(ObjectProvider<AnalysisRule> extraRules,
+                              @Value("${analysis.rules.disabled:}") String disabled) {
+        Set<String> disabledNames = Arrays.stream(disabled.split(","))
+                .map(s -> s.trim().toLowerCase(Locale.ROOT))
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toSet());
+
+        List<AnalysisRule> all = new ArrayList<>(AnalysisRules.defaults());
+        extraRules.orderedStream().forEach(all::add);
+
+        this.rules = new ArrayList<>();
+        this.stats = new ArrayList<>();
+        this.enabledStats = new ArrayList<>();
+        Set<String> patterns = new LinkedHashSet<>();
+        boolean needTokens = false;
+        for (AnalysisRule rule : all) {
+            boolean enabled = !disabledNames.contains(rule.getName().toLowerCase(Locale.ROOT));
+            RuleStats ruleStats = new RuleStats(rule.getName(), enabled);
+            stats.add(ruleStats);
+            if (!enabled) continue;
+
+            rules.add(rule);
+            enabledStats.add(ruleStats);
+            patterns.addAll(rule.getPatterns());
+            needTokens |= rule.needsTokens();
+        }
+        this.matcher = new KeywordMatcher(patterns);
+        this.keywordsNeeded = matcher.size() > 0;
+        this.tokensNeeded = needTokens;
+    }
+
+    /**
+     * Findings for one statement; {@code statement} is null when it could not be parsed and
+     * {@code schema} when the database couldn't be reached.
+     */
+    public List<String> analyze(Statement statement, String sql, SchemaModel schema) {
+        long start;
+        int[] counts = new int[0];
+        if (keywordsNeeded) {
+            start = System.nanoTime();
+            counts = matcher.count(sql);
+            keywordScan.record(System.nanoTime() - start, 0);
+        }
+
+        List<Token> tokens = List.of();
+        if (tokensNeeded) {
+            start = System.nanoTime();
+            tokens = SQLLexer.tokenize(sql);
+            tokenizing.record(System.nanoTime() - start, 0);
+        }
+
+        AnalysisRule.Context ctx = new AnalysisRule.Context(statement, sql, matcher, counts, tokens, schema);
+        List<String> feedback = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            AnalysisRule rule = rules.get(i);
+            int before = feedback.size();
+            start = System.nanoTime();
+            try {
+                rule.apply(ctx, feedback);
+            } catch (Exception e) {
+                feedback.add("🟥 Analysis Error (" + rule.getName() + "): " + e.getMessage());
+            }
+            enabledStats.get(i).record(System.nanoTime() - start, feedback.size() - before);
+        }
+        return feedback;
+    }
+
+    /** Per-rule timings, plus the shared keyword scan and tokenizer passes when they run. */
+    public List<RuleStats> getRuleStats() {
+        List<RuleStats> all = new ArrayList<>();
+        if (keywordsNeeded) all.add(keywordScan);
+        if (tokensNeeded) all.add(tokenizing);
+        all.addAll(stats);
+        return all;
+    }
+
+    public static class RuleStats {
+        private final String name;
+        private final boolean enabled;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder findings = new LongAdder();
+
+        RuleStats(String name, boolean enabled) {
+            this.name = name;
+            this.enabled = enabled;
+        }
+
+        void record(long elapsedNanos, int found) {
+            invocations.increment();
+            nanos.add(elapsedNanos);
+            findings.add(found);
+        }
+
+        public String getName() { return name; }
+        public boolean isEnabled() { return enabled; }
+        public long getInvocations() { return invocations.sum(); }
+        public long getFindings() { return findings.sum(); }
+        public double getTotalMillis() { return nanos.sum() / 1_000_000.0; }
+
+        public double getAverageMicros() {
+            long n = invocations.sum();
+            return n == 0 ? 0 : nanos.sum() / 1000.0 / n;
+        }
+    }
+}
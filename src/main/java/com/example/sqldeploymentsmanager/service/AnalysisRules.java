@@ -0,0 +1,527 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SQLLexer.Token;
+import com.example.sqldeploymentsmanager.service.SQLLexer.TokenType;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.NotExpression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.alter.Alter;
+import net.sf.jsqlparser.statement.create.table.CreateTable;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.drop.Drop;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectBody;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.truncate.Truncate;
+import net.sf.jsqlparser.statement.update.Update;
+import net.sf.jsqlparser.statement.update.UpdateSet;
+import net.sf.jsqlparser.statement.values.ValuesStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The built-in analysis rules, in the order their findings are reported: statement-type
+ * checks (or the basic fallback for statements that didn't parse), then security, then
+ * performance. Rules read the parsed statement when there is one and the lexer's tokens
+ * otherwise, so keywords inside string literals and comments never trigger a finding.
+ */
+final class AnalysisRules {
+
+    private AnalysisRules() {
+    }
+
+    static List<AnalysisRule> defaults() {
+        return List.of(
+                new SelectRule(), new DeleteRule(), new UpdateRule(), new InsertRule(),
+                new SchemaChangeRule(), new BasicFallbackRule(),
+                new InjectionRule(), new DynamicSqlRule(),
+                new LeadingWildcardRule(), new FunctionInWhereRule(), new ImplicitConversionRule(),
+                new IndexAdvisorRule());
+    }
+
+    private abstract static class Rule implements AnalysisRule {
+        private final String name;
+        private final boolean tokens;
+
+        Rule(String name, boolean tokens) {
+            this.name = name;
+            this.tokens = tokens;
+        }
+
+        @Override
+        public String getName() { return name; }
+
+        @Override
+        public boolean needsTokens() { return tokens; }
+    }
+
+    static final class SelectRule extends Rule {
+        SelectRule() {
+            super("select", true);
+        }
+
+        @Override
+        public void apply(Context ctx, List<String> feedback) {
+            if (!(ctx.getStatement() instanceof Select)) return;
+            SelectBody body = ((Select) ctx.getStatement()).getSelectBody();
+            List<PlainSelect> selects = plainSelects(body);
+
+            feedback.add("🔍 SELECT statement analysis:");
+
+            // Check for SELECT * (COUNT(*) is a function, not a star item)
+            if (selects.stream().anyMatch(AnalysisRules::selectsAllColumns)) {
+                feedback.add("   ⚠️ Performance: Avoid SELECT * — specify needed columns.");
+            }
+
+            // Check for missing WHERE in potentially large operations
+            if (selects.stream().anyMatch(s -> s.getFromItem() != null && s.getWhere() == null)) {
+                feedback.add("   ℹ️ Info: No WHERE clause - may return large result set.");
+            }
+
+            // Check for ORDER BY without LIMIT
+            if (orderedWithoutLimit(body)) {
+                feedback.add("   ℹ️ Performance: Consider adding LIMIT to ORDER BY queries.");
+            }
+
+            // Check for multiple JOINs
+            int joinCount = selects.stream().mapToInt(s -> s.getJoins() == null ? 0 : s.getJoins().size()).sum();
+            if (joinCount > 3) {
+                feedback.add("   ⚠️ Complexity: Multiple JOINs (" + joinCount + ") may impact performance.");
+            }
+
+            // Check for subqueries
+            if (countSubqueries(ctx.getTokens()) > 2) {
+                feedback.add("   ⚠️ Complexity: Multiple subqueries may impact performance.");
+            }
+
+            // Check for DISTINCT without need
+            if (selects.stream().anyMatch(s -> s.getDistinct() != null && s.getGroupBy() == null)) {
+                feedback.add("   ℹ️ Consider: DISTINCT can be expensive on large tables.");
+            }
+        }
+
+        private static boolean orderedWithoutLimit(SelectBody body) {
+            if (body instanceof SetOperationList) {
+                SetOperationList list = (SetOperationList) body;
+                return list.getOrderByElements() != null && list.getLimit() == null && list.getFetch() == null;
+            }
+            if (body instanceof PlainSelect) {
+                PlainSelect select = (PlainSelect) body;
+                return select.getOrderByElements() != null && select.getLimit() == null
+                        && select.getFetch() == null && select.getTop() == null;
+            }
+            return false;
+        }
+
+        private static int countSubqueries(List<Token> tokens) {
+            int count = 0;
+            for (int i = 0; i + 1 < tokens.size(); i++) {
+                if (tokens.get(i).isPunct('(') && tokens.get(i + 1).is("SELECT")) count++;
+            }
+            return count;
+        }
+    }
+
+    static final class DeleteRule extends Rule {
+        DeleteRule() {
+            super("delete", false);
+        }
+
+        @Override
+        public void apply(Context ctx, List<String> feedback) {
+            if (!(ctx.getStatement() instanceof Delete)) return;
+            Delete delete = (Delete) ctx.getStatement();
+
+            feedback.add("🗑️ DELETE statement analysis:");
+
+            // Check for missing WHERE clause
+            if (delete.getWhere() == null) {
+                feedback.add("   🟥 Critical: DELETE without WHERE will remove ALL rows from table.");
+            } else {
+                feedback.add("   ⚠️ Caution: DELETE operation - ensure proper backup.");
+            }
+
+            // Check for LIMIT (good practice for safety)
+            if (delete.getLimit() == null) {
+                feedback.add("   ✅ Recommendation: Add LIMIT clause for safety during testing.");
+            }
+        }
+    }
+
+    static final class UpdateRule extends Rule {
+        UpdateRule() {
+            super("update", false);
+        }
+
+        @Override
+        public void apply(Context ctx, List<String> feedback) {
+            if (!(ctx.getStatement() instanceof Update)) return;
+            Update update = (Update) ctx.getStatement();
+
+            feedback.add("✏️ UPDATE statement analysis:");
+
+            // Check for missing WHERE clause
+            if (update.getWhere() == null) {
+                feedback.add("   🟥 Critical: UPDATE without WHERE will modify ALL rows in table.");
+            } else {
+                feedback.add("   ⚠️ Caution: UPDATE operation - verify WHERE clause accuracy.");
+            }
+
+            // Check if updating primary key or foreign key style columns
+            if (setsIdentifierColumn(update)) {
+                feedback.add("   ⚠️ Warning: Updating identifier columns may break relationships.");
+            }
+
+            // Check for LIMIT
+            if (update.getLimit() == null) {
+                feedback.add("   ✅ Recommendation: Add LIMIT clause for safety during testing.");
+            }
+        }
+
+        private static boolean setsIdentifierColumn(Update update) {
+            if (update.getUpdateSets() == null) return false;
+            for (UpdateSet set : update.getUpdateSets()) {
+                for (Column column : set.getColumns()) {
+                    String name = column.getColumnName().replace("`", "").toLowerCase(Locale.ROOT);
+                    if (name.equals("id") || name.endsWith("_id")) return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class InsertRule extends Rule {
+        InsertRule() {
+            super("insert", false);
+        }
+
+        @Override
+        public void apply(Context ctx, List<String> feedback) {
+            if (!(ctx.getStatement() instanceof Insert)) return;
+            Insert insert = (Insert) ctx.getStatement();
+
+            feedback.add("📥 INSERT statement analysis:");
+
+            // Check for explicit column list
+            if (insert.getColumns() == null || insert.getColumns().isEmpty()) {
+                feedback.add("   ⚠️ Best Practice: Specify column names in INSERT statements.");
+            }
+
+            // Check for bulk inserts
+            if (valuesRows(insert) > 1) {
+                feedback.add("   ℹ️ Info: Multiple value sets detected - consider batch size limits.");
+            }
+        }
+
+        // rows of a VALUES list, 0 for INSERT ... SELECT / SET
+        private static int valuesRows(Insert insert) {
+            if (insert.getSelect() == null) return 0;
+            SelectBody body = insert.getSelect().getSelectBody();
+            if (body instanceof SetOperationList && ((SetOperationList) body).getSelects().size() == 1) {
+                body = ((SetOperationList) body).getSelects().get(0);
+            }
+            if (!(body instanceof ValuesStatement)) return 0;
+            Object rows = ((ValuesStatement) body).getExpressions();
+            return rows instanceof ExpressionList ? ((ExpressionList) rows).getExpressions().size() : 0;
+        }
+    }
+
+    static final class SchemaChangeRule extends Rule {
+        SchemaChangeRule() {
+            super("schema-change", false);
+        }
+
+        @Override
+        public void apply(Context ctx, List<String> feedback) {
+            Statement statement = ctx.getStatement();
+            if (statement instanceof Alter) {
+                feedback.add("⚠️ Schema Change: ALTER statement detected.");
+                feedback.add("ℹ️ Best Practice: Test schema changes in development first.");
+            } else if (statement instanceof Drop) {
+                feedback.add("🟥 Dangerous: DROP statement detected — potential data loss.");
+                feedback.add("✅ Recommendation: Consider backup before execution.");
+            } else if (statement instanceof Truncate) {
+                feedback.add("🟥 Dangerous: TRUNCATE clears entire table contents.");
+                feedback.add("✅ Alternative: Use DELETE with WHERE for selective removal.");
+            } else if (statement instanceof CreateTable) {
+                feedback.add("ℹ️ Schema Creation: CREATE TABLE statement detected.");
+                feedback.add("✅ Recommendation: Consider adding indexes and constraints.");
+            }
+        }
+    }
+
+    // Keyword-only checks for statements JSqlParser could not parse
+    static final class BasicFallbackRule extends Rule {
+        BasicFallbackRule() {
+            super("basic-fallback", true);
+        }
+
+        @Override
+        public void apply(Context ctx, List<String> feedback) {
+            if (ctx.getStatement() != null) return;
+            List<Token> tokens = ctx.getTokens();
+
+            feedback.add("⚠️ Note: Using basic analysis (SQL syntax may have limitations).");
+            feedback.add("🔍 Basic statement analysis:");
+
+            // Safety checks
+            if (hasWord(tokens, "DROP")) {
+                feedback.add("   🟥 Dangerous: DROP statement detected.");
+            }
+            if (hasWord(tokens, "TRUNCATE")) {
+                feedback.add("   🟥 Dangerous: TRUNCATE statement detected.");
+            }
+            if (hasWord(tokens, "DELETE") && !hasWord(tokens, "WHERE")) {
+                feedback.add("   ⚠️ Risk: DELETE without WHERE clause.");
+            }
+            if (hasWord(tokens, "UPDATE") && !hasWord(tokens, "WHERE")) {
+                feedback.add("   ⚠️ Risk: UPDATE without WHERE clause.");
+            }
+        }
+    }
+
+    // OR 1=1, OR 'a'='a', UNION, EXEC and xp_ procedures, outside of literals and comments
+    static final class InjectionRule extends Rule {
+        InjectionRule() {
+            super("sql-injection", true);
+        }
+
+        @Override
+        public void apply(Context ctx, List<String> feedback) {
+            List<Token> tokens = ctx.getTokens();
+            for (int i = 0; i < tokens.size(); i++) {
+                Token t = tokens.get(i);
+                if ((t.is("OR") && isTautology(tokens, i + 1))
+                        || t.is("UNION") || t.is("EXEC") || t.is("EXECUTE") || startsWithWord(t, "xp_")) {
+                    feedback.add("🛡️ Security: Possible SQL injection pattern detected.");
+                    return;
+                }
+            }
+        }
+
+        // value = value, with the same literal on both sides
+        private static boolean isTautology(List<Token> tokens, int i) {
+            if (i + 2 >= tokens.size() || !tokens.get(i + 1).isPunct('=')) return false;
+            Token left = tokens.get(i);
+            Token right = tokens.get(i + 2);
+            boolean literal = left.getType() == TokenType.STRING || left.isWordOf(Character::isDigit);
+            return literal && left.getType() == right.getType() && left.toString().equals(right.toString());
+        }
+    }
+
+    static final class DynamicSqlRule extends Rule {
+        DynamicSqlRule() {
+            super("dynamic-sql", true);
+        }
+
+        @Override
+        public void apply(Context ctx, List<String> feedback) {
+            List<Token> tokens = ctx.getTokens();
+            for (int i = 0; i < tokens.size(); i++) {
+                Token t = tokens.get(i);
+                boolean exec = (t.is("EXEC") || t.is("EXECUTE"))
+                        && i + 1 < tokens.size() && tokens.get(i + 1).isPunct('(');
+                if (exec || startsWithWord(t, "sp_") || startsWithWord(t, "xp_")) {
+                    feedback.add("⚠️ Security: Dynamic SQL execution detected.");
+                    return;
+                }
+            }
+        }
+    }
+
+    static final class LeadingWildcardRule extends Rule {
+        LeadingWildcardRule() {
+            super("leading-wildcard", true);
+        }
+
+        @Override
+        public void apply(Context ctx, List<String> feedback) {
+            boolean found = false;
+            if (ctx.getStatement() != null) {
+                for (Expression predicate : predicates(ctx.getStatement())) {
+                    if (predicate instanceof LikeExpression) {
+                        Expression pattern = ((LikeExpression) predicate).getRightExpression();
+                        found |= pattern instanceof StringValue && ((StringValue) pattern).getValue().startsWith("%");
+                    }
+                }
+            } else {
+                List<Token> tokens = ctx.getTokens();
+                for (int i = 0; i + 1 < tokens.size() && !found; i++) {
+                    String next = tokens.get(i + 1).toString();
+                    found = tokens.get(i).is("LIKE") && (next.startsWith("'%") || next.startsWith("\"%"));
+                }
+            }
+            if (found) {
+                feedback.add("🐌 Performance: Leading wildcard in LIKE prevents index usage.");
+            }
+        }
+    }
+
+    // WHERE fn(col) = / < / > ...: a function wrapped around the column being filtered on
+    static final class FunctionInWhereRule extends Rule {
+        FunctionInWhereRule() {
+            super("function-in-where", true);
+        }
+
+        @Override
+        public void apply(Context ctx, List<String> feedback) {
+            boolean found = ctx.getStatement() != null
+                    ? predicates(ctx.getStatement()).stream().anyMatch(p -> p instanceof ComparisonOperator
+                            && ((ComparisonOperator) p).getLeftExpression() instanceof Function)
+                    : functionComparedAfterWhere(ctx.getTokens());
+            if (found) {
+                feedback.add("🐌 Performance: Functions in WHERE clause may prevent index usage.");
+            }
+        }
+
+        private static boolean functionComparedAfterWhere(List<Token> tokens) {
+            for (int i = 0; i + 2 < tokens.size(); i++) {
+                if (!tokens.get(i).is("WHERE")) continue;
+                if (!tokens.get(i + 1).isWordOf(Character::isLetter) || !tokens.get(i + 2).isPunct('(')) continue;
+
+                int close = i + 3;
+                while (close < tokens.size() && !tokens.get(close).isPunct(')')) close++;
+                if (close == i + 3 || close + 1 >= tokens.size()) continue;
+
+                Token op = tokens.get(close + 1);
+                if (op.isPunct('=') || op.isPunct('<') || op.isPunct('>')) return true;
+            }
+            return false;
+        }
+    }
+
+    // WHERE col = '123' or WHERE col = 1.5: numbers compared as strings or decimals
+    static final class ImplicitConversionRule extends Rule {
+        ImplicitConversionRule() {
+            super("implicit-conversion", true);
+        }
+
+        @Override
+        public void apply(Context ctx, List<String> feedback) {
+            boolean found = ctx.getStatement() != null
+                    ? predicates(ctx.getStatement()).stream().anyMatch(ImplicitConversionRule::isSuspicious)
+                    : suspiciousAfterWhere(ctx.getTokens());
+            if (found) {
+                feedback.add("ℹ️ Performance: Possible implicit type conversion in WHERE clause.");
+            }
+        }
+
+        private static boolean isSuspicious(Expression predicate) {
+            if (!(predicate instanceof EqualsTo)) return false;
+            EqualsTo equals = (EqualsTo) predicate;
+            if (!(equals.getLeftExpression() instanceof Column)) return false;
+            Expression value = equals.getRightExpression();
+            return value instanceof DoubleValue
+                    || (value instanceof StringValue && isDigits(((StringValue) value).getValue()));
+        }
+
+        private static boolean suspiciousAfterWhere(List<Token> tokens) {
+            for (int i = 0; i + 3 < tokens.size(); i++) {
+                if (!tokens.get(i).is("WHERE")) continue;
+                if (!tokens.get(i + 1).isWordOf(c -> Character.isLetter(c) || c == '_')) continue;
+                if (!tokens.get(i + 2).isPunct('=')) continue;
+
+                Token value = tokens.get(i + 3);
+                boolean quotedNumber = value.getType() == TokenType.STRING && isDigits(value.text());
+                boolean decimal = value.isWordOf(Character::isDigit)
+                        && i + 4 < tokens.size() && tokens.get(i + 4).isPunct('.');
+                if (quotedNumber || decimal) return true;
+            }
+            return false;
+        }
+
+        private static boolean isDigits(String s) {
+            if (s.isEmpty()) return false;
+            for (int i = 0; i < s.length(); i++) {
+                if (!Character.isDigit(s.charAt(i))) return false;
+            }
+            return true;
+        }
+    }
+
+    static boolean hasWord(List<Token> tokens, String keyword) {
+        for (Token t : tokens) {
+            if (t.is(keyword)) return true;
+        }
+        return false;
+    }
+
+    private static boolean startsWithWord(Token t, String prefix) {
+        return t.getType() == TokenType.WORD && t.toString().regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private static List<PlainSelect> plainSelects(SelectBody body) {
+        List<PlainSelect> selects = new ArrayList<>();
+        if (body instanceof PlainSelect) {
+            selects.add((PlainSelect) body);
+        } else if (body instanceof SetOperationList) {
+            for (SelectBody part : ((SetOperationList) body).getSelects()) {
+                if (part instanceof PlainSelect) selects.add((PlainSelect) part);
+            }
+        }
+        return selects;
+    }
+
+    private static boolean selectsAllColumns(PlainSelect select) {
+        for (SelectItem item : select.getSelectItems()) {
+            if (item instanceof AllColumns || item instanceof AllTableColumns) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The individual conditions of the statement's WHERE clauses (every branch of a UNION),
+     * with AND/OR/NOT and parentheses taken apart.
+     */
+    static List<Expression> predicates(Statement statement) {
+        List<Expression> where = new ArrayList<>();
+        if (statement instanceof Select) {
+            for (PlainSelect select : plainSelects(((Select) statement).getSelectBody())) {
+                where.add(select.getWhere());
+            }
+        } else if (statement instanceof Update) {
+            where.add(((Update) statement).getWhere());
+        } else if (statement instanceof Delete) {
+            where.add(((Delete) statement).getWhere());
+        }
+
+        List<Expression> predicates = new ArrayList<>();
+        for (Expression condition : where) {
+            collectPredicates(condition, predicates);
+        }
+        return predicates;
+    }
+
+    private static void collectPredicates(Expression e, List<Expression> out) {
+        if (e == null) return;
+        if (e instanceof Parenthesis) {
+            collectPredicates(((Parenthesis) e).getExpression(), out);
+        } else if (e instanceof NotExpression) {
+            collectPredicates(((NotExpression) e).getExpression(), out);
+        } else if (e instanceof AndExpression || e instanceof OrExpression) {
+            collectPredicates(((BinaryExpression) e).getLeftExpression(), out);
+            collectPredicates(((BinaryExpression) e).getRightExpression(), out);
+        } else {
+            out.add(e);
+        }
+    }
+}
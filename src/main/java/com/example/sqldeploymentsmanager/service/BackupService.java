@@ -1,62 +1,842 @@
 package com.example.sqldeploymentsmanager.service;
 
-import java.io.File;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
-import org.springframework.stereotype.Service;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Logical backup of the current database over JDBC, without external tools. Each table is
+ * streamed row by row on its own pooled connection, {@code backup.parallelism} tables at a
+ * time (largest first), into gzip-compressed chunk files of multi-row INSERTs that restore
+ * with the plain mysql client. A manifest records row counts, sizes and a SHA-256 for
+ * every file and the order to restore them in: {@code 00-schema.sql.gz} first, then the
+ * chunks under {@code data/}, then {@code 99-triggers.sql.gz}, so that triggers don't fire
+ * for the restored rows. The backup is written to a {@code .partial} directory that is
+ * renamed only once every table has been written, so a directory with a manifest is always
+ * complete.
+ * <p>
+ * All tables are read as of one point in time, as with mysqldump --single-transaction:
+ * every worker connection opens a {@code START TRANSACTION WITH CONSISTENT SNAPSHOT} while
+ * writes are briefly blocked by {@code FLUSH TABLES WITH READ LOCK} (or, without the RELOAD
+ * privilege, {@code LOCK TABLES ... READ} on the backed-up tables), and the lock is
+ * released as soon as the snapshots are open. If neither lock can be taken, all tables are
+ * read on a single snapshot instead, one after another. This holds for InnoDB tables only;
+ * non-transactional tables are read as they are when their turn comes.
+ */
 @Service
 public class BackupService {
 
-    private final String backupDir =
-            Paths.get(System.getProperty("user.home"), "sql-deployment-backups").toString();
+    private static final DateTimeFormatter DIR_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+    private static final int ROWS_PER_INSERT = 500;
+    private static final int MAX_INSERT_CHARS = 1 << 20;
+    // chunks go under DATA_DIR, so a data/*.sql.gz glob never picks up the schema a second time
+    private static final String SCHEMA_FILE = "00-schema.sql.gz";
+    private static final String TRIGGERS_FILE = "99-triggers.sql.gz";
+    private static final String DATA_DIR = "data";
 
-    public String createFullBackup() {
+    private static final Set<String> NUMERIC_TYPES = Set.of(
+            "tinyint", "smallint", "mediumint", "int", "integer", "bigint", "decimal", "numeric",
+            "float", "double", "real", "year");
+    private static final Set<String> BINARY_TYPES = Set.of(
+            "binary", "varbinary", "tinyblob", "blob", "mediumblob", "longblob", "bit",
+            "geometry", "point", "linestring", "polygon", "multipoint", "multilinestring",
+            "multipolygon", "geometrycollection", "geomcollection");
 
-        String dbUser = System.getenv("DB_USER");
-        String dbPass = System.getenv("DB_PASS");
+    // restores independently of the client's session settings
+    private static final String CHUNK_HEADER =
+            "SET NAMES utf8mb4;\n" +
+            "SET SESSION sql_mode = 'NO_AUTO_VALUE_ON_ZERO';\n" +
+            "SET time_zone = '+00:00';\n" +
+            "SET FOREIGN_KEY_CHECKS = 0;\n" +
+            "SET UNIQUE_CHECKS = 0;\n";
 
-        if (dbUser == null || dbPass == null) {
-            return "Database credentials not set. Please configure DB_USER and DB_PASS environment variables.";
-        }
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Path backupDir;
+    private final long chunkRows;
+    private final int compressionLevel;
+    private final ThreadPoolExecutor executor;
 
-        if (!isMysqlDumpAvailable()) {
-            return "mysqldump not detected. Backup skipped. Please install MySQL client tools.";
+    public BackupService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                         @Value("${backup.directory:${user.home}/sql-deployment-backups}") String backupDir,
+                         @Value("${backup.parallelism:4}") int parallelism,
+                         @Value("${backup.chunk-rows:1000000}") long chunkRows,
+                         @Value("${backup.compression-level:1}") int compressionLevel) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.backupDir = Paths.get(backupDir);
+        this.chunkRows = Math.max(1, chunkRows);
+        this.compressionLevel = Math.max(1, Math.min(9, compressionLevel));
+
+        int threads = Math.max(1, parallelism);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "backup-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Backs up every table and view of the current database. Returns once all files and
+     * the manifest are written; throws if any table fails, leaving nothing behind.
+     */
+    public BackupResult createFullBackup() {
+        return createBackup(null);
+    }
+
+    /**
+     * Backs up only the named tables and views (matched case-insensitively), e.g. the ones
+     * a script writes to; names that don't exist yet, such as tables the script creates,
+     * are skipped. {@code null} means everything.
+     */
+    public BackupResult createBackup(Collection<String> only) {
+        String database = jdbcTemplate.queryForObject("SELECT DATABASE()", String.class);
+        if (database == null) throw new IllegalStateException("No database selected on the configured connection.");
+
+        Set<String> wanted = null;
+        if (only != null) {
+            wanted = new HashSet<>();
+            for (String name : only) wanted.add(name.toLowerCase(Locale.ROOT));
         }
 
+        List<TableSource> tables = new ArrayList<>();
+        List<String> views = new ArrayList<>();
+        Set<String> filter = wanted;
+        jdbcTemplate.query(
+                "SELECT table_name, table_type, COALESCE(data_length, 0) FROM information_schema.tables " +
+                "WHERE table_schema = DATABASE() ORDER BY table_name",
+                rs -> {
+                    String name = rs.getString(1);
+                    if (filter != null && !filter.contains(name.toLowerCase(Locale.ROOT))) return;
+                    if ("VIEW".equals(rs.getString(2))) {
+                        views.add(name);
+                    } else {
+                        tables.add(new TableSource(name, rs.getLong(3)));
+                    }
+                });
+        return backup(database, tables, views, wanted);
+    }
+
+    private BackupResult backup(String database, List<TableSource> tables, List<String> views, Set<String> requested) {
+        long start = System.nanoTime();
+        LocalDateTime startedAt = LocalDateTime.now();
+        loadColumns(tables);
+
+        String name = database + "_" + startedAt.format(DIR_TIMESTAMP) + (requested == null ? "" : "_script");
+        Path target = backupDir.resolve(name);
+        Path partial = backupDir.resolve(name + ".partial");
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Connection> snapshots = new ArrayList<>();
+
         try {
-            new File(backupDir).mkdirs();
+            Files.createDirectories(partial.resolve(DATA_DIR));
+            ChunkInfo schemaFile = writeSchema(partial, tables, views);
+            List<String> triggers = new ArrayList<>();
+            ChunkInfo triggersFile = writeTriggers(partial, tables, triggers);
 
-            String timestamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
-            String backupFile = backupDir + "/college_" + timestamp + ".sql";
+            // largest first, so one big table doesn't start last and finish long after the rest
+            List<TableSource> order = new ArrayList<>(tables);
+            order.sort(Comparator.comparingLong((TableSource t) -> t.estimatedBytes).reversed());
 
-            ProcessBuilder pb = new ProcessBuilder(
-                    "mysqldump",
-                    "-u" + dbUser,
-                    "-p" + dbPass,
-                    "college"
-            );
+            // a table task borrows whichever snapshot is idle; there are never more of them
+            // running than there are snapshots, unless the locks couldn't be taken
+            BlockingQueue<Connection> idle = new LinkedBlockingQueue<>(
+                    openSnapshots(tables, Math.min(executor.getCorePoolSize(), order.size()), snapshots));
 
-            pb.redirectOutput(new File(backupFile));
-            pb.start();
+            ExecutorCompletionService<TableBackup> completion = new ExecutorCompletionService<>(executor);
+            Map<Future<TableBackup>, String> names = new HashMap<>();
+            for (TableSource table : order) {
+                names.put(completion.submit(() -> dumpTable(partial, table, failed, idle)), table.name);
+            }
 
-            return "Backup created successfully: " + backupFile;
+            // in completion order, so the first failure stops the other tables right away
+            List<TableBackup> results = new ArrayList<>();
+            Exception failure = null;
+            for (int i = 0; i < order.size(); i++) {
+                Future<TableBackup> done = completion.take();
+                try {
+                    results.add(done.get());
+                } catch (ExecutionException ex) {
+                    failed.set(true);
+                    if (failure == null && !(ex.getCause() instanceof CancellationException)) {
+                        failure = new IllegalStateException("table " + names.get(done) + ": "
+                                + rootMessage(ex.getCause()), ex.getCause());
+                    }
+                }
+            }
+            if (failure != null) throw failure;
 
-        } catch (IOException e) {
-            return "Backup failed: " + e.getMessage();
+            results.sort(Comparator.comparing(TableBackup::getName));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            BackupResult result = new BackupResult(target.toString(), database, startedAt, elapsedMillis,
+                    schemaFile, triggersFile, results, views, triggers,
+                    requested == null ? null : new TreeSet<>(requested));
+            writeManifest(partial, result);
+            Files.move(partial, target);
+            return result;
+        } catch (Exception e) {
+            // stops tables still running, e.g. when we were interrupted
+            failed.set(true);
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            deleteQuietly(partial);
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            throw new IllegalStateException(rootMessage(e), e);
+        } finally {
+            closeSnapshots(snapshots);
         }
     }
 
-    private boolean isMysqlDumpAvailable() {
+    /**
+     * Opens up to {@code count} connections that each hold a consistent snapshot of the same
+     * moment, adding them to {@code snapshots} as they open so they are closed on failure.
+     * Writes are blocked only until the last one is open. Without a lock, snapshots opened
+     * one after another could see different commits, so just one is opened.
+     */
+    private List<Connection> openSnapshots(List<TableSource> tables, int count, List<Connection> snapshots)
+            throws SQLException {
+        if (count == 0) return snapshots;
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        if (dataSource == null) throw new IllegalStateException("No DataSource configured.");
+        try (Connection lock = dataSource.getConnection()) {
+            boolean locked = lockWrites(lock, tables);
+            try {
+                int open = locked ? count : 1;
+                for (int i = 0; i < open; i++) {
+                    Connection con = dataSource.getConnection();
+                    snapshots.add(con);
+                    // the pool restores the isolation level when the connection is returned
+                    con.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                    execute(con, "START TRANSACTION WITH CONSISTENT SNAPSHOT");
+                }
+            } finally {
+                if (locked) execute(lock, "UNLOCK TABLES");
+            }
+        }
+        return snapshots;
+    }
+
+    // FLUSH TABLES WITH READ LOCK needs RELOAD, which managed servers often don't grant
+    private static boolean lockWrites(Connection lock, List<TableSource> tables) {
+        try {
+            execute(lock, "FLUSH TABLES WITH READ LOCK");
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Backup: FLUSH TABLES WITH READ LOCK failed (" + e.getMessage()
+                    + "), locking the backed-up tables instead");
+        }
         try {
-            ProcessBuilder pb = new ProcessBuilder("mysqldump", "--version");
-            pb.start();
+            execute(lock, "LOCK TABLES " + tables.stream().map(t -> quote(t.name) + " READ")
+                    .collect(Collectors.joining(", ")));
             return true;
-        } catch (IOException e) {
+        } catch (SQLException e) {
+            System.out.println("Backup: LOCK TABLES failed (" + e.getMessage()
+                    + "), reading all tables on one snapshot");
             return false;
         }
     }
+
+    private static void closeSnapshots(List<Connection> snapshots) {
+        for (Connection con : snapshots) {
+            try {
+                execute(con, "ROLLBACK");
+            } catch (SQLException ignored) {
+                // the connection is closed below either way
+            }
+            try {
+                con.close();
+            } catch (SQLException ignored) {
+                // best effort
+            }
+        }
+    }
+
+    // one query for the insertable (non-generated) columns of every table
+    private void loadColumns(List<TableSource> tables) {
+        Map<String, TableSource> byName = new LinkedHashMap<>();
+        for (TableSource table : tables) byName.put(table.name, table);
+        jdbcTemplate.query(
+                "SELECT table_name, column_name, data_type FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND extra NOT LIKE '%VIRTUAL GENERATED%' " +
+                "AND extra NOT LIKE '%STORED GENERATED%' ORDER BY table_name, ordinal_position",
+                rs -> {
+                    TableSource table = byName.get(rs.getString(1));
+                    if (table == null) return;
+                    table.columns.add(rs.getString(2));
+                    table.kinds.add(kindOf(rs.getString(3)));
+                });
+    }
+
+    private ChunkInfo writeSchema(Path dir, List<TableSource> tables, List<String> views) throws IOException {
+        try (ChunkFile file = new ChunkFile(dir, SCHEMA_FILE, compressionLevel)) {
+            file.writer.write(CHUNK_HEADER);
+            for (TableSource table : tables) {
+                String ddl = jdbcTemplate.queryForObject("SHOW CREATE TABLE " + quote(table.name),
+                        (rs, i) -> rs.getString(2));
+                file.writer.write("\nDROP TABLE IF EXISTS " + quote(table.name) + ";\n" + ddl + ";\n");
+            }
+            for (String view : views) {
+                String ddl = jdbcTemplate.queryForObject("SHOW CREATE VIEW " + quote(view),
+                        (rs, i) -> rs.getString(2));
+                file.writer.write("\nDROP VIEW IF EXISTS " + quote(view) + ";\n" + ddl + ";\n");
+            }
+            return file.finish(0);
+        }
+    }
+
+    /**
+     * Writes the triggers of the backed-up tables, adding their names to {@code names}. They
+     * are restored after the data, as mysqldump does, so they don't fire for restored rows.
+     */
+    private ChunkInfo writeTriggers(Path dir, List<TableSource> tables, List<String> names) throws IOException {
+        Set<String> backedUp = new HashSet<>();
+        for (TableSource table : tables) backedUp.add(table.name);
+        jdbcTemplate.query(
+                "SELECT trigger_name, event_object_table FROM information_schema.triggers " +
+                "WHERE trigger_schema = DATABASE() ORDER BY event_object_table, action_timing, " +
+                "event_manipulation, action_order",
+                rs -> {
+                    if (backedUp.contains(rs.getString(2))) names.add(rs.getString(1));
+                });
+
+        try (ChunkFile file = new ChunkFile(dir, TRIGGERS_FILE, compressionLevel)) {
+            file.writer.write(CHUNK_HEADER);
+            for (String trigger : names) {
+                // Trigger, sql_mode, SQL Original Statement, ...
+                String[] create = jdbcTemplate.queryForObject("SHOW CREATE TRIGGER " + quote(trigger),
+                        (rs, i) -> new String[] {rs.getString(2), rs.getString(3)});
+                // the body may hold semicolons of its own
+                file.writer.write("\nDROP TRIGGER IF EXISTS " + quote(trigger) + ";\n"
+                        + "SET SESSION sql_mode = '" + create[0].replace("'", "''") + "';\n"
+                        + "DELIMITER ;;\n" + create[1] + ";;\nDELIMITER ;\n");
+            }
+            return file.finish(0);
+        }
+    }
+
+    private TableBackup dumpTable(Path dir, TableSource table, AtomicBoolean failed,
+                                  BlockingQueue<Connection> idle) throws SQLException, InterruptedException {
+        if (failed.get()) throw new CancellationException();
+        long start = System.nanoTime();
+        String sql = "SELECT " + table.columns.stream().map(BackupService::quote).collect(Collectors.joining(", "))
+                + " FROM " + quote(table.name);
+        String insertPrefix = "INSERT INTO " + quote(table.name) + " ("
+                + table.columns.stream().map(BackupService::quote).collect(Collectors.joining(", ")) + ") VALUES\n";
+
+        List<ChunkInfo> chunks;
+        Connection con = idle.take();
+        try {
+            if (failed.get()) throw new CancellationException();
+            // dump temporal values in UTC, as the chunk header restores them
+            String zone = queryString(con, "SELECT @@session.time_zone");
+            execute(con, "SET time_zone = '+00:00'");
+            try (Statement st = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                // Connector/J streams row by row instead of buffering the whole table
+                st.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = st.executeQuery(sql);
+                     TableChunks writer = new TableChunks(dir, table, insertPrefix)) {
+                    StringBuilder row = new StringBuilder(256);
+                    while (rs.next()) {
+                        if (failed.get()) {
+                            // closing a streaming result reads the rest of it first
+                            st.cancel();
+                            throw new CancellationException();
+                        }
+                        row.setLength(0);
+                        appendRow(row, rs, table.kinds);
+                        writer.row(row);
+                    }
+                    chunks = writer.finish();
+                } catch (IOException e) {
+                    st.cancel();
+                    throw new UncheckedIOException(e);
+                }
+            } finally {
+                execute(con, "SET time_zone = '" + zone.replace("'", "''") + "'");
+            }
+        } finally {
+            idle.put(con);
+        }
+
+        TableBackup backup = new TableBackup(table.name, chunks, (System.nanoTime() - start) / 1_000_000);
+        System.out.println("Backup: " + backup);
+        return backup;
+    }
+
+    private void writeManifest(Path dir, BackupResult result) throws IOException {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("format", "sql-deployments-manager-backup/1");
+        manifest.put("database", result.getDatabase());
+        manifest.put("scope", result.isFull() ? "full" : "tables");
+        if (!result.isFull()) manifest.put("requestedTables", result.getRequestedTables());
+        manifest.put("serverVersion", jdbcTemplate.queryForObject("SELECT VERSION()", String.class));
+        manifest.put("startedAt", result.getStartedAt().atZone(ZoneId.systemDefault())
+                .toOffsetDateTime().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        manifest.put("finishedAt", OffsetDateTime.now().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        manifest.put("elapsedMillis", result.getElapsedMillis());
+        manifest.put("compression", "gzip");
+        manifest.put("restore", "load the files in restoreOrder one after another, e.g. "
+                + "gunzip -c " + SCHEMA_FILE + " " + DATA_DIR + "/*.sql.gz " + TRIGGERS_FILE + " | mysql <database>");
+        List<String> restoreOrder = new ArrayList<>();
+        restoreOrder.add(result.getSchemaFile().getFile());
+        for (TableBackup table : result.getTables()) {
+            for (ChunkInfo chunk : table.getChunks()) restoreOrder.add(chunk.getFile());
+        }
+        restoreOrder.add(result.getTriggersFile().getFile());
+        manifest.put("restoreOrder", restoreOrder);
+        manifest.put("schema", chunkEntry(result.getSchemaFile()));
+        manifest.put("triggersFile", chunkEntry(result.getTriggersFile()));
+        manifest.put("rows", result.getRows());
+        manifest.put("bytes", result.getBytes());
+        manifest.put("compressedBytes", result.getCompressedBytes());
+
+        List<Map<String, Object>> tables = new ArrayList<>();
+        for (TableBackup table : result.getTables()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", table.getName());
+            entry.put("rows", table.getRows());
+            entry.put("bytes", table.getBytes());
+            entry.put("compressedBytes", table.getCompressedBytes());
+            entry.put("elapsedMillis", table.getElapsedMillis());
+            entry.put("mbPerSecond", Math.round(table.getMegabytesPerSecond() * 100) / 100.0);
+            entry.put("chunks", table.getChunks().stream().map(BackupService::chunkEntry).collect(Collectors.toList()));
+            tables.add(entry);
+        }
+        manifest.put("tables", tables);
+        manifest.put("views", result.getViews());
+        manifest.put("triggers", result.getTriggers());
+
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(dir.resolve("manifest.json").toFile(), manifest);
+    }
+
+    private static Map<String, Object> chunkEntry(ChunkInfo chunk) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("file", chunk.getFile());
+        entry.put("rows", chunk.getRows());
+        entry.put("bytes", chunk.getBytes());
+        entry.put("compressedBytes", chunk.getCompressedBytes());
+        entry.put("sha256", chunk.getSha256());
+        return entry;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ------------------------------------------------------------------
+    // Value formatting
+    // ------------------------------------------------------------------
+
+    private static final int NUMERIC = 0;
+    private static final int BINARY = 1;
+    private static final int TEXT = 2;
+
+    private static int kindOf(String dataType) {
+        String type = dataType == null ? "" : dataType.toLowerCase(Locale.ROOT);
+        if (NUMERIC_TYPES.contains(type)) return NUMERIC;
+        if (BINARY_TYPES.contains(type)) return BINARY;
+        return TEXT;
+    }
+
+    private static void appendRow(StringBuilder sb, ResultSet rs, List<Integer> kinds) throws SQLException {
+        sb.append('(');
+        for (int c = 0; c < kinds.size(); c++) {
+            if (c > 0) sb.append(',');
+            int kind = kinds.get(c);
+            if (kind == BINARY) {
+                byte[] bytes = rs.getBytes(c + 1);
+                if (bytes == null) {
+                    sb.append("NULL");
+                } else if (bytes.length == 0) {
+                    sb.append("''");
+                } else {
+                    appendHex(sb, bytes);
+                }
+                continue;
+            }
+            String value = rs.getString(c + 1);
+            if (value == null) {
+                sb.append("NULL");
+            } else if (kind == NUMERIC) {
+                sb.append(value);
+            } else {
+                appendQuoted(sb, value);
+            }
+        }
+        sb.append(')');
+    }
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static void appendHex(StringBuilder sb, byte[] bytes) {
+        sb.append("0x");
+        for (byte b : bytes) {
+            sb.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+    }
+
+    // escapes as mysqldump does
+    private static void appendQuoted(StringBuilder sb, String value) {
+        sb.append('\'');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case 0: sb.append("\\0"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case 26: sb.append("\\Z"); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\'': sb.append("\\'"); break;
+                case '"': sb.append("\\\""); break;
+                default: sb.append(ch);
+            }
+        }
+        sb.append('\'');
+    }
+
+    static String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    private static String queryString(Connection con, String sql) throws SQLException {
+        try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static void execute(Connection con, String sql) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) root = root.getCause();
+        return root.getMessage() != null ? root.getMessage() : root.toString();
+    }
+
+    private static void deleteQuietly(Path dir) {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                    // best effort
+                }
+            });
+        } catch (IOException ignored) {
+            // best effort
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Files
+    // ------------------------------------------------------------------
+
+    private static final class TableSource {
+        final String name;
+        final long estimatedBytes;
+        final List<String> columns = new ArrayList<>();
+        final List<Integer> kinds = new ArrayList<>();
+
+        TableSource(String name, long estimatedBytes) {
+            this.name = name;
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    /** Splits one table's rows into chunk files of up to chunk-rows rows each. */
+    private final class TableChunks implements AutoCloseable {
+        private final Path dir;
+        private final String baseName;
+        private final String insertPrefix;
+        private final List<ChunkInfo> chunks = new ArrayList<>();
+        private ChunkFile current;
+        private long chunkRowCount;
+        private int statementRows;
+        private int statementChars;
+
+        TableChunks(Path dir, TableSource table, String insertPrefix) {
+            this.dir = dir;
+            this.baseName = table.name.replaceAll("[^A-Za-z0-9_.-]", "_");
+            this.insertPrefix = insertPrefix;
+        }
+
+        void row(CharSequence values) throws IOException {
+            if (current == null || chunkRowCount == chunkRows) nextChunk();
+            Writer writer = current.writer;
+            if (statementRows == 0) {
+                writer.write(insertPrefix);
+            } else {
+                writer.write(",\n");
+            }
+            writer.append(values);
+            statementRows++;
+            statementChars += values.length();
+            chunkRowCount++;
+            if (statementRows == ROWS_PER_INSERT || statementChars >= MAX_INSERT_CHARS) endStatement();
+        }
+
+        List<ChunkInfo> finish() throws IOException {
+            closeChunk();
+            return chunks;
+        }
+
+        private void nextChunk() throws IOException {
+            closeChunk();
+            String name = String.format("%s/%s.%04d.sql.gz", DATA_DIR, baseName, chunks.size() + 1);
+            // table names differing only in case or in replaced characters get a suffix
+            for (int n = 2; Files.exists(dir.resolve(name)); n++) {
+                name = String.format("%s/%s~%d.%04d.sql.gz", DATA_DIR, baseName, n, chunks.size() + 1);
+            }
+            current = new ChunkFile(dir, name, compressionLevel);
+            current.writer.write(CHUNK_HEADER);
+            chunkRowCount = 0;
+        }
+
+        private void endStatement() throws IOException {
+            if (statementRows > 0) current.writer.write(";\n");
+            statementRows = 0;
+            statementChars = 0;
+        }
+
+        private void closeChunk() throws IOException {
+            if (current == null) return;
+            endStatement();
+            chunks.add(current.finish(chunkRowCount));
+            current.close();
+            current = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) current.close();
+        }
+    }
+
+    /** A gzip file that tracks its size before and after compression and its SHA-256. */
+    private static final class ChunkFile implements AutoCloseable {
+        // relative to the backup directory, as listed in the manifest
+        final String name;
+        final Writer writer;
+        private final MessageDigest digest;
+        private final CountingOutputStream compressed;
+        private final CountingOutputStream uncompressed;
+        private final GZIPOutputStream gzip;
+        private boolean closed;
+
+        ChunkFile(Path dir, String name, int level) throws IOException {
+            this.name = name;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            OutputStream file = Files.newOutputStream(dir.resolve(name));
+            this.compressed = new CountingOutputStream(new DigestOutputStream(file, digest));
+            this.gzip = new GZIPOutputStream(compressed, 65536) {
+                {
+                    def.setLevel(level);
+                }
+            };
+            this.uncompressed = new CountingOutputStream(gzip);
+            this.writer = new BufferedWriter(new OutputStreamWriter(uncompressed, StandardCharsets.UTF_8), 65536);
+        }
+
+        ChunkInfo finish(long rows) throws IOException {
+            writer.flush();
+            gzip.finish();
+            compressed.flush();
+            StringBuilder sha = new StringBuilder(64);
+            for (byte b : digest.digest()) sha.append(String.format("%02x", b));
+            return new ChunkInfo(name, rows, uncompressed.getCount(),
+                    compressed.getCount(), sha.toString());
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            writer.close();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Result types
+    // ------------------------------------------------------------------
+
+    public static class ChunkInfo {
+        private final String file;
+        private final long rows;
+        private final long bytes;
+        private final long compressedBytes;
+        private final String sha256;
+
+        ChunkInfo(String file, long rows, long bytes, long compressedBytes, String sha256) {
+            this.file = file;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.compressedBytes = compressedBytes;
+            this.sha256 = sha256;
+        }
+
+        public String getFile() { return file; }
+        public long getRows() { return rows; }
+        /** Uncompressed SQL size. */
+        public long getBytes() { return bytes; }
+        public long getCompressedBytes() { return compressedBytes; }
+        /** Of the file as written (compressed). */
+        public String getSha256() { return sha256; }
+    }
+
+    public static class TableBackup {
+        private final String name;
+        private final List<ChunkInfo> chunks;
+        private final long elapsedMillis;
+
+        TableBackup(String name, List<ChunkInfo> chunks, long elapsedMillis) {
+            this.name = name;
+            this.chunks = Collections.unmodifiableList(chunks);
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getName() { return name; }
+        public List<ChunkInfo> getChunks() { return chunks; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public long getRows() { return chunks.stream().mapToLong(ChunkInfo::getRows).sum(); }
+        public long getBytes() { return chunks.stream().mapToLong(ChunkInfo::getBytes).sum(); }
+        public long getCompressedBytes() { return chunks.stream().mapToLong(ChunkInfo::getCompressedBytes).sum(); }
+
+        /** Uncompressed SQL written per second. */
+        public double getMegabytesPerSecond() {
+            return elapsedMillis == 0 ? 0 : getBytes() / 1048576.0 / (elapsedMillis / 1000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %d rows, %.1f MB in %.1f s (%.1f MB/s)",
+                    name, getRows(), getBytes() / 1048576.0, elapsedMillis / 1000.0, getMegabytesPerSecond());
+        }
+    }
+
+    public static class BackupResult {
+        private final String directory;
+        private final String database;
+        private final LocalDateTime startedAt;
+        private final long elapsedMillis;
+        private final ChunkInfo schemaFile;
+        private final ChunkInfo triggersFile;
+        private final List<TableBackup> tables;
+        private final List<String> views;
+        private final List<String> triggers;
+        private final Set<String> requestedTables;
+
+        BackupResult(String directory, String database, LocalDateTime startedAt, long elapsedMillis,
+                     ChunkInfo schemaFile, ChunkInfo triggersFile, List<TableBackup> tables, List<String> views,
+                     List<String> triggers, Set<String> requestedTables) {
+            this.directory = directory;
+            this.database = database;
+            this.startedAt = startedAt;
+            this.elapsedMillis = elapsedMillis;
+            this.schemaFile = schemaFile;
+            this.triggersFile = triggersFile;
+            this.tables = Collections.unmodifiableList(tables);
+            this.views = Collections.unmodifiableList(views);
+            this.triggers = Collections.unmodifiableList(triggers);
+            this.requestedTables = requestedTables == null ? null : Collections.unmodifiableSet(requestedTables);
+        }
+
+        public String getDirectory() { return directory; }
+        public String getDatabase() { return database; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public ChunkInfo getSchemaFile() { return schemaFile; }
+        public List<TableBackup> getTables() { return tables; }
+        public List<String> getViews() { return views; }
+        /** Restored last, after the data. */
+        public ChunkInfo getTriggersFile() { return triggersFile; }
+        public List<String> getTriggers() { return triggers; }
+        /** Whether every table was backed up, rather than only {@link #getRequestedTables()}. */
+        public boolean isFull() { return requestedTables == null; }
+        /** Lower-cased names asked for by a targeted backup; null for a full one. */
+        public Set<String> getRequestedTables() { return requestedTables; }
+        public long getRows() { return tables.stream().mapToLong(TableBackup::getRows).sum(); }
+        public long getBytes() { return tables.stream().mapToLong(TableBackup::getBytes).sum(); }
+        public long getCompressedBytes() { return tables.stream().mapToLong(TableBackup::getCompressedBytes).sum(); }
+
+        public double getMegabytesPerSecond() {
+            return elapsedMillis == 0 ? 0 : getBytes() / 1048576.0 / (elapsedMillis / 1000.0);
+        }
+
+        /** Per-table throughput, largest tables first. */
+        public String getTableSummary(int limit) {
+            String summary = tables.stream()
+                    .sorted(Comparator.comparingLong(TableBackup::getBytes).reversed())
+                    .limit(limit)
+                    .map(TableBackup::toString)
+                    .collect(Collectors.joining("; "));
+            return tables.size() > limit ? summary + "; " + (tables.size() - limit) + " more" : summary;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d tables, %d rows, %.1f MB (%.1f MB gzip) in %.1f s, %.1f MB/s",
+                    tables.size(), getRows(), getBytes() / 1048576.0, getCompressedBytes() / 1048576.0,
+                    elapsedMillis / 1000.0, getMegabytesPerSecond());
+        }
+    }
 }
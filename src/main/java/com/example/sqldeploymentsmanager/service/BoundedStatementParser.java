@@ -0,0 +1,280 @@
+package com.example.sqldeploymentsmanager.service;
+
+import jakarta.annotation.PreDestroy;
+import net.sf.jsqlparser.parser.CCJSqlParser;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parses single statements with JSqlParser under a per-statement deadline. JSqlParser
+ * can backtrack for seconds on deeply nested or malformed input, so each parse runs on
+ * a small dedicated pool; on timeout the caller gets {@link Outcome#TIMED_OUT} straight
+ * away and the parser is told to stop. The deadline starts when a parser thread picks the
+ * statement up: a statement still queued behind others when the timeout runs out is
+ * {@link Outcome#SKIPPED} instead. After several parses in a row run past their deadline
+ * a circuit breaker opens and parsing is skipped for a while, so callers fall back to
+ * lexical analysis instead of piling up behind a pathological upload.
+ */
+@Service
+public class BoundedStatementParser {
+
+    public enum Outcome {
+        PARSED, FAILED, TIMED_OUT, SKIPPED
+    }
+
+    private final long timeoutMillis;
+    private final int breakerThreshold;
+    private final long breakerOpenMillis;
+    private final int poolSize;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger consecutiveTimeouts = new AtomicInteger();
+    private volatile long openUntil;
+
+    private final LongAdder parsed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder breakerTrips = new LongAdder();
+
+    public BoundedStatementParser(@Value("${analysis.parse.timeout-ms:2000}") long timeoutMillis,
+                                  @Value("${analysis.parse.threads:0}") int threads,
+                                  @Value("${analysis.parse.breaker.timeouts:3}") int breakerThreshold,
+                                  @Value("${analysis.parse.breaker.open-seconds:30}") long breakerOpenSeconds) {
+        this.timeoutMillis = timeoutMillis;
+        this.breakerThreshold = Math.max(1, breakerThreshold);
+        this.breakerOpenMillis = breakerOpenSeconds * 1000;
+
+        this.poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(poolSize * 4), r -> {
+                    Thread t = new Thread(r, "sql-parser-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public Result parse(String sql) {
+        Object submitted = submit(sql);
+        return submitted instanceof Result ? (Result) submitted : await((ParseTask) submitted);
+    }
+
+    /**
+     * Parses a whole script's statements, results in statement order. The calling thread
+     * keeps one statement per parser thread in flight and waits for them in order, so no
+     * other pool's workers sit blocked on parses.
+     */
+    public List<Result> parseAll(List<String> statements) {
+        Object[] pending = new Object[statements.size()];
+        List<Result> results = new ArrayList<>(statements.size());
+        int next = 0;
+        for (int i = 0; i < pending.length; i++) {
+            while (next < pending.length && next - i < poolSize) {
+                pending[next] = submit(statements.get(next));
+                next++;
+            }
+            Object p = pending[i];
+            pending[i] = null;
+            results.add(p instanceof Result ? (Result) p : await((ParseTask) p));
+        }
+        return results;
+    }
+
+    // the task, or the SKIPPED result when it can't be queued
+    private Object submit(String sql) {
+        if (isBreakerOpen()) {
+            skipped.increment();
+            return new Result(null, Outcome.SKIPPED);
+        }
+
+        ParseTask task = new ParseTask(CCJSqlParserUtil.newParser(sql), TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        try {
+            executor.execute(task);
+            return task;
+        } catch (RejectedExecutionException e) {
+            // every parser thread is busy and the queue is full
+            skipped.increment();
+            return new Result(null, Outcome.SKIPPED);
+        }
+    }
+
+    private Result await(ParseTask task) {
+        try {
+            task.await();
+        } catch (InterruptedException e) {
+            abandon(task);
+            Thread.currentThread().interrupt();
+            skipped.increment();
+            return new Result(null, Outcome.SKIPPED);
+        }
+
+        if (task.done) {
+            consecutiveTimeouts.set(0);
+            if (task.error != null) {
+                failed.increment();
+                return new Result(null, Outcome.FAILED);
+            }
+            parsed.increment();
+            return new Result(task.statement, Outcome.PARSED);
+        }
+        if (task.startedAt.get() == ParseTask.ABANDONED) {
+            // never got a parser thread, so this says nothing about the statement itself
+            executor.remove(task);
+            skipped.increment();
+            return new Result(null, Outcome.SKIPPED);
+        }
+
+        // only parses that actually ran past their deadline count towards the breaker
+        task.parser.interrupted = true;
+        timedOut.increment();
+        if (consecutiveTimeouts.incrementAndGet() >= breakerThreshold) {
+            openUntil = System.currentTimeMillis() + breakerOpenMillis;
+            consecutiveTimeouts.set(0);
+            breakerTrips.increment();
+        }
+        return new Result(null, Outcome.TIMED_OUT);
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public boolean isBreakerOpen() {
+        return System.currentTimeMillis() < openUntil;
+    }
+
+    public ParserStats getStats() {
+        return new ParserStats(parsed.sum(), failed.sum(), timedOut.sum(), skipped.sum(),
+                breakerTrips.sum(), isBreakerOpen());
+    }
+
+    // JSqlParser polls this flag while parsing expressions, which is where it gets stuck
+    private void abandon(ParseTask task) {
+        if (task.startedAt.compareAndSet(0, ParseTask.ABANDONED)) {
+            executor.remove(task);
+        } else {
+            task.parser.interrupted = true;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * One parse, and the caller's wait for it. The wait runs for the timeout while the task
+     * is queued and then for the timeout from the moment a parser thread starts it.
+     */
+    private static final class ParseTask implements Runnable {
+        static final long ABANDONED = -1;
+
+        final CCJSqlParser parser;
+        final long timeoutNanos;
+        // System.nanoTime() when a parser thread took the task; 0 while queued
+        final AtomicLong startedAt = new AtomicLong();
+
+        volatile boolean done;
+        Statement statement;
+        Throwable error;
+
+        ParseTask(CCJSqlParser parser, long timeoutNanos) {
+            this.parser = parser;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        @Override
+        public void run() {
+            // 0 and ABANDONED are taken, so a start at exactly those instants is recorded as 1
+            long now = System.nanoTime();
+            if (!startedAt.compareAndSet(0, now == 0 || now == ABANDONED ? 1 : now)) return;
+            Statement result = null;
+            Throwable failure = null;
+            try {
+                result = parser.Statement();
+            } catch (Throwable t) {
+                failure = t;
+            }
+            synchronized (this) {
+                statement = result;
+                error = failure;
+                done = true;
+                notifyAll();
+            }
+        }
+
+        // returns once the task is done, its parse ran out of time, or it gave up waiting for a thread
+        synchronized void await() throws InterruptedException {
+            long queuedUntil = System.nanoTime() + timeoutNanos;
+            while (!done) {
+                long started = startedAt.get();
+                long wait = (started == 0 ? queuedUntil : started + timeoutNanos) - System.nanoTime();
+                if (wait <= 0) {
+                    // a task that starts right now is waited for like any other
+                    if (started != 0 || startedAt.compareAndSet(0, ABANDONED)) break;
+                    continue;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, wait);
+            }
+        }
+    }
+
+    public static class Result {
+        private final Statement statement;
+        private final Outcome outcome;
+
+        Result(Statement statement, Outcome outcome) {
+            this.statement = statement;
+            this.outcome = outcome;
+        }
+
+        /** The parsed statement, or null unless the outcome is PARSED. */
+        public Statement getStatement() { return statement; }
+        public Outcome getOutcome() { return outcome; }
+    }
+
+    public static class ParserStats {
+        private final long parsed;
+        private final long failed;
+        private final long timedOut;
+        private final long skipped;
+        private final long breakerTrips;
+        private final boolean breakerOpen;
+
+        ParserStats(long parsed, long failed, long timedOut, long skipped, long breakerTrips, boolean breakerOpen) {
+            this.parsed = parsed;
+            this.failed = failed;
+            this.timedOut = timedOut;
+            this.skipped = skipped;
+            this.breakerTrips = breakerTrips;
+            this.breakerOpen = breakerOpen;
+        }
+
+        public long getParsed() { return parsed; }
+        public long getFailed() { return failed; }
+        public long getTimedOut() { return timedOut; }
+        public long getSkipped() { return skipped; }
+        public long getBreakerTrips() { return breakerTrips; }
+        public boolean isBreakerOpen() { return breakerOpen; }
+
+        @Override
+        public String toString() {
+            return "parsed=" + parsed + ", failed=" + failed + ", timed out=" + timedOut +
+                    ", skipped=" + skipped + ", breaker trips=" + breakerTrips +
+                    (breakerOpen ? " (breaker open)" : "");
+        }
+    }
+}
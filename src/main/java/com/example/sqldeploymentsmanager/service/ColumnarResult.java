@@ -0,0 +1,283 @@
+package com.example.sqldeploymentsmanager.service;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Query result stored by column instead of as a map per row: column names are kept once,
+ * integer and floating point columns live in primitive arrays, and strings are
+ * dictionary-encoded so repeated values (statuses, codes, names) are stored once.
+ * {@link #getRows()} gives templates a row-by-row view without materializing rows.
+ */
+public final class ColumnarResult {
+
+    private final List<String> columnNames;
+    private final Map<String, Integer> columnIndex;
+    private final Column[] columns;
+    private final int rowCount;
+
+    private ColumnarResult(List<String> columnNames, Column[] columns, int rowCount) {
+        this.columnNames = Collections.unmodifiableList(columnNames);
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.columnIndex = new HashMap<>();
+        for (int c = columnNames.size() - 1; c >= 0; c--) {
+            columnIndex.put(columnNames.get(c).toLowerCase(Locale.ROOT), c);
+        }
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    public Object getValue(int row, int column) {
+        if (row < 0 || row >= rowCount) throw new IndexOutOfBoundsException("row " + row);
+        return columns[column].get(row);
+    }
+
+    /** Value by column label (case-insensitive, first match), or null if there's no such column. */
+    public Object getValue(int row, String column) {
+        Integer c = columnIndex.get(column.toLowerCase(Locale.ROOT));
+        return c == null ? null : getValue(row, c);
+    }
+
+    /** Rows as lightweight views; nothing is copied. */
+    public List<RowView> getRows() {
+        return new AbstractList<>() {
+            @Override
+            public RowView get(int index) {
+                if (index < 0 || index >= rowCount) throw new IndexOutOfBoundsException("row " + index);
+                return new RowView(ColumnarResult.this, index);
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
+    }
+
+    public static final class RowView {
+        private final ColumnarResult result;
+        private final int row;
+
+        RowView(ColumnarResult result, int row) {
+            this.result = result;
+            this.row = row;
+        }
+
+        public Object get(String column) {
+            return result.getValue(row, column);
+        }
+
+        public List<Object> getValues() {
+            return new AbstractList<>() {
+                @Override
+                public Object get(int column) {
+                    return result.getValue(row, column);
+                }
+
+                @Override
+                public int size() {
+                    return result.columns.length;
+                }
+            };
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Building
+    // ------------------------------------------------------------------
+
+    /** Collects rows from a ResultSet positioned on a row; call {@link #addRow} per row. */
+    public static final class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final Column[] columns;
+        private int rows;
+
+        public Builder(ResultSetMetaData meta) throws SQLException {
+            int count = meta.getColumnCount();
+            this.columns = new Column[count];
+            for (int c = 1; c <= count; c++) {
+                names.add(meta.getColumnLabel(c));
+                columns[c - 1] = columnFor(meta, c);
+            }
+        }
+
+        public void addRow(ResultSet rs) throws SQLException {
+            for (int c = 0; c < columns.length; c++) {
+                columns[c].read(rs, c + 1, rows);
+            }
+            rows++;
+        }
+
+        public List<String> getColumnNames() {
+            return Collections.unmodifiableList(names);
+        }
+
+        public ColumnarResult build() {
+            for (Column column : columns) column.trim(rows);
+            return new ColumnarResult(names, columns, rows);
+        }
+
+        private static Column columnFor(ResultSetMetaData meta, int c) throws SQLException {
+            switch (meta.getColumnType(c)) {
+                case Types.TINYINT: case Types.SMALLINT:
+                    return new LongColumn(false);
+                case Types.INTEGER:
+                    // INT UNSIGNED comes back as a Long
+                    return new LongColumn(!meta.isSigned(c));
+                case Types.BIGINT:
+                    // BIGINT UNSIGNED doesn't fit a long
+                    return meta.isSigned(c) ? new LongColumn(true) : new ObjectColumn();
+                case Types.REAL: case Types.FLOAT: case Types.DOUBLE:
+                    return new DoubleColumn();
+                case Types.CHAR: case Types.VARCHAR: case Types.LONGVARCHAR:
+                case Types.NCHAR: case Types.NVARCHAR: case Types.LONGNVARCHAR:
+                    return new StringColumn();
+                default:
+                    return new ObjectColumn();
+            }
+        }
+    }
+
+    private abstract static class Column {
+        abstract void read(ResultSet rs, int index, int row) throws SQLException;
+
+        abstract Object get(int row);
+
+        /** Shrinks storage to {@code rows} once building is done. */
+        abstract void trim(int rows);
+
+        static int grow(int length, int needed) {
+            return needed < length ? length : Math.max(16, Math.max(needed + 1, length + (length >> 1)));
+        }
+    }
+
+    private static final class LongColumn extends Column {
+        // whether values read back as Long; smaller types read back as Integer, like getObject
+        private final boolean bigint;
+        private long[] values = new long[16];
+        private final BitSet nulls = new BitSet();
+
+        LongColumn(boolean bigint) {
+            this.bigint = bigint;
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            if (row >= values.length) values = Arrays.copyOf(values, grow(values.length, row));
+            values[row] = rs.getLong(index);
+            if (rs.wasNull()) nulls.set(row);
+        }
+
+        @Override
+        Object get(int row) {
+            if (nulls.get(row)) return null;
+            return bigint ? (Object) values[row] : (Object) (int) values[row];
+        }
+
+        @Override
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+        private double[] values = new double[16];
+        private final BitSet nulls = new BitSet();
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            if (row >= values.length) values = Arrays.copyOf(values, grow(values.length, row));
+            values[row] = rs.getDouble(index);
+            if (rs.wasNull()) nulls.set(row);
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+
+    private static final class StringColumn extends Column {
+        // code -1 = null
+        private int[] codes = new int[16];
+        private List<String> dictionary = new ArrayList<>();
+        private Map<String, Integer> lookup = new HashMap<>();
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            if (row >= codes.length) codes = Arrays.copyOf(codes, grow(codes.length, row));
+            String value = rs.getString(index);
+            if (value == null) {
+                codes[row] = -1;
+                return;
+            }
+            Integer code = lookup.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                lookup.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        Object get(int row) {
+            int code = codes[row];
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        @Override
+        void trim(int rows) {
+            codes = Arrays.copyOf(codes, rows);
+            dictionary = List.copyOf(dictionary);
+            lookup = null; // only needed while reading
+        }
+    }
+
+    private static final class ObjectColumn extends Column {
+        private Object[] values = new Object[16];
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            if (row >= values.length) values = Arrays.copyOf(values, grow(values.length, row));
+            values[row] = rs.getObject(index);
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+}
@@ -1,36 +1,426 @@
 package com.example.sqldeploymentsmanager.service;
 
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+/**
+ * Copies every table of the current schema into {@code <schema>_backup}. Tables with a
+ * primary key are split into key ranges of {@code backup.copy.chunk-rows} rows, each
+ * copied by its own {@code INSERT ... SELECT}, so no single statement holds locks or undo
+ * for a whole table and replicas apply it in small pieces. Chunks from all tables share one
+ * pool of {@code backup.copy.parallelism} workers, which bounds the load on the server.
+ * Tables without a primary key are copied in one statement, as before.
+ * <p>
+ * The copy goes into staging tables in {@code <schema>_backup_staging}, which replace the
+ * tables of {@code <schema>_backup} in one atomic {@code RENAME TABLE} only once every chunk
+ * has been copied. A failed or interrupted copy leaves the previous backup as it was.
+ * <p>
+ * Each chunk is a consistent read of its own; rows changed while the copy runs may be
+ * copied before or after the change.
+ */
 @Service
 public class DatabaseBackupService {
 
+    private static final long PROGRESS_LOG_INTERVAL_MILLIS = 5000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final long chunkRows;
+    private final ThreadPoolExecutor executor;
 
-    public DatabaseBackupService(JdbcTemplate jdbcTemplate) {
+    public DatabaseBackupService(JdbcTemplate jdbcTemplate,
+                                 @Value("${backup.copy.chunk-rows:10000}") long chunkRows,
+                                 @Value("${backup.copy.parallelism:4}") int parallelism) {
         this.jdbcTemplate = jdbcTemplate;
+        this.chunkRows = Math.max(1, chunkRows);
+
+        int threads = Math.max(1, parallelism);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "schema-copy-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
     }
 
-    public void backupCurrentSchema() {
+    public CopyResult backupCurrentSchema() {
+        return backupCurrentSchema(ProgressListener.NONE);
+    }
+
+    public CopyResult backupCurrentSchema(ProgressListener listener) {
         String schema = jdbcTemplate.queryForObject("SELECT DATABASE()", String.class);
         if (schema == null) throw new IllegalStateException("Cannot determine current schema.");
 
         String backupSchema = schema + "_backup";
+        String stagingSchema = backupSchema + "_staging";
+        long start = System.nanoTime();
+
+        jdbcTemplate.execute("CREATE DATABASE IF NOT EXISTS " + quote(backupSchema));
+        // whatever an earlier copy left behind when it was killed
+        jdbcTemplate.execute("DROP DATABASE IF EXISTS " + quote(stagingSchema));
+        jdbcTemplate.execute("CREATE DATABASE " + quote(stagingSchema));
+
+        List<TableCopy> tables;
+        try {
+            tables = loadTables(schema, stagingSchema);
+            for (TableCopy table : tables) {
+                jdbcTemplate.execute("CREATE TABLE " + table.target + " LIKE " + table.source);
+            }
+            copyTables(tables, listener);
+            swapIn(tables, backupSchema, stagingSchema);
+        } catch (RuntimeException e) {
+            dropQuietly(stagingSchema);
+            throw e;
+        }
+
+        List<TableStats> stats = tables.stream().map(TableCopy::stats).collect(Collectors.toList());
+        CopyResult result = new CopyResult(schema, backupSchema, stats, (System.nanoTime() - start) / 1_000_000);
+        for (TableStats table : stats) System.out.println("Schema copy: " + table);
+        System.out.println("Schema copy: " + result);
+        return result;
+    }
+
+    private void copyTables(List<TableCopy> tables, ProgressListener listener) {
+        Progress progress = new Progress(tables, listener);
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutorCompletionService<Long> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<Long>, TableCopy> submitted = new HashMap<>();
+        Exception failure = null;
 
-        jdbcTemplate.execute("CREATE DATABASE IF NOT EXISTS `" + backupSchema + "`");
+        // largest first; chunk boundaries are found here while earlier chunks are already copying
+        List<TableCopy> order = new ArrayList<>(tables);
+        order.sort(Comparator.comparingLong((TableCopy t) -> t.estimatedRows).reversed());
+        try {
+            for (TableCopy table : order) {
+                Object[] lower = null;
+                do {
+                    if (failed.get()) break;
+                    Object[] upper = table.primaryKey.isEmpty() ? null : nextBoundary(table, lower);
+                    Object[] from = lower;
+                    submitted.put(completion.submit(() -> copyChunk(table, from, upper, failed, progress)), table);
+                    lower = upper;
+                } while (lower != null);
+            }
+        } catch (RuntimeException e) {
+            failed.set(true);
+            failure = e;
+        }
+
+        for (int i = 0; i < submitted.size(); i++) {
+            try {
+                Future<Long> done = completion.take();
+                try {
+                    done.get();
+                } catch (ExecutionException ex) {
+                    failed.set(true);
+                    if (failure == null && !(ex.getCause() instanceof CancellationException)) {
+                        failure = new IllegalStateException("table " + submitted.get(done).name + ": "
+                                + rootMessage(ex.getCause()), ex.getCause());
+                    }
+                }
+            } catch (InterruptedException e) {
+                failed.set(true);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Schema copy interrupted.", e);
+            }
+        }
+        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+        if (failure != null) throw new IllegalStateException(failure.getMessage(), failure);
+    }
+
+    /**
+     * Replaces the backup tables with the staging copies in one statement, so the backup
+     * schema never holds a mix of old and new tables. Existing backup tables are swapped
+     * out through a spare name and dropped with the staging schema.
+     */
+    private void swapIn(List<TableCopy> tables, String backupSchema, String stagingSchema) {
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT table_name FROM information_schema.tables WHERE table_schema = ?",
+                String.class, backupSchema));
+        Set<String> names = tables.stream().map(t -> t.name).collect(Collectors.toSet());
+        String swap = "swap";
+        for (int n = 2; names.contains(swap); n++) swap = "swap_" + n;
+        String spare = quote(stagingSchema) + "." + quote(swap);
 
-        List<String> tables = jdbcTemplate.queryForList("SHOW TABLES", String.class);
+        List<String> renames = new ArrayList<>();
+        for (TableCopy table : tables) {
+            String backup = quote(backupSchema) + "." + quote(table.name);
+            if (existing.contains(table.name)) {
+                renames.add(backup + " TO " + spare);
+                renames.add(table.target + " TO " + backup);
+                renames.add(spare + " TO " + table.target);
+            } else {
+                renames.add(table.target + " TO " + backup);
+            }
+        }
+        if (!renames.isEmpty()) jdbcTemplate.execute("RENAME TABLE " + String.join(", ", renames));
+        jdbcTemplate.execute("DROP DATABASE " + quote(stagingSchema));
+    }
+
+    private void dropQuietly(String schema) {
+        try {
+            jdbcTemplate.execute("DROP DATABASE IF EXISTS " + quote(schema));
+        } catch (RuntimeException ignored) {
+            // best effort; the next copy drops it first
+        }
+    }
 
-        for (String table : tables) {
-            String source = "`" + schema + "`.`" + table + "`";
-            String target = "`" + backupSchema + "`.`" + table + "`";
+    // base tables only (views can't be copied with CREATE TABLE LIKE), with their
+    // insertable columns and primary key in one query each
+    private List<TableCopy> loadTables(String schema, String stagingSchema) {
+        Map<String, TableCopy> tables = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT table_name, COALESCE(table_rows, 0) FROM information_schema.tables " +
+                "WHERE table_schema = DATABASE() AND table_type = 'BASE TABLE' ORDER BY table_name",
+                rs -> {
+                    String name = rs.getString(1);
+                    tables.put(name, new TableCopy(name, quote(schema) + "." + quote(name),
+                            quote(stagingSchema) + "." + quote(name), rs.getLong(2)));
+                });
+        jdbcTemplate.query(
+                "SELECT table_name, column_name FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND extra NOT LIKE '%VIRTUAL GENERATED%' " +
+                "AND extra NOT LIKE '%STORED GENERATED%' ORDER BY table_name, ordinal_position",
+                rs -> {
+                    TableCopy table = tables.get(rs.getString(1));
+                    if (table != null) table.columns.add(quote(rs.getString(2)));
+                });
+        jdbcTemplate.query(
+                "SELECT table_name, column_name FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND index_name = 'PRIMARY' ORDER BY table_name, seq_in_index",
+                rs -> {
+                    TableCopy table = tables.get(rs.getString(1));
+                    if (table != null) table.primaryKey.add(quote(rs.getString(2)));
+                });
+        return new ArrayList<>(tables.values());
+    }
+
+    /** The key of the last row of the chunk after {@code lower}, or null if the rest fits in one chunk. */
+    private Object[] nextBoundary(TableCopy table, Object[] lower) {
+        String key = String.join(", ", table.primaryKey);
+        String sql = "SELECT " + key + " FROM " + table.source
+                + (lower == null ? "" : " WHERE " + after(table, lower.length))
+                + " ORDER BY " + key + " LIMIT 1 OFFSET " + (chunkRows - 1);
+        List<Object[]> rows = jdbcTemplate.query(sql, (rs, i) -> {
+            Object[] values = new Object[table.primaryKey.size()];
+            for (int c = 0; c < values.length; c++) values[c] = rs.getObject(c + 1);
+            return values;
+        }, lower == null ? new Object[0] : lower);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private long copyChunk(TableCopy table, Object[] lower, Object[] upper, AtomicBoolean failed, Progress progress) {
+        if (failed.get()) throw new CancellationException();
+        table.started();
+
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (lower != null) {
+            conditions.add(after(table, lower.length));
+            Collections.addAll(args, lower);
+        }
+        if (upper != null) {
+            conditions.add(row(table.primaryKey) + " <= " + placeholders(upper.length));
+            Collections.addAll(args, upper);
+        }
+        String columns = String.join(", ", table.columns);
+        String sql = "INSERT INTO " + table.target + " (" + columns + ") SELECT " + columns + " FROM " + table.source
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions));
+
+        long rows = jdbcTemplate.update(sql, args.toArray());
+        table.chunkDone(rows);
+        progress.chunkDone(rows);
+        return rows;
+    }
+
+    private static String after(TableCopy table, int keyColumns) {
+        return row(table.primaryKey) + " > " + placeholders(keyColumns);
+    }
+
+    // (a, b) compares as a row, matching ORDER BY a, b
+    private static String row(List<String> columns) {
+        return columns.size() == 1 ? columns.get(0) : "(" + String.join(", ", columns) + ")";
+    }
+
+    private static String placeholders(int n) {
+        return n == 1 ? "?" : "(" + String.join(", ", Collections.nCopies(n, "?")) + ")";
+    }
+
+    private static String quote(String identifier) {
+        return BackupService.quote(identifier);
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) root = root.getCause();
+        return root.getMessage() != null ? root.getMessage() : root.toString();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public interface ProgressListener {
+        ProgressListener NONE = (rowsCopied, estimatedRows, chunksDone) -> { };
+
+        /** {@code estimatedRows} comes from table statistics and may be off either way. */
+        void onProgress(long rowsCopied, long estimatedRows, long chunksDone);
+    }
+
+    private static final class TableCopy {
+        final String name;
+        final String source;
+        final String target;
+        final long estimatedRows;
+        final List<String> columns = new ArrayList<>();
+        final List<String> primaryKey = new ArrayList<>();
+
+        final AtomicInteger chunksDone = new AtomicInteger();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong firstStart = new AtomicLong();
+        final AtomicLong lastEnd = new AtomicLong();
+
+        TableCopy(String name, String source, String target, long estimatedRows) {
+            this.name = name;
+            this.source = source;
+            this.target = target;
+            this.estimatedRows = estimatedRows;
+        }
+
+        void started() {
+            firstStart.compareAndSet(0, System.nanoTime());
+        }
+
+        void chunkDone(long copied) {
+            rows.addAndGet(copied);
+            lastEnd.accumulateAndGet(System.nanoTime(), Math::max);
+            chunksDone.incrementAndGet();
+        }
+
+        TableStats stats() {
+            long start = firstStart.get();
+            long elapsed = start == 0 ? 0 : (lastEnd.get() - start) / 1_000_000;
+            return new TableStats(name, rows.get(), chunksDone.get(), primaryKey.isEmpty(), elapsed);
+        }
+    }
+
+    private static final class Progress {
+        private final ProgressListener listener;
+        private final long estimatedRows;
+        private final long start = System.currentTimeMillis();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong chunks = new AtomicLong();
+        private final AtomicLong lastLogged = new AtomicLong(System.currentTimeMillis());
+
+        Progress(List<TableCopy> tables, ProgressListener listener) {
+            this.listener = listener;
+            this.estimatedRows = tables.stream().mapToLong(t -> t.estimatedRows).sum();
+        }
+
+        void chunkDone(long copied) {
+            long total = rows.addAndGet(copied);
+            long done = chunks.incrementAndGet();
+            listener.onProgress(total, estimatedRows, done);
+
+            long now = System.currentTimeMillis();
+            long last = lastLogged.get();
+            if (now - last >= PROGRESS_LOG_INTERVAL_MILLIS && lastLogged.compareAndSet(last, now)) {
+                double seconds = Math.max(1, now - start) / 1000.0;
+                System.out.println(String.format(Locale.ROOT,
+                        "Schema copy: %d of ~%d rows, %d chunks, %.0f rows/s", total, estimatedRows, done, total / seconds));
+            }
+        }
+    }
+
+    public static class TableStats {
+        private final String name;
+        private final long rows;
+        private final int chunks;
+        private final boolean unchunked;
+        private final long elapsedMillis;
+
+        TableStats(String name, long rows, int chunks, boolean unchunked, long elapsedMillis) {
+            this.name = name;
+            this.rows = rows;
+            this.chunks = chunks;
+            this.unchunked = unchunked;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getName() { return name; }
+        public long getRows() { return rows; }
+        public int getChunks() { return chunks; }
+        /** No primary key, so copied in a single statement. */
+        public boolean isUnchunked() { return unchunked; }
+        /** From its first chunk starting to its last finishing. */
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis == 0 ? 0 : rows / (elapsedMillis / 1000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %d rows in %d chunk%s%s, %.1f s (%.0f rows/s)",
+                    name, rows, chunks, chunks == 1 ? "" : "s", unchunked ? " (no primary key)" : "",
+                    elapsedMillis / 1000.0, getRowsPerSecond());
+        }
+    }
+
+    public static class CopyResult {
+        private final String schema;
+        private final String backupSchema;
+        private final List<TableStats> tables;
+        private final long elapsedMillis;
+
+        CopyResult(String schema, String backupSchema, List<TableStats> tables, long elapsedMillis) {
+            this.schema = schema;
+            this.backupSchema = backupSchema;
+            this.tables = Collections.unmodifiableList(tables);
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getSchema() { return schema; }
+        public String getBackupSchema() { return backupSchema; }
+        public List<TableStats> getTables() { return tables; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public long getRows() { return tables.stream().mapToLong(TableStats::getRows).sum(); }
+        public long getChunks() { return tables.stream().mapToLong(TableStats::getChunks).sum(); }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis == 0 ? 0 : getRows() / (elapsedMillis / 1000.0);
+        }
 
-            jdbcTemplate.execute("DROP TABLE IF EXISTS " + target);
-            jdbcTemplate.execute("CREATE TABLE " + target + " LIKE " + source);
-            jdbcTemplate.execute("INSERT INTO " + target + " SELECT * FROM " + source);
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s -> %s: %d tables, %d rows in %d chunks, %.1f s (%.0f rows/s)",
+                    schema, backupSchema, tables.size(), getRows(), getChunks(), elapsedMillis / 1000.0,
+                    getRowsPerSecond());
         }
     }
 }
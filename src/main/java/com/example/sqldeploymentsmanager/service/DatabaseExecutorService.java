@@ -3,6 +3,8 @@ package com.example.sqldeploymentsmanager.service;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.StringReader;
+
 @Service
 public class DatabaseExecutorService {
 
@@ -29,12 +31,9 @@ public class DatabaseExecutorService {
             throw new IllegalArgumentException("SQL script is empty.");
         }
 
-        String[] parts = sqlScript.split(";");
-        for (String statement : parts) {
-            String cleaned = statement.trim();
-            if (!cleaned.isEmpty()) {
-                jdbcTemplate.execute(cleaned);
-            }
+        SQLScriptTokenizer statements = new SQLScriptTokenizer(new StringReader(sqlScript));
+        while (statements.hasNext()) {
+            jdbcTemplate.execute(statements.next());
         }
     }
 }
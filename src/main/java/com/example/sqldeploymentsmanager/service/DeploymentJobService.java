@@ -0,0 +1,155 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.model.DeploymentJob;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs deployments off the servlet threads on a bounded pool and keeps their progress
+ * available for polling (and server-sent events) by job ID.
+ */
+@Service
+public class DeploymentJobService {
+
+    private static final long SSE_TIMEOUT_MILLIS = 30L * 60 * 1000;
+    private static final long SSE_PUSH_INTERVAL_MILLIS = 500;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService publisher;
+    private final int retainedJobs;
+
+    private final Map<String, DeploymentJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    public DeploymentJobService(@Value("${deployment.jobs.threads:2}") int threads,
+                                @Value("${deployment.jobs.queue-capacity:10}") int queueCapacity,
+                                @Value("${deployment.jobs.retained:100}") int retainedJobs) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "deployment-job-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "deployment-job-events");
+            t.setDaemon(true);
+            return t;
+        });
+        this.publisher.scheduleWithFixedDelay(this::publishProgress,
+                SSE_PUSH_INTERVAL_MILLIS, SSE_PUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        this.retainedJobs = retainedJobs;
+    }
+
+    /**
+     * Queues the work as a new job. Throws {@link RejectedExecutionException} when all
+     * workers are busy and the queue is full.
+     */
+    public DeploymentJob submit(Consumer<DeploymentJob> work) {
+        DeploymentJob job = new DeploymentJob(UUID.randomUUID().toString());
+        pruneFinishedJobs();
+        jobs.put(job.getId(), job);
+
+        try {
+            executor.execute(() -> run(job, work));
+        } catch (RejectedExecutionException ex) {
+            jobs.remove(job.getId());
+            throw ex;
+        }
+        return job;
+    }
+
+    public DeploymentJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    public SseEmitter subscribe(DeploymentJob job) {
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MILLIS);
+        List<SseEmitter> list = emitters.computeIfAbsent(job.getId(), k -> new CopyOnWriteArrayList<>());
+        list.add(emitter);
+        emitter.onCompletion(() -> list.remove(emitter));
+        emitter.onTimeout(() -> list.remove(emitter));
+
+        send(job, emitter);
+        return emitter;
+    }
+
+    private void run(DeploymentJob job, Consumer<DeploymentJob> work) {
+        job.markRunning("Deployment running");
+        try {
+            work.accept(job);
+            if (!job.isFinished()) {
+                job.succeed("Deployment finished");
+            }
+        } catch (Exception ex) {
+            job.fail("❌ Deployment failed: " + ex.getMessage());
+        } finally {
+            publish(job);
+        }
+    }
+
+    private void publishProgress() {
+        for (String id : emitters.keySet()) {
+            DeploymentJob job = jobs.get(id);
+            if (job != null && !job.isFinished()) {
+                publish(job);
+            }
+        }
+    }
+
+    private void publish(DeploymentJob job) {
+        List<SseEmitter> list = emitters.get(job.getId());
+        if (list == null) return;
+
+        for (SseEmitter emitter : list) {
+            send(job, emitter);
+        }
+        if (job.isFinished()) {
+            emitters.remove(job.getId());
+        }
+    }
+
+    private void send(DeploymentJob job, SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(job));
+            if (job.isFinished()) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException ex) {
+            emitter.completeWithError(ex);
+        }
+    }
+
+    private void pruneFinishedJobs() {
+        if (jobs.size() < retainedJobs) return;
+
+        jobs.values().stream()
+                .filter(DeploymentJob::isFinished)
+                .sorted((a, b) -> a.getSubmittedAt().compareTo(b.getSubmittedAt()))
+                .limit(jobs.size() - retainedJobs + 1L)
+                .forEach(j -> jobs.remove(j.getId()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        publisher.shutdownNow();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.ParsedScriptCache.ParsedScript;
+import com.example.sqldeploymentsmanager.service.SQLStatementClassifier.Kind;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@code EXPLAIN FORMAT=JSON} for every SELECT, UPDATE and DELETE of a script and
+ * reduces each plan to what matters before a deployment: estimated rows examined, the
+ * worst access type, full-scanned tables and filesort/temporary table use. EXPLAIN never
+ * executes the statement, so this is safe against production. Statements are explained
+ * in parallel on a few pooled connections.
+ */
+@Service
+public class ExplainCostService {
+
+    // best to worst; anything unknown ranks as best
+    private static final List<String> ACCESS_TYPES = List.of(
+            "system", "const", "eq_ref", "ref", "fulltext", "ref_or_null", "unique_subquery",
+            "index_subquery", "index_merge", "range", "index", "ALL");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ParsedScriptCache parsedScriptCache;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxStatements;
+    private final long fullScanWarnRows;
+    private final long timeoutMillis;
+    private final int threads;
+    private final ThreadPoolExecutor executor;
+
+    public ExplainCostService(JdbcTemplate jdbcTemplate, ParsedScriptCache parsedScriptCache, ObjectMapper objectMapper,
+                              @Value("${analysis.explain.enabled:true}") boolean enabled,
+                              @Value("${analysis.explain.parallelism:4}") int parallelism,
+                              @Value("${analysis.explain.timeout-seconds:10}") int timeoutSeconds,
+                              @Value("${analysis.explain.max-statements:200}") int maxStatements,
+                              @Value("${analysis.explain.full-scan-warn-rows:100000}") long fullScanWarnRows) {
+        // own template so the per-EXPLAIN timeout doesn't leak into other users of the pool
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setQueryTimeout(timeoutSeconds);
+        this.parsedScriptCache = parsedScriptCache;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxStatements = maxStatements;
+        this.fullScanWarnRows = fullScanWarnRows;
+        this.timeoutMillis = timeoutSeconds * 1000L;
+
+        this.threads = Math.max(1, parallelism);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "explain-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getFullScanWarnRows() {
+        return fullScanWarnRows;
+    }
+
+    public ExplainReport explain(String sqlText) {
+        long start = System.currentTimeMillis();
+        ParsedScript script = parsedScriptCache.get(sqlText);
+
+        List<Integer> explainable = new ArrayList<>();
+        for (int i = 0; i < script.size(); i++) {
+            Kind kind = SQLStatementClassifier.classify(script.getStatement(i)).getKind();
+            if (kind == Kind.SELECT || kind == Kind.UPDATE || kind == Kind.DELETE) explainable.add(i);
+        }
+        int skipped = Math.max(0, explainable.size() - maxStatements);
+        if (skipped > 0) explainable = explainable.subList(0, maxStatements);
+
+        // one unreachable database shouldn't cost a connection timeout per statement
+        AtomicBoolean unavailable = new AtomicBoolean();
+        List<Future<StatementCost>> futures = new ArrayList<>(explainable.size());
+        for (int i : explainable) {
+            futures.add(executor.submit(() -> explainStatement(script, i, unavailable)));
+        }
+
+        List<StatementCost> costs = new ArrayList<>(futures.size());
+        // each EXPLAIN is bounded by the query timeout; allow one extra round for queueing
+        int rounds = (futures.size() + threads - 1) / threads + 1;
+        long deadline = System.currentTimeMillis() + timeoutMillis * rounds;
+        for (int n = 0; n < futures.size(); n++) {
+            int i = explainable.get(n);
+            Future<StatementCost> future = futures.get(n);
+            try {
+                costs.add(future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                costs.add(StatementCost.failed(i + 1, script.getLine(i), summary(script, i), "EXPLAIN timed out"));
+            } catch (ExecutionException e) {
+                costs.add(StatementCost.failed(i + 1, script.getLine(i), summary(script, i), e.getCause().getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                break;
+            }
+        }
+
+        String error = unavailable.get() ? "Database unavailable — EXPLAIN skipped" : null;
+        return new ExplainReport(costs, skipped, System.currentTimeMillis() - start, error);
+    }
+
+    private StatementCost explainStatement(ParsedScript script, int i, AtomicBoolean unavailable) {
+        String sql = script.getStatement(i);
+        if (unavailable.get()) {
+            return StatementCost.failed(i + 1, script.getLine(i), summary(script, i), "skipped");
+        }
+        try {
+            String json = jdbcTemplate.queryForObject("EXPLAIN FORMAT=JSON " + sql, String.class);
+            StatementCost cost = new StatementCost(i + 1, script.getLine(i), summary(script, i));
+            reduce(objectMapper.readTree(json), cost);
+            return cost;
+        } catch (DataAccessResourceFailureException e) {
+            unavailable.set(true);
+            return StatementCost.failed(i + 1, script.getLine(i), summary(script, i), "database unavailable");
+        } catch (DataAccessException e) {
+            // typically a table the script creates earlier, which doesn't exist yet
+            return StatementCost.failed(i + 1, script.getLine(i), summary(script, i),
+                    e.getMostSpecificCause().getMessage());
+        } catch (Exception e) {
+            return StatementCost.failed(i + 1, script.getLine(i), summary(script, i), e.getMessage());
+        }
+    }
+
+    /** The optimizer's estimate of the rows a query returns, or -1 when it can't be had. */
+    public long estimateRows(String sql) {
+        try {
+            String json = jdbcTemplate.queryForObject("EXPLAIN FORMAT=JSON " + sql, String.class);
+            double rows = resultRows(objectMapper.readTree(json).path("query_block"));
+            return rows < 0 ? -1 : (long) rows;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    // rows produced by the last table of the outermost join; sorting and grouping wrap it
+    private static double resultRows(JsonNode block) {
+        for (String wrapper : List.of("ordering_operation", "grouping_operation", "duplicates_removal", "windowing")) {
+            if (block.has(wrapper)) return resultRows(block.get(wrapper));
+        }
+        JsonNode loop = block.path("nested_loop");
+        if (loop.isArray() && loop.size() > 0) {
+            return producedRows(loop.get(loop.size() - 1).path("table"));
+        }
+        if (block.path("table").isObject()) {
+            return producedRows(block.path("table"));
+        }
+        JsonNode union = block.path("union_result").path("query_specifications");
+        if (union.isArray()) {
+            double total = 0;
+            for (JsonNode spec : union) {
+                double rows = resultRows(spec.path("query_block"));
+                if (rows < 0) return -1;
+                total += rows;
+            }
+            return total;
+        }
+        return -1;
+    }
+
+    private static double producedRows(JsonNode table) {
+        if (table.has("rows_produced_per_join")) return table.path("rows_produced_per_join").asDouble(-1);
+        return table.path("rows_examined_per_scan").asDouble(-1);
+    }
+
+    private static String summary(ParsedScript script, int i) {
+        return SQLStatementClassifier.summarize(script.getStatement(i));
+    }
+
+    // ------------------------------------------------------------------
+    // Plan reduction
+    // ------------------------------------------------------------------
+
+    void reduce(JsonNode plan, StatementCost cost) {
+        JsonNode queryCost = plan.path("query_block").path("cost_info").path("query_cost");
+        cost.queryCost = queryCost.isMissingNode() ? -1 : queryCost.asDouble(-1);
+        walk(plan, cost);
+    }
+
+    // Tables in a nested loop are scanned once per row produced by the tables before them;
+    // a table outside a nested loop (single-table query, subquery) is scanned once
+    private void walk(JsonNode node, StatementCost cost) {
+        if (node.isArray()) {
+            for (JsonNode child : node) walk(child, cost);
+            return;
+        }
+        if (!node.isObject()) return;
+
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String name = field.getKey();
+            JsonNode child = field.getValue();
+            if (name.equals("using_filesort") && child.asBoolean(false)) {
+                cost.filesort = true;
+            } else if (name.equals("using_temporary_table") && child.asBoolean(false)) {
+                cost.temporary = true;
+            } else if (name.equals("nested_loop") && child.isArray()) {
+                double loops = 1;
+                for (JsonNode step : child) {
+                    JsonNode table = step.path("table");
+                    if (table.isObject()) {
+                        loops = table(table, loops, cost);
+                        walk(table, cost);
+                    } else {
+                        walk(step, cost);
+                    }
+                }
+            } else if (name.equals("table") && child.isObject()) {
+                table(child, 1, cost);
+                walk(child, cost);
+            } else if (child.isContainerNode()) {
+                walk(child, cost);
+            }
+        }
+    }
+
+    /** Adds one table access and returns the number of rows joined so far. */
+    private double table(JsonNode table, double loops, StatementCost cost) {
+        double rows = table.path("rows_examined_per_scan").asDouble(0);
+        cost.rowsExamined += (long) Math.min(Long.MAX_VALUE, rows * loops);
+
+        String access = table.path("access_type").asText(null);
+        if (access != null && rank(access) > rank(cost.accessType)) {
+            cost.accessType = access;
+        }
+        if ("ALL".equals(access)) {
+            String name = table.path("table_name").asText("?");
+            cost.fullScans.add(name);
+            if (rows >= fullScanWarnRows) cost.largeFullScan = true;
+        }
+        return table.path("rows_produced_per_join").asDouble(rows * loops);
+    }
+
+    private static int rank(String accessType) {
+        return accessType == null ? -1 : ACCESS_TYPES.indexOf(accessType);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ------------------------------------------------------------------
+    // Result types
+    // ------------------------------------------------------------------
+
+    public static class ExplainReport {
+        private final List<StatementCost> statements;
+        private final int skipped;
+        private final long elapsedMillis;
+        private final String error;
+
+        ExplainReport(List<StatementCost> statements, int skipped, long elapsedMillis, String error) {
+            this.statements = Collections.unmodifiableList(statements);
+            this.skipped = skipped;
+            this.elapsedMillis = elapsedMillis;
+            this.error = error;
+        }
+
+        public List<StatementCost> getStatements() { return statements; }
+        /** Explainable statements over {@code analysis.explain.max-statements}. */
+        public int getSkipped() { return skipped; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public String getError() { return error; }
+
+        public long getLargeFullScans() {
+            return statements.stream().filter(StatementCost::isLargeFullScan).count();
+        }
+    }
+
+    public static class StatementCost {
+        private final int index;
+        private final int line;
+        private final String summary;
+        private String error;
+        private long rowsExamined;
+        private String accessType;
+        private final Set<String> fullScans = new LinkedHashSet<>();
+        private boolean largeFullScan;
+        private boolean filesort;
+        private boolean temporary;
+        private double queryCost = -1;
+
+        StatementCost(int index, int line, String summary) {
+            this.index = index;
+            this.line = line;
+            this.summary = summary;
+        }
+
+        static StatementCost failed(int index, int line, String summary, String error) {
+            StatementCost cost = new StatementCost(index, line, summary);
+            cost.error = error;
+            return cost;
+        }
+
+        public int getIndex() { return index; }
+        public int getLine() { return line; }
+        public String getSummary() { return summary; }
+        /** Why the statement couldn't be explained, or null. */
+        public String getError() { return error; }
+        public long getRowsExamined() { return rowsExamined; }
+        /** Worst access type in the plan (ALL = full table scan), or null. */
+        public String getAccessType() { return accessType; }
+        public Set<String> getFullScans() { return Collections.unmodifiableSet(fullScans); }
+        /** A full scan of a table estimated at {@code analysis.explain.full-scan-warn-rows} or more. */
+        public boolean isLargeFullScan() { return largeFullScan; }
+        public boolean isFilesort() { return filesort; }
+        public boolean isTemporary() { return temporary; }
+        /** Optimizer cost estimate, or -1 when the plan has none (e.g. UPDATE/DELETE). */
+        public double getQueryCost() { return queryCost; }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.model.HistoryEvent;
+import com.example.sqldeploymentsmanager.model.HistoryRecord;
+import com.example.sqldeploymentsmanager.service.HistoryService.HistoryPage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists history to the shared {@code history_event} table off the request path, so every
+ * app instance sees the same history. Events go on a bounded queue and a single background
+ * thread writes whatever has queued up as multi-row INSERTs.
+ * <p>
+ * Backpressure is explicit: when the queue is full {@link #append} waits at most
+ * {@code history.db.offer-timeout-ms} for space and then drops the event, so request
+ * latency is bounded no matter how slow the database is. While the database is failing
+ * the writer retries the current batch with backoff, the queue fills up and further events
+ * are dropped; both outcomes are counted in {@link WriterStats}.
+ */
+@Service
+public class HistoryDatabaseWriter {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO history_event (action, source, status, details, node, created_at) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?, ?)";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final ArrayBlockingQueue<HistoryEvent> queue;
+    private final long offerTimeoutMillis;
+    private final int batchSize;
+    private final int maxRetries;
+    private final String node;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public HistoryDatabaseWriter(JdbcTemplate jdbcTemplate,
+                                 @Value("${history.db.enabled:true}") boolean enabled,
+                                 @Value("${history.db.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${history.db.offer-timeout-ms:0}") long offerTimeoutMillis,
+                                 @Value("${history.db.batch-size:200}") int batchSize,
+                                 @Value("${history.db.max-retries:3}") int maxRetries,
+                                 @Value("${history.db.node:}") String node) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.offerTimeoutMillis = Math.max(0, offerTimeoutMillis);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.node = truncate(node == null || node.isBlank() ? hostName() : node, 100);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        running = true;
+        writer = new Thread(this::writeLoop, "history-db-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Queues the record; waits at most offer-timeout-ms for space, then drops it. */
+    public void append(HistoryRecord record) {
+        if (!enabled) return;
+        HistoryEvent event = new HistoryEvent();
+        event.setAction(truncate(record.getAction(), 255));
+        event.setSource(truncate(record.getSource(), 255));
+        event.setStatus(truncate(record.getStatus(), 32));
+        event.setDetails(truncate(record.getDetails(), HistoryEvent.DETAILS_LENGTH));
+        event.setNode(node);
+        event.setCreatedAt(LocalDateTime.now());
+
+        boolean queued = queue.offer(event);
+        if (!queued && offerTimeoutMillis > 0) {
+            waits.incrementAndGet();
+            try {
+                queued = queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (queued) {
+            enqueued.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * One page of the shared history, newest first. Events still queued on this or other
+     * instances aren't visible yet.
+     */
+    public HistoryPage query(String status, Long fromMillis, Long toMillis, int offset, int pageSize) {
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (status != null && !status.isBlank()) {
+            where.append(" AND status = ?");
+            args.add(status.trim());
+        }
+        if (fromMillis != null) {
+            where.append(" AND created_at >= ?");
+            args.add(new Timestamp(fromMillis));
+        }
+        if (toMillis != null) {
+            where.append(" AND created_at <= ?");
+            args.add(new Timestamp(toMillis));
+        }
+
+        Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM history_event" + where,
+                Long.class, args.toArray());
+
+        List<Object> pageArgs = new ArrayList<>(args);
+        pageArgs.add(pageSize);
+        pageArgs.add(offset);
+        List<HistoryRecord> records = jdbcTemplate.query(
+                "SELECT action, source, status, details, created_at FROM history_event" + where +
+                        " ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?",
+                (rs, i) -> {
+                    HistoryRecord record = new HistoryRecord(rs.getString(1), rs.getString(2),
+                            rs.getString(3), rs.getString(4));
+                    Timestamp created = rs.getTimestamp(5);
+                    if (created != null) record.setTimestamp(created.toLocalDateTime().format(TIMESTAMP));
+                    return record;
+                }, pageArgs.toArray());
+
+        return new HistoryPage(Collections.unmodifiableList(records), offset, pageSize,
+                total == null ? 0 : total, "database, " + getStats());
+    }
+
+    public List<String> getStatuses() {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT status FROM history_event WHERE status IS NOT NULL ORDER BY status", String.class);
+    }
+
+    /** Drops queued events and deletes the table's rows, for every instance. */
+    public void clear() {
+        if (!enabled) return;
+        queue.clear();
+        jdbcTemplate.update("DELETE FROM history_event");
+    }
+
+    public WriterStats getStats() {
+        return new WriterStats(enabled, queue.size(), enqueued.get(), written.get(), batches.get(),
+                dropped.get(), failed.get(), waits.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) return;
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<HistoryEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                HistoryEvent first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeWithRetry(List<HistoryEvent> batch) throws InterruptedException {
+        long backoff = 500;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                insert(batch);
+                written.addAndGet(batch.size());
+                batches.incrementAndGet();
+                return;
+            } catch (DataAccessException e) {
+                // on shutdown, don't hold the application up retrying
+                if (attempt >= maxRetries || !running) {
+                    failed.addAndGet(batch.size());
+                    System.out.println("⚠️ History writer dropped " + batch.size() + " events: "
+                            + e.getMostSpecificCause().getMessage());
+                    return;
+                }
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    // one statement for the whole batch
+    private void insert(List<HistoryEvent> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * (ROW.length() + 2));
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[batch.size() * 6];
+        int a = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            HistoryEvent event = batch.get(i);
+            if (i > 0) sql.append(", ");
+            sql.append(ROW);
+            args[a++] = event.getAction();
+            args[a++] = event.getSource();
+            args[a++] = event.getStatus();
+            args[a++] = event.getDetails();
+            args[a++] = event.getNode();
+            args[a++] = Timestamp.valueOf(event.getCreatedAt());
+        }
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    private static String truncate(String value, int length) {
+        return value == null || value.length() <= length ? value : value.substring(0, length);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+
+    public static class WriterStats {
+        private final boolean enabled;
+        private final int queued;
+        private final long enqueued;
+        private final long written;
+        private final long batches;
+        private final long dropped;
+        private final long failed;
+        private final long waits;
+
+        WriterStats(boolean enabled, int queued, long enqueued, long written, long batches, long dropped,
+                    long failed, long waits) {
+            this.enabled = enabled;
+            this.queued = queued;
+            this.enqueued = enqueued;
+            this.written = written;
+            this.batches = batches;
+            this.dropped = dropped;
+            this.failed = failed;
+            this.waits = waits;
+        }
+
+        public boolean isEnabled() { return enabled; }
+        public int getQueued() { return queued; }
+        public long getEnqueued() { return enqueued; }
+        public long getWritten() { return written; }
+        public long getBatches() { return batches; }
+        /** Events rejected because the queue was full. */
+        public long getDropped() { return dropped; }
+        /** Events lost because their batch still failed after the retries. */
+        public long getFailed() { return failed; }
+        /** Times a caller had to wait for queue space. */
+        public long getWaits() { return waits; }
+
+        @Override
+        public String toString() {
+            if (!enabled) return "disabled";
+            return String.format("%d queued, %d written in %d batches, %d dropped (queue full), %d failed",
+                    queued, written, batches, dropped, failed);
+        }
+    }
+}
@@ -0,0 +1,748 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.model.HistoryRecord;
+import com.example.sqldeploymentsmanager.service.HistoryService.HistoryPage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only on-disk journal of history records, split into numbered segment files.
+ * Records are queued by {@link #append} and written by a single thread, which writes
+ * everything queued since its last fsync in one go and then fsyncs once (group commit), so
+ * a burst of actions costs one fsync rather than one each. A crash can lose at most the
+ * records queued but not yet synced.
+ * <p>
+ * Each record is framed as {@code [length][crc32][payload][length]}; the trailing length
+ * lets segments be read newest-first. Every segment has a small index (record count,
+ * time range, count per status), kept in memory and written next to the segment when it
+ * is sealed, so filtered queries skip or count whole segments without reading them and
+ * only scan the segments a time range cuts through.
+ */
+@Service
+public class HistoryJournal {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("history-(\\d+)\\.log");
+    private static final int HEADER = 8;   // length + crc
+    private static final int TRAILER = 4;  // length again
+    private static final int MAX_PAYLOAD = 1 << 20;
+    private static final int READ_WINDOW = 64 * 1024;
+    private static final int INDEX_VERSION = 1;
+
+    private final boolean configured;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int maxSegments;
+    private final long retentionMillis;
+
+    private final LinkedBlockingQueue<Pending> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+
+    // guards the segment list and segment indexes; readers hold it while they read files
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // serializes the writer thread with clear()
+    private final Object appendLock = new Object();
+    private final List<Segment> segments = new ArrayList<>();
+
+    private volatile boolean enabled;
+    private volatile boolean running;
+    private Thread writer;
+
+    public HistoryJournal(@Value("${history.journal.enabled:true}") boolean enabled,
+                          @Value("${history.journal.directory:history-journal}") String directory,
+                          @Value("${history.journal.segment-bytes:16777216}") long segmentBytes,
+                          @Value("${history.journal.max-segments:64}") int maxSegments,
+                          @Value("${history.journal.retention-days:90}") int retentionDays,
+                          @Value("${history.journal.queue-capacity:65536}") int queueCapacity) {
+        this.configured = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = Math.max(64 * 1024, segmentBytes);
+        this.maxSegments = Math.max(1, maxSegments);
+        this.retentionMillis = TimeUnit.DAYS.toMillis(Math.max(0, retentionDays));
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    @PostConstruct
+    public void open() {
+        if (!configured) return;
+        try {
+            Files.createDirectories(directory);
+            lock.writeLock().lock();
+            try {
+                loadSegments();
+                applyRetention();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            System.out.println("⚠️ History journal disabled, could not open " + directory.toAbsolutePath()
+                    + ": " + e.getMessage());
+            return;
+        }
+
+        running = true;
+        enabled = true;
+        writer = new Thread(this::writeLoop, "history-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Queues the record for the writer; never blocks. Counted as dropped if the queue is full. */
+    public void append(HistoryRecord record) {
+        if (!enabled) return;
+        if (!queue.offer(new Pending(System.currentTimeMillis(), record))) dropped.incrementAndGet();
+    }
+
+    /**
+     * One page of matching records, newest first. {@code status} matches case-insensitively;
+     * {@code fromMillis}/{@code toMillis} are inclusive and may be null.
+     */
+    public HistoryPage query(String status, Long fromMillis, Long toMillis, int offset, int pageSize) {
+        Filter filter = new Filter(status, fromMillis, toMillis);
+        lock.readLock().lock();
+        try {
+            List<Segment> newestFirst = new ArrayList<>(segments);
+            Collections.reverse(newestFirst);
+
+            long[] counts = new long[newestFirst.size()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = countMatches(newestFirst.get(i), filter);
+                total += counts[i];
+            }
+
+            List<HistoryRecord> records = new ArrayList<>();
+            long[] skip = {offset};
+            for (int i = 0; i < counts.length && records.size() < pageSize; i++) {
+                if (counts[i] == 0) continue;
+                if (skip[0] >= counts[i]) {
+                    skip[0] -= counts[i];
+                    continue;
+                }
+                scanBackward(newestFirst.get(i), (time, recordStatus, payload) -> {
+                    if (!filter.matches(time, recordStatus)) return true;
+                    if (skip[0] > 0) {
+                        skip[0]--;
+                        return true;
+                    }
+                    records.add(decode(recordStatus, payload));
+                    return records.size() < pageSize;
+                });
+            }
+            return new HistoryPage(Collections.unmodifiableList(records), offset, pageSize, total,
+                    getStats().toString());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read history journal: " + e.getMessage(), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Every status recorded in the retained segments, from the segment indexes. */
+    public List<String> getStatuses() {
+        TreeSet<String> statuses = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments) statuses.addAll(segment.statusCounts.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new ArrayList<>(statuses);
+    }
+
+    /** Deletes every segment, along with anything still queued, and starts a new one. */
+    public void clear() {
+        if (!enabled) return;
+        synchronized (appendLock) {
+            queue.clear();
+            lock.writeLock().lock();
+            try {
+                for (Segment segment : segments) segment.delete();
+                long next = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).number + 1;
+                segments.clear();
+                segments.add(Segment.create(directory, next));
+            } catch (IOException e) {
+                System.out.println("⚠️ History journal disabled, could not clear: " + e.getMessage());
+                enabled = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public JournalStats getStats() {
+        lock.readLock().lock();
+        try {
+            long records = 0;
+            long bytes = 0;
+            for (Segment segment : segments) {
+                records += segment.count;
+                bytes += segment.size;
+            }
+            return new JournalStats(enabled, segments.size(), records, bytes, written.get(), syncs.get(),
+                    dropped.get());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) return;
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) segment.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Writing
+    // ------------------------------------------------------------------
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(256 * 1024);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // everything that queued up during the previous fsync goes into this one
+                queue.drainTo(batch);
+                synchronized (appendLock) {
+                    if (enabled) buffer = writeBatch(batch, buffer);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                System.out.println("⚠️ History journal write failed, " + batch.size()
+                        + " records lost: " + e.getMessage());
+                dropped.addAndGet(batch.size());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private ByteBuffer writeBatch(List<Pending> batch, ByteBuffer buffer) throws IOException {
+        Segment active = activeSegment();
+        SegmentDelta delta = new SegmentDelta();
+        buffer.clear();
+
+        for (Pending pending : batch) {
+            byte[] payload = encode(pending);
+            int framed = HEADER + payload.length + TRAILER;
+            if (active.size + buffer.position() + framed > segmentBytes && active.count + delta.count > 0) {
+                active = commit(active, buffer, delta);
+                active = rollover(active);
+                delta = new SegmentDelta();
+            }
+            if (buffer.remaining() < framed) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + framed));
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).putInt(payload.length);
+            delta.add(pending.time, pending.record.getStatus());
+        }
+        commit(active, buffer, delta);
+        written.addAndGet(batch.size());
+        return buffer;
+    }
+
+    // writes and fsyncs the buffered records, then publishes them to readers
+    private Segment commit(Segment active, ByteBuffer buffer, SegmentDelta delta) throws IOException {
+        if (delta.count == 0) return active;
+        buffer.flip();
+        long position = active.size;
+        while (buffer.hasRemaining()) {
+            position += active.channel.write(buffer, position);
+        }
+        active.channel.force(false);
+        syncs.incrementAndGet();
+        buffer.clear();
+
+        lock.writeLock().lock();
+        try {
+            active.size = position;
+            delta.applyTo(active);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return active;
+    }
+
+    private Segment rollover(Segment active) throws IOException {
+        lock.writeLock().lock();
+        try {
+            active.seal();
+            Segment next = Segment.create(directory, active.number + 1);
+            segments.add(next);
+            applyRetention();
+            return next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Segment activeSegment() {
+        lock.readLock().lock();
+        try {
+            return segments.get(segments.size() - 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // called with the write lock held; the active segment is never removed
+    private void applyRetention() {
+        long cutoff = retentionMillis > 0 ? System.currentTimeMillis() - retentionMillis : Long.MIN_VALUE;
+        while (segments.size() > 1) {
+            Segment oldest = segments.get(0);
+            boolean expired = oldest.count > 0 && oldest.maxTime < cutoff;
+            if (segments.size() <= maxSegments && !expired) break;
+            segments.remove(0);
+            oldest.delete();
+        }
+    }
+
+    private static byte[] encode(Pending pending) {
+        HistoryRecord record = pending.record;
+        byte[][] fields = {
+                bytes(record.getStatus()), bytes(record.getAction()), bytes(record.getSource()),
+                bytes(record.getDetails()), bytes(record.getTimestamp())
+        };
+        int size = 8;
+        for (byte[] field : fields) size += 4 + (field == null ? 0 : field.length);
+        if (size > MAX_PAYLOAD && fields[3] != null) {
+            // details are the only unbounded field
+            byte[] details = truncate(fields[3], fields[3].length - (size - MAX_PAYLOAD));
+            size -= fields[3].length - details.length;
+            fields[3] = details;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.putLong(pending.time);
+        for (byte[] field : fields) {
+            if (field == null) {
+                payload.putInt(-1);
+            } else {
+                payload.putInt(field.length).put(field);
+            }
+        }
+        return payload.array();
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] truncate(byte[] utf8, int length) {
+        int end = Math.max(0, length);
+        // don't cut a multi-byte character in half
+        while (end > 0 && (utf8[end] & 0xC0) == 0x80) end--;
+        byte[] result = new byte[end];
+        System.arraycopy(utf8, 0, result, 0, end);
+        return result;
+    }
+
+    // ------------------------------------------------------------------
+    // Reading
+    // ------------------------------------------------------------------
+
+    private interface RecordVisitor {
+        /** {@code payload} is positioned after the status; return false to stop. */
+        boolean visit(long time, String status, ByteBuffer payload) throws IOException;
+    }
+
+    private long countMatches(Segment segment, Filter filter) throws IOException {
+        if (segment.count == 0 || !filter.overlaps(segment)) return 0;
+        long statusCount = filter.status == null ? segment.count : segment.countStatus(filter.status);
+        if (statusCount == 0 || filter.covers(segment)) return statusCount;
+
+        long[] count = {0};
+        scanBackward(segment, (time, status, payload) -> {
+            if (filter.matches(time, status)) count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    // visits the segment's published records newest first, reading the file in windows
+    private void scanBackward(Segment segment, RecordVisitor visitor) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(READ_WINDOW);
+        long windowStart = segment.size;
+        long position = segment.size;
+
+        while (position > 0) {
+            if (position - TRAILER < windowStart) {
+                window = fill(segment.channel, window, position, READ_WINDOW);
+                windowStart = position - window.limit();
+            }
+            int length = window.getInt((int) (position - TRAILER - windowStart));
+            long start = position - TRAILER - length - HEADER;
+            if (length < 8 || length > MAX_PAYLOAD || start < 0) {
+                throw new IOException("corrupt record before offset " + position + " in " + segment.log.getFileName());
+            }
+            if (start < windowStart) {
+                window = fill(segment.channel, window, position, (int) (position - start));
+                windowStart = position - window.limit();
+            }
+
+            ByteBuffer payload = window.duplicate();
+            payload.limit((int) (start - windowStart) + HEADER + length);
+            payload.position((int) (start - windowStart) + HEADER);
+            long time = payload.getLong();
+            String status = readString(payload);
+            if (!visitor.visit(time, status, payload)) return;
+            position = start;
+        }
+    }
+
+    // reads the bytes ending at {@code end}: at least {@code minimum}, READ_WINDOW if more are available
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer window, long end, int minimum) throws IOException {
+        int size = (int) Math.min(end, Math.max(minimum, READ_WINDOW));
+        if (window.capacity() < size) window = ByteBuffer.allocate(size);
+        window.clear();
+        window.limit(size);
+        long position = end - size;
+        while (window.hasRemaining()) {
+            int read = channel.read(window, position + window.position());
+            if (read < 0) throw new EOFException("history journal segment ended early");
+        }
+        window.flip();
+        return window;
+    }
+
+    private static HistoryRecord decode(String status, ByteBuffer payload) {
+        String action = readString(payload);
+        String source = readString(payload);
+        String details = readString(payload);
+        String timestamp = readString(payload);
+        HistoryRecord record = new HistoryRecord(action, source, status, details);
+        record.setTimestamp(timestamp);
+        return record;
+    }
+
+    private static String readString(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) return null;
+        String value = new String(payload.array(), payload.arrayOffset() + payload.position(), length,
+                StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+
+    // ------------------------------------------------------------------
+    // Segments
+    // ------------------------------------------------------------------
+
+    private void loadSegments() throws IOException {
+        List<Path> logs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches()).forEach(logs::add);
+        }
+        logs.sort((a, b) -> Long.compare(Segment.numberOf(a), Segment.numberOf(b)));
+
+        for (int i = 0; i < logs.size(); i++) {
+            Path log = logs.get(i);
+            boolean last = i == logs.size() - 1;
+            Segment segment = Segment.open(log);
+            if (last || !segment.loadIndex()) {
+                // the active segment (or one whose index is missing) is rebuilt by reading it,
+                // which also cuts off a record torn by a crash
+                segment.recover();
+                if (!last) segment.seal();
+            }
+            segments.add(segment);
+        }
+        if (segments.isEmpty()) segments.add(Segment.create(directory, 1));
+    }
+
+    private static final class Segment {
+        final long number;
+        final Path log;
+        final Path index;
+        final FileChannel channel;
+        long size;
+        long count;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        final Map<String, Long> statusCounts = new HashMap<>();
+
+        private Segment(long number, Path log, FileChannel channel) {
+            this.number = number;
+            this.log = log;
+            this.index = log.resolveSibling(String.format("history-%010d.idx", number));
+            this.channel = channel;
+        }
+
+        static long numberOf(Path log) {
+            Matcher m = SEGMENT_NAME.matcher(log.getFileName().toString());
+            return m.matches() ? Long.parseLong(m.group(1)) : -1;
+        }
+
+        static Segment create(Path directory, long number) throws IOException {
+            Path log = directory.resolve(String.format("history-%010d.log", number));
+            return new Segment(number, log, FileChannel.open(log, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+
+        static Segment open(Path log) throws IOException {
+            return new Segment(numberOf(log), log, FileChannel.open(log, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE));
+        }
+
+        long countStatus(String status) {
+            long total = 0;
+            for (Map.Entry<String, Long> e : statusCounts.entrySet()) {
+                if (e.getKey() != null && e.getKey().equalsIgnoreCase(status)) total += e.getValue();
+            }
+            return total;
+        }
+
+        void add(long time, String status) {
+            count++;
+            statusCounts.merge(status == null ? "" : status, 1L, Long::sum);
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+
+        /** Reads every record from the start, truncating at the first one that is incomplete or corrupt. */
+        void recover() throws IOException {
+            long fileSize = channel.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (position + HEADER + TRAILER <= fileSize) {
+                header.clear();
+                readFully(header, position);
+                int length = header.getInt(0);
+                int crc = header.getInt(4);
+                if (length < 8 || length > MAX_PAYLOAD || position + HEADER + length + TRAILER > fileSize) break;
+
+                ByteBuffer body = ByteBuffer.allocate(length + TRAILER);
+                readFully(body, position + HEADER);
+                CRC32 check = new CRC32();
+                check.update(body.array(), 0, length);
+                if ((int) check.getValue() != crc || body.getInt(length) != length) break;
+
+                body.limit(length);
+                body.position(0);
+                long time = body.getLong();
+                add(time, readString(body));
+                position += HEADER + length + TRAILER;
+            }
+            if (position < fileSize) {
+                System.out.println("⚠️ History journal: dropped " + (fileSize - position)
+                        + " unreadable bytes at the end of " + log.getFileName());
+                channel.truncate(position);
+            }
+            size = position;
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+            }
+        }
+
+        /** Writes this segment's index next to it; it takes no more appends after this. */
+        void seal() throws IOException {
+            channel.force(true);
+            Path tmp = index.resolveSibling(index.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+                out.writeInt(INDEX_VERSION);
+                out.writeLong(size);
+                out.writeLong(count);
+                out.writeLong(minTime);
+                out.writeLong(maxTime);
+                out.writeInt(statusCounts.size());
+                for (Map.Entry<String, Long> e : statusCounts.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue());
+                }
+            }
+            Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /** Loads the index written by {@link #seal}; false if it's missing or doesn't match the segment. */
+        boolean loadIndex() throws IOException {
+            if (!Files.exists(index)) return false;
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(index))) {
+                if (in.readInt() != INDEX_VERSION) return false;
+                long indexedSize = in.readLong();
+                if (indexedSize != channel.size()) return false;
+                size = indexedSize;
+                count = in.readLong();
+                minTime = in.readLong();
+                maxTime = in.readLong();
+                int statuses = in.readInt();
+                for (int i = 0; i < statuses; i++) statusCounts.put(in.readUTF(), in.readLong());
+                return true;
+            } catch (EOFException e) {
+                count = 0;
+                statusCounts.clear();
+                return false;
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing left to do with it
+            }
+        }
+
+        void delete() {
+            close();
+            try {
+                Files.deleteIfExists(index);
+                Files.deleteIfExists(log);
+            } catch (IOException e) {
+                System.out.println("⚠️ History journal: could not delete " + log.getFileName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // index changes for records written but not yet visible to readers
+    private static final class SegmentDelta {
+        final Map<String, Long> statusCounts = new HashMap<>();
+        long count;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+
+        void add(long time, String status) {
+            count++;
+            statusCounts.merge(status == null ? "" : status, 1L, Long::sum);
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+
+        void applyTo(Segment segment) {
+            segment.count += count;
+            for (Map.Entry<String, Long> e : statusCounts.entrySet()) {
+                segment.statusCounts.merge(e.getKey(), e.getValue(), Long::sum);
+            }
+            segment.minTime = Math.min(segment.minTime, minTime);
+            segment.maxTime = Math.max(segment.maxTime, maxTime);
+        }
+    }
+
+    private static final class Pending {
+        final long time;
+        final HistoryRecord record;
+
+        Pending(long time, HistoryRecord record) {
+            this.time = time;
+            this.record = record;
+        }
+    }
+
+    private static final class Filter {
+        final String status;
+        final long from;
+        final long to;
+
+        Filter(String status, Long from, Long to) {
+            this.status = status == null || status.isBlank() ? null : status.trim();
+            this.from = from == null ? Long.MIN_VALUE : from;
+            this.to = to == null ? Long.MAX_VALUE : to;
+        }
+
+        boolean overlaps(Segment segment) {
+            return segment.maxTime >= from && segment.minTime <= to;
+        }
+
+        boolean covers(Segment segment) {
+            return segment.minTime >= from && segment.maxTime <= to;
+        }
+
+        boolean matches(long time, String recordStatus) {
+            if (time < from || time > to) return false;
+            return status == null || status.equalsIgnoreCase(recordStatus);
+        }
+    }
+
+    public static class JournalStats {
+        private final boolean enabled;
+        private final int segments;
+        private final long records;
+        private final long bytes;
+        private final long written;
+        private final long syncs;
+        private final long dropped;
+
+        JournalStats(boolean enabled, int segments, long records, long bytes, long written, long syncs, long dropped) {
+            this.enabled = enabled;
+            this.segments = segments;
+            this.records = records;
+            this.bytes = bytes;
+            this.written = written;
+            this.syncs = syncs;
+            this.dropped = dropped;
+        }
+
+        public boolean isEnabled() { return enabled; }
+        public int getSegments() { return segments; }
+        public long getRecords() { return records; }
+        public long getBytes() { return bytes; }
+        /** Records written since startup. */
+        public long getWritten() { return written; }
+        /** fsyncs since startup; fewer than records written when appends were grouped. */
+        public long getSyncs() { return syncs; }
+        public long getDropped() { return dropped; }
+
+        @Override
+        public String toString() {
+            if (!enabled) return "journal disabled";
+            return String.format("journal: %d records in %d segments, %.1f MB; %d written with %d fsyncs, %d dropped",
+                    records, segments, bytes / (1024.0 * 1024.0), written, syncs, dropped);
+        }
+    }
+}
@@ -1,26 +1,213 @@
 package com.example.sqldeploymentsmanager.service;
 
 import com.example.sqldeploymentsmanager.model.HistoryRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Keeps the most recent {@code history.capacity} actions in a lock-free ring. Writers claim
+ * a sequence number and publish into its slot; once the ring is full the oldest entries are
+ * overwritten. Readers never block writers: they walk back from the latest sequence and skip
+ * any slot that is still being written or has already been reused.
+ * <p>
+ * Every action is also appended to the on-disk {@link HistoryJournal} and queued for the
+ * shared database table ({@link HistoryDatabaseWriter}) when those are enabled; neither
+ * blocks the caller. Pages come from the database when it's enabled and reachable, so all
+ * instances show the same history, otherwise from the journal, otherwise from the ring.
+ */
 @Service
 public class HistoryService {
 
-    private final List<HistoryRecord> history = new ArrayList<>();
+    private final HistoryJournal journal;
+    private final HistoryDatabaseWriter databaseWriter;
+    private final int capacity;
+    private final AtomicReferenceArray<Slot> slots;
+
+    // next sequence to hand out; sequences below clearedBefore were cleared
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong clearedBefore = new AtomicLong();
+
+    public HistoryService(HistoryJournal journal, HistoryDatabaseWriter databaseWriter,
+                          @Value("${history.capacity:1000}") int capacity) {
+        this.journal = journal;
+        this.databaseWriter = databaseWriter;
+        this.capacity = Math.max(1, capacity);
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+    }
 
     public void logAction(String action, String source, String status, String details) {
-        history.add(new HistoryRecord(action, source, status, details));
+        HistoryRecord record = new HistoryRecord(action, source, status, details);
+        long seq = next.getAndIncrement();
+        Slot slot = new Slot(seq, System.currentTimeMillis(), record);
+        // a writer that stalled for a whole lap must not overwrite the newer entry in its slot
+        slots.updateAndGet(index(seq), existing -> existing == null || existing.seq < seq ? slot : existing);
+        journal.append(record);
+        databaseWriter.append(record);
     }
 
+    /** Snapshot of the retained history, oldest first. */
     public List<HistoryRecord> getHistory() {
+        List<HistoryRecord> newestFirst = ringPage(null, null, null, 0, capacity).getRecords();
+        List<HistoryRecord> history = new ArrayList<>(newestFirst);
+        Collections.reverse(history);
         return Collections.unmodifiableList(history);
     }
 
+    public HistoryPage getPage(int offset, int pageSize) {
+        return getPage(null, null, null, offset, pageSize);
+    }
+
+    /**
+     * One page of history, newest first, optionally filtered by status and an inclusive
+     * time range (epoch millis, either may be null). Only the page itself is copied.
+     */
+    public HistoryPage getPage(String status, Long fromMillis, Long toMillis, int offset, int pageSize) {
+        offset = Math.max(0, offset);
+        pageSize = Math.max(1, pageSize);
+        if (databaseWriter.isEnabled()) {
+            try {
+                return databaseWriter.query(status, fromMillis, toMillis, offset, pageSize);
+            } catch (DataAccessException e) {
+                System.out.println("⚠️ History table unavailable, showing local history: "
+                        + e.getMostSpecificCause().getMessage());
+            }
+        }
+        if (journal.isEnabled()) return journal.query(status, fromMillis, toMillis, offset, pageSize);
+        return ringPage(status, fromMillis, toMillis, offset, pageSize);
+    }
+
+    /** Statuses that can be filtered on. */
+    public List<String> getStatuses() {
+        if (databaseWriter.isEnabled()) {
+            try {
+                return databaseWriter.getStatuses();
+            } catch (DataAccessException e) {
+                // fall back to local history, as getPage does
+            }
+        }
+        if (journal.isEnabled()) return journal.getStatuses();
+        TreeSet<String> statuses = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (HistoryRecord record : getHistory()) {
+            if (record.getStatus() != null) statuses.add(record.getStatus());
+        }
+        return new ArrayList<>(statuses);
+    }
+
+    private HistoryPage ringPage(String status, Long fromMillis, Long toMillis, int offset, int pageSize) {
+        long head = next.get();
+        long oldest = Math.max(clearedBefore.get(), head - capacity);
+        long dropped = Math.max(0, oldest - clearedBefore.get());
+        String note = String.format("in memory, capacity %d, %d older dropped", capacity, dropped);
+        boolean filtered = (status != null && !status.isBlank()) || fromMillis != null || toMillis != null;
+
+        if (!filtered) {
+            long total = Math.max(0, head - oldest);
+            List<HistoryRecord> records = new ArrayList<>((int) Math.min(pageSize, total));
+            for (long seq = head - 1 - offset; seq >= oldest && records.size() < pageSize; seq--) {
+                Slot slot = published(seq);
+                if (slot != null) records.add(slot.record);
+            }
+            return new HistoryPage(Collections.unmodifiableList(records), offset, pageSize, total, note);
+        }
+
+        // the ring is small, so a filtered page walks all of it to count matches
+        List<HistoryRecord> records = new ArrayList<>();
+        long total = 0;
+        for (long seq = head - 1; seq >= oldest; seq--) {
+            Slot slot = published(seq);
+            if (slot == null || !slot.matches(status, fromMillis, toMillis)) continue;
+            if (total >= offset && records.size() < pageSize) records.add(slot.record);
+            total++;
+        }
+        return new HistoryPage(Collections.unmodifiableList(records), offset, pageSize, total, note);
+    }
+
+    // null if the slot isn't published yet or has already been overwritten
+    private Slot published(long seq) {
+        Slot slot = slots.get(index(seq));
+        return slot != null && slot.seq == seq ? slot : null;
+    }
+
     public void clearHistory() {
-        history.clear();
+        long head = next.get();
+        clearedBefore.accumulateAndGet(head, Math::max);
+        for (long seq = head - 1; seq >= Math.max(0, head - capacity); seq--) {
+            int i = index(seq);
+            Slot slot = slots.get(i);
+            // leave slots a concurrent writer has already reused
+            if (slot != null && slot.seq < head) slots.compareAndSet(i, slot, null);
+        }
+        journal.clear();
+        try {
+            databaseWriter.clear();
+        } catch (DataAccessException e) {
+            System.out.println("⚠️ History table not cleared: " + e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private int index(long seq) {
+        return (int) (seq % capacity);
+    }
+
+    private static final class Slot {
+        final long seq;
+        final long time;
+        final HistoryRecord record;
+
+        Slot(long seq, long time, HistoryRecord record) {
+            this.seq = seq;
+            this.time = time;
+            this.record = record;
+        }
+
+        boolean matches(String status, Long fromMillis, Long toMillis) {
+            if (fromMillis != null && time < fromMillis) return false;
+            if (toMillis != null && time > toMillis) return false;
+            return status == null || status.isBlank() || status.trim().equalsIgnoreCase(record.getStatus());
+        }
+    }
+
+    public static class HistoryPage {
+        private final List<HistoryRecord> records;
+        private final int offset;
+        private final int pageSize;
+        private final long total;
+        private final String source;
+
+        HistoryPage(List<HistoryRecord> records, int offset, int pageSize, long total, String source) {
+            this.records = records;
+            this.offset = offset;
+            this.pageSize = pageSize;
+            this.total = total;
+            this.source = source;
+        }
+
+        public List<HistoryRecord> getRecords() { return records; }
+        public int getOffset() { return offset; }
+        public int getPageSize() { return pageSize; }
+        /** Matching entries across all pages. */
+        public long getTotal() { return total; }
+        /** Where the page was read from, for display. */
+        public String getSource() { return source; }
+        public boolean isHasMore() { return offset + pageSize < total; }
+
+        @Override
+        public String toString() {
+            if (total == 0) return "0 entries (" + source + ")";
+            return String.format("%d-%d of %d entries (%s)",
+                    Math.min(offset + 1, total), Math.min(offset + pageSize, total), total, source);
+        }
     }
 }
@@ -0,0 +1,343 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SQLLexer.Token;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.SchemaModel;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.TableInfo;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.IsNullExpression;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.OldOracleJoinBinaryExpression;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectBody;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.update.Update;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks the columns a SELECT, UPDATE or DELETE filters, joins and sorts on against the
+ * indexes in the cached schema, and only reports tables where no index has one of those
+ * columns as its leftmost part, suggesting a composite index in equality, range, order
+ * sequence. Without schema metadata (database down, statement didn't parse, no rights on
+ * information_schema.statistics) it falls back to the generic keyword hint.
+ */
+final class IndexAdvisorRule implements AnalysisRule {
+
+    // MySQL identifier length limit
+    private static final int MAX_INDEX_NAME = 64;
+
+    @Override
+    public String getName() { return "index-advisor"; }
+
+    // the generic hint reads keywords from the tokens, so literals and comments don't count
+    @Override
+    public boolean needsTokens() { return true; }
+
+    @Override
+    public void apply(Context ctx, List<String> feedback) {
+        SchemaModel schema = ctx.getSchema();
+        Statement statement = ctx.getStatement();
+        if (schema == null || !schema.isIndexesLoaded() || statement == null) {
+            genericHint(ctx, feedback);
+            return;
+        }
+
+        Set<String> advice = new LinkedHashSet<>();
+        if (statement instanceof Select) {
+            SelectBody body = ((Select) statement).getSelectBody();
+            if (body instanceof SetOperationList) {
+                for (SelectBody part : ((SetOperationList) body).getSelects()) {
+                    if (part instanceof PlainSelect) advise(schema, (PlainSelect) part, advice);
+                }
+            } else if (body instanceof PlainSelect) {
+                advise(schema, (PlainSelect) body, advice);
+            }
+        } else if (statement instanceof Update) {
+            Update update = (Update) statement;
+            Query q = new Query(schema);
+            q.addTable(update.getTable());
+            q.addJoins(update.getStartJoins());
+            q.addTable(update.getFromItem());
+            q.addJoins(update.getJoins());
+            q.advise(update.getWhere(), update.getOrderByElements(), update.getLimit(), advice);
+        } else if (statement instanceof Delete) {
+            Delete delete = (Delete) statement;
+            Query q = new Query(schema);
+            q.addTable(delete.getTable());
+            q.addJoins(delete.getJoins());
+            q.advise(delete.getWhere(), delete.getOrderByElements(), delete.getLimit(), advice);
+        }
+        feedback.addAll(advice);
+    }
+
+    private static void advise(SchemaModel schema, PlainSelect select, Set<String> advice) {
+        Query q = new Query(schema);
+        q.addTable(select.getFromItem());
+        q.addJoins(select.getJoins());
+        q.advise(select.getWhere(), select.getOrderByElements(), select.getLimit(), advice);
+    }
+
+    private static void genericHint(Context ctx, List<String> feedback) {
+        List<Token> tokens = ctx.getTokens();
+        if ((AnalysisRules.hasWord(tokens, "WHERE") || AnalysisRules.hasWord(tokens, "JOIN"))
+                && !AnalysisRules.hasWord(tokens, "INDEX") && !AnalysisRules.hasWord(tokens, "PRIMARY")
+                && !AnalysisRules.hasWord(tokens, "UNIQUE")) {
+            feedback.add("💡 Optimization: Consider indexing columns used in WHERE/JOIN clauses.");
+        }
+    }
+
+    /** One table reference in a FROM clause, with the columns the query uses it by. */
+    private static final class Ref {
+        final TableInfo table;
+        final int position;
+        final Set<String> equality = new LinkedHashSet<>();
+        final Set<String> range = new LinkedHashSet<>();
+
+        Ref(TableInfo table, int position) {
+            this.table = table;
+            this.position = position;
+        }
+
+        boolean hasUsableIndex(Collection<String> columns) {
+            for (String column : columns) {
+                if (table.hasIndexStartingWith(column)) return true;
+            }
+            return false;
+        }
+    }
+
+    /** A column resolved to the table reference it belongs to. */
+    private static final class ColumnRef {
+        final Ref ref;
+        final String column;
+
+        ColumnRef(Ref ref, String column) {
+            this.ref = ref;
+            this.column = column;
+        }
+    }
+
+    private static final class Query {
+        private final SchemaModel schema;
+        // alias (or bare table name) -> reference
+        private final Map<String, Ref> byName = new LinkedHashMap<>();
+        private final List<Ref> refs = new ArrayList<>();
+        private final List<ColumnRef[]> joinPairs = new ArrayList<>();
+        // a subquery or unknown table in FROM could own any unqualified column
+        private boolean opaqueSource;
+
+        Query(SchemaModel schema) {
+            this.schema = schema;
+        }
+
+        void addTable(FromItem item) {
+            if (item == null) return;
+            if (!(item instanceof Table)) {
+                opaqueSource = true;
+                return;
+            }
+            Table t = (Table) item;
+            TableInfo info = schema.getTable(t.getName());
+            if (info == null) {
+                opaqueSource = true;
+                return;
+            }
+            Ref ref = new Ref(info, refs.size());
+            refs.add(ref);
+            byName.put(ScriptTableExtractor.normalize(t.getName()), ref);
+            if (t.getAlias() != null) {
+                byName.put(ScriptTableExtractor.normalize(t.getAlias().getName()), ref);
+            }
+        }
+
+        void addJoins(List<Join> joins) {
+            if (joins == null) return;
+            for (Join join : joins) {
+                addTable(join.getRightItem());
+            }
+            // ON conditions are read once every table is known, so they can refer to later ones
+            for (Join join : joins) {
+                for (Expression on : join.getOnExpressions()) {
+                    collect(on);
+                }
+            }
+        }
+
+        void advise(Expression where, List<OrderByElement> orderBy, Limit limit, Set<String> advice) {
+            if (refs.isEmpty()) return;
+            if (where != null) collect(where);
+
+            List<String> order = orderColumns(orderBy);
+            for (Ref ref : refs) {
+                Set<String> filters = new LinkedHashSet<>(ref.equality);
+                filters.addAll(ref.range);
+                if (filters.isEmpty() || ref.hasUsableIndex(filters)) continue;
+
+                // equality columns first, then one range column; columns after a range
+                // can't be used for lookups or ordering
+                List<String> columns = new ArrayList<>(ref.equality);
+                if (!ref.range.isEmpty()) {
+                    columns.add(ref.range.iterator().next());
+                } else {
+                    for (String c : order) {
+                        if (!columns.contains(c)) columns.add(c);
+                    }
+                }
+                advice.add("💡 Optimization: No index on `" + ref.table.getName() + "` starts with a column used in WHERE ("
+                        + quote(filters) + ") — consider " + createIndex(ref.table, columns) + ".");
+            }
+
+            for (ColumnRef[] pair : joinPairs) {
+                ColumnRef left = pair[0];
+                ColumnRef right = pair[1];
+                if (left.ref.table.hasIndexStartingWith(left.column)
+                        || right.ref.table.hasIndexStartingWith(right.column)) {
+                    continue;
+                }
+                // index the table that is joined later, the one looked up per row
+                ColumnRef inner = left.ref.position > right.ref.position ? left : right;
+                advice.add("💡 Optimization: JOIN column `" + inner.ref.table.getName() + "`.`" + inner.column
+                        + "` has no index — consider " + createIndex(inner.ref.table, List.of(inner.column)) + ".");
+            }
+
+            // ORDER BY ... LIMIT on a single unfiltered table only avoids a filesort with an
+            // index that starts with the ORDER BY columns
+            if (!order.isEmpty() && limit != null && refs.size() == 1) {
+                Ref ref = refs.get(0);
+                if (ref.equality.isEmpty() && ref.range.isEmpty() && !hasIndexWithPrefix(ref.table, order)) {
+                    advice.add("💡 Optimization: ORDER BY " + quote(order) + " on `" + ref.table.getName()
+                            + "` needs a filesort — consider " + createIndex(ref.table, order) + ".");
+                }
+            }
+        }
+
+        // Only conjunctions are followed: an OR needs an index per branch, which is beyond a hint
+        private void collect(Expression e) {
+            if (e instanceof AndExpression) {
+                collect(((AndExpression) e).getLeftExpression());
+                collect(((AndExpression) e).getRightExpression());
+            } else if (e instanceof Parenthesis) {
+                collect(((Parenthesis) e).getExpression());
+            } else if (e instanceof EqualsTo) {
+                EqualsTo eq = (EqualsTo) e;
+                ColumnRef left = resolve(eq.getLeftExpression());
+                ColumnRef right = resolve(eq.getRightExpression());
+                if (left != null && right != null) {
+                    if (left.ref != right.ref) joinPairs.add(new ColumnRef[] {left, right});
+                } else if (left != null && !(eq.getRightExpression() instanceof Column)) {
+                    left.ref.equality.add(left.column);
+                } else if (right != null && !(eq.getLeftExpression() instanceof Column)) {
+                    right.ref.equality.add(right.column);
+                }
+            } else if (e instanceof MinorThan || e instanceof MinorThanEquals
+                    || e instanceof GreaterThan || e instanceof GreaterThanEquals) {
+                OldOracleJoinBinaryExpression cmp = (OldOracleJoinBinaryExpression) e;
+                if (!(cmp.getRightExpression() instanceof Column)) addRange(cmp.getLeftExpression());
+                if (!(cmp.getLeftExpression() instanceof Column)) addRange(cmp.getRightExpression());
+            } else if (e instanceof Between) {
+                if (!((Between) e).isNot()) addRange(((Between) e).getLeftExpression());
+            } else if (e instanceof InExpression) {
+                InExpression in = (InExpression) e;
+                ColumnRef c = in.isNot() ? null : resolve(in.getLeftExpression());
+                if (c != null) c.ref.equality.add(c.column);
+            } else if (e instanceof IsNullExpression) {
+                IsNullExpression isNull = (IsNullExpression) e;
+                ColumnRef c = isNull.isNot() ? null : resolve(isNull.getLeftExpression());
+                if (c != null) c.ref.equality.add(c.column);
+            } else if (e instanceof LikeExpression) {
+                // only a fixed prefix can be looked up; '%x' is reported by leading-wildcard
+                LikeExpression like = (LikeExpression) e;
+                if (!like.isNot() && like.getRightExpression() instanceof StringValue) {
+                    String pattern = ((StringValue) like.getRightExpression()).getValue();
+                    if (!pattern.isEmpty() && pattern.charAt(0) != '%' && pattern.charAt(0) != '_') {
+                        addRange(like.getLeftExpression());
+                    }
+                }
+            }
+        }
+
+        private void addRange(Expression e) {
+            ColumnRef c = resolve(e);
+            if (c != null) c.ref.range.add(c.column);
+        }
+
+        private ColumnRef resolve(Expression e) {
+            if (!(e instanceof Column)) return null;
+            Column column = (Column) e;
+            String name = ScriptTableExtractor.normalize(column.getColumnName());
+            Table qualifier = column.getTable();
+            if (qualifier != null && qualifier.getName() != null) {
+                Ref ref = byName.get(ScriptTableExtractor.normalize(qualifier.getName()));
+                return ref != null && ref.table.hasColumn(name) ? new ColumnRef(ref, name) : null;
+            }
+            if (opaqueSource) return null;
+
+            Ref owner = null;
+            for (Ref ref : refs) {
+                if (!ref.table.hasColumn(name)) continue;
+                if (owner != null) return null; // ambiguous
+                owner = ref;
+            }
+            return owner == null ? null : new ColumnRef(owner, name);
+        }
+
+        private List<String> orderColumns(List<OrderByElement> orderBy) {
+            List<String> columns = new ArrayList<>();
+            if (orderBy == null || refs.size() != 1) return columns;
+            for (OrderByElement element : orderBy) {
+                ColumnRef c = resolve(element.getExpression());
+                if (c == null) return new ArrayList<>(); // expression or unknown column: no index helps
+                if (!columns.contains(c.column)) columns.add(c.column);
+            }
+            return columns;
+        }
+    }
+
+    private static boolean hasIndexWithPrefix(TableInfo table, List<String> columns) {
+        for (SchemaMetadataCache.IndexInfo index : table.getIndexes()) {
+            List<String> indexed = index.getColumns();
+            if (indexed.size() >= columns.size() && indexed.subList(0, columns.size()).equals(columns)) return true;
+        }
+        return false;
+    }
+
+    private static String createIndex(TableInfo table, List<String> columns) {
+        String name = "idx_" + ScriptTableExtractor.normalize(table.getName()) + "_" + String.join("_", columns);
+        if (name.length() > MAX_INDEX_NAME) name = name.substring(0, MAX_INDEX_NAME);
+        return "CREATE INDEX " + name + " ON " + table.getName() + " (" + String.join(", ", columns) + ")";
+    }
+
+    private static String quote(Collection<String> columns) {
+        StringBuilder sb = new StringBuilder();
+        for (String c : columns) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append('`').append(c).append('`');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.sqldeploymentsmanager.service;
+
+import net.sf.jsqlparser.expression.DateTimeLiteralExpression;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.HexValue;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.NullValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.RowConstructor;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.ItemsList;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+import net.sf.jsqlparser.statement.values.ValuesStatement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Optional pre-execution stage that folds consecutive single-row
+ * {@code INSERT INTO t (cols) VALUES (...)} statements with the same target and column
+ * list into one multi-row INSERT. Only rows made entirely of literals are merged: a value
+ * such as a subquery, a variable or NOW() could evaluate differently once the rows are
+ * inserted by one statement. Each rewritten statement keeps the original
+ * statements it replaces so callers can still report them one by one, and the script line
+ * it starts on when the statements come from a {@link SQLScriptTokenizer}.
+ */
+@Service
+public class InsertCoalescingRewriter {
+
+    private static final long DEFAULT_MAX_ALLOWED_PACKET = 4L * 1024 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BoundedStatementParser parser;
+
+    @Value("${deployment.insert-coalescing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${deployment.insert-coalescing.max-rows:1000}")
+    private int maxRows = 1000;
+
+    public InsertCoalescingRewriter(JdbcTemplate jdbcTemplate, BoundedStatementParser parser) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.parser = parser;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Iterator<RewrittenStatement> rewrite(Iterator<String> statements) {
+        if (!enabled) {
+            return new PassThrough(statements);
+        }
+        return new Coalescing(statements, maxStatementBytes(), maxRows, parser);
+    }
+
+    // Leave half of max_allowed_packet as headroom for protocol overhead and driver rewriting
+    private long maxStatementBytes() {
+        Long packet = null;
+        try {
+            packet = jdbcTemplate.queryForObject("SELECT @@max_allowed_packet", Long.class);
+        } catch (Exception ignored) {
+            // fall back to the server default
+        }
+        return (packet == null || packet <= 0 ? DEFAULT_MAX_ALLOWED_PACKET : packet) / 2;
+    }
+
+    public static class RewrittenStatement {
+        private final String sql;
+        private final List<String> sourceStatements;
+        private final int line;
+
+        RewrittenStatement(String sql, List<String> sourceStatements, int line) {
+            this.sql = sql;
+            this.sourceStatements = sourceStatements;
+            this.line = line;
+        }
+
+        public String getSql() { return sql; }
+        public List<String> getSourceStatements() { return sourceStatements; }
+        /** 1-based script line of the first source statement, 0 if unknown. */
+        public int getLine() { return line; }
+    }
+
+    private static int lineOf(Iterator<String> source) {
+        return source instanceof SQLScriptTokenizer ? ((SQLScriptTokenizer) source).getStatementLine() : 0;
+    }
+
+    private static class PassThrough implements Iterator<RewrittenStatement> {
+        private final Iterator<String> source;
+
+        PassThrough(Iterator<String> source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return source.hasNext();
+        }
+
+        @Override
+        public RewrittenStatement next() {
+            String stmt = source.next();
+            return new RewrittenStatement(stmt, Collections.singletonList(stmt), lineOf(source));
+        }
+    }
+
+    private static class Coalescing implements Iterator<RewrittenStatement> {
+        private final Iterator<String> source;
+        private final long maxBytes;
+        private final int maxRows;
+        private final BoundedStatementParser parser;
+
+        // one statement of lookahead, with its parsed form when it is a single-row INSERT
+        private String pending;
+        private SingleRowInsert pendingInsert;
+        private int pendingLine;
+        private int takenLine;
+
+        Coalescing(Iterator<String> source, long maxBytes, int maxRows, BoundedStatementParser parser) {
+            this.source = source;
+            this.maxBytes = maxBytes;
+            this.maxRows = maxRows;
+            this.parser = parser;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pending != null || source.hasNext();
+        }
+
+        @Override
+        public RewrittenStatement next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            String first = take();
+            int line = takenLine;
+            SingleRowInsert head = pendingInsert;
+            pendingInsert = null;
+            if (head == null) {
+                return new RewrittenStatement(first, Collections.singletonList(first), line);
+            }
+
+            List<String> sources = new ArrayList<>();
+            sources.add(first);
+            StringBuilder sql = new StringBuilder(head.prefix).append(head.row);
+            long bytes = utf8Length(sql);
+
+            while (sources.size() < maxRows && (pending != null || source.hasNext())) {
+                String candidate = take();
+                SingleRowInsert insert = pendingInsert;
+                long rowBytes = insert == null ? 0 : utf8Length(insert.row) + 2;
+
+                if (insert == null || !insert.prefix.equals(head.prefix) || bytes + rowBytes > maxBytes) {
+                    // not mergeable: hand it back as the start of the next statement
+                    pending = candidate;
+                    pendingLine = takenLine;
+                    break;
+                }
+
+                pendingInsert = null;
+                sql.append(", ").append(insert.row);
+                bytes += rowBytes;
+                sources.add(candidate);
+            }
+
+            if (sources.size() == 1) {
+                return new RewrittenStatement(first, sources, line);
+            }
+            return new RewrittenStatement(sql.toString(), sources, line);
+        }
+
+        private String take() {
+            String stmt;
+            if (pending != null) {
+                stmt = pending;
+                pending = null;
+                takenLine = pendingLine;
+            } else {
+                stmt = source.next();
+                takenLine = lineOf(source);
+                pendingInsert = SingleRowInsert.parse(stmt, parser);
+            }
+            return stmt;
+        }
+    }
+
+    private static class SingleRowInsert {
+        final String prefix;
+        final String row;
+
+        private SingleRowInsert(String prefix, String row) {
+            this.prefix = prefix;
+            this.row = row;
+        }
+
+        static SingleRowInsert parse(String stmt, BoundedStatementParser parser) {
+            if (!stmt.regionMatches(true, 0, "INSERT", 0, 6)) return null;
+
+            // anything that doesn't parse in time is simply executed as written
+            Statement parsed = parser.parse(stmt).getStatement();
+            if (!(parsed instanceof Insert)) return null;
+            Insert insert = (Insert) parsed;
+
+            List<Column> columns = insert.getColumns();
+            if (columns == null || columns.isEmpty()
+                    || insert.isUseDuplicate() || insert.isUseSet()
+                    || insert.getOracleHint() != null
+                    || insert.getReturningExpressionList() != null
+                    || insert.getOutputClause() != null
+                    || insert.getConflictTarget() != null
+                    || (insert.getWithItemsList() != null && !insert.getWithItemsList().isEmpty())
+                    || !isPlainValues(insert)) {
+                return null;
+            }
+
+            @SuppressWarnings("deprecation")
+            ItemsList items = insert.getItemsList();
+            if (!(items instanceof ExpressionList)) return null;
+            List<?> values = ((ExpressionList) items).getExpressions();
+
+            // a single row lists one expression per column; multi-row VALUES lists row constructors
+            if (values == null || values.size() != columns.size()) return null;
+            if (columns.size() > 1 && values.get(0) instanceof RowConstructor) return null;
+            for (Object value : values) {
+                if (!isLiteral(value)) return null;
+            }
+
+            StringBuilder prefix = new StringBuilder("INSERT ");
+            if (insert.getModifierPriority() != null) {
+                prefix.append(insert.getModifierPriority()).append(' ');
+            }
+            if (insert.isModifierIgnore()) {
+                prefix.append("IGNORE ");
+            }
+            prefix.append("INTO ").append(insert.getTable()).append(" (");
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) prefix.append(", ");
+                prefix.append(columns.get(i).getColumnName());
+            }
+            prefix.append(") VALUES ");
+
+            return new SingleRowInsert(prefix.toString(), items.toString());
+        }
+
+        // literals, NULL, DEFAULT, TRUE/FALSE and signed numbers; a single-column row
+        // arrives wrapped in parentheses
+        private static boolean isLiteral(Object value) {
+            if (value instanceof Parenthesis) value = ((Parenthesis) value).getExpression();
+            if (value instanceof SignedExpression) {
+                Object signed = ((SignedExpression) value).getExpression();
+                return signed instanceof LongValue || signed instanceof DoubleValue;
+            }
+            if (value instanceof Column) {
+                Column column = (Column) value;
+                if (column.getTable() != null && column.getTable().getName() != null) return false;
+                String name = column.getColumnName().toUpperCase(Locale.ROOT);
+                return name.equals("DEFAULT") || name.equals("TRUE") || name.equals("FALSE");
+            }
+            return value instanceof StringValue || value instanceof LongValue || value instanceof DoubleValue
+                    || value instanceof HexValue || value instanceof NullValue
+                    || value instanceof DateTimeLiteralExpression;
+        }
+
+        private static boolean isPlainValues(Insert insert) {
+            if (insert.getSelect() == null) return false;
+            Object body = insert.getSelect().getSelectBody();
+            if (body instanceof SetOperationList) {
+                SetOperationList list = (SetOperationList) body;
+                return list.getSelects().size() == 1 && list.getSelects().get(0) instanceof ValuesStatement;
+            }
+            return body instanceof ValuesStatement;
+        }
+    }
+
+    private static long utf8Length(CharSequence s) {
+        long bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) bytes++;
+            else if (c < 0x800) bytes += 2;
+            else if (Character.isHighSurrogate(c)) { bytes += 4; i++; }
+            else bytes += 3;
+        }
+        return bytes;
+    }
+}
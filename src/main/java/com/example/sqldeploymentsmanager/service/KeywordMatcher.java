@@ -0,0 +1,135 @@
+package com.example.sqldeploymentsmanager.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton that counts occurrences of many substrings in one pass over the
+ * text. Matching ignores ASCII case and treats any whitespace character as a space, so
+ * " WHERE " also matches a WHERE at the start of a line. Patterns must be ASCII.
+ */
+final class KeywordMatcher {
+
+    private static final int ALPHABET = 128;
+
+    private final Map<String, Integer> ids;
+    // delta[state * ALPHABET + c] = next state, with failure links already folded in
+    private final int[] delta;
+    // pattern ids ending at each state, including those reached through failure links
+    private final int[][] outputs;
+
+    KeywordMatcher(Collection<String> patterns) {
+        this.ids = new LinkedHashMap<>();
+        for (String p : patterns) {
+            String key = fold(p);
+            if (!key.isEmpty() && !ids.containsKey(key)) ids.put(key, ids.size());
+        }
+
+        // trie
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        gotoTable.add(newRow());
+        out.add(new ArrayList<>());
+        for (Map.Entry<String, Integer> e : ids.entrySet()) {
+            int state = 0;
+            for (char c : e.getKey().toCharArray()) {
+                if (c >= ALPHABET) throw new IllegalArgumentException("Non-ASCII pattern: " + e.getKey());
+                int next = gotoTable.get(state)[c];
+                if (next < 0) {
+                    next = gotoTable.size();
+                    gotoTable.get(state)[c] = next;
+                    gotoTable.add(newRow());
+                    out.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            out.get(state).add(e.getValue());
+        }
+
+        // failure links, breadth first, turning the trie into a full transition table
+        int states = gotoTable.size();
+        int[] fail = new int[states];
+        this.delta = new int[states * ALPHABET];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = gotoTable.get(0)[c];
+            if (next < 0) {
+                delta[c] = 0;
+            } else {
+                delta[c] = next;
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            out.get(state).addAll(out.get(fail[state]));
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = gotoTable.get(state)[c];
+                if (next < 0) {
+                    delta[state * ALPHABET + c] = delta[fail[state] * ALPHABET + c];
+                } else {
+                    delta[state * ALPHABET + c] = next;
+                    fail[next] = delta[fail[state] * ALPHABET + c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.outputs = new int[states][];
+        for (int i = 0; i < states; i++) {
+            outputs[i] = out.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /** Number of (possibly overlapping) occurrences of each pattern, indexed by {@link #idOf}. */
+    int[] count(CharSequence text) {
+        int[] counts = new int[ids.size()];
+        int state = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = foldChar(text.charAt(i));
+            if (c >= ALPHABET) {
+                // no pattern contains non-ASCII text
+                state = 0;
+                continue;
+            }
+            state = delta[state * ALPHABET + c];
+            for (int id : outputs[state]) counts[id]++;
+        }
+        return counts;
+    }
+
+    /** Index of the pattern in the array returned by {@link #count}, or -1 if unknown. */
+    int idOf(String pattern) {
+        Integer id = ids.get(fold(pattern));
+        return id == null ? -1 : id;
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static String fold(String pattern) {
+        StringBuilder sb = new StringBuilder(pattern.length());
+        for (int i = 0; i < pattern.length(); i++) sb.append(foldChar(pattern.charAt(i)));
+        return sb.toString();
+    }
+
+    private static char foldChar(char c) {
+        if (c >= 'a' && c <= 'z') return (char) (c - 32);
+        if (c == '\n' || c == '\r' || c == '\t' || c == '\f') return ' ';
+        return c;
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.BoundedStatementParser.Outcome;
+import com.example.sqldeploymentsmanager.service.BoundedStatementParser.Result;
+import net.sf.jsqlparser.statement.Statement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Splits and parses each script once and keeps the result, keyed by a SHA-256 of its
+ * content, so the analysis, comparison and workflow pages can share the statements,
+ * ASTs and anything derived from them instead of re-parsing on every request.
+ * Bounded LRU: evicts by entry count and by the total size of the cached scripts.
+ */
+@Service
+public class ParsedScriptCache {
+
+    private final BoundedStatementParser parser;
+    private final int maxEntries;
+    private final long maxChars;
+
+    private final LinkedHashMap<String, ParsedScript> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedChars;
+
+    // The session keeps handing us the same String, so remember its digest rather than
+    // rehashing megabytes on every page view
+    private final Map<String, String> digests = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ParsedScriptCache(BoundedStatementParser parser,
+                             @Value("${script.cache.max-entries:32}") int maxEntries,
+                             @Value("${script.cache.max-chars:20000000}") long maxChars) {
+        this.parser = parser;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxChars = maxChars;
+    }
+
+    public ParsedScript get(String script) {
+        String key = digestOf(script);
+        synchronized (this) {
+            ParsedScript cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        // parse outside the lock; if two requests race on the same script one result wins
+        ParsedScript parsed = ParsedScript.parse(script, parser);
+        // statements skipped while the parser's breaker was open get another chance next time
+        if (parsed.hasSkippedStatements()) return parsed;
+
+        synchronized (this) {
+            ParsedScript existing = entries.get(key);
+            if (existing != null) return existing;
+
+            entries.put(key, parsed);
+            cachedChars += parsed.length;
+            evict();
+        }
+        return parsed;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cachedChars = 0;
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, entries.size(), cachedChars);
+    }
+
+    private void evict() {
+        Iterator<ParsedScript> it = entries.values().iterator();
+        // always keep the newest entry, even if it alone is over the size limit
+        while (entries.size() > 1 && (entries.size() > maxEntries || cachedChars > maxChars) && it.hasNext()) {
+            ParsedScript eldest = it.next();
+            it.remove();
+            cachedChars -= eldest.length;
+            evictions++;
+        }
+    }
+
+    private String digestOf(String script) {
+        String digest = digests.get(script);
+        if (digest == null) {
+            digest = sha256(script);
+            digests.put(script, digest);
+        }
+        return digest;
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * A script split into statements, each with its starting line and AST (null when
+     * JSqlParser could not parse it in time). Results computed from it can be stored
+     * alongside with {@link #getResult}.
+     */
+    public static class ParsedScript {
+        private final List<String> statements;
+        private final int[] lines;
+        private final List<Statement> parsed;
+        private final Outcome[] outcomes;
+        private final int length;
+        private final Map<String, Object> results = new ConcurrentHashMap<>();
+
+        private ParsedScript(List<String> statements, int[] lines, List<Result> results, int length) {
+            this.statements = Collections.unmodifiableList(statements);
+            this.lines = lines;
+            this.outcomes = new Outcome[results.size()];
+            List<Statement> asts = new ArrayList<>(results.size());
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] = results.get(i).getOutcome();
+                asts.add(results.get(i).getStatement());
+            }
+            this.parsed = Collections.unmodifiableList(asts);
+            this.length = length;
+        }
+
+        static ParsedScript parse(String script, BoundedStatementParser parser) {
+            List<String> statements = new ArrayList<>();
+            List<Integer> lines = new ArrayList<>();
+
+            // splitting is a cheap sequential scan; parsing is the expensive part
+            SQLScriptTokenizer tokenizer = new SQLScriptTokenizer(new StringReader(script));
+            while (tokenizer.hasNext()) {
+                statements.add(tokenizer.next());
+                lines.add(tokenizer.getStatementLine());
+            }
+            List<Result> parsed = parser.parseAll(statements);
+
+            int[] lineArray = new int[lines.size()];
+            for (int i = 0; i < lineArray.length; i++) lineArray[i] = lines.get(i);
+            return new ParsedScript(statements, lineArray, parsed, script.length());
+        }
+
+        public int size() { return statements.size(); }
+        public List<String> getStatements() { return statements; }
+        public String getStatement(int i) { return statements.get(i); }
+        /** 1-based line the i-th statement starts on. */
+        public int getLine(int i) { return lines[i]; }
+        /** AST of the i-th statement, or null if it didn't parse. */
+        public Statement getParsed(int i) { return parsed.get(i); }
+        /** Why the i-th statement has no AST (or PARSED if it has one). */
+        public Outcome getOutcome(int i) { return outcomes[i]; }
+
+        boolean hasSkippedStatements() {
+            for (Outcome o : outcomes) {
+                if (o == Outcome.SKIPPED) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Returns the result stored under {@code key}, computing it on first use. Results
+         * must not depend on anything but the script (e.g. live schema state).
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T getResult(String key, Supplier<T> compute) {
+            return (T) results.computeIfAbsent(key, k -> compute.get());
+        }
+
+        /**
+         * Like {@link #getResult} for results that also depend on outside state such as the
+         * schema: one result is kept per key, tagged with {@code tag}, and recomputed in
+         * place when asked for with a different tag.
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T getResult(String key, Object tag, Supplier<T> compute) {
+            Object stored = results.compute(key, (k, current) -> current instanceof Tagged
+                    && Objects.equals(((Tagged) current).tag, tag) ? current : new Tagged(tag, compute.get()));
+            return (T) ((Tagged) stored).value;
+        }
+    }
+
+    private static final class Tagged {
+        final Object tag;
+        final Object value;
+
+        Tagged(Object tag, Object value) {
+            this.tag = tag;
+            this.value = value;
+        }
+    }
+
+    public static class CacheStats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int entries;
+        private final long cachedChars;
+
+        CacheStats(long hits, long misses, long evictions, int entries, long cachedChars) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.cachedChars = cachedChars;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public int getEntries() { return entries; }
+        public long getCachedChars() { return cachedChars; }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d entries (%d chars), hit rate %.0f%% (%d hits, %d misses), %d evictions",
+                    entries, cachedChars, getHitRate() * 100, hits, misses, evictions);
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package com.example.sqldeploymentsmanager.service;
 
+import com.example.sqldeploymentsmanager.service.InsertCoalescingRewriter.RewrittenStatement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
@@ -11,61 +21,256 @@ import java.util.Locale;
 public class RowImpactService {
 
     private final JdbcTemplate jdbcTemplate;
+    private final InsertCoalescingRewriter insertCoalescingRewriter;
+    private final SchemaMetadataCache schemaMetadataCache;
+    private final SelectResultCache selectResultCache;
 
-    public RowImpactService(JdbcTemplate jdbcTemplate) {
+    // Number of consecutive DML statements sent per executeBatch; 1 disables batching
+    @Value("${deployment.batch-size:500}")
+    private int batchSize = 500;
+
+    public RowImpactService(JdbcTemplate jdbcTemplate,
+                            InsertCoalescingRewriter insertCoalescingRewriter,
+                            SchemaMetadataCache schemaMetadataCache,
+                            SelectResultCache selectResultCache) {
         this.jdbcTemplate = jdbcTemplate;
+        this.insertCoalescingRewriter = insertCoalescingRewriter;
+        this.schemaMetadataCache = schemaMetadataCache;
+        this.selectResultCache = selectResultCache;
     }
 
     public RowImpactSummary executeWithImpact(String sqlScript) {
-        RowImpactSummary summary = new RowImpactSummary();
+        return executeWithImpact(sqlScript, ProgressListener.NONE);
+    }
 
+    public RowImpactSummary executeWithImpact(String sqlScript, ProgressListener listener) {
         if (sqlScript == null || sqlScript.isBlank()) {
-            return summary;
+            return new RowImpactSummary();
         }
+        return executeWithImpact(new StringReader(sqlScript), listener);
+    }
 
-        String[] statements = sqlScript.split(";");
-        for (String raw : statements) {
-            String stmt = raw.trim();
-            if (stmt.isEmpty()) continue;
+    public RowImpactSummary executeWithImpact(Reader sqlScript) {
+        return executeWithImpact(sqlScript, ProgressListener.NONE);
+    }
+
+    public RowImpactSummary executeWithImpact(Reader sqlScript, ProgressListener listener) {
+        RowImpactSummary summary = new RowImpactSummary();
+        summary.listener = listener;
+        long start = System.nanoTime();
 
-            String upper = stmt.toUpperCase(Locale.ROOT).trim();
+        Iterator<RewrittenStatement> statements =
+                insertCoalescingRewriter.rewrite(new SQLScriptTokenizer(sqlScript));
+        if (batchSize > 1) {
+            executeBatched(statements, summary);
+        } else {
+            executeSingly(statements, summary);
+        }
 
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    private void executeSingly(Iterator<RewrittenStatement> statements, RowImpactSummary summary) {
+        while (statements.hasNext()) {
+            RewrittenStatement stmt = statements.next();
+            StatementKind kind = StatementKind.of(stmt.getSql());
+
+            // exceptions bubble up with the statement's position; WorkflowService will catch and report
             try {
-                if (upper.startsWith("INSERT")) {
-                    int count = jdbcTemplate.update(stmt);
-                    summary.insertCount += count;
-                    summary.executedStatements.add(stmt);
-                } else if (upper.startsWith("UPDATE")) {
-                    int count = jdbcTemplate.update(stmt);
-                    summary.updateCount += count;
-                    summary.executedStatements.add(stmt);
-                } else if (upper.startsWith("DELETE")) {
-                    int count = jdbcTemplate.update(stmt);
-                    summary.deleteCount += count;
-                    summary.executedStatements.add(stmt);
-                } else {
+                if (kind == StatementKind.OTHER) {
                     // DDL or other statements
-                    jdbcTemplate.execute(stmt);
-                    summary.executedStatements.add(stmt);
+                    jdbcTemplate.execute(stmt.getSql());
+                    schemaMetadataCache.invalidate();
+                } else {
+                    summary.record(kind, jdbcTemplate.update(stmt.getSql()));
                 }
-            } catch (Exception ex) {
-                // bubble up; WorkflowService will catch and report
-                throw ex;
+            } catch (DataAccessException e) {
+                throw failed(stmt, e, summary);
             }
+            selectResultCache.onStatementExecuted(stmt.getSql());
+            summary.executedStatements.addAll(stmt.getSourceStatements());
+            summary.reportProgress();
         }
+    }
 
-        return summary;
+    private void executeBatched(Iterator<RewrittenStatement> statements, RowImpactSummary summary) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) conn -> {
+            try (Statement jdbc = conn.createStatement()) {
+                List<RewrittenStatement> pending = new ArrayList<>(batchSize);
+                List<StatementKind> pendingKinds = new ArrayList<>(batchSize);
+
+                while (statements.hasNext()) {
+                    RewrittenStatement stmt = statements.next();
+                    StatementKind kind = StatementKind.of(stmt.getSql());
+
+                    if (kind == StatementKind.OTHER) {
+                        // DDL is a batch boundary: flush earlier DML before it runs
+                        flush(jdbc, pending, pendingKinds, summary);
+                        try {
+                            jdbc.execute(stmt.getSql());
+                        } catch (SQLException e) {
+                            throw failed(stmt, e, summary);
+                        }
+                        schemaMetadataCache.invalidate();
+                        selectResultCache.onStatementExecuted(stmt.getSql());
+                        summary.executedStatements.addAll(stmt.getSourceStatements());
+                        summary.reportProgress();
+                        continue;
+                    }
+
+                    jdbc.addBatch(stmt.getSql());
+                    pending.add(stmt);
+                    pendingKinds.add(kind);
+                    if (pending.size() >= batchSize) {
+                        flush(jdbc, pending, pendingKinds, summary);
+                    }
+                }
+
+                flush(jdbc, pending, pendingKinds, summary);
+            }
+            return null;
+        });
+    }
+
+    private void flush(Statement jdbc, List<RewrittenStatement> pending, List<StatementKind> pendingKinds,
+                       RowImpactSummary summary) throws SQLException {
+        if (pending.isEmpty()) return;
+
+        int[] counts;
+        try {
+            counts = jdbc.executeBatch();
+        } catch (BatchUpdateException e) {
+            // Under autocommit every statement that ran is committed: those before the failing
+            // one, and with the driver's continueBatchOnError also those after it
+            int[] partial = e.getUpdateCounts() != null ? e.getUpdateCounts() : new int[0];
+            RewrittenStatement failing = null;
+            for (int i = 0; i < pending.size(); i++) {
+                if (i < partial.length && partial[i] != Statement.EXECUTE_FAILED) {
+                    executed(pending.get(i), pendingKinds.get(i), partial[i], summary);
+                } else if (failing == null) {
+                    failing = pending.get(i);
+                }
+            }
+            jdbc.clearBatch();
+            pending.clear();
+            pendingKinds.clear();
+            throw failed(failing, e, summary);
+        }
+
+        for (int i = 0; i < pending.size(); i++) {
+            executed(pending.get(i), pendingKinds.get(i), i < counts.length ? counts[i] : 0, summary);
+        }
+        summary.batchCount++;
+        summary.reportProgress();
+
+        jdbc.clearBatch();
+        pending.clear();
+        pendingKinds.clear();
+    }
+
+    private void executed(RewrittenStatement stmt, StatementKind kind, int count, RowImpactSummary summary) {
+        // SUCCESS_NO_INFO (-2) carries no row count
+        summary.record(kind, Math.max(count, 0));
+        selectResultCache.onStatementExecuted(stmt.getSql());
+        summary.executedStatements.addAll(stmt.getSourceStatements());
+    }
+
+    // Caches are dropped before the error propagates: the failing statement may have been
+    // partly applied (non-transactional tables, DDL), so nothing cached can be trusted
+    private SQLException failed(RewrittenStatement stmt, SQLException cause, RowImpactSummary summary) {
+        if (stmt != null) {
+            selectResultCache.onStatementExecuted(stmt.getSql());
+        } else {
+            selectResultCache.invalidateAll();
+        }
+        schemaMetadataCache.invalidate();
+        summary.reportProgress();
+
+        String where = "Statement";
+        if (stmt != null && stmt.getLine() > 0) where += " at line " + stmt.getLine();
+        if (stmt != null && stmt.getSourceStatements().size() > 1) {
+            where += " (INSERT coalesced from " + stmt.getSourceStatements().size() + " statements)";
+        }
+        return new SQLException(where + " failed: " + cause.getMessage(),
+                cause.getSQLState(), cause.getErrorCode(), cause);
+    }
+
+    // the single-statement path's counterpart: same message, translated like the batched path
+    private DataAccessException failed(RewrittenStatement stmt, DataAccessException cause, RowImpactSummary summary) {
+        SQLException sqlCause = cause.getCause() instanceof SQLException
+                ? (SQLException) cause.getCause()
+                : new SQLException(cause.getMessage(), cause);
+        DataAccessException translated = jdbcTemplate.getExceptionTranslator()
+                .translate("StatementCallback", null, failed(stmt, sqlCause, summary));
+        return translated != null ? translated : cause;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    enum StatementKind {
+        INSERT, UPDATE, DELETE, OTHER;
+
+        static StatementKind of(String stmt) {
+            String upper = stmt.toUpperCase(Locale.ROOT);
+            if (upper.startsWith("INSERT")) return INSERT;
+            if (upper.startsWith("UPDATE")) return UPDATE;
+            if (upper.startsWith("DELETE")) return DELETE;
+            return OTHER;
+        }
+    }
+
+    public interface ProgressListener {
+        ProgressListener NONE = (statementsDone, rowsAffected) -> { };
+
+        void onProgress(int statementsDone, long rowsAffected);
     }
 
     public static class RowImpactSummary {
         private int insertCount;
         private int updateCount;
         private int deleteCount;
+        private int batchCount;
+        private long elapsedNanos;
         private final List<String> executedStatements = new ArrayList<>();
+        private ProgressListener listener = ProgressListener.NONE;
+
+        private void reportProgress() {
+            listener.onProgress(executedStatements.size(), getRowsAffected());
+        }
+
+        private void record(StatementKind kind, int count) {
+            switch (kind) {
+                case INSERT:
+                    insertCount += count;
+                    break;
+                case UPDATE:
+                    updateCount += count;
+                    break;
+                case DELETE:
+                    deleteCount += count;
+                    break;
+                default:
+                    break;
+            }
+        }
 
         public int getInsertCount() { return insertCount; }
         public int getUpdateCount() { return updateCount; }
         public int getDeleteCount() { return deleteCount; }
+        public int getBatchCount() { return batchCount; }
+        public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
         public List<String> getExecutedStatements() { return executedStatements; }
+
+        public long getRowsAffected() {
+            return (long) insertCount + updateCount + deleteCount;
+        }
+
+        public double getRowsPerSecond() {
+            if (elapsedNanos <= 0) return 0;
+            return getRowsAffected() / (elapsedNanos / 1_000_000_000.0);
+        }
     }
 }
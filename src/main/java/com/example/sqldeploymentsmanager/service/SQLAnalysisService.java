@@ -1,16 +1,9 @@
 package com.example.sqldeploymentsmanager.service;
 
-import net.sf.jsqlparser.JSQLParserException;
-import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import com.example.sqldeploymentsmanager.service.BoundedStatementParser.Outcome;
+import com.example.sqldeploymentsmanager.service.ParsedScriptCache.ParsedScript;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.SchemaModel;
 import net.sf.jsqlparser.statement.Statement;
-import net.sf.jsqlparser.statement.select.Select;
-import net.sf.jsqlparser.statement.delete.Delete;
-import net.sf.jsqlparser.statement.update.Update;
-import net.sf.jsqlparser.statement.insert.Insert;
-import net.sf.jsqlparser.statement.alter.Alter;
-import net.sf.jsqlparser.statement.drop.Drop;
-import net.sf.jsqlparser.statement.truncate.Truncate;
-import net.sf.jsqlparser.statement.create.table.CreateTable;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -19,257 +12,106 @@ import java.util.List;
 @Service
 public class SQLAnalysisService {
 
+    private final ParsedScriptCache parsedScriptCache;
+    private final StatementWorkerPool workers;
+    private final AnalysisRuleEngine ruleEngine;
+    private final BoundedStatementParser parser;
+    private final SchemaMetadataCache schemaMetadataCache;
+
+    public SQLAnalysisService(ParsedScriptCache parsedScriptCache, StatementWorkerPool workers,
+                              AnalysisRuleEngine ruleEngine, BoundedStatementParser parser,
+                              SchemaMetadataCache schemaMetadataCache) {
+        this.parsedScriptCache = parsedScriptCache;
+        this.workers = workers;
+        this.ruleEngine = ruleEngine;
+        this.parser = parser;
+        this.schemaMetadataCache = schemaMetadataCache;
+    }
+
     public List<String> smartAnalyze(String sqlText) {
-        List<String> feedback = new ArrayList<>();
-        
         if (sqlText == null || sqlText.isBlank()) {
+            List<String> feedback = new ArrayList<>();
             feedback.add("⚠️ No SQL provided.");
             return feedback;
         }
 
-        String trimmedSQL = sqlText.trim();
-        String upperSQL = trimmedSQL.toUpperCase();
-
-        try {
-            // Parse SQL using JSQLParser
-            Statement statement = CCJSqlParserUtil.parse(trimmedSQL);
-            
-            // Analyze based on statement type
-            feedback.addAll(analyzeStatement(statement, upperSQL));
-            
-        } catch (JSQLParserException e) {
-            // If parsing fails, fall back to basic analysis
-            feedback.addAll(basicAnalysis(upperSQL));
-            feedback.add(0, "⚠️ Note: Using basic analysis (SQL syntax may have limitations).");
-        } catch (Exception e) {
-            feedback.add("🟥 Analysis Error: " + e.getMessage());
-            return feedback;
-        }
+        // Parsed once per distinct script; repeated views reuse the stored findings until
+        // the schema they were checked against changes
+        ParsedScript script = parsedScriptCache.get(sqlText);
+        SchemaModel schema = currentSchema();
+        String schemaTag = schema == null ? null : schema.getVersion() + "/" + schema.getLoadedAt();
+        List<String> findings = script.getResult("analysis", schemaTag, () -> analyze(script, schema));
+        return new ArrayList<>(findings);
+    }
 
-        // Add security checks
-        feedback.addAll(checkSecurityIssues(upperSQL));
-        
-        // Add performance suggestions
-        feedback.addAll(checkPerformanceIssues(upperSQL));
+    public ParsedScriptCache.CacheStats getScriptCacheStats() {
+        return parsedScriptCache.getStats();
+    }
 
-        // Add summary
-        if (feedback.isEmpty()) {
-            feedback.add("✅ SQL appears safe and efficient.");
-        } else {
-            feedback.add("✅ Analysis completed with " + feedback.size() + " observations.");
-        }
+    public List<AnalysisRuleEngine.RuleStats> getRuleStats() {
+        return ruleEngine.getRuleStats();
+    }
 
-        return feedback;
+    public BoundedStatementParser.ParserStats getParserStats() {
+        return parser.getStats();
     }
 
-    private List<String> analyzeStatement(Statement statement, String upperSQL) {
-        List<String> feedback = new ArrayList<>();
-        
-        if (statement instanceof Select) {
-            feedback.addAll(analyzeSelect((Select) statement, upperSQL));
-        } else if (statement instanceof Delete) {
-            feedback.addAll(analyzeDelete((Delete) statement, upperSQL));
-        } else if (statement instanceof Update) {
-            feedback.addAll(analyzeUpdate((Update) statement, upperSQL));
-        } else if (statement instanceof Insert) {
-            feedback.addAll(analyzeInsert((Insert) statement, upperSQL));
-        } else if (statement instanceof Alter) {
-            feedback.add("⚠️ Schema Change: ALTER statement detected.");
-            feedback.add("ℹ️ Best Practice: Test schema changes in development first.");
-        } else if (statement instanceof Drop) {
-            feedback.add("🟥 Dangerous: DROP statement detected — potential data loss.");
-            feedback.add("✅ Recommendation: Consider backup before execution.");
-        } else if (statement instanceof Truncate) {
-            feedback.add("🟥 Dangerous: TRUNCATE clears entire table contents.");
-            feedback.add("✅ Alternative: Use DELETE with WHERE for selective removal.");
-        } else if (statement instanceof CreateTable) {
-            feedback.add("ℹ️ Schema Creation: CREATE TABLE statement detected.");
-            feedback.add("✅ Recommendation: Consider adding indexes and constraints.");
+    private SchemaModel currentSchema() {
+        try {
+            return schemaMetadataCache.getModel();
+        } catch (Exception e) {
+            // analysis still works offline, just without schema-aware rules
+            return null;
         }
-        
-        return feedback;
     }
 
-    private List<String> analyzeSelect(Select select, String upperSQL) {
-        List<String> feedback = new ArrayList<>();
-        
-        feedback.add("🔍 SELECT statement analysis:");
-        
-        // Check for SELECT *
-        if (upperSQL.contains("SELECT *") && !upperSQL.contains("COUNT(*)")) {
-            feedback.add("   ⚠️ Performance: Avoid SELECT * — specify needed columns.");
-        }
-        
-        // Check for missing WHERE in potentially large operations
-        if (!upperSQL.contains(" WHERE ") && upperSQL.contains(" FROM ")) {
-            feedback.add("   ℹ️ Info: No WHERE clause - may return large result set.");
-        }
-        
-        // Check for ORDER BY without LIMIT
-        if (upperSQL.contains(" ORDER BY ") && !upperSQL.contains(" LIMIT ")) {
-            feedback.add("   ℹ️ Performance: Consider adding LIMIT to ORDER BY queries.");
-        }
-        
-        // Check for multiple JOINs
-        long joinCount = upperSQL.split(" JOIN ", -1).length - 1;
-        if (joinCount > 3) {
-            feedback.add("   ⚠️ Complexity: Multiple JOINs (" + joinCount + ") may impact performance.");
-        }
-        
-        // Check for subqueries
-        if (upperSQL.contains("(SELECT") || upperSQL.contains(" SELECT ")) {
-            long subqueryCount = upperSQL.split("\\(SELECT", -1).length - 1;
-            if (subqueryCount > 2) {
-                feedback.add("   ⚠️ Complexity: Multiple subqueries may impact performance.");
+    private List<String> analyze(ParsedScript script, SchemaModel schema) {
+        // A single statement keeps the plain, untagged report
+        if (script.size() == 1) {
+            List<String> feedback = analyzeStatement(script, 0, schema);
+            if (feedback.isEmpty()) {
+                feedback.add("✅ SQL appears safe and efficient.");
+            } else {
+                feedback.add("✅ Analysis completed with " + feedback.size() + " observations.");
             }
+            return feedback;
         }
-        
-        // Check for DISTINCT without need
-        if (upperSQL.contains(" DISTINCT ") && !upperSQL.contains(" GROUP BY ")) {
-            feedback.add("   ℹ️ Consider: DISTINCT can be expensive on large tables.");
-        }
-        
-        return feedback;
-    }
 
-    private List<String> analyzeDelete(Delete delete, String upperSQL) {
-        List<String> feedback = new ArrayList<>();
-        
-        feedback.add("🗑️ DELETE statement analysis:");
-        
-        // Check for missing WHERE clause
-        if (delete.getWhere() == null) {
-            feedback.add("   🟥 Critical: DELETE without WHERE will remove ALL rows from table.");
-        } else {
-            feedback.add("   ⚠️ Caution: DELETE operation - ensure proper backup.");
-        }
-        
-        // Check for LIMIT (good practice for safety)
-        if (!upperSQL.contains(" LIMIT ")) {
-            feedback.add("   ✅ Recommendation: Add LIMIT clause for safety during testing.");
-        }
-        
-        return feedback;
-    }
+        // Statements are independent, so analyze them across the pool and merge in order
+        List<List<String>> perStatement = workers.map(script.size(),
+                i -> analyzeStatement(script, i, schema));
 
-    private List<String> analyzeUpdate(Update update, String upperSQL) {
         List<String> feedback = new ArrayList<>();
-        
-        feedback.add("✏️ UPDATE statement analysis:");
-        
-        // Check for missing WHERE clause
-        if (update.getWhere() == null) {
-            feedback.add("   🟥 Critical: UPDATE without WHERE will modify ALL rows in table.");
-        } else {
-            feedback.add("   ⚠️ Caution: UPDATE operation - verify WHERE clause accuracy.");
-        }
-        
-        // Check if updating primary key or unique columns
-        if (upperSQL.contains(" ID = ") || upperSQL.contains("_ID = ") || 
-            upperSQL.contains(" PRIMARY") || upperSQL.contains(" UNIQUE")) {
-            feedback.add("   ⚠️ Warning: Updating identifier columns may break relationships.");
-        }
-        
-        // Check for LIMIT
-        if (!upperSQL.contains(" LIMIT ")) {
-            feedback.add("   ✅ Recommendation: Add LIMIT clause for safety during testing.");
-        }
-        
-        return feedback;
-    }
+        int observations = 0;
+        for (int i = 0; i < perStatement.size(); i++) {
+            List<String> findings = perStatement.get(i);
+            if (findings.isEmpty()) continue;
 
-    private List<String> analyzeInsert(Insert insert, String upperSQL) {
-        List<String> feedback = new ArrayList<>();
-        
-        feedback.add("📥 INSERT statement analysis:");
-        
-        // Check for explicit column list
-        if (insert.getColumns() == null || insert.getColumns().isEmpty()) {
-            feedback.add("   ⚠️ Best Practice: Specify column names in INSERT statements.");
-        }
-        
-        // Check for bulk inserts
-        if (upperSQL.contains("VALUES (") && upperSQL.split("VALUES \\(").length > 2) {
-            feedback.add("   ℹ️ Info: Multiple value sets detected - consider batch size limits.");
-        }
-        
-        // Check for INSERT without column list
-        if (upperSQL.contains("INSERT INTO") && !upperSQL.contains("(") && upperSQL.contains("VALUES")) {
-            feedback.add("   ⚠️ Risk: Implicit column mapping - specify columns explicitly.");
+            feedback.add("📄 Statement " + (i + 1) + " (line " + script.getLine(i) + "):");
+            feedback.addAll(findings);
+            observations += findings.size();
         }
-        
-        return feedback;
-    }
 
-    private List<String> basicAnalysis(String upperSQL) {
-        List<String> feedback = new ArrayList<>();
-        
-        // Fallback analysis when parsing fails
-        feedback.add("🔍 Basic statement analysis:");
-        
-        // Safety checks
-        if (upperSQL.contains("DROP")) {
-            feedback.add("   🟥 Dangerous: DROP statement detected.");
-        }
-        if (upperSQL.contains("TRUNCATE")) {
-            feedback.add("   🟥 Dangerous: TRUNCATE statement detected.");
-        }
-        if (upperSQL.contains("DELETE") && !upperSQL.contains("WHERE")) {
-            feedback.add("   ⚠️ Risk: DELETE without WHERE clause.");
-        }
-        if (upperSQL.contains("UPDATE") && !upperSQL.contains("WHERE")) {
-            feedback.add("   ⚠️ Risk: UPDATE without WHERE clause.");
+        if (observations == 0) {
+            feedback.add("✅ SQL appears safe and efficient.");
+        } else {
+            feedback.add("✅ Analysis completed with " + observations + " observations across "
+                    + script.size() + " statements.");
         }
-        
         return feedback;
     }
 
-    private List<String> checkSecurityIssues(String upperSQL) {
-        List<String> feedback = new ArrayList<>();
-        
-        // SQL Injection patterns
-        if (upperSQL.contains(" OR 1=1") || upperSQL.contains("' OR '") || 
-            upperSQL.contains("' OR '1'='1") || upperSQL.contains(" UNION ") ||
-            upperSQL.contains("; DROP") || upperSQL.contains(" EXEC ") ||
-            upperSQL.contains(" EXECUTE ") || upperSQL.contains(" XP_")) {
-            feedback.add("🛡️ Security: Possible SQL injection pattern detected.");
-        }
-        
-        // Dynamic SQL
-        if (upperSQL.contains("EXEC(") || upperSQL.contains("EXECUTE(") || 
-            upperSQL.contains("SP_") || upperSQL.contains("XP_")) {
-            feedback.add("⚠️ Security: Dynamic SQL execution detected.");
-        }
-        
-        return feedback;
-    }
+    private List<String> analyzeStatement(ParsedScript script, int i, SchemaModel schema) {
+        List<String> findings = ruleEngine.analyze(script.getParsed(i), script.getStatement(i), schema);
 
-    private List<String> checkPerformanceIssues(String upperSQL) {
-        List<String> feedback = new ArrayList<>();
-        
-        // LIKE with leading wildcard
-        if (upperSQL.contains(" LIKE '%") || upperSQL.contains(" LIKE \"%")) {
-            feedback.add("🐌 Performance: Leading wildcard in LIKE prevents index usage.");
-        }
-        
-        // Functions on indexed columns
-        if (upperSQL.matches(".*WHERE\\s+[A-Z]+\\s*\\([^)]+\\)\\s*[=<>].*")) {
-            feedback.add("🐌 Performance: Functions in WHERE clause may prevent index usage.");
+        // Statements the parser gave up on only get the lexical checks; say why
+        Outcome outcome = script.getOutcome(i);
+        if (outcome == Outcome.TIMED_OUT) {
+            findings.add(0, "⏱️ Parsing timed out after " + parser.getTimeoutMillis()
+                    + " ms — falling back to lexical analysis.");
+        } else if (outcome == Outcome.SKIPPED) {
+            findings.add(0, "⏱️ Parser busy or paused after repeated timeouts — falling back to lexical analysis.");
         }
-        
-        // Implicit type conversion
-        if (upperSQL.matches(".*WHERE\\s+[a-zA-Z_]+\\s*=\\s*'[0-9]+'.*") ||
-            upperSQL.matches(".*WHERE\\s+[a-zA-Z_]+\\s*=\\s*[0-9]+\\..*")) {
-            feedback.add("ℹ️ Performance: Possible implicit type conversion in WHERE clause.");
-        }
-        
-        // Missing indexes suggestion
-        if ((upperSQL.contains(" WHERE ") || upperSQL.contains(" JOIN ")) && 
-            !upperSQL.contains("INDEX") && !upperSQL.contains("PRIMARY") && 
-            !upperSQL.contains("UNIQUE")) {
-            feedback.add("💡 Optimization: Consider indexing columns used in WHERE/JOIN clauses.");
-        }
-        
-        return feedback;
+        return findings;
     }
-}
\ No newline at end of file
+}
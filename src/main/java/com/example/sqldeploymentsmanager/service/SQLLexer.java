@@ -0,0 +1,187 @@
+package com.example.sqldeploymentsmanager.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lexer for a single SQL statement: produces words, quoted names, string literals and
+ * punctuation, skipping whitespace and comments, and stops at the first top-level ';'.
+ * Keeps track of parenthesis depth as tokens are consumed. Tokens point into the source
+ * string, so nothing is copied unless {@link Token#text()} is asked for.
+ */
+public final class SQLLexer {
+
+    public enum TokenType {
+        END, WORD, QUOTED_NAME, STRING, PUNCT
+    }
+
+    private final String s;
+    private final int length;
+    private int pos;
+    private int depth;
+    private Token peeked;
+
+    public SQLLexer(String s) {
+        this.s = s;
+        this.length = s.length();
+    }
+
+    /** All tokens of the statement, without the trailing END. */
+    public static List<Token> tokenize(String sql) {
+        List<Token> tokens = new ArrayList<>();
+        SQLLexer lex = new SQLLexer(sql);
+        for (Token t = lex.next(); t.type != TokenType.END; t = lex.next()) {
+            tokens.add(t);
+        }
+        return tokens;
+    }
+
+    public Token peek() {
+        if (peeked == null) peeked = read();
+        return peeked;
+    }
+
+    public Token next() {
+        Token t = peek();
+        peeked = null;
+        if (t.isPunct('(')) {
+            depth++;
+        } else if (t.isPunct(')') && depth > 0) {
+            depth--;
+        }
+        return t;
+    }
+
+    /** Parenthesis depth after the last token returned by {@link #next()}. */
+    public int getDepth() {
+        return depth;
+    }
+
+    private Token read() {
+        skipWhitespaceAndComments();
+        if (pos >= length) return Token.EOF;
+
+        int start = pos;
+        char c = s.charAt(pos);
+        if (c == ';' && depth == 0) {
+            pos = length;
+            return Token.EOF;
+        }
+        if (c == '`' || c == '"') {
+            pos = skipQuoted(pos, c);
+            return new Token(TokenType.QUOTED_NAME, s, start, pos);
+        }
+        if (c == '\'') {
+            pos = skipQuoted(pos, c);
+            return new Token(TokenType.STRING, s, start, pos);
+        }
+        if (isWordChar(c)) {
+            while (pos < length && isWordChar(s.charAt(pos))) pos++;
+            return new Token(TokenType.WORD, s, start, pos);
+        }
+        pos++;
+        return new Token(TokenType.PUNCT, s, start, pos);
+    }
+
+    private void skipWhitespaceAndComments() {
+        while (pos < length) {
+            char c = s.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (c == '#' || (c == '-' && startsLineComment())) {
+                while (pos < length && s.charAt(pos) != '\n') pos++;
+            } else if (c == '/' && pos + 1 < length && s.charAt(pos + 1) == '*') {
+                int close = s.indexOf("*/", pos + 2);
+                pos = close < 0 ? length : close + 2;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // MySQL needs whitespace (or end of input) after "--" for it to start a comment
+    private boolean startsLineComment() {
+        if (pos + 1 >= length || s.charAt(pos + 1) != '-') return false;
+        return pos + 2 >= length || Character.isWhitespace(s.charAt(pos + 2));
+    }
+
+    // Returns the index just past the closing quote (or the end of input)
+    private int skipQuoted(int from, char quote) {
+        int i = from + 1;
+        while (i < length) {
+            char c = s.charAt(i);
+            if (c == '\\' && quote != '`' && i + 1 < length) {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < length && s.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '@';
+    }
+
+    public static final class Token {
+        static final Token EOF = new Token(TokenType.END, "", 0, 0);
+
+        private final TokenType type;
+        private final String source;
+        private final int start;
+        private final int end;
+
+        Token(TokenType type, String source, int start, int end) {
+            this.type = type;
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        public TokenType getType() { return type; }
+
+        /** Case-insensitive keyword match on an unquoted word. */
+        public boolean is(String keyword) {
+            return type == TokenType.WORD && end - start == keyword.length()
+                    && source.regionMatches(true, start, keyword, 0, keyword.length());
+        }
+
+        public boolean isPunct(char c) {
+            return type == TokenType.PUNCT && source.charAt(start) == c;
+        }
+
+        /** The token text; quoted names and strings lose their quotes and doubled-quote escapes. */
+        public String text() {
+            if (type == TokenType.QUOTED_NAME || type == TokenType.STRING) {
+                char q = source.charAt(start);
+                String inner = source.substring(start + 1, Math.max(start + 1, end - 1));
+                return inner.replace(String.valueOf(q) + q, String.valueOf(q));
+            }
+            return source.substring(start, end);
+        }
+
+        /** True for a word made only of the characters accepted by {@code test}. */
+        public boolean isWordOf(CharTest test) {
+            if (type != TokenType.WORD) return false;
+            for (int i = start; i < end; i++) {
+                if (!test.test(source.charAt(i))) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return source.substring(start, end);
+        }
+    }
+
+    public interface CharTest {
+        boolean test(char c);
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.sqldeploymentsmanager.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Incremental MySQL script splitter. Reads from a {@link Reader} and hands out one
+ * statement at a time, so only the statement currently being assembled is held in memory.
+ *
+ * Understands single/double/backtick quoting (with backslash and doubled-quote escapes),
+ * "-- ", "#" and block comments, and the client-side DELIMITER command. Plain comments are
+ * dropped from the returned text; executable comments and optimizer hints are kept.
+ */
+public class SQLScriptTokenizer implements Iterator<String>, Closeable {
+
+    private static final String DEFAULT_DELIMITER = ";";
+    private static final String DELIMITER_COMMAND = "DELIMITER";
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private String delimiter = DEFAULT_DELIMITER;
+    private final StringBuilder current = new StringBuilder(256);
+
+    private int line = 1;
+    private int statementLine;
+    private int lastStatementLine;
+
+    private String next;
+
+    public SQLScriptTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    public SQLScriptTokenizer(InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    public static List<String> split(String sqlScript) {
+        List<String> statements = new ArrayList<>();
+        if (sqlScript == null) return statements;
+
+        SQLScriptTokenizer tokenizer = new SQLScriptTokenizer(new StringReader(sqlScript));
+        while (tokenizer.hasNext()) {
+            statements.add(tokenizer.next());
+        }
+        return statements;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readStatement();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        String statement = next;
+        next = null;
+        return statement;
+    }
+
+    /**
+     * 1-based line on which the statement most recently returned by {@link #next()} starts.
+     */
+    public int getStatementLine() {
+        return lastStatementLine;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String readStatement() throws IOException {
+        current.setLength(0);
+        statementLine = 0;
+        boolean commandCandidate = true;
+
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                return emit();
+            }
+
+            char ch = (char) c;
+
+            if (statementLine == 0) {
+                if (Character.isWhitespace(ch)) continue;
+                statementLine = line;
+            }
+
+            // DELIMITER is a client command that owns the rest of its line
+            if (commandCandidate) {
+                int len = current.length();
+                if (len < DELIMITER_COMMAND.length()) {
+                    if (Character.toUpperCase(ch) != DELIMITER_COMMAND.charAt(len)) {
+                        commandCandidate = false;
+                    }
+                } else {
+                    commandCandidate = false;
+                    if (ch == ' ' || ch == '\t') {
+                        readDelimiterCommand();
+                        current.setLength(0);
+                        statementLine = 0;
+                        commandCandidate = true;
+                        continue;
+                    }
+                }
+            }
+
+            switch (ch) {
+                case '\'':
+                case '"':
+                case '`':
+                    current.append(ch);
+                    readQuoted(ch);
+                    break;
+                case '#':
+                    skipLineComment();
+                    break;
+                case '-':
+                    if (peek(0) == '-' && isCommentBoundary(peek(1))) {
+                        skipLineComment();
+                    } else {
+                        current.append(ch);
+                    }
+                    break;
+                case '/':
+                    if (peek(0) == '*') {
+                        read();
+                        readBlockComment();
+                    } else {
+                        current.append(ch);
+                    }
+                    break;
+                default:
+                    current.append(ch);
+            }
+
+            // a leading comment was dropped, so DELIMITER may still follow
+            if (current.length() == 0) {
+                commandCandidate = true;
+                continue;
+            }
+
+            if (endsWithDelimiter()) {
+                current.setLength(current.length() - delimiter.length());
+                String statement = emit();
+                if (statement != null) return statement;
+                statementLine = 0;
+                commandCandidate = true;
+            }
+        }
+    }
+
+    private String emit() {
+        String statement = current.toString().trim();
+        current.setLength(0);
+        if (statement.isEmpty()) return null;
+        lastStatementLine = statementLine;
+        return statement;
+    }
+
+    private boolean endsWithDelimiter() {
+        int dl = delimiter.length();
+        int len = current.length();
+        if (len < dl) return false;
+        if (dl == 1) return current.charAt(len - 1) == delimiter.charAt(0);
+        for (int i = 0; i < dl; i++) {
+            if (current.charAt(len - dl + i) != delimiter.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private void readDelimiterCommand() throws IOException {
+        StringBuilder value = new StringBuilder();
+        int c;
+        while ((c = read()) >= 0 && c != '\n') {
+            value.append((char) c);
+        }
+        String newDelimiter = value.toString().trim();
+        int space = indexOfWhitespace(newDelimiter);
+        if (space > 0) newDelimiter = newDelimiter.substring(0, space);
+        if (!newDelimiter.isEmpty()) {
+            delimiter = newDelimiter;
+        }
+    }
+
+    private void readQuoted(char quote) throws IOException {
+        int c;
+        while ((c = read()) >= 0) {
+            char ch = (char) c;
+            current.append(ch);
+            if (ch == '\\' && quote != '`') {
+                int escaped = read();
+                if (escaped >= 0) current.append((char) escaped);
+            } else if (ch == quote) {
+                if (peek(0) == quote) {
+                    current.append((char) read());
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void skipLineComment() throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != '\n') {
+            // discard
+        }
+        current.append('\n');
+        if (current.length() == 1) {
+            current.setLength(0);
+            statementLine = 0;
+        }
+    }
+
+    private void readBlockComment() throws IOException {
+        // "/*!50003 ... */" and "/*+ hint */" are meaningful to MySQL, keep them verbatim
+        int first = peek(0);
+        boolean keep = first == '!' || first == '+';
+        if (keep) current.append("/*");
+
+        int prev = -1;
+        int c;
+        while ((c = read()) >= 0) {
+            if (keep) current.append((char) c);
+            if (prev == '*' && c == '/') break;
+            prev = c;
+        }
+
+        if (!keep) {
+            if (current.length() == 0) {
+                statementLine = 0;
+            } else {
+                current.append(' ');
+            }
+        }
+    }
+
+    private static boolean isCommentBoundary(int c) {
+        return c < 0 || c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static int indexOfWhitespace(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isWhitespace(s.charAt(i))) return i;
+        }
+        return -1;
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit && !fill(1)) return -1;
+        char ch = buffer[pos++];
+        if (ch == '\n') line++;
+        return ch;
+    }
+
+    private int peek(int offset) throws IOException {
+        if (pos + offset >= limit && !fill(offset + 1)) return -1;
+        return buffer[pos + offset];
+    }
+
+    private boolean fill(int needed) throws IOException {
+        if (eof) return limit - pos >= needed;
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        while (limit < needed) {
+            int n = reader.read(buffer, limit, buffer.length - limit);
+            if (n < 0) {
+                eof = true;
+                break;
+            }
+            limit += n;
+        }
+        return limit - pos >= needed;
+    }
+}
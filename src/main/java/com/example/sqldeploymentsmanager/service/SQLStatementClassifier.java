@@ -0,0 +1,246 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SQLLexer.Token;
+import com.example.sqldeploymentsmanager.service.SQLLexer.TokenType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Works out what a single SQL statement does (its kind and target table) in one
+ * left-to-right scan. Quotes and comments are skipped by the lexer, so keywords inside
+ * string literals or comments never match, and a statement is never rescanned the way
+ * chained regexes over the whole text would. Only the first statement of the input is
+ * looked at; split scripts with {@link SQLScriptTokenizer} first.
+ */
+public final class SQLStatementClassifier {
+
+    public enum Kind {
+        CREATE_TABLE, ALTER_TABLE, DROP_TABLE, INSERT, UPDATE, DELETE, SELECT, OTHER
+    }
+
+    // Words that can follow ALTER TABLE ... ADD without introducing a column
+    private static final String[] ADD_NON_COLUMN = {
+            "CONSTRAINT", "PRIMARY", "UNIQUE", "FOREIGN", "INDEX", "KEY", "FULLTEXT",
+            "SPATIAL", "CHECK", "PARTITION"
+    };
+
+    private SQLStatementClassifier() {
+    }
+
+    public static Classification classify(String sql) {
+        Classification result = new Classification();
+        if (sql == null) return result;
+
+        SQLLexer lex = new SQLLexer(sql);
+        Token first = lex.next();
+        if (first.getType() != TokenType.WORD) return result;
+        result.leadingKeyword = first.text().toUpperCase(Locale.ROOT);
+
+        Token keyword = first;
+        if (keyword.is("WITH")) {
+            keyword = skipCommonTableExpressions(lex);
+            if (keyword == null) return result;
+        }
+
+        if (keyword.is("CREATE")) {
+            // CREATE [TEMPORARY] TABLE [IF NOT EXISTS] name
+            Token t = lex.next();
+            if (t.is("TEMPORARY")) t = lex.next();
+            if (t.is("TABLE")) {
+                result.kind = Kind.CREATE_TABLE;
+                result.table = readTableAfterIfClause(lex);
+            }
+        } else if (keyword.is("ALTER")) {
+            Token t = lex.next();
+            if (t.is("ONLINE") || t.is("IGNORE")) t = lex.next();
+            if (t.is("TABLE")) {
+                result.kind = Kind.ALTER_TABLE;
+                result.table = readName(lex);
+                collectAddedColumns(lex, result.addedColumns);
+            }
+        } else if (keyword.is("DROP")) {
+            Token t = lex.next();
+            if (t.is("TEMPORARY")) t = lex.next();
+            if (t.is("TABLE")) {
+                result.kind = Kind.DROP_TABLE;
+                result.table = readTableAfterIfClause(lex);
+            }
+        } else if (keyword.is("INSERT") || keyword.is("REPLACE")) {
+            // INSERT [LOW_PRIORITY | DELAYED | HIGH_PRIORITY] [IGNORE] [INTO] name
+            result.kind = Kind.INSERT;
+            Token t = lex.peek();
+            while (t.is("LOW_PRIORITY") || t.is("DELAYED") || t.is("HIGH_PRIORITY") || t.is("IGNORE")) {
+                lex.next();
+                t = lex.peek();
+            }
+            if (t.is("INTO")) lex.next();
+            result.table = readName(lex);
+        } else if (keyword.is("UPDATE")) {
+            result.kind = Kind.UPDATE;
+            skipModifiers(lex, "LOW_PRIORITY", "IGNORE");
+            result.table = readName(lex);
+            result.hasWhere = scanForWhere(lex);
+        } else if (keyword.is("DELETE")) {
+            // DELETE [LOW_PRIORITY] [QUICK] [IGNORE] FROM name
+            result.kind = Kind.DELETE;
+            skipModifiers(lex, "LOW_PRIORITY", "QUICK", "IGNORE");
+            if (lex.peek().is("FROM")) lex.next();
+            result.table = readName(lex);
+            result.hasWhere = scanForWhere(lex);
+        } else if (keyword.is("SELECT")) {
+            result.kind = Kind.SELECT;
+            result.table = scanForFromTable(lex);
+        }
+        return result;
+    }
+
+    /** True when the statement's first word is one of the given keywords (case-insensitive). */
+    public static boolean startsWithKeyword(String sql, String... keywords) {
+        if (sql == null) return false;
+        Token first = new SQLLexer(sql).next();
+        if (first.getType() != TokenType.WORD) return false;
+        for (String k : keywords) {
+            if (first.is(k)) return true;
+        }
+        return false;
+    }
+
+    // First 80 characters with runs of whitespace collapsed, for one-line messages
+    public static String summarize(String stmt) {
+        StringBuilder sb = new StringBuilder(80);
+        boolean space = false;
+        for (int i = 0; i < stmt.length(); i++) {
+            char ch = stmt.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) sb.append(' ');
+            space = false;
+            if (sb.length() >= 77) {
+                return sb.append("...").toString();
+            }
+            sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    // WITH [RECURSIVE] name [(cols)] AS (...), ... <statement>: returns the main statement's keyword
+    private static Token skipCommonTableExpressions(SQLLexer lex) {
+        for (Token t = lex.next(); t.getType() != TokenType.END; t = lex.next()) {
+            if (lex.getDepth() == 0 && (t.is("SELECT") || t.is("UPDATE") || t.is("DELETE") || t.is("INSERT"))) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    private static String readTableAfterIfClause(SQLLexer lex) {
+        if (lex.peek().is("IF")) {
+            lex.next();
+            if (lex.peek().is("NOT")) lex.next();
+            if (lex.peek().is("EXISTS")) lex.next();
+        }
+        return readName(lex);
+    }
+
+    private static void skipModifiers(SQLLexer lex, String... modifiers) {
+        boolean skipped = true;
+        while (skipped) {
+            skipped = false;
+            Token t = lex.peek();
+            for (String m : modifiers) {
+                if (t.is(m)) {
+                    lex.next();
+                    skipped = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    // [schema.]name, each part optionally quoted; null when the next token isn't a name
+    private static String readName(SQLLexer lex) {
+        Token t = lex.peek();
+        if (t.getType() != TokenType.WORD && t.getType() != TokenType.QUOTED_NAME) return null;
+        lex.next();
+
+        StringBuilder name = new StringBuilder(t.text());
+        while (lex.peek().isPunct('.')) {
+            lex.next();
+            Token part = lex.peek();
+            if (part.getType() != TokenType.WORD && part.getType() != TokenType.QUOTED_NAME) break;
+            lex.next();
+            name.append('.').append(part.text());
+        }
+        return name.toString();
+    }
+
+    private static boolean scanForWhere(SQLLexer lex) {
+        for (Token t = lex.next(); t.getType() != TokenType.END; t = lex.next()) {
+            if (lex.getDepth() == 0 && t.is("WHERE")) return true;
+        }
+        return false;
+    }
+
+    private static String scanForFromTable(SQLLexer lex) {
+        for (Token t = lex.next(); t.getType() != TokenType.END; t = lex.next()) {
+            if (lex.getDepth() == 0 && t.is("FROM")) return readName(lex);
+        }
+        return null;
+    }
+
+    private static void collectAddedColumns(SQLLexer lex, List<String> columns) {
+        for (Token t = lex.next(); t.getType() != TokenType.END; t = lex.next()) {
+            if (lex.getDepth() != 0 || !t.is("ADD")) continue;
+
+            Token next = lex.peek();
+            if (next.is("COLUMN")) {
+                lex.next();
+                next = lex.peek();
+            }
+            if (next.is("IF")) {
+                // MariaDB: ADD COLUMN IF NOT EXISTS name
+                lex.next();
+                if (lex.peek().is("NOT")) lex.next();
+                if (lex.peek().is("EXISTS")) lex.next();
+                next = lex.peek();
+            }
+            if (next.getType() == TokenType.QUOTED_NAME
+                    || (next.getType() == TokenType.WORD && !isAny(next, ADD_NON_COLUMN))) {
+                lex.next();
+                columns.add(next.text());
+            }
+        }
+    }
+
+    private static boolean isAny(Token t, String[] words) {
+        for (String w : words) {
+            if (t.is(w)) return true;
+        }
+        return false;
+    }
+
+    public static class Classification {
+        private Kind kind = Kind.OTHER;
+        private String table;
+        private String leadingKeyword;
+        private boolean hasWhere;
+        private final List<String> addedColumns = new ArrayList<>();
+
+        public Kind getKind() { return kind; }
+        /** Target table as written (quotes removed), or null if none was found. */
+        public String getTable() { return table; }
+        /** First keyword of the statement, upper-cased, or null if it doesn't start with one. */
+        public String getLeadingKeyword() { return leadingKeyword; }
+        /** Whether an UPDATE or DELETE has a top-level WHERE clause. */
+        public boolean hasWhere() { return hasWhere; }
+        /** Columns introduced by ADD [COLUMN] clauses of an ALTER TABLE. */
+        public List<String> getAddedColumns() { return Collections.unmodifiableList(addedColumns); }
+
+        public boolean isQuery() { return kind == Kind.SELECT; }
+    }
+}
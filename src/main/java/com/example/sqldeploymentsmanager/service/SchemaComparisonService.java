@@ -1,101 +1,108 @@
 package com.example.sqldeploymentsmanager.service;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.example.sqldeploymentsmanager.service.SQLStatementClassifier.Classification;
+import com.example.sqldeploymentsmanager.service.SQLStatementClassifier.Kind;
+import com.example.sqldeploymentsmanager.service.ParsedScriptCache.ParsedScript;
+import net.sf.jsqlparser.statement.Statement;
 import org.springframework.stereotype.Service;
-import java.sql.*;
+
 import java.util.*;
 
 @Service
 public class SchemaComparisonService {
 
-    @Value("${spring.datasource.url}")
-    private String dbUrl;
-
-    @Value("${spring.datasource.username}")
-    private String dbUser;
+    private final SchemaMetadataCache schemaMetadataCache;
+    private final ParsedScriptCache parsedScriptCache;
 
-    @Value("${spring.datasource.password}")
-    private String dbPassword;
+    public SchemaComparisonService(SchemaMetadataCache schemaMetadataCache, ParsedScriptCache parsedScriptCache) {
+        this.schemaMetadataCache = schemaMetadataCache;
+        this.parsedScriptCache = parsedScriptCache;
+    }
 
     public List<String> compareWithDatabase(String sqlText) {
         List<String> results = new ArrayList<>();
 
-        String normalized = sqlText.toUpperCase(Locale.ROOT)
-                .replaceAll("--.*?\\n", "")
-                .replaceAll("/\\*.*?\\*/", "")
-                .replaceAll("\\s+", " ")
-                .trim();
-
-        String[] statements = normalized.split(";");
+        try {
+            ParsedScript script = parsedScriptCache.get(sqlText);
 
-        try (Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
-            DatabaseMetaData metaData = conn.getMetaData();
+            // One metadata load; each statement is then checked against the state the
+            // earlier statements in the script leave behind
+            SchemaSimulator metaData = new SchemaSimulator(schemaMetadataCache.getModel());
 
-            for (String stmt : statements) {
-                stmt = stmt.trim();
-                if (stmt.isEmpty()) continue;
+            for (int i = 0; i < script.size(); i++) {
+                String stmt = script.getStatement(i);
+                Classification c = SQLStatementClassifier.classify(stmt);
+                String tableName = c.getTable();
 
-                if (stmt.matches(".*CREATE\\s+TABLE.*")) {
-                    String tableName = extractTableName(stmt, "CREATE TABLE");
-                    if (tableExists(metaData, tableName)) {
-                        results.add("⚠️ Table `" + tableName + "` already exists.");
-                    } else {
-                        results.add("✅ Table `" + tableName + "` will be created.");
-                    }
-                } else if (stmt.matches(".*ALTER\\s+TABLE.*")) {
-                    String tableName = extractTableName(stmt, "ALTER TABLE");
-                    if (tableExists(metaData, tableName)) {
-                        results.add("✅ Table `" + tableName + "` exists — checking columns...");
-                        results.addAll(analyzeColumnDifferences(metaData, tableName, stmt));
-                    } else {
-                        results.add("⚠️ ALTER TABLE failed — table `" + tableName + "` not found.");
-                    }
-                } else if (stmt.matches(".*INSERT\\s+INTO.*")) {
-                    String tableName = extractTableName(stmt, "INSERT INTO");
-                    if (tableExists(metaData, tableName)) {
-                        results.add("✅ Data will be inserted into existing table `" + tableName + "`.");
-                    } else {
-                        results.add("⚠️ INSERT failed — table `" + tableName + "` not found.");
-                    }
-                } else if (stmt.matches(".*DROP\\s+TABLE.*")) {
-                    String tableName = extractTableName(stmt, "DROP TABLE");
-                    if (tableExists(metaData, tableName)) {
-                        results.add("🟥 Table `" + tableName + "` exists — this will drop it.");
-                    } else {
-                        results.add("ℹ️ Table `" + tableName + "` does not exist — DROP ignored.");
-                    }
-                } else if (stmt.matches(".*SELECT\\s+.*FROM.*")) {
-                    String tableName = extractTableName(stmt, "FROM");
-                    if (tableExists(metaData, tableName)) {
-                        results.add("ℹ️ SELECT will read data from table `" + tableName + "`.");
-                    } else {
-                        results.add("⚠️ SELECT references table `" + tableName + "` that doesn’t exist.");
-                    }
-                } else if (stmt.matches(".*UPDATE\\s+.*SET.*")) {
-                    String tableName = extractTableName(stmt, "UPDATE");
-                    if (tableExists(metaData, tableName)) {
-                        if (stmt.contains("WHERE")) {
-                            results.add("🟡 UPDATE will modify matching records in `" + tableName + "`.");
-                        } else {
-                            results.add("⚠️ UPDATE in `" + tableName + "` has no WHERE — all rows would be affected.");
-                        }
-                    } else {
-                        results.add("⚠️ UPDATE failed — table `" + tableName + "` not found.");
-                    }
-                } else if (stmt.matches(".*DELETE\\s+FROM.*")) {
-                    String tableName = extractTableName(stmt, "DELETE FROM");
-                    if (tableExists(metaData, tableName)) {
-                        if (stmt.contains("WHERE")) {
-                            results.add("🟠 DELETE will remove matching rows from `" + tableName + "`.");
-                        } else {
-                            results.add("⚠️ DELETE without WHERE — all rows in `" + tableName + "` will be deleted.");
-                        }
-                    } else {
-                        results.add("⚠️ DELETE failed — table `" + tableName + "` not found.");
-                    }
+                if (tableName == null) {
+                    results.add("ℹ️ No schema-level operation detected in: " + SQLStatementClassifier.summarize(stmt));
                 } else {
-                    results.add("ℹ️ No schema-level operation detected in: " + summarize(stmt));
+                    switch (c.getKind()) {
+                        case CREATE_TABLE:
+                            if (tableExists(metaData, tableName)) {
+                                results.add("⚠️ Table `" + tableName + "` already exists.");
+                            } else {
+                                results.add("✅ Table `" + tableName + "` will be created.");
+                            }
+                            break;
+                        case ALTER_TABLE:
+                            if (tableExists(metaData, tableName)) {
+                                results.add("✅ Table `" + tableName + "` exists — checking columns...");
+                                results.addAll(analyzeColumnDifferences(metaData, tableName, c));
+                            } else {
+                                results.add("⚠️ ALTER TABLE failed — table `" + tableName + "` not found.");
+                            }
+                            break;
+                        case INSERT:
+                            if (tableExists(metaData, tableName)) {
+                                results.add("✅ Data will be inserted into existing table `" + tableName + "`.");
+                            } else {
+                                results.add("⚠️ INSERT failed — table `" + tableName + "` not found.");
+                            }
+                            break;
+                        case DROP_TABLE:
+                            if (tableExists(metaData, tableName)) {
+                                results.add("🟥 Table `" + tableName + "` exists — this will drop it.");
+                            } else {
+                                results.add("ℹ️ Table `" + tableName + "` does not exist — DROP ignored.");
+                            }
+                            break;
+                        case SELECT:
+                            if (tableExists(metaData, tableName)) {
+                                results.add("ℹ️ SELECT will read data from table `" + tableName + "`.");
+                            } else {
+                                results.add("⚠️ SELECT references table `" + tableName + "` that doesn’t exist.");
+                            }
+                            break;
+                        case UPDATE:
+                            if (tableExists(metaData, tableName)) {
+                                if (c.hasWhere()) {
+                                    results.add("🟡 UPDATE will modify matching records in `" + tableName + "`.");
+                                } else {
+                                    results.add("⚠️ UPDATE in `" + tableName + "` has no WHERE — all rows would be affected.");
+                                }
+                            } else {
+                                results.add("⚠️ UPDATE failed — table `" + tableName + "` not found.");
+                            }
+                            break;
+                        case DELETE:
+                            if (tableExists(metaData, tableName)) {
+                                if (c.hasWhere()) {
+                                    results.add("🟠 DELETE will remove matching rows from `" + tableName + "`.");
+                                } else {
+                                    results.add("⚠️ DELETE without WHERE — all rows in `" + tableName + "` will be deleted.");
+                                }
+                            } else {
+                                results.add("⚠️ DELETE failed — table `" + tableName + "` not found.");
+                            }
+                            break;
+                        default:
+                            results.add("ℹ️ No schema-level operation detected in: " + SQLStatementClassifier.summarize(stmt));
+                            break;
+                    }
                 }
+
+                simulate(metaData, script.getParsed(i), c);
             }
 
         } catch (Exception e) {
@@ -105,46 +112,35 @@ public class SchemaComparisonService {
         return results;
     }
 
-    private boolean tableExists(DatabaseMetaData metaData, String tableName) throws SQLException {
-        try (ResultSet rs = metaData.getTables(null, null, tableName, new String[]{"TABLE"})) {
-            return rs.next();
+    public SchemaMetadataCache.CacheStats getSchemaCacheStats() {
+        return schemaMetadataCache.getStats();
+    }
+
+    private void simulate(SchemaSimulator metaData, Statement parsed, Classification c) {
+        // statements JSqlParser couldn't handle fall back to the lexical classification
+        if (parsed != null) {
+            metaData.apply(parsed);
+        } else if (c.getKind() == Kind.CREATE_TABLE) {
+            metaData.createTable(c.getTable());
+        } else if (c.getKind() == Kind.DROP_TABLE) {
+            metaData.dropTable(c.getTable());
         }
     }
 
-    private List<String> analyzeColumnDifferences(DatabaseMetaData metaData, String tableName, String sql) throws SQLException {
+    private boolean tableExists(SchemaSimulator metaData, String tableName) {
+        return metaData.hasTable(tableName);
+    }
+
+    private List<String> analyzeColumnDifferences(SchemaSimulator metaData, String tableName, Classification c) {
         List<String> diffs = new ArrayList<>();
-        try (ResultSet rs = metaData.getColumns(null, null, tableName, null)) {
-            Set<String> existingCols = new HashSet<>();
-            while (rs.next()) {
-                existingCols.add(rs.getString("COLUMN_NAME").toUpperCase(Locale.ROOT));
-            }
 
-            if (sql.contains("ADD COLUMN")) {
-                String[] parts = sql.split("ADD COLUMN");
-                for (int i = 1; i < parts.length; i++) {
-                    String colDef = parts[i].trim().split(",|\\)")[0];
-                    String colName = colDef.split("\\s+")[0];
-                    if (existingCols.contains(colName)) {
-                        diffs.add("⚠️ Column `" + colName + "` already exists in `" + tableName + "`.");
-                    } else {
-                        diffs.add("✅ Column `" + colName + "` will be added to `" + tableName + "`.");
-                    }
-                }
+        for (String colName : c.getAddedColumns()) {
+            if (metaData.hasColumn(tableName, colName)) {
+                diffs.add("⚠️ Column `" + colName + "` already exists in `" + tableName + "`.");
+            } else {
+                diffs.add("✅ Column `" + colName + "` will be added to `" + tableName + "`.");
             }
         }
         return diffs;
     }
-
-    private String extractTableName(String sql, String keyword) {
-        try {
-            String[] parts = sql.split(keyword)[1].trim().split("\\s+|\\(|;");
-            return parts[0];
-        } catch (Exception e) {
-            return "UNKNOWN";
-        }
-    }
-
-    private String summarize(String stmt) {
-        return stmt.length() > 80 ? stmt.substring(0, 77) + "..." : stmt;
-    }
 }
@@ -1,6 +1,7 @@
 package com.example.sqldeploymentsmanager.service;
 
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -8,45 +9,119 @@ import java.util.*;
 @Service
 public class SchemaImpactService {
 
-    private static final String SCHEMA_NAME = "college";
+    // Above this many tables an IN list stops being cheaper than one full scan
+    private static final int MAX_SCOPED_TABLES = 500;
+
+    private static final RowMapper<ColumnInfo> COLUMN_MAPPER = (rs, rowNum) -> {
+        ColumnInfo c = new ColumnInfo();
+        c.tableName = rs.getString("table_name");
+        c.columnName = rs.getString("column_name");
+        c.columnType = rs.getString("column_type");
+        c.isNullable = rs.getString("is_nullable");
+        c.columnDefault = rs.getString("column_default");
+        return c;
+    };
 
     private final JdbcTemplate jdbcTemplate;
+    private final SchemaMetadataCache schemaMetadataCache;
 
-    public SchemaImpactService(JdbcTemplate jdbcTemplate) {
+    public SchemaImpactService(JdbcTemplate jdbcTemplate, SchemaMetadataCache schemaMetadataCache) {
         this.jdbcTemplate = jdbcTemplate;
+        this.schemaMetadataCache = schemaMetadataCache;
     }
 
     public SchemaSnapshot captureSnapshot() {
 
-        String sql =
-                "SELECT table_name, column_name, column_type, is_nullable, " +
-                "COALESCE(column_default, '') AS column_default " +
-                "FROM information_schema.columns " +
-                "WHERE table_schema = ? " +
-                "ORDER BY table_name, ordinal_position";
-
-        List<ColumnInfo> columns = jdbcTemplate.query(sql, (rs, rowNum) -> {
-            ColumnInfo c = new ColumnInfo();
-            c.tableName = rs.getString("table_name");
-            c.columnName = rs.getString("column_name");
-            c.columnType = rs.getString("column_type");
-            c.isNullable = rs.getString("is_nullable");
-            c.columnDefault = rs.getString("column_default");
-            return c;
-        }, SCHEMA_NAME);
+        // Full snapshots must be live; reloading also leaves the shared cache warm
+        SchemaMetadataCache.SchemaModel model = schemaMetadataCache.refresh();
 
         Map<String, ColumnInfo> byKey = new HashMap<String, ColumnInfo>();
         Set<String> tables = new HashSet<String>();
 
-        for (ColumnInfo c : columns) {
-            String key = c.tableName + "." + c.columnName;
-            byKey.put(key, c);
-            tables.add(c.tableName);
+        for (SchemaMetadataCache.TableInfo table : model.getTables()) {
+            for (ColumnInfo c : table.getColumns()) {
+                String key = c.tableName + "." + c.columnName;
+                byKey.put(key, c);
+                tables.add(c.tableName);
+            }
         }
 
         return new SchemaSnapshot(byKey, tables);
     }
 
+    /**
+     * Snapshot limited to the tables a script references. Falls back to a full snapshot
+     * when the script could touch tables we could not identify, or names a table with its
+     * schema: "db.t" may be a table of the current database, which a scoped snapshot
+     * would miss.
+     */
+    public SchemaSnapshot captureSnapshot(ScriptTableExtractor.ScriptTables scriptTables) {
+        if (scriptTables == null || !scriptTables.isScoped()
+                || scriptTables.getReferencedTables().size() > MAX_SCOPED_TABLES
+                || scriptTables.getReferencedTables().stream().anyMatch(ScriptTableExtractor::isQualified)) {
+            return captureSnapshot();
+        }
+        return captureScopedSnapshot(new HashSet<String>(scriptTables.getReferencedTables()), listTables());
+    }
+
+    /**
+     * After-deployment counterpart of {@link #captureSnapshot(ScriptTableExtractor.ScriptTables)}:
+     * covers the same tables plus any that appeared in the cheap table-list check, so
+     * {@link #diff} reports exactly what a full snapshot would.
+     */
+    public SchemaSnapshot captureSnapshotAfter(SchemaSnapshot before) {
+        if (before.scope == null) {
+            return captureSnapshot();
+        }
+
+        Set<String> tables = listTables();
+        Set<String> scope = new HashSet<String>(before.scope);
+        for (String t : tables) {
+            if (!before.tables.contains(t)) {
+                scope.add(t.toLowerCase(Locale.ROOT));
+            }
+        }
+        return captureScopedSnapshot(scope, tables);
+    }
+
+    private SchemaSnapshot captureScopedSnapshot(Set<String> scope, Set<String> tables) {
+        Map<String, ColumnInfo> byKey = new HashMap<String, ColumnInfo>();
+
+        // exact names from the table list, so the lookup compares table_name as stored
+        List<Object> args = new ArrayList<Object>();
+        for (String t : tables) {
+            if (scope.contains(t.toLowerCase(Locale.ROOT))) {
+                args.add(t);
+            }
+        }
+
+        if (!args.isEmpty()) {
+            StringBuilder sql = new StringBuilder(
+                    "SELECT table_name, column_name, column_type, is_nullable, " +
+                    "COALESCE(column_default, '') AS column_default " +
+                    "FROM information_schema.columns " +
+                    "WHERE table_schema = DATABASE() AND table_name IN (");
+            for (int i = 0; i < args.size(); i++) {
+                sql.append(i > 0 ? ", ?" : "?");
+            }
+            sql.append(") ORDER BY table_name, ordinal_position");
+
+            for (ColumnInfo c : jdbcTemplate.query(sql.toString(), COLUMN_MAPPER, args.toArray())) {
+                byKey.put(c.tableName + "." + c.columnName, c);
+            }
+        }
+
+        SchemaSnapshot snapshot = new SchemaSnapshot(byKey, tables);
+        snapshot.scope = scope;
+        return snapshot;
+    }
+
+    private Set<String> listTables() {
+        return new HashSet<String>(jdbcTemplate.queryForList(
+                "SELECT table_name FROM information_schema.tables WHERE table_schema = DATABASE()",
+                String.class));
+    }
+
     public List<String> diff(SchemaSnapshot before, SchemaSnapshot after) {
 
         List<String> impact = new ArrayList<String>();
@@ -91,7 +166,7 @@ public class SchemaImpactService {
         }
 
         if (impact.isEmpty()) {
-            impact.add("No schema changes detected in schema '" + SCHEMA_NAME + "'.");
+            impact.add("No schema changes detected.");
         }
 
         return impact;
@@ -122,6 +197,8 @@ public class SchemaImpactService {
     public static class SchemaSnapshot {
         public Map<String, ColumnInfo> columns;
         public Set<String> tables;
+        // lower-cased tables whose columns were captured; null means the whole schema
+        public Set<String> scope;
 
         public SchemaSnapshot(Map<String, ColumnInfo> columns, Set<String> tables) {
             this.columns = columns;
@@ -0,0 +1,377 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SchemaImpactService.ColumnInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory model of the current schema's tables, columns, indexes and the dependencies
+ * between tables (cascading foreign keys, triggers, views), shared by the comparison,
+ * impact and analysis paths. Loaded with one bulk information_schema query per kind and
+ * kept until it expires or is invalidated (RowImpactService does so after running DDL).
+ * Every invalidation bumps the version so callers can tell whether derived data is
+ * stale.
+ */
+@Service
+public class SchemaMetadataCache {
+
+    private static final String LOAD_SQL =
+            "SELECT table_name, column_name, column_type, is_nullable, " +
+            "COALESCE(column_default, '') AS column_default " +
+            "FROM information_schema.columns " +
+            "WHERE table_schema = DATABASE() " +
+            "ORDER BY table_name, ordinal_position";
+
+    private static final String INDEX_SQL =
+            "SELECT table_name, index_name, non_unique, seq_in_index, column_name " +
+            "FROM information_schema.statistics " +
+            "WHERE table_schema = DATABASE() " +
+            "ORDER BY table_name, index_name, seq_in_index";
+
+    // children whose foreign key makes writes to the parent change them too
+    private static final String CASCADE_SQL =
+            "SELECT referenced_table_name, constraint_schema = DATABASE() AS local, " +
+            "constraint_schema, table_name " +
+            "FROM information_schema.referential_constraints " +
+            "WHERE unique_constraint_schema = DATABASE() " +
+            "AND (delete_rule NOT IN ('RESTRICT', 'NO ACTION') OR update_rule NOT IN ('RESTRICT', 'NO ACTION'))";
+
+    private static final String TRIGGER_SQL =
+            "SELECT event_object_table, action_statement FROM information_schema.triggers " +
+            "WHERE event_object_schema = DATABASE()";
+
+    // view_table_usage needs MySQL 8.0.13 or later
+    private static final String VIEW_SQL =
+            "SELECT v.table_name AS view_name, u.table_schema = DATABASE() AS local, " +
+            "u.table_schema, u.table_name " +
+            "FROM information_schema.views v " +
+            "LEFT JOIN information_schema.view_table_usage u " +
+            "ON u.view_schema = v.table_schema AND u.view_name = v.table_name " +
+            "WHERE v.table_schema = DATABASE()";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // 0 keeps the model until it is invalidated
+    @Value("${schema.cache.ttl-seconds:300}")
+    private long ttlSeconds = 300;
+
+    @Value("${schema.cache.preload:true}")
+    private boolean preloadOnStartup = true;
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile SchemaModel model;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private volatile long lastLoadMillis;
+
+    public SchemaMetadataCache(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Load once at startup so the first comparison doesn't pay for it
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (!preloadOnStartup) return;
+        try {
+            SchemaModel loaded = getModel();
+            System.out.println("Schema metadata preloaded: " + loaded.getTables().size() + " tables in " + lastLoadMillis + " ms");
+        } catch (Exception e) {
+            System.out.println("Schema metadata preload failed, will load on first use: " + e.getMessage());
+        }
+    }
+
+    public SchemaModel getModel() {
+        SchemaModel current = model;
+        if (isFresh(current)) {
+            hits.increment();
+            return current;
+        }
+
+        synchronized (this) {
+            current = model;
+            if (isFresh(current)) {
+                hits.increment();
+                return current;
+            }
+            misses.increment();
+            return load();
+        }
+    }
+
+    /** Reloads unconditionally, e.g. when a caller needs the live schema. */
+    public synchronized SchemaModel refresh() {
+        return load();
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+        model = null;
+        invalidations.increment();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), loads.sum(), invalidations.sum(),
+                version.get(), lastLoadMillis);
+    }
+
+    private boolean isFresh(SchemaModel m) {
+        if (m == null || m.version != version.get()) return false;
+        return ttlSeconds <= 0 || System.currentTimeMillis() - m.loadedAt < ttlSeconds * 1000;
+    }
+
+    private SchemaModel load() {
+        long start = System.currentTimeMillis();
+        long loadVersion = version.get();
+
+        Map<String, TableInfo> tables = new LinkedHashMap<>();
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            ColumnInfo c = new ColumnInfo();
+            c.tableName = rs.getString("table_name");
+            c.columnName = rs.getString("column_name");
+            c.columnType = rs.getString("column_type");
+            c.isNullable = rs.getString("is_nullable");
+            c.columnDefault = rs.getString("column_default");
+
+            tables.computeIfAbsent(ScriptTableExtractor.normalize(c.tableName), k -> new TableInfo(c.tableName))
+                    .columns.put(ScriptTableExtractor.normalize(c.columnName), c);
+        });
+
+        boolean indexesLoaded = loadIndexes(tables);
+        boolean dependenciesLoaded = loadDependencies(tables);
+
+        SchemaModel loaded = new SchemaModel(loadVersion, start, tables, indexesLoaded, dependenciesLoaded);
+        loads.increment();
+        lastLoadMillis = System.currentTimeMillis() - start;
+
+        // don't publish a model that an invalidation raced past while we were loading
+        if (version.get() == loadVersion) {
+            model = loaded;
+        }
+        return loaded;
+    }
+
+    // Index metadata is only used for advice, so a failure here (e.g. missing privileges)
+    // leaves the model without indexes rather than failing the whole load
+    private boolean loadIndexes(Map<String, TableInfo> tables) {
+        try {
+            jdbcTemplate.query(INDEX_SQL, rs -> {
+                TableInfo table = tables.get(ScriptTableExtractor.normalize(rs.getString("table_name")));
+                if (table == null) return;
+
+                String indexName = rs.getString("index_name");
+                IndexInfo index = table.indexes.get(indexName);
+                if (index == null) {
+                    index = new IndexInfo(indexName, rs.getInt("non_unique") == 0);
+                    table.indexes.put(indexName, index);
+                }
+                // functional index parts have no column; nothing after them is a usable prefix
+                String column = rs.getString("column_name");
+                if (column != null && index.columns.size() == rs.getInt("seq_in_index") - 1) {
+                    index.columns.add(ScriptTableExtractor.normalize(column));
+                }
+            });
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // Same as indexes: without these the model just can't tell what a write affects
+    // besides the tables written, and callers treat that as unscoped
+    private boolean loadDependencies(Map<String, TableInfo> tables) {
+        try {
+            jdbcTemplate.query(CASCADE_SQL, rs -> {
+                TableInfo parent = tables.get(ScriptTableExtractor.normalize(rs.getString("referenced_table_name")));
+                if (parent != null) parent.cascadeChildren.add(dependencyName(rs));
+            });
+            jdbcTemplate.query(TRIGGER_SQL, rs -> {
+                TableInfo table = tables.get(ScriptTableExtractor.normalize(rs.getString("event_object_table")));
+                if (table != null) table.triggerStatements.add(rs.getString("action_statement"));
+            });
+            jdbcTemplate.query(VIEW_SQL, rs -> {
+                TableInfo view = tables.get(ScriptTableExtractor.normalize(rs.getString("view_name")));
+                if (view == null) return;
+                view.view = true;
+                if (rs.getString("table_name") != null) view.viewBaseTables.add(dependencyName(rs));
+            });
+            return true;
+        } catch (Exception e) {
+            for (TableInfo table : tables.values()) {
+                table.cascadeChildren.clear();
+                table.triggerStatements.clear();
+                table.viewBaseTables.clear();
+                table.view = false;
+            }
+            return false;
+        }
+    }
+
+    // bare name for a table in this schema, schema.table for one elsewhere
+    private static String dependencyName(ResultSet rs) throws SQLException {
+        String table = ScriptTableExtractor.normalize(rs.getString("table_name"));
+        return rs.getBoolean("local") ? table : rs.getString("table_schema").toLowerCase(Locale.ROOT) + "." + table;
+    }
+
+    public static class SchemaModel {
+        private final long version;
+        private final long loadedAt;
+        private final Map<String, TableInfo> tables;
+        private final boolean indexesLoaded;
+        private final boolean dependenciesLoaded;
+
+        SchemaModel(long version, long loadedAt, Map<String, TableInfo> tables, boolean indexesLoaded,
+                    boolean dependenciesLoaded) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.tables = Collections.unmodifiableMap(tables);
+            this.indexesLoaded = indexesLoaded;
+            this.dependenciesLoaded = dependenciesLoaded;
+        }
+
+        public long getVersion() { return version; }
+        public long getLoadedAt() { return loadedAt; }
+
+        /** False when index metadata couldn't be read; table indexes are then empty. */
+        public boolean isIndexesLoaded() { return indexesLoaded; }
+
+        /** False when cascades, triggers or views couldn't be read; they are then empty. */
+        public boolean isDependenciesLoaded() { return dependenciesLoaded; }
+
+        public boolean hasTable(String name) {
+            return getTable(name) != null;
+        }
+
+        public TableInfo getTable(String name) {
+            return name == null ? null : tables.get(ScriptTableExtractor.normalize(name));
+        }
+
+        public Collection<TableInfo> getTables() {
+            return tables.values();
+        }
+    }
+
+    public static class TableInfo {
+        private final String name;
+        private final Map<String, ColumnInfo> columns = new LinkedHashMap<>();
+        private final Map<String, IndexInfo> indexes = new LinkedHashMap<>();
+        // normalized names; schema.table for tables in another schema
+        private final Set<String> cascadeChildren = new LinkedHashSet<>();
+        private final Set<String> viewBaseTables = new LinkedHashSet<>();
+        private final List<String> triggerStatements = new ArrayList<>();
+        private boolean view;
+
+        TableInfo(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+
+        public boolean isView() { return view; }
+
+        /** Tables whose ON DELETE/ON UPDATE action changes them when this one is written. */
+        public Set<String> getCascadeChildren() { return Collections.unmodifiableSet(cascadeChildren); }
+
+        /** Bodies of the triggers on this table. */
+        public List<String> getTriggerStatements() { return Collections.unmodifiableList(triggerStatements); }
+
+        /** For a view, the tables and views it selects from. */
+        public Set<String> getViewBaseTables() { return Collections.unmodifiableSet(viewBaseTables); }
+
+        public boolean hasColumn(String column) {
+            return column != null && columns.containsKey(ScriptTableExtractor.normalize(column));
+        }
+
+        public ColumnInfo getColumn(String column) {
+            return column == null ? null : columns.get(ScriptTableExtractor.normalize(column));
+        }
+
+        public Collection<ColumnInfo> getColumns() {
+            return Collections.unmodifiableCollection(columns.values());
+        }
+
+        public Collection<IndexInfo> getIndexes() {
+            return Collections.unmodifiableCollection(indexes.values());
+        }
+
+        /** Whether some index starts with {@code column}, so lookups on it can use the index. */
+        public boolean hasIndexStartingWith(String column) {
+            String key = ScriptTableExtractor.normalize(column);
+            for (IndexInfo index : indexes.values()) {
+                if (!index.columns.isEmpty() && index.columns.get(0).equals(key)) return true;
+            }
+            return false;
+        }
+    }
+
+    public static class IndexInfo {
+        private final String name;
+        private final boolean unique;
+        // normalized column names in index order, up to the first non-column part
+        private final List<String> columns = new ArrayList<>();
+
+        IndexInfo(String name, boolean unique) {
+            this.name = name;
+            this.unique = unique;
+        }
+
+        public String getName() { return name; }
+        public boolean isUnique() { return unique; }
+        public List<String> getColumns() { return Collections.unmodifiableList(columns); }
+    }
+
+    public static class CacheStats {
+        private final long hits;
+        private final long misses;
+        private final long loads;
+        private final long invalidations;
+        private final long version;
+        private final long lastLoadMillis;
+
+        CacheStats(long hits, long misses, long loads, long invalidations, long version, long lastLoadMillis) {
+            this.hits = hits;
+            this.misses = misses;
+            this.loads = loads;
+            this.invalidations = invalidations;
+            this.version = version;
+            this.lastLoadMillis = lastLoadMillis;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getLoads() { return loads; }
+        public long getInvalidations() { return invalidations; }
+        public long getVersion() { return version; }
+        public long getLastLoadMillis() { return lastLoadMillis; }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", loads=" + loads +
+                    ", invalidations=" + invalidations + ", version=" + version +
+                    ", last load " + lastLoadMillis + " ms";
+        }
+    }
+}
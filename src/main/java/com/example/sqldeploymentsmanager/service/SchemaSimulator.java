@@ -0,0 +1,199 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SchemaImpactService.ColumnInfo;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.SchemaModel;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.TableInfo;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.alter.Alter;
+import net.sf.jsqlparser.statement.alter.AlterExpression;
+import net.sf.jsqlparser.statement.alter.RenameTableStatement;
+import net.sf.jsqlparser.statement.create.table.ColumnDefinition;
+import net.sf.jsqlparser.statement.create.table.CreateTable;
+import net.sf.jsqlparser.statement.drop.Drop;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copy-on-write view of the schema that a script's DDL is applied to one statement at a
+ * time, so each statement can be checked against the state the earlier ones leave behind
+ * instead of against the live database. Only tables the script changes are copied out of
+ * the cached model; everything else is looked up in it directly.
+ */
+public class SchemaSimulator {
+
+    private final SchemaModel base;
+    // tables created or altered by the script so far, keyed by normalized name
+    private final Map<String, Set<String>> changed = new HashMap<>();
+    private final Set<String> dropped = new HashSet<>();
+
+    public SchemaSimulator(SchemaModel base) {
+        this.base = base;
+    }
+
+    public boolean hasTable(String name) {
+        if (name == null) return false;
+        String key = ScriptTableExtractor.normalize(name);
+        if (changed.containsKey(key)) return true;
+        return !dropped.contains(key) && base.getTable(key) != null;
+    }
+
+    public boolean hasColumn(String table, String column) {
+        if (table == null) return false;
+        String key = ScriptTableExtractor.normalize(table);
+        Set<String> sim = changed.get(key);
+        if (sim != null) return sim.contains(ScriptTableExtractor.normalize(column));
+        if (dropped.contains(key)) return false;
+
+        TableInfo info = base.getTable(key);
+        return info != null && info.hasColumn(column);
+    }
+
+    /**
+     * Applies a parsed statement's schema effect. Statements without one are ignored.
+     */
+    public void apply(Statement statement) {
+        if (statement instanceof CreateTable) {
+            applyCreate((CreateTable) statement);
+        } else if (statement instanceof Alter) {
+            applyAlter((Alter) statement);
+        } else if (statement instanceof Drop) {
+            Drop drop = (Drop) statement;
+            if ("TABLE".equalsIgnoreCase(drop.getType()) || "VIEW".equalsIgnoreCase(drop.getType())) {
+                dropTable(nameOf(drop.getName()));
+            }
+        } else if (statement instanceof RenameTableStatement) {
+            for (Map.Entry<Table, Table> e : ((RenameTableStatement) statement).getTableNames()) {
+                renameTable(nameOf(e.getKey()), nameOf(e.getValue()));
+            }
+        }
+    }
+
+    /** Lexical fallback for CREATE TABLE statements the parser could not handle. */
+    public void createTable(String name) {
+        if (name != null && !hasTable(name)) {
+            put(ScriptTableExtractor.normalize(name), new LinkedHashSet<>());
+        }
+    }
+
+    public void dropTable(String name) {
+        if (name == null) return;
+        String key = ScriptTableExtractor.normalize(name);
+        changed.remove(key);
+        dropped.add(key);
+    }
+
+    private void applyCreate(CreateTable create) {
+        String name = nameOf(create.getTable());
+        if (hasTable(name)) return;
+
+        Set<String> sim = new LinkedHashSet<>();
+        if (create.getLikeTable() != null) {
+            Set<String> like = copyOfColumns(nameOf(create.getLikeTable()));
+            if (like != null) sim = like;
+        } else {
+            // columns of CREATE TABLE ... AS SELECT come from the query and stay unknown
+            addColumns(sim, create.getColumnDefinitions());
+        }
+        put(name, sim);
+    }
+
+    private void applyAlter(Alter alter) {
+        String name = nameOf(alter.getTable());
+        Set<String> sim = mutableColumnsOf(name);
+        if (sim == null || alter.getAlterExpressions() == null) return;
+        for (AlterExpression e : alter.getAlterExpressions()) {
+            if (e.getOperation() == null) continue;
+            switch (e.getOperation()) {
+                case ADD:
+                case MODIFY:
+                    addColumns(sim, e.getColDataTypeList());
+                    break;
+                case CHANGE:
+                    if (e.getColumnOldName() != null) {
+                        sim.remove(ScriptTableExtractor.normalize(e.getColumnOldName()));
+                    }
+                    addColumns(sim, e.getColDataTypeList());
+                    break;
+                case DROP:
+                    if (e.getColumnName() != null) {
+                        sim.remove(ScriptTableExtractor.normalize(e.getColumnName()));
+                    }
+                    break;
+                case RENAME:
+                    if (e.getColumnOldName() != null && e.getColumnName() != null
+                            && sim.remove(ScriptTableExtractor.normalize(e.getColumnOldName()))) {
+                        sim.add(ScriptTableExtractor.normalize(e.getColumnName()));
+                    }
+                    break;
+                case RENAME_TABLE:
+                    if (e.getNewTableName() != null) {
+                        String newName = ScriptTableExtractor.normalize(e.getNewTableName());
+                        renameTable(name, newName);
+                        sim = mutableColumnsOf(newName);
+                        if (sim == null) return;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void renameTable(String from, String to) {
+        if (from == null || to == null) return;
+        // the set moves to the new name, so it is copied at most once
+        Set<String> sim = mutableColumnsOf(from);
+        if (sim == null) return;
+
+        dropTable(from);
+        put(to, sim);
+    }
+
+    // A new set of the table's current columns, or null if it does not exist at this point of the script
+    private Set<String> copyOfColumns(String key) {
+        Set<String> sim = changed.get(key);
+        if (sim != null) return new LinkedHashSet<>(sim);
+        if (dropped.contains(key)) return null;
+
+        TableInfo info = base.getTable(key);
+        if (info == null) return null;
+
+        Set<String> columns = new LinkedHashSet<>();
+        for (ColumnInfo c : info.getColumns()) {
+            columns.add(ScriptTableExtractor.normalize(c.columnName));
+        }
+        return columns;
+    }
+
+    // The table's own column set, copied out of the cached model on its first change
+    private Set<String> mutableColumnsOf(String key) {
+        Set<String> sim = changed.get(key);
+        if (sim != null) return sim;
+
+        sim = copyOfColumns(key);
+        if (sim != null) changed.put(key, sim);
+        return sim;
+    }
+
+    private void put(String key, Set<String> columns) {
+        dropped.remove(key);
+        changed.put(key, columns);
+    }
+
+    private static void addColumns(Set<String> sim, List<? extends ColumnDefinition> definitions) {
+        if (definitions == null) return;
+        for (ColumnDefinition def : definitions) {
+            sim.add(ScriptTableExtractor.normalize(def.getColumnName()));
+        }
+    }
+
+    private static String nameOf(Table table) {
+        return ScriptTableExtractor.nameOf(table);
+    }
+}
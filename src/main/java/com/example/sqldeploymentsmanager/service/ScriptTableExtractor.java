@@ -0,0 +1,295 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.ParsedScriptCache.ParsedScript;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.SchemaModel;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.TableInfo;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Commit;
+import net.sf.jsqlparser.statement.RollbackStatement;
+import net.sf.jsqlparser.statement.SetStatement;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.alter.Alter;
+import net.sf.jsqlparser.statement.alter.RenameTableStatement;
+import net.sf.jsqlparser.statement.create.index.CreateIndex;
+import net.sf.jsqlparser.statement.create.table.CreateTable;
+import net.sf.jsqlparser.statement.create.view.AlterView;
+import net.sf.jsqlparser.statement.create.view.CreateView;
+import net.sf.jsqlparser.statement.delete.Delete;
+import net.sf.jsqlparser.statement.drop.Drop;
+import net.sf.jsqlparser.statement.insert.Insert;
+import net.sf.jsqlparser.statement.replace.Replace;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.truncate.Truncate;
+import net.sf.jsqlparser.statement.update.Update;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Works out which tables a script reads and writes, so later stages can limit
+ * snapshots and backups to them. A script is only "scoped" when every statement
+ * was understood; anything else (CALL, USE, unparsable SQL...) could touch tables
+ * we cannot see and callers must fall back to whole-schema behaviour.
+ */
+@Service
+public class ScriptTableExtractor {
+
+    // Session/transaction statements JSqlParser may not parse but that never touch tables
+    private static final String[] NEUTRAL_PREFIXES = {
+            "SET ", "START TRANSACTION", "BEGIN", "COMMIT", "ROLLBACK", "LOCK TABLES", "UNLOCK TABLES"
+    };
+
+    private final ParsedScriptCache parsedScriptCache;
+
+    public ScriptTableExtractor(ParsedScriptCache parsedScriptCache) {
+        this.parsedScriptCache = parsedScriptCache;
+    }
+
+    public ScriptTables extract(String sqlScript) {
+        if (sqlScript == null || sqlScript.isBlank()) return new ScriptTables();
+
+        ParsedScript script = parsedScriptCache.get(sqlScript);
+        return script.getResult("tables", () -> extract(script, true));
+    }
+
+    /** Tables of one parsed statement; unscoped when {@code statement} is null (didn't parse). */
+    public ScriptTables tablesOf(Statement statement) {
+        ScriptTables tables = new ScriptTables();
+        if (statement == null) {
+            tables.scoped = false;
+        } else {
+            collect(statement, tables);
+        }
+        return tables;
+    }
+
+    /**
+     * {@code tables} plus what the database changes or reads on its own: children whose
+     * foreign key cascades from a written table, tables written by triggers on written
+     * tables, and the base tables of views that are read. Unscoped when that can't be
+     * worked out: a write to a table in another schema (or qualified with any schema name)
+     * or through a view, a trigger body we don't understand, a dependency in another
+     * schema, or a model without dependency metadata.
+     */
+    public ScriptTables withDependents(ScriptTables tables, SchemaModel schema) {
+        ScriptTables widened = new ScriptTables();
+        widened.readTables.addAll(tables.readTables);
+        widened.writtenTables.addAll(tables.writtenTables);
+        widened.scoped = tables.scoped && schema != null && schema.isDependenciesLoaded();
+        if (!widened.scoped) return widened;
+
+        Deque<String> pending = new ArrayDeque<>(tables.writtenTables);
+        while (!pending.isEmpty() && widened.scoped) {
+            String name = pending.poll();
+            if (isQualified(name)) {
+                widened.scoped = false;
+                break;
+            }
+            TableInfo table = schema.getTable(name);
+            // not there yet: created by the script itself
+            if (table == null) continue;
+            if (table.isView()) {
+                widened.scoped = false;
+                break;
+            }
+            for (String child : table.getCascadeChildren()) {
+                if (widened.writtenTables.add(child)) pending.add(child);
+            }
+            for (String body : table.getTriggerStatements()) {
+                ScriptTables trigger = extract(parsedScriptCache.get(body), false);
+                widened.scoped &= trigger.scoped;
+                widened.readTables.addAll(trigger.readTables);
+                for (String written : trigger.writtenTables) {
+                    if (widened.writtenTables.add(written)) pending.add(written);
+                }
+            }
+        }
+
+        pending.addAll(widened.readTables);
+        while (!pending.isEmpty() && widened.scoped) {
+            String name = pending.poll();
+            TableInfo table = isQualified(name) ? null : schema.getTable(name);
+            if (table == null || !table.isView()) continue;
+            for (String base : table.getViewBaseTables()) {
+                widened.scoped &= !isQualified(base);
+                if (widened.readTables.add(base)) pending.add(base);
+            }
+        }
+        return widened;
+    }
+
+    // trigger bodies must be understood statement by statement: BEGIN ... END isn't neutral there
+    private ScriptTables extract(ParsedScript script, boolean allowNeutral) {
+        ScriptTables tables = new ScriptTables();
+        for (int i = 0; i < script.size(); i++) {
+            Statement statement = script.getParsed(i);
+            if (statement == null) {
+                if (!allowNeutral || !isNeutral(script.getStatement(i))) tables.scoped = false;
+                continue;
+            }
+            collect(statement, tables);
+        }
+        return tables;
+    }
+
+    void collect(Statement statement, ScriptTables tables) {
+        if (statement instanceof Select) {
+            tables.read(findTables(statement));
+        } else if (statement instanceof Insert) {
+            tables.write(((Insert) statement).getTable());
+            tables.read(findTables(statement));
+        } else if (statement instanceof Replace) {
+            tables.write(((Replace) statement).getTable());
+        } else if (statement instanceof Update) {
+            // multi-table UPDATE may write to any joined table
+            tables.writeAll(findTables(statement));
+        } else if (statement instanceof Delete) {
+            Delete delete = (Delete) statement;
+            if (delete.getTables() != null && !delete.getTables().isEmpty()) {
+                for (Table t : delete.getTables()) tables.write(t);
+            } else {
+                tables.write(delete.getTable());
+            }
+            tables.read(findTables(statement));
+        } else if (statement instanceof CreateTable) {
+            CreateTable create = (CreateTable) statement;
+            tables.write(create.getTable());
+            if (create.getLikeTable() != null) tables.read(qualifiedNameOf(create.getLikeTable()));
+            if (create.getSelect() != null) tables.read(findTables(create.getSelect()));
+        } else if (statement instanceof Alter) {
+            tables.write(((Alter) statement).getTable());
+        } else if (statement instanceof RenameTableStatement) {
+            for (Map.Entry<Table, Table> e : ((RenameTableStatement) statement).getTableNames()) {
+                tables.write(e.getKey());
+                tables.write(e.getValue());
+            }
+        } else if (statement instanceof Truncate) {
+            tables.write(((Truncate) statement).getTable());
+        } else if (statement instanceof CreateIndex) {
+            tables.write(((CreateIndex) statement).getTable());
+        } else if (statement instanceof CreateView) {
+            tables.write(((CreateView) statement).getView());
+        } else if (statement instanceof AlterView) {
+            tables.write(((AlterView) statement).getView());
+        } else if (statement instanceof Drop) {
+            Drop drop = (Drop) statement;
+            String type = drop.getType() == null ? "" : drop.getType().toUpperCase(Locale.ROOT);
+            if (type.equals("TABLE") || type.equals("VIEW")) {
+                tables.write(drop.getName());
+            } else if (!type.equals("INDEX")) {
+                tables.scoped = false;
+            }
+        } else if (!(statement instanceof SetStatement || statement instanceof Commit
+                || statement instanceof RollbackStatement)) {
+            tables.scoped = false;
+        }
+    }
+
+    private List<String> findTables(Statement statement) {
+        try {
+            return new TablesNamesFinder().getTableList(statement);
+        } catch (UnsupportedOperationException e) {
+            return List.of();
+        }
+    }
+
+    private static boolean isNeutral(String sql) {
+        String upper = sql.toUpperCase(Locale.ROOT);
+        for (String prefix : NEUTRAL_PREFIXES) {
+            if (upper.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /** Whether a name from {@link ScriptTables} is in another schema, or may be: "db.t". */
+    static boolean isQualified(String name) {
+        return name.indexOf('.') >= 0;
+    }
+
+    static String nameOf(Table table) {
+        return table == null ? null : normalize(table.getName());
+    }
+
+    private static String qualifiedNameOf(Table table) {
+        return table == null ? null : qualifiedName(table.getFullyQualifiedName());
+    }
+
+    // Like normalize, but keeps the schema: "db.t" and "t" may be different tables
+    static String qualifiedName(String name) {
+        if (name == null) return null;
+        StringBuilder result = new StringBuilder(name.length());
+        for (String part : name.split("\\.", -1)) {
+            if (result.length() > 0) result.append('.');
+            result.append(normalize(part));
+        }
+        return result.toString();
+    }
+
+    // Unquoted, unqualified and lower-cased, matching how snapshots compare names
+    static String normalize(String name) {
+        if (name == null) return null;
+        int dot = name.lastIndexOf('.');
+        String bare = dot >= 0 ? name.substring(dot + 1) : name;
+        if (bare.length() >= 2) {
+            char first = bare.charAt(0);
+            if ((first == '`' || first == '"') && bare.charAt(bare.length() - 1) == first) {
+                bare = bare.substring(1, bare.length() - 1);
+            }
+        }
+        return bare.toLowerCase(Locale.ROOT);
+    }
+
+    public static class ScriptTables {
+        private final Set<String> readTables = new LinkedHashSet<>();
+        private final Set<String> writtenTables = new LinkedHashSet<>();
+        private boolean scoped = true;
+
+        /** A statement known to write exactly {@code table}. */
+        static ScriptTables writing(String table) {
+            ScriptTables tables = new ScriptTables();
+            tables.writeAll(List.of(table));
+            return tables;
+        }
+
+        private void read(String table) {
+            if (table != null) readTables.add(table);
+        }
+
+        private void read(Collection<String> names) {
+            for (String n : names) read(qualifiedName(n));
+        }
+
+        private void write(Table table) {
+            String name = qualifiedNameOf(table);
+            if (name != null) writtenTables.add(name);
+        }
+
+        private void writeAll(Collection<String> names) {
+            for (String n : names) {
+                String name = qualifiedName(n);
+                if (name != null) writtenTables.add(name);
+            }
+        }
+
+        /** False when some statement could affect tables that were not identified. */
+        public boolean isScoped() { return scoped; }
+
+        public Set<String> getWrittenTables() { return Collections.unmodifiableSet(writtenTables); }
+        public Set<String> getReadTables() { return Collections.unmodifiableSet(readTables); }
+
+        public Set<String> getReferencedTables() {
+            Set<String> all = new LinkedHashSet<>(writtenTables);
+            all.addAll(readTables);
+            return all;
+        }
+    }
+}
@@ -1,21 +1,537 @@
 package com.example.sqldeploymentsmanager.service;
 
+import com.example.sqldeploymentsmanager.service.ParsedScriptCache.ParsedScript;
+import com.example.sqldeploymentsmanager.service.SchemaImpactService.ColumnInfo;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.IndexInfo;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.TableInfo;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.JdbcParameter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.AllTableColumns;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.Offset;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Runs the SELECT preview on the comparison page one page at a time. Rows are streamed
+ * (forward-only cursor, MySQL streaming fetch) and the server is told how many rows to
+ * send, so a careless {@code SELECT *} on a huge table never gets materialized in the
+ * app. Pages are fetched with LIMIT/OFFSET added to the query, or by key when it is
+ * ordered on a uniquely indexed NOT NULL column, so deep pages don't rescan earlier ones.
+ * Exports stream the full result straight from the ResultSet to the response.
+ */
 @Service
 public class SelectQueryService {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ParsedScriptCache parsedScriptCache;
+    private final BoundedStatementParser parser;
+    private final SchemaMetadataCache schemaMetadataCache;
+    private final ExplainCostService explainCostService;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final long maxOffset;
+    private final int timeoutSeconds;
+    private final int exportTimeoutSeconds;
+    private final ObjectMapper objectMapper;
+    private final SelectResultCache resultCache;
 
-    public SelectQueryService(JdbcTemplate jdbcTemplate) {
+    public SelectQueryService(JdbcTemplate jdbcTemplate, ParsedScriptCache parsedScriptCache,
+                              BoundedStatementParser parser, SchemaMetadataCache schemaMetadataCache,
+                              ExplainCostService explainCostService,
+                              @Value("${select.preview.page-size:100}") int defaultPageSize,
+                              @Value("${select.preview.max-page-size:500}") int maxPageSize,
+                              @Value("${select.preview.max-offset:100000}") long maxOffset,
+                              @Value("${select.preview.timeout-seconds:30}") int timeoutSeconds,
+                              @Value("${select.export.timeout-seconds:0}") int exportTimeoutSeconds,
+                              ObjectMapper objectMapper, SelectResultCache resultCache) {
         this.jdbcTemplate = jdbcTemplate;
+        this.parsedScriptCache = parsedScriptCache;
+        this.parser = parser;
+        this.schemaMetadataCache = schemaMetadataCache;
+        this.explainCostService = explainCostService;
+        this.maxPageSize = Math.max(1, maxPageSize);
+        this.defaultPageSize = Math.min(Math.max(1, defaultPageSize), this.maxPageSize);
+        this.maxOffset = maxOffset;
+        this.timeoutSeconds = timeoutSeconds;
+        this.exportTimeoutSeconds = exportTimeoutSeconds;
+        this.objectMapper = objectMapper;
+        this.resultCache = resultCache;
     }
 
-    public List<Map<String, Object>> executeSelect(String sql) {
-        return jdbcTemplate.queryForList(sql);
+    public int getDefaultPageSize() {
+        return defaultPageSize;
+    }
+
+    /**
+     * One page of the script's first statement.
+     *
+     * @param offset   rows to skip (used for display only when paging by key)
+     * @param pageSize rows per page, capped at {@code select.preview.max-page-size}
+     * @param afterKey key of the last row of the previous page, or null
+     */
+    public SelectPreview preview(String sqlText, long offset, int pageSize, String afterKey) {
+        ParsedScript script = parsedScriptCache.get(sqlText);
+        if (script.size() == 0) {
+            throw new IllegalArgumentException("SQL is empty.");
+        }
+        String sql = script.getStatement(0);
+        int size = Math.min(Math.max(1, pageSize), maxPageSize);
+        long skip = Math.max(0, offset);
+        return resultCache.get(sqlText, sql, skip, size, afterKey, () -> load(sql, skip, size, afterKey));
+    }
+
+    public SelectResultCache.CacheStats getCacheStats() {
+        return resultCache.getStats();
+    }
+
+    private SelectPreview load(String sql, long offset, int size, String afterKey) {
+        long skip = offset;
+
+        // The cached AST is shared, so the rewrite works on a private copy
+        Select outer = rewritable(sql);
+        PlainSelect select = outer == null ? null : (PlainSelect) outer.getSelectBody();
+        String keyColumn = select == null ? null : keyColumn(select);
+        boolean ascending = keyColumn != null && select.getOrderByElements().get(0).isAsc();
+
+        List<Object> params = new ArrayList<>();
+        String pageSql;
+        long clientSkip = 0;
+        if (select == null) {
+            // has its own LIMIT, or isn't a plain SELECT: skip rows as they stream past
+            clientSkip = Math.min(skip, maxOffset);
+            skip = clientSkip;
+            pageSql = sql;
+        } else if (keyColumn != null && afterKey != null) {
+            ComparisonOperator cmp = ascending ? new GreaterThan() : new MinorThan();
+            cmp.setLeftExpression(select.getOrderByElements().get(0).getExpression());
+            cmp.setRightExpression(new JdbcParameter());
+            Expression where = select.getWhere();
+            select.setWhere(where == null ? cmp : new AndExpression(new Parenthesis(where), cmp));
+            select.setLimit(new Limit().withRowCount(new LongValue(size + 1)));
+            pageSql = outer.toString();
+            params.add(afterKey);
+        } else {
+            select.setLimit(new Limit().withRowCount(new LongValue(size + 1)));
+            if (skip > 0) select.setOffset(new Offset().withOffset(new LongValue(skip)));
+            pageSql = outer.toString();
+        }
+
+        long estimatedRows = explainCostService.estimateRows(sql);
+        SelectPreview preview = stream(pageSql, params, clientSkip, size);
+        preview.offset = skip;
+        preview.pageSize = size;
+        preview.estimatedRows = estimatedRows;
+        preview.keyColumn = keyColumn;
+        if (keyColumn != null && preview.hasMore) {
+            Object last = preview.rows.getValue(preview.rows.size() - 1, keyColumn);
+            preview.nextKey = last == null ? null : last.toString();
+        }
+        return preview;
+    }
+
+    /**
+     * Writes the full result of the script's first statement to {@code out}, row by row.
+     * Memory use doesn't depend on the result size; {@code out} is flushed, not closed.
+     */
+    public ExportStats export(String sqlText, ExportFormat format, boolean gzip, OutputStream out) throws IOException {
+        ParsedScript script = parsedScriptCache.get(sqlText);
+        if (script.size() == 0) {
+            throw new IllegalArgumentException("SQL is empty.");
+        }
+        String sql = script.getStatement(0);
+        CountingOutputStream counted = new CountingOutputStream(out);
+
+        long start = System.nanoTime();
+        Long rows;
+        try {
+            rows = jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Integer.MIN_VALUE);
+                ps.setQueryTimeout(exportTimeoutSeconds);
+                return ps;
+            }, (ResultSet rs) -> {
+                try {
+                    OutputStream target = gzip ? new GZIPOutputStream(counted, 65536) : counted;
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 65536);
+                    long n = format == ExportFormat.CSV ? writeCsv(rs, writer) : writeNdjson(rs, writer);
+                    writer.flush();
+                    if (target instanceof GZIPOutputStream) ((GZIPOutputStream) target).finish();
+                    return n;
+                } catch (IOException e) {
+                    // Client went away. Closing a streaming result reads the rest of it first,
+                    // so kill the query instead of pulling the remaining rows over the wire.
+                    rs.getStatement().cancel();
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        counted.flush();
+        return new ExportStats(format, gzip, rows == null ? 0 : rows, counted.getCount(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private long writeCsv(ResultSet rs, Writer writer) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+        for (int c = 1; c <= columns; c++) {
+            if (c > 1) writer.write(',');
+            writeCsvField(writer, meta.getColumnLabel(c));
+        }
+        writer.write("\r\n");
+
+        boolean[] binary = binaryColumns(meta);
+        long rows = 0;
+        while (rs.next()) {
+            for (int c = 1; c <= columns; c++) {
+                if (c > 1) writer.write(',');
+                // getString gives MySQL's own text form (e.g. DATETIME as 2024-01-31 12:00:00)
+                String value = binary[c] ? base64(rs.getBytes(c)) : rs.getString(c);
+                if (value != null) writeCsvField(writer, value);
+            }
+            writer.write("\r\n");
+            rows++;
+        }
+        return rows;
+    }
+
+    // RFC 4180: quote fields containing separators, quotes, line breaks or edge spaces
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean quote = !value.isEmpty()
+                && (value.charAt(0) == ' ' || value.charAt(value.length() - 1) == ' ');
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') writer.write('"');
+            writer.write(ch);
+        }
+        writer.write('"');
+    }
+
+    private long writeNdjson(ResultSet rs, Writer writer) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+        String[] labels = new String[columns + 1];
+        int[] types = new int[columns + 1];
+        for (int c = 1; c <= columns; c++) {
+            labels[c] = meta.getColumnLabel(c);
+            types[c] = meta.getColumnType(c);
+        }
+
+        JsonGenerator json = objectMapper.getFactory().createGenerator(writer);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null);
+        long rows = 0;
+        while (rs.next()) {
+            json.writeStartObject();
+            for (int c = 1; c <= columns; c++) {
+                json.writeFieldName(labels[c]);
+                writeJsonValue(json, rs, c, types[c]);
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+            rows++;
+        }
+        json.flush();
+        return rows;
+    }
+
+    private static void writeJsonValue(JsonGenerator json, ResultSet rs, int c, int type) throws SQLException, IOException {
+        switch (type) {
+            case Types.TINYINT: case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+            case Types.DECIMAL: case Types.NUMERIC: case Types.REAL: case Types.FLOAT: case Types.DOUBLE: {
+                // the server's text form keeps DECIMAL precision
+                String number = rs.getString(c);
+                if (number == null) json.writeNull();
+                else json.writeNumber(number);
+                break;
+            }
+            case Types.BIT: case Types.BOOLEAN: {
+                boolean value = rs.getBoolean(c);
+                if (rs.wasNull()) json.writeNull();
+                else json.writeBoolean(value);
+                break;
+            }
+            case Types.BINARY: case Types.VARBINARY: case Types.LONGVARBINARY: case Types.BLOB: {
+                byte[] bytes = rs.getBytes(c);
+                if (bytes == null) json.writeNull();
+                else json.writeBinary(bytes);
+                break;
+            }
+            default: {
+                String value = rs.getString(c);
+                if (value == null) json.writeNull();
+                else json.writeString(value);
+            }
+        }
+    }
+
+    private static boolean[] binaryColumns(ResultSetMetaData meta) throws SQLException {
+        boolean[] binary = new boolean[meta.getColumnCount() + 1];
+        for (int c = 1; c < binary.length; c++) {
+            int type = meta.getColumnType(c);
+            binary[c] = type == Types.BINARY || type == Types.VARBINARY
+                    || type == Types.LONGVARBINARY || type == Types.BLOB;
+        }
+        return binary;
+    }
+
+    private static String base64(byte[] bytes) {
+        return bytes == null ? null : Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private SelectPreview stream(String sql, List<Object> params, long clientSkip, int size) {
+        long maxRows = clientSkip + size + 1;
+        long start = System.nanoTime();
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Connector/J streams row by row instead of buffering the whole result
+            ps.setFetchSize(Integer.MIN_VALUE);
+            // and the server stops sending after this many
+            ps.setMaxRows((int) Math.min(Integer.MAX_VALUE, maxRows));
+            ps.setQueryTimeout(timeoutSeconds);
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            return ps;
+        }, (ResultSet rs) -> {
+            SelectPreview preview = new SelectPreview();
+            ColumnarResult.Builder rows = new ColumnarResult.Builder(rs.getMetaData());
+            long seen = 0;
+            int kept = 0;
+            while (rs.next()) {
+                if (seen++ == 0) preview.firstRowMillis = (System.nanoTime() - start) / 1_000_000;
+                if (seen <= clientSkip) continue;
+                if (kept == size) {
+                    preview.hasMore = true;
+                    break;
+                }
+                rows.addRow(rs);
+                kept++;
+            }
+            preview.rows = rows.build();
+            if (seen == 0) preview.firstRowMillis = -1;
+            preview.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            return preview;
+        });
+    }
+
+    // A fresh SELECT whose body we can add LIMIT/OFFSET or a key condition to, or null
+    private Select rewritable(String sql) {
+        Statement statement = parser.parse(sql).getStatement();
+        if (!(statement instanceof Select)) return null;
+        Select outer = (Select) statement;
+        if (!(outer.getSelectBody() instanceof PlainSelect)) return null;
+
+        PlainSelect select = (PlainSelect) outer.getSelectBody();
+        if (select.getLimit() != null || select.getOffset() != null || select.getFetch() != null
+                || select.getIntoTables() != null || select.isForUpdate()) {
+            return null;
+        }
+        return outer;
+    }
+
+    // Paging by key is only exact when the single ORDER BY column is unique and never NULL
+    // (NULLs sort first and can't be compared past), and only possible when the page shows
+    // that column under its own name
+    String keyColumn(PlainSelect select) {
+        if (!(select.getFromItem() instanceof Table)) return null;
+        if (select.getJoins() != null && !select.getJoins().isEmpty()) return null;
+        if (select.getGroupBy() != null || select.getDistinct() != null || select.getHaving() != null) return null;
+
+        List<OrderByElement> order = select.getOrderByElements();
+        if (order == null || order.size() != 1 || !(order.get(0).getExpression() instanceof Column)) return null;
+        String column = ScriptTableExtractor.normalize(((Column) order.get(0).getExpression()).getColumnName());
+        if (!selectsUnaliased(select, column)) return null;
+
+        TableInfo table;
+        try {
+            table = schemaMetadataCache.getModel().getTable(((Table) select.getFromItem()).getName());
+        } catch (Exception e) {
+            return null;
+        }
+        if (table == null) return null;
+        ColumnInfo info = table.getColumn(column);
+        if (info == null || !"NO".equalsIgnoreCase(info.isNullable)) return null;
+        for (IndexInfo index : table.getIndexes()) {
+            if (index.isUnique() && index.getColumns().equals(List.of(column))) return column;
+        }
+        return null;
+    }
+
+    // Whether the key column is in the output as itself. An alias named like the column
+    // would also be what ORDER BY sorts on (SELECT name AS id ... ORDER BY id).
+    private static boolean selectsUnaliased(PlainSelect select, String column) {
+        boolean selected = false;
+        for (SelectItem item : select.getSelectItems()) {
+            if (item instanceof AllColumns || item instanceof AllTableColumns) {
+                selected = true;
+            } else if (item instanceof SelectExpressionItem) {
+                SelectExpressionItem expr = (SelectExpressionItem) item;
+                boolean isColumn = expr.getExpression() instanceof Column
+                        && ScriptTableExtractor.normalize(((Column) expr.getExpression()).getColumnName()).equals(column);
+                String alias = expr.getAlias() == null ? null : ScriptTableExtractor.normalize(expr.getAlias().getName());
+                if (column.equals(alias) && !isColumn) return false;
+                if (isColumn && (alias == null || alias.equals(column))) selected = true;
+            }
+        }
+        return selected;
+    }
+
+    public static class SelectPreview {
+        private ColumnarResult rows;
+        private boolean hasMore;
+        private long offset;
+        private int pageSize;
+        private long estimatedRows = -1;
+        private String keyColumn;
+        private String nextKey;
+        private long firstRowMillis = -1;
+        private long elapsedMillis;
+        private boolean cached;
+
+        // cached previews are shared, so hits get a flagged copy; the rows themselves are immutable
+        SelectPreview fromCache() {
+            SelectPreview copy = new SelectPreview();
+            copy.rows = rows;
+            copy.hasMore = hasMore;
+            copy.offset = offset;
+            copy.pageSize = pageSize;
+            copy.estimatedRows = estimatedRows;
+            copy.keyColumn = keyColumn;
+            copy.nextKey = nextKey;
+            copy.firstRowMillis = firstRowMillis;
+            copy.elapsedMillis = elapsedMillis;
+            copy.cached = true;
+            return copy;
+        }
+
+        public List<String> getColumns() { return rows.getColumnNames(); }
+        public ColumnarResult getResult() { return rows; }
+        public List<ColumnarResult.RowView> getRows() { return rows.getRows(); }
+        public boolean isHasMore() { return hasMore; }
+        public long getOffset() { return offset; }
+        public int getPageSize() { return pageSize; }
+        /** Optimizer's estimate of the full result size, or -1 if unknown. */
+        public long getEstimatedRows() { return estimatedRows; }
+        /** Unique ORDER BY column pages are fetched by, or null when paging by offset. */
+        public String getKeyColumn() { return keyColumn; }
+        /** Key to fetch the next page after, or null. */
+        public String getNextKey() { return nextKey; }
+        /** Time until the first row arrived, or -1 when there were none. */
+        public long getFirstRowMillis() { return firstRowMillis; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        /** Served from {@link SelectResultCache} rather than queried just now. */
+        public boolean isCached() { return cached; }
+
+        @Override
+        public String toString() {
+            return "rows " + (rows.isEmpty() ? "0" : (offset + 1) + "–" + (offset + rows.size())) +
+                    (estimatedRows >= 0 ? " of ~" + estimatedRows + " (estimated)" : "") +
+                    ", first row " + (firstRowMillis < 0 ? "n/a" : firstRowMillis + " ms") +
+                    ", total " + elapsedMillis + " ms" +
+                    (keyColumn != null ? ", paged by `" + keyColumn + "`" : "") +
+                    (cached ? " (cached)" : "");
+        }
+    }
+
+    public enum ExportFormat {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() { return contentType; }
+        public String getExtension() { return extension; }
+
+        public static ExportFormat of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public static class ExportStats {
+        private final ExportFormat format;
+        private final boolean gzip;
+        private final long rows;
+        private final long bytes;
+        private final long elapsedMillis;
+
+        ExportStats(ExportFormat format, boolean gzip, long rows, long bytes, long elapsedMillis) {
+            this.format = format;
+            this.gzip = gzip;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getRows() { return rows; }
+        /** Bytes sent, after compression. */
+        public long getBytes() { return bytes; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis == 0 ? rows * 1000.0 : rows * 1000.0 / elapsedMillis;
+        }
+
+        public double getBytesPerSecond() {
+            return elapsedMillis == 0 ? bytes * 1000.0 : bytes * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s%s: %d rows, %.1f MB in %.1f s (%.0f rows/s, %.2f MB/s)",
+                    format.getExtension(), gzip ? ".gz" : "", rows, bytes / 1048576.0, elapsedMillis / 1000.0,
+                    getRowsPerSecond(), getBytesPerSecond() / 1048576.0);
+        }
     }
 }
@@ -0,0 +1,304 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SQLStatementClassifier.Classification;
+import com.example.sqldeploymentsmanager.service.SQLStatementClassifier.Kind;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.SchemaModel;
+import com.example.sqldeploymentsmanager.service.ScriptTableExtractor.ScriptTables;
+import com.example.sqldeploymentsmanager.service.SelectQueryService.SelectPreview;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Opt-in cache of SELECT preview pages, so reloading the comparison page doesn't rerun
+ * the query against production. An entry is only served while its version token still
+ * matches: the schema metadata version, a per-table counter bumped whenever a deployment
+ * writes to one of the query's tables, and the tables' UPDATE_TIME in
+ * information_schema (which catches writes made outside this app, within the limits of
+ * information_schema_stats_expiry). Entries are evicted LRU by count and total rows, and
+ * expire after a TTL regardless.
+ */
+@Service
+public class SelectResultCache {
+
+    private static final String UPDATE_TIME_SQL =
+            "SELECT LOWER(table_name), update_time FROM information_schema.tables " +
+            "WHERE table_schema = DATABASE() AND LOWER(table_name) IN (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SchemaMetadataCache schemaMetadataCache;
+    private final ScriptTableExtractor scriptTableExtractor;
+    private final BoundedStatementParser parser;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxRows;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedRows;
+
+    // bumped for each table a deployment writes to; the global one when a statement's table
+    // couldn't be identified
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    private long hits;
+    private long misses;
+    private long stale;
+    private long evictions;
+
+    public SelectResultCache(JdbcTemplate jdbcTemplate, SchemaMetadataCache schemaMetadataCache,
+                             ScriptTableExtractor scriptTableExtractor, BoundedStatementParser parser,
+                             @Value("${select.cache.enabled:false}") boolean enabled,
+                             @Value("${select.cache.max-entries:64}") int maxEntries,
+                             @Value("${select.cache.max-rows:50000}") long maxRows,
+                             @Value("${select.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.schemaMetadataCache = schemaMetadataCache;
+        this.scriptTableExtractor = scriptTableExtractor;
+        this.parser = parser;
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxRows = maxRows;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The cached page for this query and position, or a freshly loaded one. Queries whose
+     * tables can't all be identified are never cached, as they couldn't be invalidated.
+     */
+    public SelectPreview get(String sqlText, String statement, long offset, int pageSize, String afterKey,
+                             Supplier<SelectPreview> loader) {
+        if (!enabled) return loader.get();
+
+        // reads through a view are invalidated by writes to its base tables; "db.t" may be
+        // the same table as an unqualified "t", which invalidation couldn't tell
+        ScriptTables tables = withDependents(scriptTableExtractor.extract(sqlText));
+        if (!tables.isScoped() || tables.getReadTables().isEmpty()
+                || tables.getReadTables().stream().anyMatch(ScriptTableExtractor::isQualified)) {
+            return loader.get();
+        }
+
+        String key = normalize(statement) + "\u0000" + offset + "\u0000" + pageSize + "\u0000" + afterKey;
+        // taken before the query runs, so a write that races with it makes the entry stale
+        String token = token(tables.getReadTables());
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                boolean expired = ttlMillis > 0 && System.currentTimeMillis() - entry.createdAt > ttlMillis;
+                if (!expired && entry.token.equals(token)) {
+                    hits++;
+                    return entry.preview.fromCache();
+                }
+                stale++;
+                remove(key);
+            }
+            misses++;
+        }
+
+        SelectPreview preview = loader.get();
+        long rows = preview.getResult().size();
+        if (rows <= maxRows) {
+            synchronized (this) {
+                remove(key);
+                entries.put(key, new Entry(preview, tables.getReadTables(), token, rows));
+                cachedRows += rows;
+                evict();
+            }
+        }
+        return preview;
+    }
+
+    /**
+     * Called for every statement a deployment executes. Drops entries for every table the
+     * statement may have changed, including cascades and trigger targets, and everything
+     * when that can't be worked out.
+     */
+    public void onStatementExecuted(String sql) {
+        if (!enabled) return;
+        ScriptTables tables = withDependents(writtenBy(sql));
+        if (!tables.isScoped()) {
+            invalidateAll();
+        } else {
+            for (String table : tables.getWrittenTables()) invalidate(table);
+        }
+    }
+
+    private ScriptTables writtenBy(String sql) {
+        // an INSERT only writes its target, and coalesced ones are too big to parse cheaply
+        Classification classification = SQLStatementClassifier.classify(sql);
+        if (classification.getKind() == Kind.INSERT && classification.getTable() != null) {
+            return ScriptTables.writing(classification.getTable());
+        }
+        return scriptTableExtractor.tablesOf(parser.parse(sql).getStatement());
+    }
+
+    private ScriptTables withDependents(ScriptTables tables) {
+        SchemaModel schema;
+        try {
+            schema = schemaMetadataCache.getModel();
+        } catch (Exception e) {
+            schema = null;
+        }
+        return scriptTableExtractor.withDependents(tables, schema);
+    }
+
+    public void invalidate(String table) {
+        generations.computeIfAbsent(table, t -> new AtomicLong()).incrementAndGet();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next().getValue();
+                if (entry.tables.contains(table)) {
+                    cachedRows -= entry.rows;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        globalGeneration.incrementAndGet();
+        synchronized (this) {
+            entries.clear();
+            cachedRows = 0;
+        }
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(enabled, entries.size(), cachedRows, hits, misses, stale, evictions);
+    }
+
+    private String token(Set<String> tables) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(schemaMetadataCache.getVersion()).append('/').append(globalGeneration.get());
+        Map<String, Object> updateTimes = updateTimes(tables);
+        // sorted so the token doesn't depend on the order tables appear in the query
+        for (String table : new TreeSet<>(tables)) {
+            AtomicLong generation = generations.get(table);
+            sb.append('|').append(table).append(':').append(generation == null ? 0 : generation.get())
+                    .append('@').append(updateTimes.get(table));
+        }
+        return sb.toString();
+    }
+
+    // one round trip for all tables; on failure the local counters still protect our own writes
+    private Map<String, Object> updateTimes(Set<String> tables) {
+        Map<String, Object> times = new LinkedHashMap<>();
+        try {
+            String placeholders = String.join(",", Collections.nCopies(tables.size(), "?"));
+            jdbcTemplate.query(String.format(UPDATE_TIME_SQL, placeholders), rs -> {
+                Timestamp updated = rs.getTimestamp(2);
+                times.put(rs.getString(1), updated == null ? null : updated.getTime());
+            }, tables.toArray());
+        } catch (Exception e) {
+            times.clear();
+        }
+        return times;
+    }
+
+    // whitespace outside literals doesn't change the result
+    static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char ch = sql.charAt(i);
+            if (quote != 0) {
+                sb.append(ch);
+                if (ch == quote) quote = 0;
+                continue;
+            }
+            if (Character.isWhitespace(ch)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) sb.append(' ');
+            space = false;
+            if (ch == '\'' || ch == '"' || ch == '`') quote = ch;
+            sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) cachedRows -= removed.rows;
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while ((entries.size() > maxEntries || cachedRows > maxRows) && it.hasNext()) {
+            cachedRows -= it.next().rows;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static final class Entry {
+        final SelectPreview preview;
+        final Set<String> tables;
+        final String token;
+        final long rows;
+        final long createdAt = System.currentTimeMillis();
+
+        Entry(SelectPreview preview, Set<String> tables, String token, long rows) {
+            this.preview = preview;
+            this.tables = tables;
+            this.token = token;
+            this.rows = rows;
+        }
+    }
+
+    public static class CacheStats {
+        private final boolean enabled;
+        private final int entries;
+        private final long rows;
+        private final long hits;
+        private final long misses;
+        private final long stale;
+        private final long evictions;
+
+        CacheStats(boolean enabled, int entries, long rows, long hits, long misses, long stale, long evictions) {
+            this.enabled = enabled;
+            this.entries = entries;
+            this.rows = rows;
+            this.hits = hits;
+            this.misses = misses;
+            this.stale = stale;
+            this.evictions = evictions;
+        }
+
+        public boolean isEnabled() { return enabled; }
+        public int getEntries() { return entries; }
+        public long getRows() { return rows; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        /** Entries dropped on lookup because their tables changed or their TTL ran out. */
+        public long getStale() { return stale; }
+        public long getEvictions() { return evictions; }
+
+        @Override
+        public String toString() {
+            if (!enabled) return "disabled";
+            return String.format("%d entries (%d rows), %d hits, %d misses, %d stale, %d evictions",
+                    entries, rows, hits, misses, stale, evictions);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.sqldeploymentsmanager.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+/**
+ * Fork-join pool for per-statement work (rule analysis) on large scripts. Work is
+ * split into index ranges and results come back in statement order regardless of which
+ * worker finished first.
+ */
+@Service
+public class StatementWorkerPool {
+
+    // Below this many statements the fork/join overhead isn't worth it
+    private static final int SEQUENTIAL_THRESHOLD = 8;
+
+    private final ForkJoinPool pool;
+
+    public StatementWorkerPool(@Value("${analysis.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(threads, p -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("statement-worker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /** Runs {@code task} for indexes 0..count-1 and returns the results in index order. */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> map(int count, IntFunction<T> task) {
+        Object[] results = new Object[count];
+        if (count < SEQUENTIAL_THRESHOLD || pool.getParallelism() == 1) {
+            for (int i = 0; i < count; i++) results[i] = task.apply(i);
+        } else {
+            // a few chunks per worker so uneven statements still balance out
+            int grain = Math.max(1, count / (pool.getParallelism() * 8));
+            pool.invoke(new Chunk(results, task, 0, count, grain));
+        }
+        return (List<T>) new ArrayList<>(Arrays.asList(results));
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static final class Chunk extends RecursiveAction {
+        private final Object[] results;
+        private final IntFunction<?> task;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        Chunk(Object[] results, IntFunction<?> task, int from, int to, int grain) {
+            this.results = results;
+            this.task = task;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                for (int i = from; i < to; i++) results[i] = task.apply(i);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Chunk(results, task, from, mid, grain), new Chunk(results, task, mid, to, grain));
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.example.sqldeploymentsmanager.service;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.example.sqldeploymentsmanager.model.DeploymentJob;
+import com.example.sqldeploymentsmanager.service.BackupService.BackupResult;
 
 import org.springframework.stereotype.Service;
 import org.springframework.web.context.annotation.SessionScope;
@@ -12,44 +16,62 @@ import org.springframework.web.context.annotation.SessionScope;
 @SessionScope
 public class WorkflowService {
 
-    private String lastSQL;
-    private WorkflowStatus currentStatus = WorkflowStatus.DRAFT;
-    private final List<String> workflowHistory = new ArrayList<>();
+    // Deployments run on a worker thread, so state they touch must be visible across threads
+    private volatile String lastSQL;
+    private volatile WorkflowStatus currentStatus = WorkflowStatus.DRAFT;
+    private final List<String> workflowHistory = new CopyOnWriteArrayList<>();
 
     private final HistoryService historyService;
     private final RowImpactService rowImpactService;
     private final SchemaImpactService schemaImpactService;
     private final BackupService backupService;   // ✅ FIX 1: FIELD ADDED
+    private final DeploymentJobService deploymentJobService;
+    private final ScriptTableExtractor scriptTableExtractor;
+    private final SchemaMetadataCache schemaMetadataCache;
 
     // Impact captured from last deployment
-    private List<String> lastSchemaImpact;
-    private String lastRowImpactSummary;
+    private volatile List<String> lastSchemaImpact;
+    private volatile String lastRowImpactSummary;
+    private volatile String activeJobId;
+
+    // Guards activeJobId together with the state a finishing job writes, so a job that was
+    // superseded by a reset or a new script can't overwrite the session's state
+    private final Object jobLock = new Object();
 
     // ✅ FIX 2: CONSTRUCTOR UPDATED TO INCLUDE BackupService
     public WorkflowService(HistoryService historyService,
                            RowImpactService rowImpactService,
                            SchemaImpactService schemaImpactService,
-                           BackupService backupService) {
+                           BackupService backupService,
+                           DeploymentJobService deploymentJobService,
+                           ScriptTableExtractor scriptTableExtractor,
+                           SchemaMetadataCache schemaMetadataCache) {
         this.historyService = historyService;
         this.rowImpactService = rowImpactService;
         this.schemaImpactService = schemaImpactService;
         this.backupService = backupService;   // ✅ FIX 3: ASSIGNMENT ADDED
+        this.deploymentJobService = deploymentJobService;
+        this.scriptTableExtractor = scriptTableExtractor;
+        this.schemaMetadataCache = schemaMetadataCache;
     }
 
     public enum WorkflowStatus {
-        DRAFT, VALIDATED, BACKUP_CREATED, APPROVAL_PENDING, APPROVED, COMPLETED
+        DRAFT, VALIDATED, BACKUP_CREATED, APPROVAL_PENDING, APPROVED, DEPLOYING, COMPLETED
     }
 
     public void setLastSQL(String sql) {
-        this.lastSQL = sql;
-        this.currentStatus = WorkflowStatus.DRAFT;
-        this.workflowHistory.clear();
-        this.lastSchemaImpact = null;
-        this.lastRowImpactSummary = null;
-
-        addToHistory("Workflow initialized with SQL script");
+        synchronized (jobLock) {
+            this.lastSQL = sql;
+            this.currentStatus = WorkflowStatus.DRAFT;
+            this.workflowHistory.clear();
+            this.lastSchemaImpact = null;
+            this.lastRowImpactSummary = null;
+            this.activeJobId = null;
+
+            addToHistory("Workflow initialized with SQL script");
+        }
         historyService.logAction("Workflow Initialized", "Workflow",
-                currentStatus.toString(), "Workflow started");
+                WorkflowStatus.DRAFT.toString(), "Workflow started");
     }
 
     public String validateSQL() {
@@ -83,14 +105,32 @@ public class WorkflowService {
         }
 
         try {
-            String backupPath = backupService.createFullBackup();
+            // Only the tables the script writes to, plus the ones the database changes along
+            // with them (whole database if it can't be scoped, e.g. a write to another schema).
+            // Returns only once every table and the manifest are on disk.
+            ScriptTableExtractor.ScriptTables scriptTables = writtenWithDependents(lastSQL);
+            if (scriptTables.isScoped() && scriptTables.getWrittenTables().isEmpty()) {
+                currentStatus = WorkflowStatus.BACKUP_CREATED;
+                String result = "✅ Nothing to back up: the script doesn't write to any table.";
+                addToHistory(result);
+                historyService.logAction("Backup Database", "Workflow",
+                        "SUCCESS", "Backup skipped, script is read-only");
+                return result;
+            }
+            BackupResult backup = scriptTables.isScoped()
+                    ? backupService.createBackup(scriptTables.getWrittenTables())
+                    : backupService.createFullBackup();
             currentStatus = WorkflowStatus.BACKUP_CREATED;
 
-            String result = "✅ Full database backup created at: " + backupPath;
+            String scope = backup.isFull()
+                    ? "Full database backup"
+                    : "Backup of the tables the script can change (" + String.join(", ", backup.getRequestedTables()) + ")";
+            String result = "✅ " + scope + " created at: " + backup.getDirectory() + " (" + backup + ")";
 
             addToHistory(result);
             historyService.logAction("Backup Database", "Workflow",
-                    "SUCCESS", "Backup created at " + backupPath);
+                    "SUCCESS", "Backup created at " + backup.getDirectory() + ": " + backup
+                            + ". " + backup.getTableSummary(10));
 
             return result;
 
@@ -103,6 +143,17 @@ public class WorkflowService {
         }
     }
 
+    // cascades, triggers and views as of the cached schema; unscoped if that can't be loaded
+    private ScriptTableExtractor.ScriptTables writtenWithDependents(String sql) {
+        SchemaMetadataCache.SchemaModel schema;
+        try {
+            schema = schemaMetadataCache.getModel();
+        } catch (Exception e) {
+            schema = null;
+        }
+        return scriptTableExtractor.withDependents(scriptTableExtractor.extract(sql), schema);
+    }
+
     public String approveDeployment() {
         System.out.println("WorkflowService.approveDeployment() called");
 
@@ -140,44 +191,97 @@ public class WorkflowService {
             return "⚠️ No SQL script available to deploy.";
         }
 
+        String sql = lastSQL;
         try {
-            SchemaImpactService.SchemaSnapshot before = schemaImpactService.captureSnapshot();
-            RowImpactService.RowImpactSummary rowImpact = rowImpactService.executeWithImpact(lastSQL);
-            SchemaImpactService.SchemaSnapshot after = schemaImpactService.captureSnapshot();
+            DeploymentJob job;
+            // the job can't record its outcome before activeJobId is set
+            synchronized (jobLock) {
+                currentStatus = WorkflowStatus.DEPLOYING;
+                job = deploymentJobService.submit(j -> runDeployment(j, sql));
+                activeJobId = job.getId();
+            }
+
+            String result = "⏳ Deployment queued as job " + job.getId() + ".";
+            addToHistory(result);
+            historyService.logAction("Deploy to Database", "Workflow",
+                    "QUEUED", "Deployment job " + job.getId() + " submitted");
+            return result;
+
+        } catch (RejectedExecutionException ex) {
+            synchronized (jobLock) {
+                if (currentStatus == WorkflowStatus.DEPLOYING) currentStatus = WorkflowStatus.APPROVED;
+            }
+            historyService.logAction("Deploy to Database", "Workflow",
+                    "FAILED", "Deployment queue is full");
+            return "⚠️ Too many deployments are running. Please try again shortly.";
+        }
+    }
 
-            this.lastSchemaImpact = schemaImpactService.diff(before, after);
-            this.lastRowImpactSummary = String.format(
-                    "INSERT: %d, UPDATE: %d, DELETE: %d",
+    // Runs on a deployment worker thread, not the request thread
+    private void runDeployment(DeploymentJob job, String sql) {
+        try {
+            // Only snapshot the tables the script references (whole schema if it can't be scoped)
+            ScriptTableExtractor.ScriptTables scriptTables = scriptTableExtractor.extract(sql);
+            SchemaImpactService.SchemaSnapshot before = schemaImpactService.captureSnapshot(scriptTables);
+            RowImpactService.RowImpactSummary rowImpact =
+                    rowImpactService.executeWithImpact(sql, job::progress);
+            SchemaImpactService.SchemaSnapshot after = schemaImpactService.captureSnapshotAfter(before);
+
+            List<String> schemaImpact = schemaImpactService.diff(before, after);
+            String rowImpactSummary = String.format(
+                    "INSERT: %d, UPDATE: %d, DELETE: %d (%d batches of up to %d, %.0f rows/sec in %d ms)",
                     rowImpact.getInsertCount(),
                     rowImpact.getUpdateCount(),
-                    rowImpact.getDeleteCount()
+                    rowImpact.getDeleteCount(),
+                    rowImpact.getBatchCount(),
+                    rowImpactService.getBatchSize(),
+                    rowImpact.getRowsPerSecond(),
+                    rowImpact.getElapsedMillis()
             );
 
-            currentStatus = WorkflowStatus.COMPLETED;
-
             String result = "🚀 Deployment executed successfully. " +
                     "Review the Schema Comparison page for schema and row impact.";
-            addToHistory(result);
+            synchronized (jobLock) {
+                if (isActive(job)) {
+                    this.lastSchemaImpact = schemaImpact;
+                    this.lastRowImpactSummary = rowImpactSummary;
+                    currentStatus = WorkflowStatus.COMPLETED;
+                    addToHistory(result);
+                }
+            }
             historyService.logAction("Deploy to Database", "Workflow",
                     "SUCCESS", "Deployment executed with impact captured");
 
-            return result;
+            job.succeed(result);
 
         } catch (Exception ex) {
             String msg = "❌ Deployment failed: " + ex.getMessage();
-            addToHistory(msg);
+            synchronized (jobLock) {
+                if (isActive(job)) {
+                    currentStatus = WorkflowStatus.APPROVED;
+                    addToHistory(msg);
+                }
+            }
             historyService.logAction("Deploy to Database", "Workflow",
                     "FAILED", ex.getMessage());
-            return msg;
+            job.fail(msg);
         }
     }
 
+    // a job finishing after the session moved on only completes its DeploymentJob
+    private boolean isActive(DeploymentJob job) {
+        return job.getId().equals(activeJobId);
+    }
+
     public void reset() {
-        this.currentStatus = WorkflowStatus.DRAFT;
-        this.workflowHistory.clear();
-        this.lastSchemaImpact = null;
-        this.lastRowImpactSummary = null;
-        addToHistory("Workflow reset");
+        synchronized (jobLock) {
+            this.currentStatus = WorkflowStatus.DRAFT;
+            this.workflowHistory.clear();
+            this.lastSchemaImpact = null;
+            this.lastRowImpactSummary = null;
+            this.activeJobId = null;
+            addToHistory("Workflow reset");
+        }
         historyService.logAction("Reset", "Workflow",
                 "DRAFT", "Workflow has been reset");
     }
@@ -207,4 +311,8 @@ public class WorkflowService {
     public String getLastRowImpactSummary() {
         return lastRowImpactSummary;
     }
+
+    public String getActiveJobId() {
+        return activeJobId;
+    }
 }
@@ -0,0 +1,247 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.AnalysisRuleEngine.RuleStats;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.SchemaModel;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AnalysisRulesTest {
+
+    private static final SchemaModel SCHEMA = new SchemaFixture()
+            .table("students", "id", "name", "email", "course_id", "created_at")
+            .index("students", "PRIMARY", true, "id")
+            .index("students", "idx_students_email_name", false, "email", "name")
+            .table("courses", "id", "title", "teacher_id")
+            .index("courses", "PRIMARY", true, "id")
+            .table("teachers", "id", "name")
+            .index("teachers", "PRIMARY", true, "id")
+            .model();
+
+    private final AnalysisRuleEngine engine = newEngine();
+
+    @SuppressWarnings("unchecked")
+    private static AnalysisRuleEngine newEngine(AnalysisRule... extraRules) {
+        ObjectProvider<AnalysisRule> extra = mock(ObjectProvider.class);
+        when(extra.orderedStream()).thenReturn(Stream.of(extraRules));
+        return new AnalysisRuleEngine(extra, "");
+    }
+
+    private static Optional<RuleStats> stats(AnalysisRuleEngine engine, String name) {
+        return engine.getRuleStats().stream().filter(s -> s.getName().equals(name)).findFirst();
+    }
+
+    private List<String> analyze(String sql) throws Exception {
+        return engine.analyze(CCJSqlParserUtil.parse(sql), sql, null);
+    }
+
+    private List<String> advise(String sql) throws Exception {
+        List<String> feedback = engine.analyze(CCJSqlParserUtil.parse(sql), sql, SCHEMA);
+        return feedback.stream().filter(f -> f.contains("💡")).collect(Collectors.toList());
+    }
+
+    private List<String> analyzeUnparsed(String sql) {
+        return engine.analyze(null, sql, null);
+    }
+
+    private static boolean has(List<String> feedback, String fragment) {
+        return feedback.stream().anyMatch(f -> f.contains(fragment));
+    }
+
+    @Test
+    void keywordsInsideStringsDoNotFire() throws Exception {
+        List<String> feedback = analyze(
+                "SELECT name FROM users WHERE note = 'x OR 1=1 UNION EXEC sp_who; DROP' LIMIT 5");
+
+        assertFalse(has(feedback, "SQL injection"));
+        assertFalse(has(feedback, "Dynamic SQL"));
+        assertFalse(has(feedback, "Avoid SELECT *"));
+    }
+
+    @Test
+    void keywordsInsideCommentsDoNotFire() {
+        List<String> feedback = analyzeUnparsed(
+                "SELECT name FROM users /* DROP TABLE x; UNION */ WHERE id = 1 -- TRUNCATE xp_cmdshell");
+
+        assertFalse(has(feedback, "DROP statement"));
+        assertFalse(has(feedback, "TRUNCATE statement"));
+        assertFalse(has(feedback, "SQL injection"));
+    }
+
+    @Test
+    void injectionPatternsInCodeStillFire() throws Exception {
+        assertTrue(has(analyze("SELECT * FROM users WHERE name = '' OR '1' = '1'"), "SQL injection"));
+        assertTrue(has(analyze("SELECT * FROM users WHERE id = 0 OR 1=1"), "SQL injection"));
+        assertTrue(has(analyze("SELECT a FROM x UNION SELECT b FROM y"), "SQL injection"));
+        assertFalse(has(analyze("SELECT * FROM users WHERE id = 0 OR 1=2"), "SQL injection"));
+    }
+
+    @Test
+    void selectChecksReadTheParsedStatement() throws Exception {
+        assertTrue(has(analyze("SELECT * FROM t WHERE a = 1"), "Avoid SELECT *"));
+        assertFalse(has(analyze("SELECT COUNT(*) FROM t WHERE a = 1"), "Avoid SELECT *"));
+        assertTrue(has(analyze("SELECT t.* FROM t WHERE a = 1"), "Avoid SELECT *"));
+
+        assertTrue(has(analyze("SELECT a FROM t"), "No WHERE clause"));
+        assertFalse(has(analyze("SELECT 1"), "No WHERE clause"));
+        // the WHERE inside the string isn't a WHERE clause
+        assertTrue(has(analyze("SELECT 'WHERE' FROM t"), "No WHERE clause"));
+
+        assertTrue(has(analyze("SELECT a FROM t WHERE b = 1 ORDER BY a"), "Consider adding LIMIT"));
+        assertFalse(has(analyze("SELECT a FROM t WHERE b = 1 ORDER BY a LIMIT 10"), "Consider adding LIMIT"));
+
+        assertTrue(has(analyze("SELECT DISTINCT a FROM t WHERE b = 1"), "DISTINCT"));
+        assertFalse(has(analyze("SELECT a FROM t WHERE b = 'DISTINCT'"), "DISTINCT"));
+    }
+
+    @Test
+    void joinsAreCountedFromTheJoinList() throws Exception {
+        String four = "SELECT a.x FROM a JOIN b ON a.id = b.id JOIN c ON a.id = c.id "
+                + "JOIN d ON a.id = d.id JOIN e ON a.id = e.id WHERE a.x = 1";
+        assertTrue(has(analyze(four), "Multiple JOINs (4)"));
+        assertFalse(has(analyze("SELECT a FROM t WHERE note = ' JOIN  JOIN  JOIN  JOIN '"), "Multiple JOINs"));
+    }
+
+    @Test
+    void updateAndDeleteChecks() throws Exception {
+        assertTrue(has(analyze("UPDATE t SET customer_id = 2 WHERE id = 1"), "identifier columns"));
+        assertFalse(has(analyze("UPDATE t SET name = 'ID = 5' WHERE id = 1"), "identifier columns"));
+
+        assertFalse(has(analyze("UPDATE t SET a = 1 WHERE id = 1 LIMIT 1"), "Add LIMIT"));
+        assertTrue(has(analyze("UPDATE t SET a = ' LIMIT ' WHERE id = 1"), "Add LIMIT"));
+        assertFalse(has(analyze("DELETE FROM t WHERE id = 1 LIMIT 1"), "Add LIMIT"));
+        assertTrue(has(analyze("DELETE FROM t"), "DELETE without WHERE"));
+    }
+
+    @Test
+    void insertChecks() throws Exception {
+        assertTrue(has(analyze("INSERT INTO t VALUES (1, 'a')"), "Specify column names"));
+        assertFalse(has(analyze("INSERT INTO t (a, b) VALUES (1, 'a')"), "Specify column names"));
+
+        assertTrue(has(analyze("INSERT INTO t (a, b) VALUES (1, 'a'), (2, 'b')"), "Multiple value sets"));
+        assertFalse(has(analyze("INSERT INTO t (a, b) VALUES (1, 'VALUES (x)')"), "Multiple value sets"));
+    }
+
+    @Test
+    void wherePredicatesAreCheckedOnTheTree() throws Exception {
+        assertTrue(has(analyze("SELECT a FROM t WHERE name LIKE '%x' LIMIT 1"), "Leading wildcard"));
+        assertFalse(has(analyze("SELECT a FROM t WHERE name LIKE 'x%' AND note = ' LIKE ''%'"), "Leading wildcard"));
+
+        assertTrue(has(analyze("SELECT a FROM t WHERE b = 1 AND YEAR(c) = 2020"), "Functions in WHERE"));
+        assertFalse(has(analyze("SELECT a FROM t WHERE c = YEAR(NOW())"), "Functions in WHERE"));
+
+        assertTrue(has(analyze("SELECT a FROM t WHERE (x = 1 OR code = '42')"), "implicit type conversion"));
+        assertFalse(has(analyze("SELECT a FROM t WHERE code = '4a'"), "implicit type conversion"));
+    }
+
+    @Test
+    void unparsedStatementsUseTokens() {
+        assertTrue(has(analyzeUnparsed("DROP SOMETHING ODD x"), "DROP statement"));
+        assertTrue(has(analyzeUnparsed("DELETE odd syntax"), "DELETE without WHERE"));
+        assertTrue(has(analyzeUnparsed("SELECT a FROM t WHERE UPPER(x) = 'A' ???"), "Functions in WHERE"));
+        assertTrue(has(analyzeUnparsed("SELECT a FROM t WHERE x LIKE '%a' ???"), "Leading wildcard"));
+        assertTrue(has(analyzeUnparsed("CALL sp_helpdb ???"), "Dynamic SQL"));
+        assertFalse(has(analyzeUnparsed("SELECT 'sp_helpdb' ???"), "Dynamic SQL"));
+    }
+
+    @Test
+    void keywordScanRunsOnlyForRulesWithPatterns() throws Exception {
+        analyze("SELECT a FROM t WHERE b = 1");
+        assertFalse(stats(engine, "(keyword scan)").isPresent());
+
+        AnalysisRule nolock = new AnalysisRule() {
+            @Override
+            public String getName() { return "nolock"; }
+
+            @Override
+            public List<String> getPatterns() { return List.of("WITH (NOLOCK)"); }
+
+            @Override
+            public void apply(Context ctx, List<String> feedback) {
+                if (ctx.contains("with (nolock)")) feedback.add("NOLOCK x" + ctx.count("WITH (NOLOCK)"));
+            }
+        };
+        AnalysisRuleEngine withPatterns = newEngine(nolock);
+        List<String> feedback = withPatterns.analyze(null,
+                "SELECT a FROM t WITH (NOLOCK) JOIN u WITH\n(NOLOCK) ON t.id = u.id", null);
+        assertTrue(feedback.contains("NOLOCK x2"));
+        assertEquals(1, stats(withPatterns, "(keyword scan)").orElseThrow().getInvocations());
+    }
+
+    @Test
+    void indexAdvisorResolvesAliasesAndUnqualifiedColumns() throws Exception {
+        assertEquals(List.of("💡 Optimization: No index on `students` starts with a column used in WHERE (`name`)"
+                        + " — consider CREATE INDEX idx_students_name ON students (name)."),
+                advise("SELECT s.id FROM students s WHERE s.name = 'x'"));
+        assertEquals(List.of("💡 Optimization: No index on `students` starts with a column used in WHERE"
+                        + " (`created_at`) — consider CREATE INDEX idx_students_created_at ON students (created_at)."),
+                advise("SELECT id FROM students WHERE created_at > '2020-01-01'"));
+        assertEquals(List.of(), advise("SELECT s.id FROM students AS s WHERE s.email = 'a@b.c'"));
+
+        // `name` is in both tables, so it can't be pinned to one without a qualifier
+        assertEquals(List.of(), advise("SELECT s.id FROM students s JOIN teachers t ON t.id = s.course_id "
+                + "WHERE name = 'x'"));
+        assertEquals(1, advise("SELECT s.id FROM students s JOIN teachers t ON t.id = s.course_id "
+                + "WHERE t.name = 'x'").size());
+        // a subquery in FROM could own any unqualified column
+        assertEquals(List.of(), advise("SELECT x.id FROM (SELECT id FROM courses) x, students WHERE created_at > 1"));
+        // without index metadata only the generic hint is given
+        assertTrue(has(analyze("SELECT id FROM students WHERE created_at > 1"), "Consider indexing columns"));
+    }
+
+    @Test
+    void indexAdvisorOnlyCountsTheLeftmostIndexColumn() throws Exception {
+        // `name` is in idx_students_email_name, but not first
+        assertEquals(1, advise("SELECT id FROM students WHERE name = 'x'").size());
+        assertEquals(List.of(), advise("SELECT id FROM students WHERE email = 'a' AND name = 'x'"));
+        assertEquals(List.of(), advise("SELECT id FROM students WHERE id IN (1, 2) AND created_at > 1"));
+
+        // equality columns first, then the range column
+        assertEquals(List.of("💡 Optimization: No index on `students` starts with a column used in WHERE"
+                        + " (`name`, `course_id`, `created_at`) — consider CREATE INDEX"
+                        + " idx_students_name_course_id_created_at ON students (name, course_id, created_at)."),
+                advise("SELECT id FROM students WHERE created_at > 1 AND name = 'x' AND course_id IS NULL"));
+    }
+
+    @Test
+    void indexAdvisorIndexesTheLaterJoinedTable() throws Exception {
+        assertEquals(List.of("💡 Optimization: JOIN column `courses`.`title` has no index"
+                        + " — consider CREATE INDEX idx_courses_title ON courses (title)."),
+                advise("SELECT t.id FROM teachers t JOIN courses c ON t.name = c.title"));
+        assertEquals(List.of("💡 Optimization: JOIN column `teachers`.`name` has no index"
+                        + " — consider CREATE INDEX idx_teachers_name ON teachers (name)."),
+                advise("SELECT t.id FROM courses c JOIN teachers t ON t.name = c.title"));
+        // one indexed side is enough
+        assertEquals(List.of(), advise("SELECT c.id FROM courses c JOIN teachers t ON c.teacher_id = t.id"));
+    }
+
+    @Test
+    void indexAdvisorSuggestsAnIndexForOrderByLimit() throws Exception {
+        assertEquals(List.of("💡 Optimization: ORDER BY `created_at` on `students` needs a filesort"
+                        + " — consider CREATE INDEX idx_students_created_at ON students (created_at)."),
+                advise("SELECT id FROM students ORDER BY created_at LIMIT 10"));
+        assertEquals(List.of(), advise("SELECT id FROM students ORDER BY email, name LIMIT 10"));
+        assertEquals(List.of(), advise("SELECT id FROM students ORDER BY email LIMIT 10"));
+        assertEquals(1, advise("SELECT id FROM students ORDER BY name, email LIMIT 10").size());
+        // without LIMIT every row is read anyway
+        assertEquals(List.of(), advise("SELECT id FROM students ORDER BY created_at"));
+
+        // with a filter, the ORDER BY columns go after the equality columns
+        assertEquals(List.of("💡 Optimization: No index on `students` starts with a column used in WHERE"
+                        + " (`course_id`) — consider CREATE INDEX idx_students_course_id_created_at"
+                        + " ON students (course_id, created_at)."),
+                advise("SELECT id FROM students WHERE course_id = 3 ORDER BY created_at LIMIT 10"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.BoundedStatementParser.Outcome;
+import com.example.sqldeploymentsmanager.service.BoundedStatementParser.Result;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedStatementParserTest {
+
+    // JSqlParser backtracks for minutes on a dozen or so nested parentheses
+    private static final String SLOW = "SELECT " + "(".repeat(15) + "1" + ")".repeat(15);
+
+    private BoundedStatementParser parser;
+
+    @AfterEach
+    void shutdown() {
+        if (parser != null) parser.shutdown();
+    }
+
+    @Test
+    void parsesAndReportsFailures() {
+        parser = new BoundedStatementParser(2000, 1, 3, 30);
+
+        Result ok = parser.parse("SELECT a FROM t WHERE b = 1");
+        assertEquals(Outcome.PARSED, ok.getOutcome());
+        assertNotNull(ok.getStatement());
+
+        assertEquals(Outcome.FAILED, parser.parse("SELEC nonsense (").getOutcome());
+        assertEquals(1, parser.getStats().getParsed());
+        assertEquals(1, parser.getStats().getFailed());
+    }
+
+    @Test
+    void slowParseTimesOutAndBreakerOpensAfterThreshold() {
+        parser = new BoundedStatementParser(200, 1, 2, 30);
+
+        assertEquals(Outcome.TIMED_OUT, parser.parse(SLOW).getOutcome());
+        assertFalse(parser.isBreakerOpen());
+        assertEquals(Outcome.TIMED_OUT, parser.parse(SLOW).getOutcome());
+        assertTrue(parser.isBreakerOpen());
+
+        assertEquals(Outcome.SKIPPED, parser.parse("SELECT 1").getOutcome());
+        assertEquals(1, parser.getStats().getBreakerTrips());
+    }
+
+    @Test
+    void timeSpentQueuedIsNotATimeout() {
+        // one parser thread: the second statement waits behind the slow one
+        parser = new BoundedStatementParser(300, 1, 2, 30);
+
+        CompletableFuture<Result> slow = CompletableFuture.supplyAsync(() -> parser.parse(SLOW));
+        sleep(50);
+        Result queued = parser.parse("SELECT 1");
+
+        assertEquals(Outcome.TIMED_OUT, slow.join().getOutcome());
+        assertNotEquals(Outcome.TIMED_OUT, queued.getOutcome());
+        assertEquals(1, parser.getStats().getTimedOut());
+        assertFalse(parser.isBreakerOpen());
+    }
+
+    @Test
+    void parseAllKeepsStatementOrder() {
+        parser = new BoundedStatementParser(2000, 2, 3, 30);
+
+        List<String> statements = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            statements.add(i % 10 == 9 ? "SELEC broken " + i : "SELECT " + i + " FROM t");
+        }
+        List<Result> results = parser.parseAll(statements);
+
+        assertEquals(64, results.size());
+        for (int i = 0; i < 64; i++) {
+            if (i % 10 == 9) {
+                assertEquals(Outcome.FAILED, results.get(i).getOutcome());
+            } else {
+                assertEquals("SELECT " + i + " FROM t", results.get(i).getStatement().toString());
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.sqldeploymentsmanager.service;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retained heap per preview row held as JdbcTemplate's row maps versus {@link ColumnarResult},
+ * for a typical orders-like result. Sizes are measured by walking the object graph with JOL,
+ * so they don't depend on when the garbage collector runs.
+ */
+class ColumnarResultMemoryTest {
+
+    private static final int ROWS = 2_000;
+    private static final String[] NAMES = {"id", "status", "country", "amount", "quantity", "customer_id"};
+    private static final int[] TYPES = {Types.BIGINT, Types.VARCHAR, Types.CHAR, Types.DOUBLE, Types.INTEGER, Types.BIGINT};
+    private static final String[] STATUSES = {"NEW", "PAID", "SHIPPED", "DELIVERED", "CANCELLED"};
+    private static final String[] COUNTRIES = {"US", "DE", "FR", "GB", "IN", "BR", "JP", "CA"};
+
+    @Test
+    void columnarResultNeedsFarLessHeapPerRow() throws Exception {
+        List<Map<String, Object>> maps = readMaps(ROWS);
+        ColumnarResult columnar = readColumnar(ROWS);
+
+        assertEquals(ROWS, maps.size());
+        assertEquals(ROWS, columnar.size());
+        assertEquals(maps.get(ROWS - 1).get("status"), columnar.getValue(ROWS - 1, "status"));
+
+        double mapPerRow = (double) GraphLayout.parseInstance(maps).totalSize() / ROWS;
+        double columnarPerRow = (double) GraphLayout.parseInstance(columnar).totalSize() / ROWS;
+        assertTrue(mapPerRow >= 5 * columnarPerRow,
+                "expected at least 5x less heap, got maps " + mapPerRow + " vs columnar " + columnarPerRow);
+    }
+
+    private static List<Map<String, Object>> readMaps(int rows) throws Exception {
+        ResultSet rs = resultSet(rows);
+        ColumnMapRowMapper mapper = new ColumnMapRowMapper();
+        List<Map<String, Object>> result = new ArrayList<>();
+        int row = 0;
+        while (rs.next()) result.add(mapper.mapRow(rs, row++));
+        return result;
+    }
+
+    private static ColumnarResult readColumnar(int rows) throws Exception {
+        ResultSet rs = resultSet(rows);
+        ColumnarResult.Builder builder = new ColumnarResult.Builder(rs.getMetaData());
+        while (rs.next()) builder.addRow(rs);
+        return builder.build();
+    }
+
+    // A driver-like ResultSet: every getString/getObject returns a fresh object, as Connector/J does
+    private static ResultSet resultSet(int rows) {
+        ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(
+                ColumnarResultMemoryTest.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount": return NAMES.length;
+                        case "getColumnLabel": case "getColumnName": return NAMES[(Integer) args[0] - 1];
+                        case "getColumnType": return TYPES[(Integer) args[0] - 1];
+                        case "isSigned": return true;
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        int[] row = {-1};
+        boolean[] wasNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(
+                ColumnarResultMemoryTest.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next": return ++row[0] < rows;
+                        case "getMetaData": return meta;
+                        case "wasNull": return wasNull[0];
+                        case "getObject": case "getString": case "getLong": case "getDouble": case "getInt": {
+                            Object value = value(row[0], (Integer) args[0]);
+                            wasNull[0] = value == null;
+                            String name = method.getName();
+                            if (name.equals("getString")) return value == null ? null : new String(value.toString());
+                            if (name.equals("getLong")) return value == null ? 0L : ((Number) value).longValue();
+                            if (name.equals("getDouble")) return value == null ? 0d : ((Number) value).doubleValue();
+                            if (name.equals("getInt")) return value == null ? 0 : ((Number) value).intValue();
+                            return value instanceof String ? new String((String) value) : value;
+                        }
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static Object value(int row, int column) {
+        switch (column) {
+            case 1: return (long) row + 1_000_000;
+            case 2: return STATUSES[row % STATUSES.length];
+            case 3: return COUNTRIES[row % COUNTRIES.length];
+            case 4: return (row % 10_000) / 100.0;
+            case 5: return row % 7 + 1;
+            default: return row % 50 == 0 ? null : (long) row % 5_000;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.DatabaseBackupService.CopyResult;
+import com.example.sqldeploymentsmanager.service.DatabaseBackupService.TableStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DatabaseBackupServiceTest {
+
+    // primary key values of each table in key order; a table without a primary key has no primaryKeys entry
+    private final Map<String, List<Object[]>> keys = new LinkedHashMap<>();
+    private final Map<String, List<String>> primaryKeys = new LinkedHashMap<>();
+    private final Map<String, Long> unkeyedRows = new LinkedHashMap<>();
+    private final Set<String> existingBackups = new HashSet<>();
+
+    // what the service ran, in order; INSERTs and boundary queries with their arguments
+    private final List<String> ddl = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> boundaries = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> inserts = Collections.synchronizedList(new ArrayList<>());
+    // fails the INSERT whose first argument, the lower bound, is this
+    private volatile Object failAfter;
+
+    private final JdbcTemplate jdbc = new JdbcTemplate() {
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType) {
+            assertEquals("SELECT DATABASE()", sql);
+            return requiredType.cast("app");
+        }
+
+        @Override
+        public void execute(String sql) {
+            ddl.add(sql);
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler) {
+            try {
+                for (String table : keys.keySet()) {
+                    List<String> key = primaryKeys.get(table);
+                    if (sql.contains("information_schema.tables")) {
+                        long rows = key == null ? unkeyedRows.get(table) : keys.get(table).size();
+                        handler.processRow(resultSet(table, rows));
+                    } else if (sql.contains("information_schema.columns")) {
+                        for (String column : key == null ? List.of("note") : key) {
+                            handler.processRow(resultSet(table, column));
+                        }
+                        if (key != null) handler.processRow(resultSet(table, "note"));
+                    } else if (sql.contains("information_schema.statistics") && key != null) {
+                        for (String column : key) handler.processRow(resultSet(table, column));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            assertEquals("app_backup", args[0]);
+            return existingBackups.stream().map(elementType::cast).collect(Collectors.toList());
+        }
+
+        // ORDER BY key LIMIT 1 OFFSET n over the rows after the lower bound
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            boundaries.add(sql + " " + Arrays.toString(args));
+            List<Object[]> after = inRange(tableOf(sql), args.length == 0 ? null : args, null);
+            int offset = Integer.parseInt(sql.substring(sql.lastIndexOf("OFFSET ") + 7));
+            if (offset >= after.size()) return List.of();
+            try {
+                return List.of(rowMapper.mapRow(resultSet(after.get(offset)), 0));
+            } catch (SQLException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            inserts.add(sql + " " + Arrays.toString(args));
+            if (failAfter != null && args.length > 0 && failAfter.equals(args[0])) {
+                throw new DataAccessResourceFailureException("Lost connection to MySQL server during query");
+            }
+            String table = tableOf(sql);
+            List<String> key = primaryKeys.get(table);
+            if (key == null) return unkeyedRows.get(table).intValue();
+            int n = key.size();
+            Object[] lower = sql.contains(" > ") ? Arrays.copyOfRange(args, 0, n) : null;
+            Object[] upper = sql.contains(" <= ") ? Arrays.copyOfRange(args, args.length - n, args.length) : null;
+            return inRange(table, lower, upper).size();
+        }
+    };
+
+    private DatabaseBackupService service;
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) service.shutdown();
+    }
+
+    private CopyResult copy(long chunkRows) {
+        // one worker, so chunks run in the order they were planned
+        service = new DatabaseBackupService(jdbc, chunkRows, 1);
+        return service.backupCurrentSchema();
+    }
+
+    private void table(String name, int rows) {
+        List<Object[]> ids = new ArrayList<>();
+        for (int id = 1; id <= rows; id++) ids.add(new Object[] {id});
+        keyed(name, List.of("id"), ids);
+    }
+
+    private void keyed(String name, List<String> primaryKey, List<Object[]> rows) {
+        keys.put(name, rows);
+        primaryKeys.put(name, primaryKey);
+    }
+
+    private void unkeyed(String name, long rows) {
+        keys.put(name, List.of());
+        unkeyedRows.put(name, rows);
+    }
+
+    private String tableOf(String sql) {
+        for (String table : keys.keySet()) {
+            if (sql.contains(" FROM `app`.`" + table + "`")) return table;
+        }
+        throw new AssertionError("no table in " + sql);
+    }
+
+    private List<Object[]> inRange(String table, Object[] lower, Object[] upper) {
+        return keys.get(table).stream()
+                .filter(k -> (lower == null || compare(k, lower) > 0) && (upper == null || compare(k, upper) <= 0))
+                .collect(Collectors.toList());
+    }
+
+    private static int compare(Object[] a, Object[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int c = Integer.compare((Integer) a[i], (Integer) b[i]);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    private static ResultSet resultSet(Object... values) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject(anyInt())).thenAnswer(a -> values[a.<Integer>getArgument(0) - 1]);
+        when(rs.getString(anyInt())).thenAnswer(a -> String.valueOf(values[a.<Integer>getArgument(0) - 1]));
+        when(rs.getLong(anyInt())).thenAnswer(a -> ((Number) values[a.<Integer>getArgument(0) - 1]).longValue());
+        return rs;
+    }
+
+    private static TableStats stats(CopyResult result, String table) {
+        return result.getTables().stream().filter(t -> t.getName().equals(table)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void keyRangesOfChunkRowsRows() {
+        table("students", 25);
+        CopyResult result = copy(10);
+
+        assertEquals(List.of(
+                "SELECT `id` FROM `app`.`students` ORDER BY `id` LIMIT 1 OFFSET 9 []",
+                "SELECT `id` FROM `app`.`students` WHERE `id` > ? ORDER BY `id` LIMIT 1 OFFSET 9 [10]",
+                "SELECT `id` FROM `app`.`students` WHERE `id` > ? ORDER BY `id` LIMIT 1 OFFSET 9 [20]"),
+                boundaries);
+        String insert = "INSERT INTO `app_backup_staging`.`students` (`id`, `note`) SELECT `id`, `note` "
+                + "FROM `app`.`students`";
+        assertEquals(List.of(
+                insert + " WHERE `id` <= ? [10]",
+                insert + " WHERE `id` > ? AND `id` <= ? [10, 20]",
+                insert + " WHERE `id` > ? [20]"), inserts);
+        assertEquals(25, stats(result, "students").getRows());
+        assertEquals(3, stats(result, "students").getChunks());
+    }
+
+    @Test
+    void boundaryOnTheLastRowLeavesAnEmptyLastChunk() {
+        table("students", 20);
+        CopyResult result = copy(10);
+
+        assertEquals(3, inserts.size());
+        assertTrue(inserts.get(2).endsWith(" WHERE `id` > ? [20]"), inserts.get(2));
+        assertEquals(20, stats(result, "students").getRows());
+        assertEquals(3, stats(result, "students").getChunks());
+    }
+
+    @Test
+    void compositeKeyComparesAsARow() {
+        keyed("enrollments", List.of("student_id", "course_id"), List.of(
+                new Object[] {1, 1}, new Object[] {1, 2}, new Object[] {2, 1}));
+        CopyResult result = copy(2);
+
+        assertEquals("SELECT `student_id`, `course_id` FROM `app`.`enrollments` WHERE (`student_id`, `course_id`) "
+                + "> (?, ?) ORDER BY `student_id`, `course_id` LIMIT 1 OFFSET 1 [1, 2]", boundaries.get(1));
+        assertTrue(inserts.get(0).endsWith(" WHERE (`student_id`, `course_id`) <= (?, ?) [1, 2]"), inserts.get(0));
+        assertTrue(inserts.get(1).endsWith(" WHERE (`student_id`, `course_id`) > (?, ?) [1, 2]"), inserts.get(1));
+        assertEquals(3, stats(result, "enrollments").getRows());
+    }
+
+    @Test
+    void tableWithoutPrimaryKeyIsCopiedInOneStatement() {
+        unkeyed("audit_log", 7);
+        CopyResult result = copy(2);
+
+        assertTrue(boundaries.isEmpty());
+        assertEquals(List.of("INSERT INTO `app_backup_staging`.`audit_log` (`note`) SELECT `note` "
+                + "FROM `app`.`audit_log` []"), inserts);
+        assertEquals(7, stats(result, "audit_log").getRows());
+        assertTrue(stats(result, "audit_log").isUnchunked());
+    }
+
+    @Test
+    void copiesReplaceTheBackupInOneRename() {
+        table("courses", 3);
+        table("students", 3);
+        existingBackups.add("students");
+        copy(10);
+
+        assertEquals(List.of(
+                "CREATE DATABASE IF NOT EXISTS `app_backup`",
+                "DROP DATABASE IF EXISTS `app_backup_staging`",
+                "CREATE DATABASE `app_backup_staging`",
+                "CREATE TABLE `app_backup_staging`.`courses` LIKE `app`.`courses`",
+                "CREATE TABLE `app_backup_staging`.`students` LIKE `app`.`students`",
+                "RENAME TABLE `app_backup_staging`.`courses` TO `app_backup`.`courses`, "
+                        + "`app_backup`.`students` TO `app_backup_staging`.`swap`, "
+                        + "`app_backup_staging`.`students` TO `app_backup`.`students`, "
+                        + "`app_backup_staging`.`swap` TO `app_backup_staging`.`students`",
+                "DROP DATABASE `app_backup_staging`"), ddl);
+    }
+
+    @Test
+    void failedChunkLeavesThePreviousBackup() {
+        table("students", 25);
+        existingBackups.add("students");
+        // the last chunk fails after the first two were copied
+        failAfter = 20;
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> copy(10));
+        assertEquals("table students: Lost connection to MySQL server during query", e.getMessage());
+        assertFalse(ddl.stream().anyMatch(sql -> sql.contains("`app_backup`.")), ddl.toString());
+        assertEquals("DROP DATABASE IF EXISTS `app_backup_staging`", ddl.get(ddl.size() - 1));
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.ExplainCostService.ExplainReport;
+import com.example.sqldeploymentsmanager.service.ExplainCostService.StatementCost;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExplainCostServiceTest {
+
+    // EXPLAIN FORMAT=JSON output as MySQL 8 prints it, trimmed to the fields the service reads
+    private static final String SINGLE_TABLE = json("{'query_block': {'select_id': 1,"
+            + " 'cost_info': {'query_cost': '1.25'},"
+            + " 'table': {'table_name': 'students', 'access_type': 'ref', 'key': 'idx_students_course',"
+            + "   'rows_examined_per_scan': 3, 'rows_produced_per_join': 3}}}");
+
+    // students is scanned once, courses once per student row, enrollments once per joined row
+    private static final String NESTED_LOOP = json("{'query_block': {'select_id': 1,"
+            + " 'cost_info': {'query_cost': '520.10'},"
+            + " 'nested_loop': ["
+            + "  {'table': {'table_name': 's', 'access_type': 'ALL',"
+            + "    'rows_examined_per_scan': 1000, 'rows_produced_per_join': 100}},"
+            + "  {'table': {'table_name': 'c', 'access_type': 'eq_ref',"
+            + "    'rows_examined_per_scan': 1, 'rows_produced_per_join': 100}},"
+            + "  {'table': {'table_name': 'e', 'access_type': 'ref',"
+            + "    'rows_examined_per_scan': 20, 'rows_produced_per_join': 2000}}]}}");
+
+    private static final String FILESORT_TEMPORARY = json("{'query_block': {'select_id': 1,"
+            + " 'cost_info': {'query_cost': '10.50'},"
+            + " 'ordering_operation': {'using_filesort': true,"
+            + "  'grouping_operation': {'using_temporary_table': true, 'using_filesort': false,"
+            + "   'table': {'table_name': 't', 'access_type': 'index',"
+            + "     'rows_examined_per_scan': 50, 'rows_produced_per_join': 50}}}}}");
+
+    // the union's own temporary table is listed with access_type ALL but isn't a table scan
+    private static final String UNION = json("{'query_block': {"
+            + " 'union_result': {'using_temporary_table': true, 'table_name': '<union1,2>', 'access_type': 'ALL',"
+            + "  'query_specifications': ["
+            + "   {'dependent': false, 'query_block': {'select_id': 1, 'cost_info': {'query_cost': '2.00'},"
+            + "     'table': {'table_name': 'a', 'access_type': 'range',"
+            + "       'rows_examined_per_scan': 10, 'rows_produced_per_join': 10}}},"
+            + "   {'dependent': false, 'query_block': {'select_id': 2, 'cost_info': {'query_cost': '1.00'},"
+            + "     'table': {'table_name': 'b', 'access_type': 'const',"
+            + "       'rows_examined_per_scan': 1, 'rows_produced_per_join': 1}}}]}}}");
+
+    // a full scan over the warn threshold, with a subquery that is run once
+    private static final String LARGE_SCAN = json("{'query_block': {'select_id': 1,"
+            + " 'cost_info': {'query_cost': '25000.00'},"
+            + " 'table': {'table_name': 'events', 'access_type': 'ALL',"
+            + "   'rows_examined_per_scan': 250000, 'rows_produced_per_join': 25000,"
+            + "   'attached_subqueries': [{'dependent': false, 'query_block': {'select_id': 2,"
+            + "     'table': {'table_name': 'settings', 'access_type': 'ALL',"
+            + "       'rows_examined_per_scan': 12, 'rows_produced_per_join': 12}}}]}}}");
+
+    private final BoundedStatementParser parser = new BoundedStatementParser(2000, 1, 3, 30);
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    private final ExplainCostService service = newService();
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+        parser.shutdown();
+    }
+
+    private static String json(String singleQuoted) {
+        return singleQuoted.replace('\'', '"');
+    }
+
+    private ExplainCostService newService() {
+        JdbcTemplate pool = mock(JdbcTemplate.class);
+        when(pool.getDataSource()).thenReturn(mock(DataSource.class));
+        ExplainCostService explain = new ExplainCostService(pool, new ParsedScriptCache(parser, 4, 1_000_000),
+                new ObjectMapper(), true, 2, 5, 200, 100_000);
+        ReflectionTestUtils.setField(explain, "jdbcTemplate", jdbc);
+        return explain;
+    }
+
+    private StatementCost reduce(String plan) throws Exception {
+        StatementCost cost = new StatementCost(1, 1, "q");
+        service.reduce(new ObjectMapper().readTree(plan), cost);
+        return cost;
+    }
+
+    private long estimateRows(String plan) {
+        when(jdbc.queryForObject(anyString(), eq(String.class))).thenReturn(plan);
+        return service.estimateRows("SELECT 1");
+    }
+
+    @Test
+    void singleTablePlan() throws Exception {
+        StatementCost cost = reduce(SINGLE_TABLE);
+        assertEquals(3, cost.getRowsExamined());
+        assertEquals("ref", cost.getAccessType());
+        assertEquals(1.25, cost.getQueryCost());
+        assertTrue(cost.getFullScans().isEmpty());
+        assertFalse(cost.isLargeFullScan());
+        assertFalse(cost.isFilesort());
+        assertFalse(cost.isTemporary());
+        assertEquals(3, estimateRows(SINGLE_TABLE));
+    }
+
+    @Test
+    void nestedLoopMultipliesRowsByTheRowsJoinedBefore() throws Exception {
+        StatementCost cost = reduce(NESTED_LOOP);
+        // 1000 + 1 * 100 + 20 * 100
+        assertEquals(3100, cost.getRowsExamined());
+        assertEquals("ALL", cost.getAccessType());
+        assertEquals(Set.of("s"), cost.getFullScans());
+        assertFalse(cost.isLargeFullScan());
+        // the last table of the join produces the result
+        assertEquals(2000, estimateRows(NESTED_LOOP));
+    }
+
+    @Test
+    void filesortAndTemporaryAreFoundUnderTheirOperations() throws Exception {
+        StatementCost cost = reduce(FILESORT_TEMPORARY);
+        assertTrue(cost.isFilesort());
+        assertTrue(cost.isTemporary());
+        assertEquals(50, cost.getRowsExamined());
+        assertEquals("index", cost.getAccessType());
+        assertEquals(50, estimateRows(FILESORT_TEMPORARY));
+    }
+
+    @Test
+    void unionAddsUpItsParts() throws Exception {
+        StatementCost cost = reduce(UNION);
+        assertEquals(11, cost.getRowsExamined());
+        assertEquals("range", cost.getAccessType());
+        assertTrue(cost.getFullScans().isEmpty());
+        assertTrue(cost.isTemporary());
+        // a union has no cost for the whole query
+        assertEquals(-1, cost.getQueryCost());
+        assertEquals(11, estimateRows(UNION));
+    }
+
+    @Test
+    void fullScanOverTheThresholdIsLarge() throws Exception {
+        StatementCost cost = reduce(LARGE_SCAN);
+        assertEquals(250_012, cost.getRowsExamined());
+        assertEquals("ALL", cost.getAccessType());
+        assertEquals(Set.of("events", "settings"), cost.getFullScans());
+        assertTrue(cost.isLargeFullScan());
+        assertEquals(25000, estimateRows(LARGE_SCAN));
+
+        assertEquals(-1, estimateRows("{}"));
+        assertEquals(-1, estimateRows("not json"));
+    }
+
+    @Test
+    void explainsOnlyQueriesAndReportsEachFailure() {
+        when(jdbc.queryForObject(eq("EXPLAIN FORMAT=JSON SELECT id FROM students WHERE course_id = 1"),
+                eq(String.class))).thenReturn(SINGLE_TABLE);
+        when(jdbc.queryForObject(eq("EXPLAIN FORMAT=JSON DELETE FROM events"), eq(String.class)))
+                .thenReturn(LARGE_SCAN);
+        when(jdbc.queryForObject(eq("EXPLAIN FORMAT=JSON UPDATE staging SET a = 1"), eq(String.class)))
+                .thenThrow(new BadSqlGrammarException("explain", "UPDATE staging SET a = 1",
+                        new SQLException("Table 'app.staging' doesn't exist")));
+
+        ExplainReport report = service.explain("CREATE TABLE staging (a INT);\n"
+                + "SELECT id FROM students WHERE course_id = 1;\n"
+                + "INSERT INTO staging VALUES (1);\n"
+                + "UPDATE staging SET a = 1;\n"
+                + "DELETE FROM events;");
+
+        List<StatementCost> costs = report.getStatements();
+        assertEquals(3, costs.size());
+        assertEquals(2, costs.get(0).getIndex());
+        assertEquals(2, costs.get(0).getLine());
+        assertEquals(3, costs.get(0).getRowsExamined());
+        assertEquals("Table 'app.staging' doesn't exist", costs.get(1).getError());
+        assertEquals(5, costs.get(2).getIndex());
+        assertTrue(costs.get(2).isLargeFullScan());
+        assertEquals(1, report.getLargeFullScans());
+        assertEquals(0, report.getSkipped());
+        assertNull(report.getError());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.model.HistoryRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 64 threads logging actions at once: {@link HistoryService}'s lock-free ring against the
+ * same bounded history kept in a deque behind one lock. Journal and database writes are
+ * off, so only the in-memory history is measured; both sides build the same record.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class HistoryContentionBenchmark {
+
+    @Param({"1000"})
+    public int capacity;
+
+    private HistoryService ring;
+    private ArrayDeque<HistoryRecord> locked;
+
+    @Setup
+    public void setUp() {
+        HistoryJournal journal = new HistoryJournal(false, "unused", 0, 1, 0, 1);
+        HistoryDatabaseWriter database = new HistoryDatabaseWriter(null, false, 1, 0, 1, 0, "benchmark");
+        ring = new HistoryService(journal, database, capacity);
+        locked = new ArrayDeque<>(capacity);
+    }
+
+    @Benchmark
+    public void ring() {
+        ring.logAction("Deploy", "Benchmark", "SUCCESS", "details");
+    }
+
+    @Benchmark
+    public void synchronizedList() {
+        HistoryRecord record = new HistoryRecord("Deploy", "Benchmark", "SUCCESS", "details");
+        synchronized (locked) {
+            if (locked.size() == capacity) locked.removeFirst();
+            locked.addLast(record);
+        }
+    }
+}
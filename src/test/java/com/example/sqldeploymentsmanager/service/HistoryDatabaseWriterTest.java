@@ -0,0 +1,167 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.model.HistoryEvent;
+import com.example.sqldeploymentsmanager.model.HistoryRecord;
+import com.example.sqldeploymentsmanager.service.HistoryDatabaseWriter.WriterStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryDatabaseWriterTest {
+
+    // the INSERTs the writer ran, each with its arguments; fails the first `failures` calls
+    private final List<Object[]> inserts = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger attempts = new AtomicInteger();
+    private volatile int failures;
+
+    private final JdbcTemplate jdbc = new JdbcTemplate() {
+        @Override
+        public int update(String sql, Object... args) {
+            assertTrue(sql.startsWith("INSERT INTO history_event"), sql);
+            if (attempts.incrementAndGet() <= failures) {
+                throw new DataAccessResourceFailureException("database down");
+            }
+            inserts.add(args);
+            return args.length / 6;
+        }
+    };
+
+    private final List<HistoryDatabaseWriter> started = new ArrayList<>();
+
+    @AfterEach
+    void stopWriters() {
+        for (HistoryDatabaseWriter writer : started) writer.shutdown();
+    }
+
+    private HistoryDatabaseWriter writer(int queueCapacity, long offerTimeoutMillis, int batchSize, int maxRetries) {
+        return new HistoryDatabaseWriter(jdbc, true, queueCapacity, offerTimeoutMillis, batchSize, maxRetries,
+                "node-1");
+    }
+
+    private HistoryDatabaseWriter start(HistoryDatabaseWriter writer) {
+        writer.start();
+        started.add(writer);
+        return writer;
+    }
+
+    private static void append(HistoryDatabaseWriter writer, int count) {
+        for (int i = 0; i < count; i++) writer.append(new HistoryRecord("Action " + i, "Test", "SUCCESS", "#" + i));
+    }
+
+    private static void await(LongSupplier value, long expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (value.getAsLong() < expected) {
+            assertTrue(System.nanoTime() < deadline, "writer did not catch up");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    @Test
+    void fullQueueDropsWithoutWaitingByDefault() {
+        // not started, so nothing drains the queue
+        HistoryDatabaseWriter writer = writer(2, 0, 10, 0);
+        append(writer, 5);
+
+        WriterStats stats = writer.getStats();
+        assertEquals(2, stats.getQueued());
+        assertEquals(2, stats.getEnqueued());
+        assertEquals(3, stats.getDropped());
+        assertEquals(0, stats.getWaits());
+    }
+
+    @Test
+    void fullQueueWaitsAtMostTheOfferTimeout() {
+        HistoryDatabaseWriter writer = writer(1, 50, 10, 0);
+        append(writer, 1);
+
+        long start = System.nanoTime();
+        append(writer, 1);
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(waitedMillis >= 45 && waitedMillis < 2000, "waited " + waitedMillis + " ms");
+        assertEquals(1, writer.getStats().getWaits());
+        assertEquals(1, writer.getStats().getDropped());
+    }
+
+    @Test
+    void queuedEventsAreWrittenAsMultiRowInserts() {
+        HistoryDatabaseWriter writer = writer(100, 0, 2, 0);
+        append(writer, 4);
+        writer.append(new HistoryRecord("Long", "Test", "S".repeat(40),
+                "d".repeat(HistoryEvent.DETAILS_LENGTH + 10)));
+        start(writer);
+        await(() -> writer.getStats().getWritten(), 5);
+
+        // six parameters per row
+        assertEquals(List.of(12, 12, 6), inserts.stream().map(args -> args.length).collect(Collectors.toList()));
+        assertEquals(3, writer.getStats().getBatches());
+        Object[] first = inserts.get(0);
+        assertEquals("Action 0", first[0]);
+        assertEquals("node-1", first[4]);
+        assertEquals("Action 1", first[6]);
+        Object[] last = inserts.get(2);
+        assertEquals(32, ((String) last[2]).length());
+        assertEquals(HistoryEvent.DETAILS_LENGTH, ((String) last[3]).length());
+    }
+
+    @Test
+    void failedBatchIsRetriedWithBackoff() {
+        failures = 1;
+        HistoryDatabaseWriter writer = writer(100, 0, 10, 3);
+        append(writer, 3);
+        long start = System.nanoTime();
+        start(writer);
+        await(() -> writer.getStats().getWritten(), 3);
+
+        assertEquals(2, attempts.get());
+        assertEquals(1, writer.getStats().getBatches());
+        assertEquals(0, writer.getStats().getFailed());
+        // the first backoff is 500 ms
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(450));
+    }
+
+    @Test
+    void batchIsCountedAsFailedOnceTheRetriesRunOut() {
+        failures = Integer.MAX_VALUE;
+        // queued before the writer starts, so all three go in one batch
+        HistoryDatabaseWriter writer = writer(100, 0, 10, 1);
+        append(writer, 3);
+        start(writer);
+        await(() -> writer.getStats().getFailed(), 3);
+
+        assertEquals(2, attempts.get());
+        assertEquals(0, writer.getStats().getWritten());
+        assertEquals(0, writer.getStats().getDropped());
+    }
+
+    @Test
+    void shutdownStopsRetrying() {
+        failures = Integer.MAX_VALUE;
+        HistoryDatabaseWriter writer = start(writer(100, 0, 10, 100));
+        append(writer, 1);
+        await(attempts::get, 1);
+
+        long start = System.nanoTime();
+        writer.shutdown();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3), "shutdown waited on retries");
+        assertEquals(1, writer.getStats().getFailed());
+        assertTrue(attempts.get() <= 2, attempts.get() + " attempts");
+    }
+}
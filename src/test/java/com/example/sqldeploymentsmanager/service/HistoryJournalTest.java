@@ -0,0 +1,214 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.model.HistoryRecord;
+import com.example.sqldeploymentsmanager.service.HistoryService.HistoryPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<HistoryJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeJournals() {
+        for (HistoryJournal journal : opened) journal.shutdown();
+    }
+
+    private HistoryJournal open(long segmentBytes, int maxSegments, int retentionDays) {
+        HistoryJournal journal = new HistoryJournal(true, directory.toString(), segmentBytes, maxSegments,
+                retentionDays, 1024);
+        journal.open();
+        opened.add(journal);
+        assertTrue(journal.isEnabled());
+        return journal;
+    }
+
+    private static void append(HistoryJournal journal, int from, int to, String details) {
+        long before = journal.getStats().getWritten();
+        for (int i = from; i < to; i++) {
+            journal.append(new HistoryRecord("Action " + i, "Test", i % 2 == 0 ? "SUCCESS" : "FAILED",
+                    "#" + i + details));
+        }
+        awaitWritten(journal, before + to - from);
+    }
+
+    private static void awaitWritten(HistoryJournal journal, long records) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (journal.getStats().getWritten() < records) {
+            assertTrue(System.nanoTime() < deadline, "journal writer did not catch up");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static List<String> details(HistoryPage page) {
+        return page.getRecords().stream().map(HistoryRecord::getDetails).collect(Collectors.toList());
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(suffix)).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void recordsSurviveAReopen() {
+        HistoryJournal journal = open(0, 8, 0);
+        append(journal, 0, 6, "");
+        journal.shutdown();
+
+        HistoryJournal reopened = open(0, 8, 0);
+        HistoryPage page = reopened.query(null, null, null, 0, 10);
+        assertEquals(6, page.getTotal());
+        assertEquals(List.of("#5", "#4", "#3", "#2", "#1", "#0"), details(page));
+        assertEquals(3, reopened.query("failed", null, null, 0, 10).getTotal());
+    }
+
+    @Test
+    void truncatedLastFrameIsCutOffAndEarlierRecordsRecovered() throws IOException {
+        HistoryJournal journal = open(0, 8, 0);
+        append(journal, 0, 5, "");
+        journal.shutdown();
+
+        Path log = files(".log").get(0);
+        long fullSize = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            // a crash in the middle of the last record's payload
+            channel.truncate(fullSize - 10);
+        }
+
+        HistoryJournal reopened = open(0, 8, 0);
+        HistoryPage page = reopened.query(null, null, null, 0, 10);
+        assertEquals(List.of("#3", "#2", "#1", "#0"), details(page));
+        assertTrue(Files.size(log) < fullSize - 10, "the torn frame is cut off");
+
+        // appends continue from the last intact record
+        append(reopened, 5, 6, "");
+        assertEquals(List.of("#5", "#3", "#2", "#1", "#0"), details(reopened.query(null, null, null, 0, 10)));
+    }
+
+    @Test
+    void corruptLastFrameIsCutOffAndEarlierRecordsRecovered() throws IOException {
+        HistoryJournal journal = open(0, 8, 0);
+        append(journal, 0, 5, "");
+        journal.shutdown();
+
+        Path log = files(".log").get(0);
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // flip a byte inside the last record's payload, so its crc no longer matches
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, size - 6);
+            b.put(0, (byte) (b.get(0) ^ 0x5A));
+            b.rewind();
+            channel.write(b, size - 6);
+        }
+
+        HistoryJournal reopened = open(0, 8, 0);
+        assertEquals(List.of("#3", "#2", "#1", "#0"), details(reopened.query(null, null, null, 0, 10)));
+        assertEquals(4, reopened.getStats().getRecords());
+    }
+
+    @Test
+    void garbageAfterTheLastFrameIsDropped() throws IOException {
+        HistoryJournal journal = open(0, 8, 0);
+        append(journal, 0, 3, "");
+        journal.shutdown();
+
+        Path log = files(".log").get(0);
+        long size = Files.size(log);
+        Files.write(log, new byte[] {0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        HistoryJournal reopened = open(0, 8, 0);
+        assertEquals(List.of("#2", "#1", "#0"), details(reopened.query(null, null, null, 0, 10)));
+        assertEquals(size, Files.size(log));
+    }
+
+    @Test
+    void rollsOverSegmentsAndDeletesTheOldestPastMaxSegments() throws IOException {
+        // ~10 KB records: about six fit in each 64 KB segment
+        String padding = " " + "x".repeat(10_000);
+        HistoryJournal journal = open(64 * 1024, 3, 0);
+        // one at a time, so each record is its own batch
+        for (int i = 0; i < 40; i++) append(journal, i, i + 1, padding);
+
+        List<Path> logs = files(".log");
+        assertEquals(3, logs.size());
+        assertEquals(3, journal.getStats().getSegments());
+        assertFalse(Files.exists(directory.resolve("history-0000000001.log")));
+        assertFalse(Files.exists(directory.resolve("history-0000000001.idx")));
+        // every segment but the active one has an index
+        assertEquals(2, files(".idx").size());
+        for (Path log : logs) assertTrue(Files.size(log) <= 64 * 1024, log + " over the segment size");
+
+        HistoryPage page = journal.query(null, null, null, 0, 100);
+        long retained = page.getTotal();
+        assertTrue(retained > 6 && retained < 40, "kept " + retained);
+        List<String> newest = details(page);
+        for (int i = 0; i < retained; i++) {
+            assertTrue(newest.get(i).startsWith("#" + (39 - i) + " "), newest.get(i));
+        }
+
+        // sealed segments come back from their indexes with the same counts
+        journal.shutdown();
+        HistoryJournal reopened = open(64 * 1024, 3, 0);
+        assertEquals(retained, reopened.query(null, null, null, 0, 100).getTotal());
+        assertEquals(retained / 2, reopened.query("failed", null, null, 0, 100).getTotal());
+    }
+
+    @Test
+    void expiredSegmentsAreDeletedOnOpen() throws IOException {
+        long now = System.currentTimeMillis();
+        Path old = directory.resolve("history-0000000001.log");
+        Path current = directory.resolve("history-0000000002.log");
+        Files.write(old, frame(now - TimeUnit.DAYS.toMillis(10), "old"));
+        Files.write(current, frame(now, "new"));
+
+        HistoryJournal journal = open(0, 8, 1);
+        assertFalse(Files.exists(old));
+        assertEquals(List.of("new"), details(journal.query(null, null, null, 0, 10)));
+    }
+
+    // one record in the journal's on-disk format
+    private static byte[] frame(long time, String details) {
+        String[] fields = {"SUCCESS", "Action", "Test", details, "2026-01-01 00:00:00"};
+        int length = 8;
+        for (String field : fields) length += 4 + field.getBytes(StandardCharsets.UTF_8).length;
+        ByteBuffer payload = ByteBuffer.allocate(length).putLong(time);
+        for (String field : fields) {
+            byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+            payload.putInt(bytes.length).put(bytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        return ByteBuffer.allocate(8 + length + 4).putInt(length).putInt((int) crc.getValue())
+                .put(payload.array()).putInt(length).array();
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.model.HistoryRecord;
+import com.example.sqldeploymentsmanager.service.HistoryService.HistoryPage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryServiceTest {
+
+    // journal and database writer disabled: pages come from the ring
+    private static HistoryService newService(int capacity) {
+        HistoryJournal journal = new HistoryJournal(false, "unused", 0, 1, 0, 1);
+        HistoryDatabaseWriter database = new HistoryDatabaseWriter(null, false, 1, 0, 1, 0, "test");
+        return new HistoryService(journal, database, capacity);
+    }
+
+    @Test
+    void pagesNewestFirstAndDropsTheOldest() {
+        HistoryService history = newService(5);
+        for (int i = 0; i < 8; i++) {
+            history.logAction("Action " + i, "Test", i % 2 == 0 ? "SUCCESS" : "FAILED", "#" + i);
+        }
+
+        HistoryPage page = history.getPage(0, 2);
+        assertEquals(5, page.getTotal());
+        assertEquals("#7", page.getRecords().get(0).getDetails());
+        assertEquals("#6", page.getRecords().get(1).getDetails());
+
+        HistoryPage failed = history.getPage("failed", null, null, 0, 10);
+        assertEquals(3, failed.getTotal());
+        assertEquals("#5", failed.getRecords().get(1).getDetails());
+
+        List<HistoryRecord> all = history.getHistory();
+        assertEquals("#3", all.get(0).getDetails());
+        assertEquals("#7", all.get(4).getDetails());
+    }
+
+    @Test
+    void clearedEntriesAreGone() {
+        HistoryService history = newService(4);
+        history.logAction("Before", "Test", "SUCCESS", "old");
+        history.clearHistory();
+        history.logAction("After", "Test", "SUCCESS", "new");
+
+        assertEquals(1, history.getPage(0, 10).getTotal());
+        assertEquals("new", history.getHistory().get(0).getDetails());
+    }
+
+    @Test
+    void concurrentWritersWrappingTheRingKeepTheNewestEntries() throws Exception {
+        // small rings wrap constantly, so writers keep landing on slots another writer has
+        // just claimed for a newer sequence; the ring is checked each time all writers pause
+        for (int capacity : new int[]{1, 2, 8}) {
+            HistoryService history = newService(capacity);
+            List<String> problems = new ArrayList<>();
+            int writers = 64;
+            CyclicBarrier pause = new CyclicBarrier(writers, () -> {
+                // every slot must hold the last sequence that maps to it; an older entry
+                // published late would leave a hole in the newest entries
+                List<HistoryRecord> retained = history.getHistory();
+                Set<String> details = new HashSet<>();
+                for (HistoryRecord record : retained) details.add(record.getDetails());
+                if (retained.size() != capacity || details.size() != capacity) {
+                    problems.add(retained.size() + " entries retained");
+                }
+            });
+
+            ExecutorService pool = Executors.newFixedThreadPool(writers);
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                pool.execute(() -> {
+                    try {
+                        for (int round = 0; round < 200; round++) {
+                            for (int i = 0; i < 10; i++) {
+                                history.logAction("Write", "Test", "SUCCESS", writer + ":" + round + ":" + i);
+                            }
+                            pause.await();
+                        }
+                    } catch (Exception e) {
+                        problems.add(e.toString());
+                    }
+                });
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+            assertEquals(List.of(), problems, "capacity " + capacity);
+        }
+    }
+}
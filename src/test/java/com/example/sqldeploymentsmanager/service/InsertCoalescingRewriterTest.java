@@ -0,0 +1,146 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.InsertCoalescingRewriter.RewrittenStatement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InsertCoalescingRewriterTest {
+
+    private BoundedStatementParser parser;
+    private InsertCoalescingRewriter rewriter;
+
+    @BeforeEach
+    void setUp() {
+        parser = new BoundedStatementParser(2000, 1, 3, 30);
+        // no data source: max_allowed_packet falls back to the server default
+        rewriter = new InsertCoalescingRewriter(new JdbcTemplate(), parser);
+        ReflectionTestUtils.setField(rewriter, "enabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        parser.shutdown();
+    }
+
+    @Test
+    void mergesConsecutiveLiteralRows() {
+        List<RewrittenStatement> out = rewrite(
+                "INSERT INTO t (a, b) VALUES (1, 'x');\n"
+                + "INSERT INTO t (a, b) VALUES (-2, NULL);\n"
+                + "INSERT INTO t (a, b) VALUES (3.5, DEFAULT);\n"
+                + "INSERT INTO t (a, b) VALUES (TRUE, X'0F');\n"
+                + "INSERT INTO t (a, b) VALUES (0x1F, DATE '2024-01-01');");
+        assertEquals(1, out.size());
+        assertEquals(5, out.get(0).getSourceStatements().size());
+        assertEquals("INSERT INTO t (a, b) VALUES (1, 'x'), (-2, NULL), (3.5, DEFAULT), (TRUE, X'0F'), "
+                + "(0x1F, DATE '2024-01-01')", out.get(0).getSql());
+        assertEquals(1, out.get(0).getLine());
+    }
+
+    @Test
+    void mergesSingleColumnRows() {
+        List<RewrittenStatement> out = rewrite("INSERT INTO t (a) VALUES (1);\nINSERT INTO t (a) VALUES ('b');");
+        assertEquals(1, out.size());
+        assertEquals(2, out.get(0).getSourceStatements().size());
+    }
+
+    @Test
+    void keepsStatementsWithNonLiteralValuesAsWritten() {
+        String[] nonLiteral = {
+                "INSERT INTO t (a) VALUES ((SELECT max(a) FROM t))",
+                "INSERT INTO t (a, b) VALUES (LAST_INSERT_ID(), 1)",
+                "INSERT INTO t (a, b) VALUES (@v, 1)",
+                "INSERT INTO t (a, b) VALUES (RAND(), 1)",
+                "INSERT INTO t (a, b) VALUES (NOW(), 1)",
+                "INSERT INTO t (a, b) VALUES (UUID(), 1)",
+                "INSERT INTO t (a, b) VALUES (CURRENT_TIMESTAMP, 1)",
+                "INSERT INTO t (a, b) VALUES (1, a + 1)",
+                "INSERT INTO t (a, b) VALUES (-(SELECT count(*) FROM t), 1)",
+                "INSERT INTO t (a, b) VALUES (1 + 1, 1)",
+        };
+        for (String stmt : nonLiteral) {
+            List<RewrittenStatement> out = rewrite("INSERT INTO t (a, b) VALUES (0, 0);\n" + stmt + ";\n" + stmt + ";");
+            assertEquals(3, out.size(), stmt);
+            assertEquals(stmt, out.get(1).getSql());
+            assertEquals(stmt, out.get(2).getSql());
+        }
+    }
+
+    @Test
+    void nonLiteralRowSplitsARun() {
+        List<RewrittenStatement> out = rewrite(
+                "INSERT INTO t (a) VALUES (1);\n"
+                + "INSERT INTO t (a) VALUES (2);\n"
+                + "INSERT INTO t (a) VALUES ((SELECT max(a) + 1 FROM t));\n"
+                + "INSERT INTO t (a) VALUES (4);\n"
+                + "INSERT INTO t (a) VALUES (5);");
+        assertEquals(3, out.size());
+        assertEquals(List.of(2, 1, 2), sizes(out));
+        assertEquals(List.of(1, 3, 4), lines(out));
+    }
+
+    @Test
+    void doesNotMergeDifferentTargetsOrColumnLists() {
+        List<RewrittenStatement> out = rewrite(
+                "INSERT INTO t (a) VALUES (1);\n"
+                + "INSERT INTO u (a) VALUES (2);\n"
+                + "INSERT INTO u (b) VALUES (3);\n"
+                + "INSERT IGNORE INTO u (b) VALUES (4);");
+        assertEquals(List.of(1, 1, 1, 1), sizes(out));
+    }
+
+    @Test
+    void doesNotMergeUpsertsOrInsertSelect() {
+        List<RewrittenStatement> out = rewrite(
+                "INSERT INTO t (a) VALUES (1) ON DUPLICATE KEY UPDATE a = a + 1;\n"
+                + "INSERT INTO t (a) VALUES (1) ON DUPLICATE KEY UPDATE a = a + 1;\n"
+                + "INSERT INTO t (a) SELECT 1;\n"
+                + "INSERT INTO t (a) SELECT 2;");
+        assertEquals(List.of(1, 1, 1, 1), sizes(out));
+    }
+
+    @Test
+    void respectsMaxRows() {
+        ReflectionTestUtils.setField(rewriter, "maxRows", 2);
+        List<RewrittenStatement> out = rewrite(
+                "INSERT INTO t (a) VALUES (1); INSERT INTO t (a) VALUES (2); INSERT INTO t (a) VALUES (3);");
+        assertEquals(List.of(2, 1), sizes(out));
+    }
+
+    @Test
+    void passesThroughWhenDisabled() {
+        ReflectionTestUtils.setField(rewriter, "enabled", false);
+        List<RewrittenStatement> out = rewrite("INSERT INTO t (a) VALUES (1);\nINSERT INTO t (a) VALUES (2);");
+        assertEquals(List.of(1, 1), sizes(out));
+        assertEquals(List.of(1, 2), lines(out));
+    }
+
+    private List<RewrittenStatement> rewrite(String script) {
+        List<RewrittenStatement> out = new ArrayList<>();
+        Iterator<RewrittenStatement> it = rewriter.rewrite(new SQLScriptTokenizer(new StringReader(script)));
+        it.forEachRemaining(out::add);
+        return out;
+    }
+
+    private static List<Integer> sizes(List<RewrittenStatement> statements) {
+        List<Integer> sizes = new ArrayList<>();
+        for (RewrittenStatement stmt : statements) sizes.add(stmt.getSourceStatements().size());
+        return sizes;
+    }
+
+    private static List<Integer> lines(List<RewrittenStatement> statements) {
+        List<Integer> lines = new ArrayList<>();
+        for (RewrittenStatement stmt : statements) lines.add(stmt.getLine());
+        return lines;
+    }
+}
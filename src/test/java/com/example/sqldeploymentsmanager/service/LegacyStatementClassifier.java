@@ -0,0 +1,43 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SQLStatementClassifier.Kind;
+
+import java.util.Locale;
+
+/** The classification SchemaComparisonService made before the lexer, kept as a reference. */
+final class LegacyStatementClassifier {
+    Kind kind = Kind.OTHER;
+    String table;
+    boolean hasWhere;
+
+    static LegacyStatementClassifier classify(String raw) {
+        LegacyStatementClassifier l = new LegacyStatementClassifier();
+        String stmt = raw.toUpperCase(Locale.ROOT).replaceAll("\\s+", " ");
+        if (stmt.matches(".*CREATE\\s+TABLE.*")) {
+            l.set(Kind.CREATE_TABLE, stmt, "CREATE TABLE");
+        } else if (stmt.matches(".*ALTER\\s+TABLE.*")) {
+            l.set(Kind.ALTER_TABLE, stmt, "ALTER TABLE");
+        } else if (stmt.matches(".*INSERT\\s+INTO.*")) {
+            l.set(Kind.INSERT, stmt, "INSERT INTO");
+        } else if (stmt.matches(".*DROP\\s+TABLE.*")) {
+            l.set(Kind.DROP_TABLE, stmt, "DROP TABLE");
+        } else if (stmt.matches(".*SELECT\\s+.*FROM.*")) {
+            l.set(Kind.SELECT, stmt, "FROM");
+        } else if (stmt.matches(".*UPDATE\\s+.*SET.*")) {
+            l.set(Kind.UPDATE, stmt, "UPDATE");
+        } else if (stmt.matches(".*DELETE\\s+FROM.*")) {
+            l.set(Kind.DELETE, stmt, "DELETE FROM");
+        }
+        l.hasWhere = stmt.contains("WHERE");
+        return l;
+    }
+
+    private void set(Kind kind, String stmt, String keyword) {
+        this.kind = kind;
+        try {
+            this.table = stmt.split(keyword)[1].trim().split("\\s+|\\(|;")[0];
+        } catch (Exception e) {
+            this.table = "UNKNOWN";
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.ParsedScriptCache.ParsedScript;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ParsedScriptCacheTest {
+
+    private final BoundedStatementParser parser = new BoundedStatementParser(2000, 1, 3, 30);
+    private final ParsedScriptCache cache = new ParsedScriptCache(parser, 4, 1_000_000);
+
+    @AfterEach
+    void shutdown() {
+        parser.shutdown();
+    }
+
+    @Test
+    void sameScriptIsParsedOnce() {
+        ParsedScript first = cache.get("SELECT 1; SELECT 2");
+        ParsedScript second = cache.get("SELECT 1; SELECT 2");
+
+        assertSame(first, second);
+        assertEquals(2, first.size());
+        assertEquals(1, cache.getStats().getHits());
+    }
+
+    @Test
+    void taggedResultIsReplacedWhenTheTagChanges() {
+        ParsedScript script = cache.get("SELECT a FROM t");
+        AtomicInteger computed = new AtomicInteger();
+
+        assertEquals("v1", script.getResult("analysis", "1/100", () -> "v" + computed.incrementAndGet()));
+        assertEquals("v1", script.getResult("analysis", "1/100", () -> "v" + computed.incrementAndGet()));
+        assertEquals("v2", script.getResult("analysis", "1/200", () -> "v" + computed.incrementAndGet()));
+        assertEquals("v3", script.getResult("analysis", null, () -> "v" + computed.incrementAndGet()));
+        assertEquals("v3", script.getResult("analysis", null, () -> "v" + computed.incrementAndGet()));
+        assertEquals(3, computed.get());
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.sqldeploymentsmanager.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RowImpactServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private Statement statement;
+    private SchemaMetadataCache schemaMetadataCache;
+    private SelectResultCache selectResultCache;
+    private RowImpactService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws SQLException {
+        statement = mock(Statement.class);
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(statement);
+
+        // run the callback against the mocked connection, translating like JdbcTemplate does
+        jdbcTemplate = new JdbcTemplate() {
+            @Override
+            public <T> T execute(ConnectionCallback<T> action) {
+                try {
+                    return action.doInConnection(connection);
+                } catch (SQLException e) {
+                    throw getExceptionTranslator().translate("ConnectionCallback", null, e);
+                }
+            }
+
+            @Override
+            public void execute(String sql) {
+                try {
+                    statement.execute(sql);
+                } catch (SQLException e) {
+                    throw getExceptionTranslator().translate("StatementCallback", sql, e);
+                }
+            }
+
+            @Override
+            public int update(String sql) {
+                try {
+                    return statement.executeUpdate(sql);
+                } catch (SQLException e) {
+                    throw getExceptionTranslator().translate("StatementCallback", sql, e);
+                }
+            }
+        };
+        jdbcTemplate.setExceptionTranslator((task, sql, ex) -> new DataAccessException(ex.getMessage(), ex) { });
+
+        schemaMetadataCache = mock(SchemaMetadataCache.class);
+        selectResultCache = mock(SelectResultCache.class);
+        service = new RowImpactService(jdbcTemplate,
+                new InsertCoalescingRewriter(jdbcTemplate, mock(BoundedStatementParser.class)),
+                schemaMetadataCache, selectResultCache);
+    }
+
+    @Test
+    void batchesConsecutiveDml() throws SQLException {
+        when(statement.executeBatch()).thenReturn(new int[]{1, 2, 3});
+
+        RowImpactService.RowImpactSummary summary = service.executeWithImpact(
+                "INSERT INTO a VALUES (1);\nUPDATE a SET x = 1;\nDELETE FROM a WHERE x = 2;");
+
+        assertEquals(1, summary.getInsertCount());
+        assertEquals(2, summary.getUpdateCount());
+        assertEquals(3, summary.getDeleteCount());
+        assertEquals(1, summary.getBatchCount());
+        assertEquals(3, summary.getExecutedStatements().size());
+    }
+
+    @Test
+    void batchFailureAccountsForCommittedStatementsAndReportsTheLine() throws SQLException {
+        SQLException duplicate = new SQLException("Duplicate entry '2' for key 'PRIMARY'", "23000", 1062);
+        when(statement.executeBatch()).thenThrow(new BatchUpdateException(
+                duplicate.getMessage(), "23000", 1062, new int[]{1, 4}, duplicate));
+
+        List<int[]> progress = new ArrayList<>();
+        String script = "INSERT INTO a VALUES (1);\nUPDATE b SET x = 1;\n\nINSERT INTO a VALUES (2);\nDELETE FROM c;";
+        DataAccessException ex = assertThrows(DataAccessException.class, () ->
+                service.executeWithImpact(script, (done, rows) -> progress.add(new int[]{done, (int) rows})));
+
+        assertTrue(ex.getMessage().contains("Statement at line 4 failed"), ex.getMessage());
+        assertTrue(ex.getMessage().contains("Duplicate entry"), ex.getMessage());
+
+        // the two statements that ran were committed, so their tables' previews are stale
+        verify(selectResultCache).onStatementExecuted("INSERT INTO a VALUES (1)");
+        verify(selectResultCache).onStatementExecuted("UPDATE b SET x = 1");
+        verify(selectResultCache).onStatementExecuted("INSERT INTO a VALUES (2)");
+        verify(selectResultCache, never()).onStatementExecuted("DELETE FROM c");
+        verify(schemaMetadataCache).invalidate();
+        assertEquals(2, progress.get(progress.size() - 1)[0]);
+        assertEquals(5, progress.get(progress.size() - 1)[1]);
+    }
+
+    @Test
+    void continuedBatchCountsStatementsAfterTheFailure() throws SQLException {
+        SQLException cause = new SQLException("Table 'x.b' doesn't exist", "42S02", 1146);
+        when(statement.executeBatch()).thenThrow(new BatchUpdateException(
+                cause.getMessage(), "42S02", 1146, new int[]{1, Statement.EXECUTE_FAILED, 2}, cause));
+
+        DataAccessException ex = assertThrows(DataAccessException.class, () ->
+                service.executeWithImpact("DELETE FROM a;\nUPDATE b SET x = 1;\nDELETE FROM c;"));
+
+        assertTrue(ex.getMessage().contains("line 2"), ex.getMessage());
+        verify(selectResultCache).onStatementExecuted("DELETE FROM a");
+        verify(selectResultCache).onStatementExecuted("DELETE FROM c");
+    }
+
+    @Test
+    void ddlFailureReportsTheLineAndInvalidatesCaches() throws SQLException {
+        when(statement.executeBatch()).thenReturn(new int[]{1});
+        doThrow(new SQLException("Duplicate column name 'x'", "42S21", 1060)).when(statement).execute(anyString());
+
+        DataAccessException ex = assertThrows(DataAccessException.class, () ->
+                service.executeWithImpact("INSERT INTO a VALUES (1);\n\nALTER TABLE a ADD x INT;"));
+
+        assertTrue(ex.getMessage().contains("Statement at line 3 failed"), ex.getMessage());
+        verify(selectResultCache).onStatementExecuted("ALTER TABLE a ADD x INT");
+        verify(schemaMetadataCache).invalidate();
+        verify(statement, never()).execute(any(String.class), any(int[].class));
+    }
+
+    @Test
+    void unbatchedFailureReportsTheLineAndInvalidatesCaches() throws SQLException {
+        ReflectionTestUtils.setField(service, "batchSize", 1);
+        when(statement.executeUpdate("INSERT INTO a VALUES (1)")).thenReturn(1);
+        when(statement.executeUpdate("UPDATE b SET x = 1"))
+                .thenThrow(new SQLException("Table 'x.b' doesn't exist", "42S02", 1146));
+
+        DataAccessException ex = assertThrows(DataAccessException.class, () ->
+                service.executeWithImpact("INSERT INTO a VALUES (1);\n\nUPDATE b SET x = 1;\nDELETE FROM c;"));
+
+        assertTrue(ex.getMessage().contains("Statement at line 3 failed"), ex.getMessage());
+        assertTrue(ex.getMessage().contains("doesn't exist"), ex.getMessage());
+        verify(selectResultCache).onStatementExecuted("INSERT INTO a VALUES (1)");
+        verify(selectResultCache).onStatementExecuted("UPDATE b SET x = 1");
+        verify(selectResultCache, never()).onStatementExecuted("DELETE FROM c");
+        verify(schemaMetadataCache).invalidate();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.sqldeploymentsmanager.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Script splitting throughput: the old {@code split(";")} against {@link SQLScriptTokenizer}
+ * reading the same seed-data script from a String and from an InputStream. The script is
+ * {@code megabytes} MB, so MB/s is ops/s times that.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SQLScriptTokenizerBenchmark {
+
+    @Param({"8"})
+    public int megabytes;
+
+    private String script;
+    private byte[] utf8;
+    private int statements;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sql = new StringBuilder(megabytes << 20);
+        for (int i = 0; sql.length() < megabytes << 20; i++) {
+            if (i % 100 == 0) sql.append("-- batch ").append(i / 100).append('\n');
+            sql.append("INSERT INTO students (id, name, email, note) VALUES (")
+                    .append(i).append(", 'Student ").append(i).append("', 'student").append(i)
+                    .append("@example.com', 'it''s \"quoted\" text');\n");
+        }
+        script = sql.toString();
+        utf8 = script.getBytes(StandardCharsets.UTF_8);
+
+        // the script has no semicolons inside literals, so both must find the same statements
+        statements = split();
+        if (tokenizer() != statements || tokenizerStream() != statements) {
+            throw new IllegalStateException("split and tokenizer disagree on the statement count");
+        }
+    }
+
+    @Benchmark
+    public int split() {
+        int count = 0;
+        for (String raw : script.split(";")) {
+            String stmt = raw.trim();
+            if (!stmt.isEmpty()) count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int tokenizer() {
+        int count = 0;
+        SQLScriptTokenizer tokens = new SQLScriptTokenizer(new StringReader(script));
+        while (tokens.hasNext()) {
+            tokens.next();
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int tokenizerStream() {
+        int count = 0;
+        SQLScriptTokenizer tokens = new SQLScriptTokenizer(new ByteArrayInputStream(utf8));
+        while (tokens.hasNext()) {
+            tokens.next();
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.sqldeploymentsmanager.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SQLScriptTokenizerTest {
+
+    @Test
+    void splitsOnSemicolons() {
+        assertEquals(List.of("SELECT 1", "SELECT 2"), SQLScriptTokenizer.split("SELECT 1;\n  SELECT 2;\n"));
+    }
+
+    @Test
+    void keepsTrailingStatementWithoutDelimiter() {
+        assertEquals(List.of("SELECT 1", "SELECT 2"), SQLScriptTokenizer.split("SELECT 1; SELECT 2"));
+    }
+
+    @Test
+    void ignoresDelimitersInsideQuotes() {
+        String script = "INSERT INTO t VALUES ('a;b', \"c;d\");\n"
+                + "SELECT `odd;name` FROM t;\n"
+                + "SELECT 'it''s; fine', 'back\\'slash;';\n";
+        assertEquals(List.of(
+                "INSERT INTO t VALUES ('a;b', \"c;d\")",
+                "SELECT `odd;name` FROM t",
+                "SELECT 'it''s; fine', 'back\\'slash;'"), SQLScriptTokenizer.split(script));
+    }
+
+    @Test
+    void backslashDoesNotEscapeInsideBackticks() {
+        assertEquals(List.of("SELECT `a\\` FROM t", "SELECT 2"),
+                SQLScriptTokenizer.split("SELECT `a\\` FROM t; SELECT 2;"));
+    }
+
+    @Test
+    void commentMarkersInsideQuotesAreText() {
+        assertEquals(List.of("SELECT '-- not a comment', '/* nor this */', '# or this'"),
+                SQLScriptTokenizer.split("SELECT '-- not a comment', '/* nor this */', '# or this';"));
+    }
+
+    @Test
+    void dropsLineAndBlockComments() {
+        String script = "-- header\n"
+                + "# hash comment\n"
+                + "SELECT 1; -- trailing\n"
+                + "/* block; with delimiter */ SELECT 2;\n"
+                + "SELECT /* inline */ 3;";
+        assertEquals(List.of("SELECT 1", "SELECT 2", "SELECT   3"), SQLScriptTokenizer.split(script));
+    }
+
+    @Test
+    void blockCommentsDoNotNest() {
+        // MySQL ends a comment at the first "*/", like C
+        assertEquals(List.of("SELECT 1   c */ SELECT 2"),
+                SQLScriptTokenizer.split("SELECT 1 /* a /* b */ c */ SELECT 2;"));
+    }
+
+    @Test
+    void doubleDashNeedsWhitespaceToStartAComment() {
+        assertEquals(List.of("SELECT 5--1", "SELECT 5 \nFROM dual", "SELECT 1"),
+                SQLScriptTokenizer.split("SELECT 5--1;\nSELECT 5 -- comment\nFROM dual;\nSELECT 1 --"));
+    }
+
+    @Test
+    void keepsExecutableCommentsAndHints() {
+        String script = "/*!40101 SET NAMES utf8mb4 */;\n"
+                + "SELECT /*+ MAX_EXECUTION_TIME(1000) */ * FROM t;\n"
+                + "/*!50003 CREATE TRIGGER x BEFORE INSERT ON t FOR EACH ROW SET @a = 1 */;";
+        assertEquals(List.of(
+                "/*!40101 SET NAMES utf8mb4 */",
+                "SELECT /*+ MAX_EXECUTION_TIME(1000) */ * FROM t",
+                "/*!50003 CREATE TRIGGER x BEFORE INSERT ON t FOR EACH ROW SET @a = 1 */"),
+                SQLScriptTokenizer.split(script));
+    }
+
+    @Test
+    void honoursDelimiterCommand() {
+        String script = "DELIMITER $$\n"
+                + "CREATE PROCEDURE p()\nBEGIN\n  SELECT 1;\n  SELECT 2;\nEND$$\n"
+                + "DELIMITER ;\n"
+                + "CALL p();\n";
+        assertEquals(List.of(
+                "CREATE PROCEDURE p()\nBEGIN\n  SELECT 1;\n  SELECT 2;\nEND",
+                "CALL p()"), SQLScriptTokenizer.split(script));
+    }
+
+    @Test
+    void delimiterCommandIsCaseInsensitiveAndMayFollowComments() {
+        String script = "-- switch\ndelimiter //\nSELECT 1; SELECT 2//\nDELIMITER ;\nSELECT 3;";
+        assertEquals(List.of("SELECT 1; SELECT 2", "SELECT 3"), SQLScriptTokenizer.split(script));
+    }
+
+    @Test
+    void delimiterWordInsideStatementIsNotACommand() {
+        assertEquals(List.of("SELECT delimiter FROM t", "SELECT 2"),
+                SQLScriptTokenizer.split("SELECT delimiter FROM t; SELECT 2;"));
+    }
+
+    @Test
+    void handlesCrLfLineEndings() {
+        String script = "-- comment\r\nDELIMITER $$\r\nSELECT 1$$\r\nDELIMITER ;\r\nSELECT 2;\r\nSELECT 3 -- x\r\n;";
+        assertEquals(List.of("SELECT 1", "SELECT 2", "SELECT 3"), SQLScriptTokenizer.split(script));
+    }
+
+    @Test
+    void reportsStatementStartLines() {
+        String script = "-- header\n\nSELECT 1;\n/* c */\nSELECT\n2;\nDELIMITER $$\nSELECT 3$$";
+        SQLScriptTokenizer tokenizer = new SQLScriptTokenizer(new StringReader(script));
+        List<Integer> lines = new ArrayList<>();
+        while (tokenizer.hasNext()) {
+            tokenizer.next();
+            lines.add(tokenizer.getStatementLine());
+        }
+        assertEquals(List.of(3, 5, 8), lines);
+    }
+
+    @Test
+    void readsStatementsLongerThanTheBuffer() {
+        StringBuilder values = new StringBuilder("INSERT INTO t VALUES ");
+        for (int i = 0; i < 5000; i++) values.append(i == 0 ? "" : ", ").append("('row ").append(i).append(";')");
+        List<String> statements = SQLScriptTokenizer.split(values + ";\nSELECT 1;");
+        assertEquals(2, statements.size());
+        assertEquals(values.toString(), statements.get(0));
+    }
+
+    @Test
+    void emptyAndBlankScriptsHaveNoStatements() {
+        assertEquals(List.of(), SQLScriptTokenizer.split(null));
+        assertEquals(List.of(), SQLScriptTokenizer.split(" ;; \n -- only a comment\n"));
+    }
+}
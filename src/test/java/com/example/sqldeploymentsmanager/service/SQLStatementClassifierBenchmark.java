@@ -0,0 +1,107 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SQLStatementClassifier.Classification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifying a mix of 1,000 statements: {@link SQLStatementClassifier} against the chain of
+ * {@code matches(".*KEYWORD.*")} regexes and splits it replaced ({@link LegacyStatementClassifier}).
+ * {@code valueRows} sets how long the INSERTs and UPDATEs are, since every regex in the chain
+ * rescans the whole statement.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SQLStatementClassifierBenchmark {
+
+    private static final int STATEMENTS = 1000;
+
+    @Param({"1", "50"})
+    public int valueRows;
+
+    private String[] statements;
+
+    @Setup
+    public void setUp() {
+        StringBuilder values = new StringBuilder();
+        for (int r = 0; r < valueRows; r++) {
+            if (r > 0) values.append(", ");
+            values.append("(").append(r).append(", 'Student ").append(r).append("', 'student")
+                    .append(r).append("@example.com')");
+        }
+        String note = values.toString().replace('\'', '"');
+        statements = new String[STATEMENTS];
+        for (int i = 0; i < STATEMENTS; i++) {
+            switch (i % 8) {
+                case 0:
+                    statements[i] = "CREATE TABLE t" + i + " (id INT PRIMARY KEY, name VARCHAR(50), email VARCHAR(100))";
+                    break;
+                case 1:
+                    statements[i] = "ALTER TABLE students ADD COLUMN c" + i + " INT, ADD INDEX idx_" + i + " (c" + i + ")";
+                    break;
+                case 2:
+                    statements[i] = "INSERT INTO students (id, name, email) VALUES " + values;
+                    break;
+                case 3:
+                    statements[i] = "SELECT s.id, s.name, c.title\nFROM students s JOIN courses c ON c.id = s.course_id\n"
+                            + "WHERE s.id = " + i;
+                    break;
+                case 4:
+                    statements[i] = "UPDATE students SET note = '" + note + "' WHERE id = " + i;
+                    break;
+                case 5:
+                    statements[i] = "DELETE FROM students WHERE id = " + i;
+                    break;
+                case 6:
+                    statements[i] = "DROP TABLE IF EXISTS t" + i;
+                    break;
+                default:
+                    statements[i] = "SET @counter = " + i;
+                    break;
+            }
+        }
+
+        // both must agree on the kind of every statement in the mix
+        for (String sql : statements) {
+            if (SQLStatementClassifier.classify(sql).getKind() != LegacyStatementClassifier.classify(sql).kind) {
+                throw new IllegalStateException("classifiers disagree on: " + sql);
+            }
+        }
+    }
+
+    @Benchmark
+    public void classifier(Blackhole bh) {
+        for (String sql : statements) {
+            Classification c = SQLStatementClassifier.classify(sql);
+            bh.consume(c.getKind());
+            bh.consume(c.getTable());
+            bh.consume(c.hasWhere());
+        }
+    }
+
+    @Benchmark
+    public void regexChain(Blackhole bh) {
+        for (String sql : statements) {
+            LegacyStatementClassifier l = LegacyStatementClassifier.classify(sql);
+            bh.consume(l.kind);
+            bh.consume(l.table);
+            bh.consume(l.hasWhere);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SQLStatementClassifier.Classification;
+import com.example.sqldeploymentsmanager.service.SQLStatementClassifier.Kind;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SQLStatementClassifierTest {
+
+    // Plain statements the regex chain in SchemaComparisonService handled correctly
+    private static final String[] PLAIN = {
+            "CREATE TABLE students (id INT PRIMARY KEY, name VARCHAR(50))",
+            "create table courses(id int)",
+            "ALTER TABLE students ADD COLUMN email VARCHAR(100)",
+            "INSERT INTO students (id, name) VALUES (1, 'a')",
+            "insert into students(id) values (2)",
+            "DROP TABLE old_data",
+            "SELECT * FROM students WHERE id = 1",
+            "SELECT id,\n  name\nFROM\n  students",
+            "UPDATE students SET name = 'x' WHERE id = 1",
+            "UPDATE students SET name = 'x'",
+            "DELETE FROM students WHERE id = 2",
+            "DELETE FROM students",
+            "SET @a = 1",
+    };
+
+    @Test
+    void agreesWithTheRegexChainOnPlainStatements() {
+        for (String sql : PLAIN) {
+            Classification c = SQLStatementClassifier.classify(sql);
+            LegacyStatementClassifier legacy = LegacyStatementClassifier.classify(sql);
+            assertEquals(legacy.kind, c.getKind(), sql);
+            if (legacy.kind != Kind.OTHER) {
+                assertEquals(legacy.table, c.getTable().toUpperCase(Locale.ROOT), sql);
+            }
+            if (legacy.kind == Kind.UPDATE || legacy.kind == Kind.DELETE) {
+                assertEquals(legacy.hasWhere, c.hasWhere(), sql);
+            }
+        }
+    }
+
+    @Test
+    void keywordsInStringsAndCommentsDoNotClassify() {
+        Classification update = SQLStatementClassifier.classify("UPDATE t SET note = 'CREATE TABLE x where'");
+        assertEquals(Kind.UPDATE, update.getKind());
+        assertEquals("t", update.getTable());
+        assertFalse(update.hasWhere());
+        assertEquals(Kind.CREATE_TABLE,
+                LegacyStatementClassifier.classify("UPDATE t SET note = 'CREATE TABLE x where'").kind);
+
+        Classification delete = SQLStatementClassifier.classify("/* DROP TABLE x */ DELETE FROM y -- where\n");
+        assertEquals(Kind.DELETE, delete.getKind());
+        assertEquals("y", delete.getTable());
+        assertFalse(delete.hasWhere());
+        assertEquals(Kind.DROP_TABLE,
+                LegacyStatementClassifier.classify("/* DROP TABLE x */ DELETE FROM y -- where\n").kind);
+    }
+
+    @Test
+    void whereInsideASubqueryIsNotTopLevel() {
+        assertFalse(SQLStatementClassifier.classify(
+                "DELETE FROM t ORDER BY (SELECT 1 FROM u WHERE u.id = 1) LIMIT 1").hasWhere());
+        assertTrue(SQLStatementClassifier.classify(
+                "UPDATE t SET a = (SELECT max(b) FROM u) WHERE id = 1").hasWhere());
+    }
+
+    @Test
+    void readsQuotedQualifiedAndConditionalNames() {
+        assertEquals("t", SQLStatementClassifier.classify("CREATE TABLE IF NOT EXISTS t (id INT)").getTable());
+        assertEquals("IF", LegacyStatementClassifier.classify("CREATE TABLE IF NOT EXISTS t (id INT)").table);
+
+        assertEquals("odd name", SQLStatementClassifier.classify("INSERT INTO `odd name` VALUES (1)").getTable());
+        assertEquals("db.t", SQLStatementClassifier.classify("UPDATE db.t SET a = 1").getTable());
+        assertEquals("t", SQLStatementClassifier.classify("DROP TEMPORARY TABLE IF EXISTS t").getTable());
+        assertEquals("t", SQLStatementClassifier.classify("DELETE LOW_PRIORITY QUICK FROM t").getTable());
+        assertEquals("t", SQLStatementClassifier.classify("INSERT IGNORE t VALUES (1)").getTable());
+        assertEquals(Kind.INSERT, SQLStatementClassifier.classify("REPLACE INTO t VALUES (1)").getKind());
+    }
+
+    @Test
+    void collectsEveryAddedColumn() {
+        Classification c = SQLStatementClassifier.classify(
+                "ALTER TABLE t ADD INDEX idx (a), ADD COLUMN b INT, ADD c INT, ADD `d e` TEXT, "
+                        + "ADD CONSTRAINT fk FOREIGN KEY (a) REFERENCES u (id)");
+        assertEquals(Kind.ALTER_TABLE, c.getKind());
+        assertEquals(List.of("b", "c", "d e"), c.getAddedColumns());
+    }
+
+    @Test
+    void classifiesCommonTableExpressionsByTheirMainStatement() {
+        Classification c = SQLStatementClassifier.classify(
+                "WITH RECURSIVE r (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM r WHERE n < 5) SELECT n FROM r");
+        assertEquals(Kind.SELECT, c.getKind());
+        assertEquals("r", c.getTable());
+        assertEquals("WITH", c.getLeadingKeyword());
+        assertTrue(c.isQuery());
+    }
+
+    @Test
+    void looksOnlyAtTheFirstStatement() {
+        Classification c = SQLStatementClassifier.classify("SELECT * FROM a; DROP TABLE b");
+        assertEquals(Kind.SELECT, c.getKind());
+        assertEquals("a", c.getTable());
+    }
+
+    @Test
+    void handlesEmptyAndNonKeywordInput() {
+        assertEquals(Kind.OTHER, SQLStatementClassifier.classify(null).getKind());
+        assertEquals(Kind.OTHER, SQLStatementClassifier.classify("").getKind());
+        assertNull(SQLStatementClassifier.classify("'just a string'").getLeadingKeyword());
+        assertTrue(SQLStatementClassifier.startsWithKeyword("-- c\n  select 1", "SELECT"));
+        assertFalse(SQLStatementClassifier.startsWithKeyword("selected", "SELECT"));
+    }
+
+    @Test
+    void summarizesToOneLine() {
+        assertEquals("SELECT a FROM t", SQLStatementClassifier.summarize("  SELECT\n\ta\n  FROM t  "));
+        String longSql = "SELECT " + "x, ".repeat(40) + "y FROM t";
+        String summary = SQLStatementClassifier.summarize(longSql);
+        assertEquals(80, summary.length());
+        assertTrue(summary.endsWith("..."));
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.sqldeploymentsmanager.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Latency of comparing a 500-statement script with a 200-table schema: the old
+ * SchemaComparisonService (one DatabaseMetaData lookup per statement) against the current
+ * one, with the schema model and parsed script either cold (loaded by this comparison) or
+ * already cached. Every query to the stub database waits {@code roundTripMicros}; opening
+ * the old code's unpooled connection isn't counted, so the old numbers are a lower bound.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchemaComparisonBenchmark {
+
+    private static final int TABLES = 200;
+    private static final int COLUMNS = 8;
+    private static final int STATEMENTS = 500;
+
+    @Param({"0", "250"})
+    public long roundTripMicros;
+
+    private final Map<String, Set<String>> schema = new LinkedHashMap<>();
+    private SchemaFixture fixture;
+    private BoundedStatementParser parser;
+    private SchemaComparisonService warm;
+    private DatabaseMetaData metaData;
+    private String script;
+
+    @Setup
+    public void setUp() {
+        fixture = new SchemaFixture().beforeQuery(this::roundTrip);
+        for (int t = 0; t < TABLES; t++) {
+            String table = String.format("t%03d", t);
+            Set<String> columns = new HashSet<>();
+            for (int c = 0; c < COLUMNS; c++) {
+                fixture.column(table, "c" + c, "int", c > 0);
+                columns.add("C" + c);
+            }
+            schema.put(table.toUpperCase(Locale.ROOT), columns);
+        }
+        metaData = metaData();
+
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < STATEMENTS; i++) {
+            String table = String.format("t%03d", i * 7 % TABLES);
+            switch (i % 7) {
+                case 0: sql.append("CREATE TABLE new_").append(i).append(" (id INT PRIMARY KEY, name VARCHAR(50))"); break;
+                case 1: sql.append("ALTER TABLE ").append(table).append(" ADD COLUMN extra_").append(i).append(" INT"); break;
+                case 2: sql.append("INSERT INTO ").append(table).append(" (c0, c1) VALUES (").append(i).append(", 1)"); break;
+                case 3: sql.append("SELECT c0, c1 FROM ").append(table).append(" WHERE c2 = ").append(i); break;
+                case 4: sql.append("UPDATE ").append(table).append(" SET c1 = 2 WHERE c0 = ").append(i); break;
+                case 5: sql.append("DELETE FROM ").append(table).append(" WHERE c0 = ").append(i); break;
+                default: sql.append("DROP TABLE new_").append(i - 6); break;
+            }
+            sql.append(";\n");
+        }
+        script = sql.toString();
+
+        parser = new BoundedStatementParser(2000, 0, 3, 30);
+        warm = new SchemaComparisonService(fixture.cache(), new ParsedScriptCache(parser, 32, 20_000_000));
+        if (warm.compareWithDatabase(script).size() < STATEMENTS || legacy().size() < STATEMENTS) {
+            throw new IllegalStateException("comparison reported fewer lines than statements");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        parser.shutdown();
+    }
+
+    @Benchmark
+    public List<String> legacy() {
+        return LegacyComparison.compare(script, metaData);
+    }
+
+    @Benchmark
+    public List<String> cold() {
+        SchemaComparisonService service = new SchemaComparisonService(fixture.cache(),
+                new ParsedScriptCache(parser, 32, 20_000_000));
+        return service.compareWithDatabase(script);
+    }
+
+    @Benchmark
+    public List<String> cached() {
+        return warm.compareWithDatabase(script);
+    }
+
+    private void roundTrip() {
+        if (roundTripMicros > 0) LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+    }
+
+    // getTables/getColumns over the same schema, each one round trip; names match case-insensitively
+    private DatabaseMetaData metaData() {
+        return (DatabaseMetaData) Proxy.newProxyInstance(DatabaseMetaData.class.getClassLoader(),
+                new Class<?>[]{DatabaseMetaData.class}, (proxy, method, args) -> {
+                    roundTrip();
+                    Set<String> columns = schema.get(((String) args[2]).toUpperCase(Locale.ROOT));
+                    switch (method.getName()) {
+                        case "getTables":
+                            return rows(columns == null ? List.of() : List.of("TABLE"));
+                        case "getColumns":
+                            return rows(columns == null ? List.of() : new ArrayList<>(columns));
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static ResultSet rows(List<String> values) {
+        Iterator<String> it = values.iterator();
+        String[] current = new String[1];
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            current[0] = it.hasNext() ? it.next() : null;
+                            return current[0] != null;
+                        case "getString":
+                            return current[0];
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /** SchemaComparisonService.compareWithDatabase before the metadata cache, minus opening the connection. */
+    private static final class LegacyComparison {
+
+        static List<String> compare(String sqlText, DatabaseMetaData metaData) {
+            List<String> results = new ArrayList<>();
+
+            String normalized = sqlText.toUpperCase(Locale.ROOT)
+                    .replaceAll("--.*?\\n", "")
+                    .replaceAll("/\\*.*?\\*/", "")
+                    .replaceAll("\\s+", " ")
+                    .trim();
+
+            try {
+                for (String stmt : normalized.split(";")) {
+                    stmt = stmt.trim();
+                    if (stmt.isEmpty()) continue;
+
+                    if (stmt.matches(".*CREATE\\s+TABLE.*")) {
+                        String tableName = extractTableName(stmt, "CREATE TABLE");
+                        results.add(tableExists(metaData, tableName)
+                                ? "⚠️ Table `" + tableName + "` already exists."
+                                : "✅ Table `" + tableName + "` will be created.");
+                    } else if (stmt.matches(".*ALTER\\s+TABLE.*")) {
+                        String tableName = extractTableName(stmt, "ALTER TABLE");
+                        if (tableExists(metaData, tableName)) {
+                            results.add("✅ Table `" + tableName + "` exists — checking columns...");
+                            results.addAll(analyzeColumnDifferences(metaData, tableName, stmt));
+                        } else {
+                            results.add("⚠️ ALTER TABLE failed — table `" + tableName + "` not found.");
+                        }
+                    } else if (stmt.matches(".*INSERT\\s+INTO.*")) {
+                        String tableName = extractTableName(stmt, "INSERT INTO");
+                        results.add(tableExists(metaData, tableName)
+                                ? "✅ Data will be inserted into existing table `" + tableName + "`."
+                                : "⚠️ INSERT failed — table `" + tableName + "` not found.");
+                    } else if (stmt.matches(".*DROP\\s+TABLE.*")) {
+                        String tableName = extractTableName(stmt, "DROP TABLE");
+                        results.add(tableExists(metaData, tableName)
+                                ? "🟥 Table `" + tableName + "` exists — this will drop it."
+                                : "ℹ️ Table `" + tableName + "` does not exist — DROP ignored.");
+                    } else if (stmt.matches(".*SELECT\\s+.*FROM.*")) {
+                        String tableName = extractTableName(stmt, "FROM");
+                        results.add(tableExists(metaData, tableName)
+                                ? "ℹ️ SELECT will read data from table `" + tableName + "`."
+                                : "⚠️ SELECT references table `" + tableName + "` that doesn’t exist.");
+                    } else if (stmt.matches(".*UPDATE\\s+.*SET.*")) {
+                        String tableName = extractTableName(stmt, "UPDATE");
+                        results.add(tableExists(metaData, tableName)
+                                ? (stmt.contains("WHERE") ? "🟡 UPDATE will modify matching records in `" + tableName + "`."
+                                        : "⚠️ UPDATE in `" + tableName + "` has no WHERE — all rows would be affected.")
+                                : "⚠️ UPDATE failed — table `" + tableName + "` not found.");
+                    } else if (stmt.matches(".*DELETE\\s+FROM.*")) {
+                        String tableName = extractTableName(stmt, "DELETE FROM");
+                        results.add(tableExists(metaData, tableName)
+                                ? (stmt.contains("WHERE") ? "🟠 DELETE will remove matching rows from `" + tableName + "`."
+                                        : "⚠️ DELETE without WHERE — all rows in `" + tableName + "` will be deleted.")
+                                : "⚠️ DELETE failed — table `" + tableName + "` not found.");
+                    } else {
+                        results.add("ℹ️ No schema-level operation detected in: "
+                                + (stmt.length() > 80 ? stmt.substring(0, 77) + "..." : stmt));
+                    }
+                }
+            } catch (Exception e) {
+                results.add("❌ Error comparing schema: " + e.getMessage());
+            }
+            return results;
+        }
+
+        private static boolean tableExists(DatabaseMetaData metaData, String tableName) throws SQLException {
+            try (ResultSet rs = metaData.getTables(null, null, tableName, new String[]{"TABLE"})) {
+                return rs.next();
+            }
+        }
+
+        private static List<String> analyzeColumnDifferences(DatabaseMetaData metaData, String tableName, String sql)
+                throws SQLException {
+            List<String> diffs = new ArrayList<>();
+            try (ResultSet rs = metaData.getColumns(null, null, tableName, null)) {
+                Set<String> existingCols = new HashSet<>();
+                while (rs.next()) {
+                    existingCols.add(rs.getString("COLUMN_NAME").toUpperCase(Locale.ROOT));
+                }
+                if (sql.contains("ADD COLUMN")) {
+                    String[] parts = sql.split("ADD COLUMN");
+                    for (int i = 1; i < parts.length; i++) {
+                        String colName = parts[i].trim().split(",|\\)")[0].split("\\s+")[0];
+                        diffs.add(existingCols.contains(colName)
+                                ? "⚠️ Column `" + colName + "` already exists in `" + tableName + "`."
+                                : "✅ Column `" + colName + "` will be added to `" + tableName + "`.");
+                    }
+                }
+            }
+            return diffs;
+        }
+
+        private static String extractTableName(String sql, String keyword) {
+            try {
+                return sql.split(keyword)[1].trim().split("\\s+|\\(|;")[0];
+            } catch (Exception e) {
+                return "UNKNOWN";
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.SchemaModel;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A schema for tests, served to {@link SchemaMetadataCache} as the information_schema rows
+ * it loads from. Tables are in the current schema ("app") unless named "schema.table".
+ */
+final class SchemaFixture {
+
+    private static final String COLUMNS = "information_schema.columns";
+    private static final String STATISTICS = "information_schema.statistics";
+    private static final String REFERENTIAL = "information_schema.referential_constraints";
+    private static final String TRIGGERS = "information_schema.triggers";
+    private static final String VIEWS = "information_schema.views";
+
+    private final Map<String, List<Map<String, Object>>> rows = new LinkedHashMap<>();
+    private Runnable beforeQuery = () -> { };
+
+    /** A table whose columns are all NOT NULL ints. */
+    SchemaFixture table(String table, String... columns) {
+        for (String column : columns) column(table, column, "int", false);
+        return this;
+    }
+
+    SchemaFixture column(String table, String column, String type, boolean nullable) {
+        return row(COLUMNS, "table_name", table, "column_name", column, "column_type", type,
+                "is_nullable", nullable ? "YES" : "NO", "column_default", "");
+    }
+
+    SchemaFixture index(String table, String index, boolean unique, String... columns) {
+        for (int i = 0; i < columns.length; i++) {
+            row(STATISTICS, "table_name", table, "index_name", index, "non_unique", unique ? 0 : 1,
+                    "seq_in_index", i + 1, "column_name", columns[i]);
+        }
+        return this;
+    }
+
+    /** {@code child}'s foreign key to {@code parent} cascades. */
+    SchemaFixture cascade(String parent, String child) {
+        return row(REFERENTIAL, "referenced_table_name", parent, "local", isLocal(child),
+                "constraint_schema", schemaOf(child), "table_name", nameOf(child));
+    }
+
+    SchemaFixture trigger(String table, String statement) {
+        return row(TRIGGERS, "event_object_table", table, "action_statement", statement);
+    }
+
+    /** A view selecting from {@code baseTables}; its columns come from {@link #table}. */
+    SchemaFixture view(String view, String... baseTables) {
+        for (String base : baseTables) {
+            row(VIEWS, "view_name", view, "local", isLocal(base), "table_schema", schemaOf(base),
+                    "table_name", nameOf(base));
+        }
+        return this;
+    }
+
+    /** Runs before every query, e.g. to fail the load or add latency. */
+    SchemaFixture beforeQuery(Runnable hook) {
+        this.beforeQuery = hook;
+        return this;
+    }
+
+    JdbcTemplate jdbc() {
+        return new JdbcTemplate() {
+            @Override
+            public void query(String sql, RowCallbackHandler handler) {
+                beforeQuery.run();
+                for (Map.Entry<String, List<Map<String, Object>>> e : rows.entrySet()) {
+                    if (!sql.contains(e.getKey())) continue;
+                    for (Map<String, Object> row : e.getValue()) {
+                        try {
+                            handler.processRow(resultSet(row));
+                        } catch (SQLException ex) {
+                            throw new UncategorizedSQLException("fixture", sql, ex);
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    SchemaMetadataCache cache() {
+        return new SchemaMetadataCache(jdbc());
+    }
+
+    SchemaModel model() {
+        return cache().getModel();
+    }
+
+    private SchemaFixture row(String query, Object... keyValues) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) row.put((String) keyValues[i], keyValues[i + 1]);
+        rows.computeIfAbsent(query, q -> new ArrayList<>()).add(row);
+        return this;
+    }
+
+    private static boolean isLocal(String table) {
+        return table.indexOf('.') < 0;
+    }
+
+    private static String schemaOf(String table) {
+        int dot = table.indexOf('.');
+        return dot < 0 ? "app" : table.substring(0, dot);
+    }
+
+    private static String nameOf(String table) {
+        return table.substring(table.indexOf('.') + 1);
+    }
+
+    // the getters the cache uses, by column label
+    private static ResultSet resultSet(Map<String, Object> row) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Object value = args != null && args.length == 1 && args[0] instanceof String
+                            ? row.get(args[0]) : null;
+                    switch (method.getName()) {
+                        case "getString":
+                            return value == null ? null : value.toString();
+                        case "getInt":
+                            return value == null ? 0 : ((Number) value).intValue();
+                        case "getBoolean":
+                            return Boolean.TRUE.equals(value);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
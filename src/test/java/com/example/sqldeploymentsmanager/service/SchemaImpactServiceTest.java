@@ -0,0 +1,38 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SchemaImpactService.SchemaSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SchemaImpactServiceTest {
+
+    private final BoundedStatementParser parser = new BoundedStatementParser(2000, 1, 3, 30);
+    private final ScriptTableExtractor extractor =
+            new ScriptTableExtractor(new ParsedScriptCache(parser, 32, 1_000_000));
+
+    @AfterEach
+    void shutdown() {
+        parser.shutdown();
+    }
+
+    @Test
+    void tableQualifiedWithItsSchemaIsInTheSnapshot() {
+        SchemaFixture schema = new SchemaFixture()
+                .table("students", "id", "course_id")
+                .table("courses", "id");
+        // the fixture only answers the metadata cache's full load, so a scoped snapshot would fail
+        SchemaImpactService service = new SchemaImpactService(schema.jdbc(), schema.cache());
+
+        SchemaSnapshot before = service.captureSnapshot(extractor.extract("ALTER TABLE college.students ADD x INT"));
+        assertNull(before.scope);
+        schema.column("students", "x", "int", true);
+        SchemaSnapshot after = service.captureSnapshotAfter(before);
+
+        assertEquals(List.of("+ Column added: students.x int NULLABLE=YES"), service.diff(before, after));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.SchemaModel;
+import com.example.sqldeploymentsmanager.service.SchemaMetadataCache.TableInfo;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SchemaSimulatorTest {
+
+    private final SchemaModel model = new SchemaFixture()
+            .table("students", "id", "name")
+            .table("courses", "id")
+            .model();
+
+    private SchemaSimulator simulate(String... statements) throws Exception {
+        SchemaSimulator simulator = new SchemaSimulator(model);
+        for (String sql : statements) simulator.apply(CCJSqlParserUtil.parse(sql));
+        return simulator;
+    }
+
+    private static Map<?, ?> copied(SchemaSimulator simulator) {
+        return (Map<?, ?>) ReflectionTestUtils.getField(simulator, "changed");
+    }
+
+    @Test
+    void lookupsDontCopyTheCachedTables() {
+        TableInfo students = spy(model.getTable("students"));
+        TableInfo courses = spy(model.getTable("courses"));
+        SchemaModel base = mock(SchemaModel.class);
+        when(base.getTable("students")).thenReturn(students);
+        when(base.getTable("courses")).thenReturn(courses);
+
+        SchemaSimulator simulator = new SchemaSimulator(base);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(simulator.hasTable("students"));
+            assertTrue(simulator.hasTable("`COURSES`"));
+            assertFalse(simulator.hasTable("teachers"));
+            assertTrue(simulator.hasColumn("students", "name"));
+        }
+        verify(students, never()).getColumns();
+        verify(courses, never()).getColumns();
+        assertTrue(copied(simulator).isEmpty());
+    }
+
+    @Test
+    void alterChangesOnlyTheSimulatedCopy() throws Exception {
+        SchemaSimulator simulator = simulate("ALTER TABLE students ADD COLUMN email VARCHAR(50)",
+                "ALTER TABLE students DROP COLUMN name");
+
+        assertTrue(simulator.hasColumn("students", "email"));
+        assertFalse(simulator.hasColumn("students", "name"));
+        assertFalse(model.getTable("students").hasColumn("email"));
+        assertTrue(model.getTable("students").hasColumn("name"));
+        assertEquals(1, copied(simulator).size());
+    }
+
+    @Test
+    void createDropAndRenameFollowTheScript() throws Exception {
+        SchemaSimulator simulator = simulate(
+                "CREATE TABLE archive LIKE students",
+                "ALTER TABLE archive ADD COLUMN archived_at DATETIME",
+                "RENAME TABLE courses TO classes",
+                "DROP TABLE students");
+
+        assertTrue(simulator.hasColumn("archive", "name"));
+        assertTrue(simulator.hasColumn("archive", "archived_at"));
+        assertFalse(simulator.hasTable("students"));
+        assertFalse(simulator.hasColumn("students", "id"));
+        assertFalse(simulator.hasTable("courses"));
+        assertTrue(simulator.hasColumn("classes", "id"));
+
+        simulator.apply(CCJSqlParserUtil.parse("CREATE TABLE students (id INT, email VARCHAR(50))"));
+        assertTrue(simulator.hasColumn("students", "email"));
+        assertFalse(simulator.hasColumn("students", "name"));
+    }
+}
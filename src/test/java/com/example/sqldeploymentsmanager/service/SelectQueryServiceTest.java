@@ -0,0 +1,90 @@
+package com.example.sqldeploymentsmanager.service;
+
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SelectQueryServiceTest {
+
+    // users(id NOT NULL, email NULL, name NOT NULL); id and email each have a unique index
+    private static final List<Map<String, Object>> COLUMNS = List.of(
+            column("id", "NO"), column("email", "YES"), column("name", "NO"));
+    private static final List<Map<String, Object>> INDEXES = List.of(
+            Map.of("table_name", "users", "index_name", "PRIMARY", "non_unique", 0, "seq_in_index", 1, "column_name", "id"),
+            Map.of("table_name", "users", "index_name", "uk_email", "non_unique", 0, "seq_in_index", 1, "column_name", "email"));
+
+    private final SelectQueryService service = newService();
+
+    private static Map<String, Object> column(String name, String nullable) {
+        return Map.of("table_name", "users", "column_name", name, "column_type", "varchar(50)",
+                "is_nullable", nullable, "column_default", "");
+    }
+
+    private static SelectQueryService newService() {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        doAnswer(inv -> {
+            String sql = inv.getArgument(0);
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (Map<String, Object> row : sql.contains("information_schema.columns") ? COLUMNS : INDEXES) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(anyString())).thenAnswer(a -> {
+                    Object v = row.get(a.<String>getArgument(0));
+                    return v == null ? null : v.toString();
+                });
+                when(rs.getInt(anyString())).thenAnswer(a -> (Integer) row.get(a.<String>getArgument(0)));
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbc).query(anyString(), any(RowCallbackHandler.class));
+
+        SchemaMetadataCache schema = new SchemaMetadataCache(jdbc);
+        return new SelectQueryService(jdbc, null, null, schema, null, 100, 500, 100000, 30, 0, null, null);
+    }
+
+    private String keyColumn(String sql) throws Exception {
+        Select select = (Select) CCJSqlParserUtil.parse(sql);
+        return service.keyColumn((PlainSelect) select.getSelectBody());
+    }
+
+    @Test
+    void pagesByUniqueNotNullKey() throws Exception {
+        assertEquals("id", keyColumn("SELECT * FROM users ORDER BY id"));
+        assertEquals("id", keyColumn("SELECT id, name FROM users WHERE name <> 'x' ORDER BY id DESC"));
+        assertEquals("id", keyColumn("SELECT u.* FROM users u ORDER BY id"));
+        assertEquals("id", keyColumn("SELECT id AS id, name FROM users ORDER BY id"));
+    }
+
+    @Test
+    void aliasShadowingTheKeyFallsBackToOffset() throws Exception {
+        assertNull(keyColumn("SELECT name AS id FROM users ORDER BY id"));
+        assertNull(keyColumn("SELECT id, name AS `ID` FROM users ORDER BY id"));
+    }
+
+    @Test
+    void keyMustBeInTheOutput() throws Exception {
+        assertNull(keyColumn("SELECT name FROM users ORDER BY id"));
+        assertNull(keyColumn("SELECT id AS user_id FROM users ORDER BY id"));
+    }
+
+    @Test
+    void nullableOrNonUniqueKeysFallBackToOffset() throws Exception {
+        assertNull(keyColumn("SELECT * FROM users ORDER BY email DESC"));
+        assertNull(keyColumn("SELECT * FROM users ORDER BY email"));
+        assertNull(keyColumn("SELECT * FROM users ORDER BY name"));
+    }
+}
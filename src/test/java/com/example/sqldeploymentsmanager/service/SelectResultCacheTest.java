@@ -0,0 +1,198 @@
+package com.example.sqldeploymentsmanager.service;
+
+import com.example.sqldeploymentsmanager.service.SelectQueryService.SelectPreview;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SelectResultCacheTest {
+
+    private final Map<String, List<Map<String, Object>>> information = new HashMap<>();
+    private final BoundedStatementParser parser = new BoundedStatementParser(2000, 1, 3, 30);
+    private final AtomicInteger loads = new AtomicInteger();
+    private SelectResultCache cache;
+
+    @AfterEach
+    void shutdown() {
+        parser.shutdown();
+    }
+
+    // a, b, parent, child (ON DELETE CASCADE to parent), audit, t (trigger writing audit), v (view over a)
+    private void defaultSchema() {
+        for (String table : List.of("a", "b", "parent", "child", "audit", "t", "v")) {
+            row("information_schema.columns", "table_name", table, "column_name", "id", "column_type", "int",
+                    "is_nullable", "NO", "column_default", "");
+        }
+        row("referential_constraints", "referenced_table_name", "parent", "local", true,
+                "table_schema", "app", "table_name", "child");
+        row("information_schema.triggers", "event_object_table", "t",
+                "action_statement", "INSERT INTO audit (id) VALUES (NEW.id)");
+        row("information_schema.views", "view_name", "v", "local", true, "table_schema", "app", "table_name", "a");
+    }
+
+    private void row(String query, Object... keyValues) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) row.put((String) keyValues[i], keyValues[i + 1]);
+        information.computeIfAbsent(query, q -> new ArrayList<>()).add(row);
+    }
+
+    private SelectResultCache newCache() {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        doAnswer(inv -> {
+            String sql = inv.getArgument(0);
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (Map.Entry<String, List<Map<String, Object>>> e : information.entrySet()) {
+                if (!sql.contains("FROM " + e.getKey()) && !sql.contains("FROM information_schema." + e.getKey())) {
+                    continue;
+                }
+                for (Map<String, Object> row : e.getValue()) {
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getString(anyString())).thenAnswer(a -> {
+                        Object v = row.get(a.<String>getArgument(0));
+                        return v == null ? null : v.toString();
+                    });
+                    when(rs.getBoolean(anyString())).thenAnswer(a -> Boolean.TRUE.equals(row.get(a.<String>getArgument(0))));
+                    handler.processRow(rs);
+                }
+            }
+            return null;
+        }).when(jdbc).query(anyString(), any(RowCallbackHandler.class));
+
+        SchemaMetadataCache schema = new SchemaMetadataCache(jdbc);
+        ScriptTableExtractor extractor = new ScriptTableExtractor(new ParsedScriptCache(parser, 32, 1_000_000));
+        return new SelectResultCache(jdbc, schema, extractor, parser, true, 64, 50_000, 60);
+    }
+
+    private void select(String sql) throws Exception {
+        cache.get(sql, sql, 0, 10, null, () -> {
+            loads.incrementAndGet();
+            return emptyPreview();
+        });
+    }
+
+    private static SelectPreview emptyPreview() {
+        try {
+            ResultSetMetaData meta = mock(ResultSetMetaData.class);
+            SelectPreview preview = new SelectPreview();
+            ReflectionTestUtils.setField(preview, "rows", new ColumnarResult.Builder(meta).build());
+            return preview;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // whether the next select of sql runs the query again
+    private boolean reloads(String sql) throws Exception {
+        int before = loads.get();
+        select(sql);
+        return loads.get() > before;
+    }
+
+    @Test
+    void multiTableUpdateInvalidatesEveryTable() throws Exception {
+        defaultSchema();
+        cache = newCache();
+        select("SELECT id FROM a");
+        select("SELECT id FROM b");
+        select("SELECT id FROM parent");
+
+        cache.onStatementExecuted("UPDATE a JOIN b ON a.id = b.id SET b.id = b.id + 1");
+
+        assertEquals(true, reloads("SELECT id FROM a"));
+        assertEquals(true, reloads("SELECT id FROM b"));
+        assertEquals(false, reloads("SELECT id FROM parent"));
+    }
+
+    @Test
+    void cascadesAndTriggersInvalidateTheTablesTheyChange() throws Exception {
+        defaultSchema();
+        cache = newCache();
+        select("SELECT id FROM child");
+        select("SELECT id FROM audit");
+        select("SELECT id FROM b");
+
+        cache.onStatementExecuted("DELETE FROM parent WHERE id = 1");
+        assertEquals(true, reloads("SELECT id FROM child"));
+        assertEquals(false, reloads("SELECT id FROM audit"));
+
+        cache.onStatementExecuted("INSERT INTO t (id) VALUES (1)");
+        assertEquals(true, reloads("SELECT id FROM audit"));
+        assertEquals(false, reloads("SELECT id FROM b"));
+    }
+
+    @Test
+    void writesToABaseTableInvalidateReadsThroughItsViews() throws Exception {
+        defaultSchema();
+        cache = newCache();
+        select("SELECT id FROM v");
+        assertEquals(false, reloads("SELECT id FROM v"));
+
+        cache.onStatementExecuted("UPDATE a SET id = 2 WHERE id = 1");
+        assertEquals(true, reloads("SELECT id FROM v"));
+    }
+
+    @Test
+    void statementsThatCantBeScopedInvalidateEverything() throws Exception {
+        defaultSchema();
+        cache = newCache();
+        select("SELECT id FROM a");
+        select("SELECT id FROM b");
+
+        cache.onStatementExecuted("CALL refresh_everything()");
+
+        assertEquals(true, reloads("SELECT id FROM a"));
+        assertEquals(true, reloads("SELECT id FROM b"));
+    }
+
+    @Test
+    void writesThroughAViewInvalidateEverything() throws Exception {
+        defaultSchema();
+        cache = newCache();
+        select("SELECT id FROM b");
+
+        cache.onStatementExecuted("UPDATE v SET id = 2");
+
+        assertEquals(true, reloads("SELECT id FROM b"));
+    }
+
+    @Test
+    void writesToAnotherSchemaInvalidateEverything() throws Exception {
+        defaultSchema();
+        cache = newCache();
+        select("SELECT id FROM a");
+
+        // not the current schema's a
+        cache.onStatementExecuted("UPDATE other_db.a SET id = 2");
+        assertEquals(true, reloads("SELECT id FROM a"));
+
+        cache.onStatementExecuted("INSERT INTO other_db.b (id) VALUES (1)");
+        assertEquals(true, reloads("SELECT id FROM a"));
+    }
+
+    @Test
+    void qualifiedReadsAreNotCached() throws Exception {
+        defaultSchema();
+        cache = newCache();
+        select("SELECT id FROM app.a");
+
+        // an unqualified write to a couldn't tell it had to invalidate app.a
+        assertEquals(true, reloads("SELECT id FROM app.a"));
+    }
+}
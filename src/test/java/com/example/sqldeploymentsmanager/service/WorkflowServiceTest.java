@@ -0,0 +1,134 @@
+package com.example.sqldeploymentsmanager.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WorkflowServiceTest {
+
+    private final Map<String, List<Map<String, Object>>> information = new HashMap<>();
+    private final BoundedStatementParser parser = new BoundedStatementParser(2000, 1, 3, 30);
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    private final BackupService backupService = mock(BackupService.class);
+
+    @AfterEach
+    void shutdown() {
+        parser.shutdown();
+    }
+
+    // parent, child (ON DELETE CASCADE to parent), audit, t (trigger writing audit), v (view over parent)
+    private void defaultSchema() throws Exception {
+        for (String table : List.of("parent", "child", "audit", "t", "v")) {
+            row("information_schema.columns", "table_name", table, "column_name", "id", "column_type", "int",
+                    "is_nullable", "NO", "column_default", "");
+        }
+        row("referential_constraints", "referenced_table_name", "parent", "local", true,
+                "table_schema", "app", "table_name", "child");
+        row("information_schema.triggers", "event_object_table", "t",
+                "action_statement", "INSERT INTO audit (id) VALUES (NEW.id)");
+        row("information_schema.views", "view_name", "v", "local", true,
+                "table_schema", "app", "table_name", "parent");
+
+        doAnswer(inv -> {
+            String sql = inv.getArgument(0);
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (Map.Entry<String, List<Map<String, Object>>> e : information.entrySet()) {
+                if (!sql.contains("FROM " + e.getKey()) && !sql.contains("FROM information_schema." + e.getKey())) {
+                    continue;
+                }
+                for (Map<String, Object> row : e.getValue()) {
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getString(anyString())).thenAnswer(a -> {
+                        Object v = row.get(a.<String>getArgument(0));
+                        return v == null ? null : v.toString();
+                    });
+                    when(rs.getBoolean(anyString())).thenAnswer(a -> Boolean.TRUE.equals(row.get(a.<String>getArgument(0))));
+                    handler.processRow(rs);
+                }
+            }
+            return null;
+        }).when(jdbc).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    private void row(String query, Object... keyValues) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) row.put((String) keyValues[i], keyValues[i + 1]);
+        information.computeIfAbsent(query, q -> new ArrayList<>()).add(row);
+    }
+
+    private void backUp(String sql) {
+        HistoryService history = new HistoryService(new HistoryJournal(false, "unused", 0, 1, 0, 1),
+                new HistoryDatabaseWriter(null, false, 1, 0, 1, 0, "test"), 16);
+        ScriptTableExtractor extractor = new ScriptTableExtractor(new ParsedScriptCache(parser, 32, 1_000_000));
+        WorkflowService workflow = new WorkflowService(history, null, null, backupService, null, extractor,
+                new SchemaMetadataCache(jdbc));
+        workflow.setLastSQL(sql);
+        workflow.validateSQL();
+        workflow.backupDatabase();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> backedUpTables() {
+        ArgumentCaptor<Collection<String>> tables = ArgumentCaptor.forClass(Collection.class);
+        verify(backupService).createBackup(tables.capture());
+        verify(backupService, never()).createFullBackup();
+        return new HashSet<>(tables.getValue());
+    }
+
+    @Test
+    void backsUpCascadeChildrenAndTriggerTargets() throws Exception {
+        defaultSchema();
+        backUp("DELETE FROM parent WHERE id = 1;\nINSERT INTO t (id) VALUES (1);");
+        assertEquals(Set.of("parent", "child", "t", "audit"), backedUpTables());
+    }
+
+    @Test
+    void writesToAnotherSchemaBackUpEverything() throws Exception {
+        defaultSchema();
+        backUp("UPDATE other_db.parent SET id = 2 WHERE id = 1;");
+        verify(backupService).createFullBackup();
+    }
+
+    @Test
+    void writesThroughAViewBackUpEverything() throws Exception {
+        defaultSchema();
+        backUp("UPDATE v SET id = 2 WHERE id = 1;");
+        verify(backupService).createFullBackup();
+    }
+
+    @Test
+    void unknownDependenciesBackUpEverything() {
+        doThrow(new IllegalStateException("no connection")).when(jdbc).query(anyString(), any(RowCallbackHandler.class));
+        backUp("DELETE FROM parent WHERE id = 1;");
+        verify(backupService).createFullBackup();
+    }
+
+    @Test
+    void readOnlyScriptsAreNotBackedUp() throws Exception {
+        defaultSchema();
+        backUp("SELECT id FROM v;");
+        verify(backupService, never()).createFullBackup();
+        verify(backupService, never()).createBackup(any());
+    }
+}